@@ -0,0 +1,94 @@
+package org.openmrs.module.appointments.conflicts.impl;
+
+import org.openmrs.module.appointments.model.Appointment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read only index of appointments by the time they take up, answering which of them overlap a given interval.
+ * Appointments are kept sorted by start time as epoch millis, and every position also holds the latest end time of
+ * the sub range it is the middle of, which makes the sorted arrays an implicit interval tree. A lookup visits only
+ * the sub ranges that can hold an overlap, in O(log n + k) for k overlapping appointments.
+ */
+class AppointmentIntervalIndex {
+
+    private final List<Appointment> appointments;
+
+    private final int[] positions;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long[] maxEnds;
+
+    /**
+     * @param appointments the appointments to index, each with a start and an end date time
+     */
+    AppointmentIntervalIndex(List<Appointment> appointments) {
+        this.appointments = appointments;
+        int size = appointments.size();
+        Integer[] byStart = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            byStart[i] = i;
+        }
+        Arrays.sort(byStart, Comparator.comparingLong(i -> appointments.get(i).getStartDateTime().getTime()));
+        positions = new int[size];
+        starts = new long[size];
+        ends = new long[size];
+        maxEnds = new long[size];
+        for (int i = 0; i < size; i++) {
+            Appointment appointment = appointments.get(byStart[i]);
+            positions[i] = byStart[i];
+            starts[i] = appointment.getStartDateTime().getTime();
+            ends[i] = appointment.getEndDateTime().getTime();
+        }
+        computeMaxEnds(0, size);
+    }
+
+    /**
+     * Returns the indexed appointments that start before {@code end} and end after {@code start}, in the order they
+     * were given to the index.
+     */
+    List<Appointment> getOverlapping(long start, long end) {
+        List<Integer> overlapping = new ArrayList<>();
+        collectOverlapping(0, starts.length, start, end, overlapping);
+        overlapping.sort(null);
+        List<Appointment> result = new ArrayList<>(overlapping.size());
+        for (Integer position : overlapping) {
+            result.add(appointments.get(position));
+        }
+        return result;
+    }
+
+    private long computeMaxEnds(int from, int to) {
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+        int middle = (from + to) >>> 1;
+        long maxEnd = Math.max(ends[middle], Math.max(computeMaxEnds(from, middle), computeMaxEnds(middle + 1, to)));
+        maxEnds[middle] = maxEnd;
+        return maxEnd;
+    }
+
+    private void collectOverlapping(int from, int to, long start, long end, List<Integer> overlapping) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        if (maxEnds[middle] <= start) {
+            return;
+        }
+        collectOverlapping(from, middle, start, end, overlapping);
+        if (starts[middle] >= end) {
+            return;
+        }
+        if (ends[middle] > start) {
+            overlapping.add(positions[middle]);
+        }
+        collectOverlapping(middle + 1, to, start, end, overlapping);
+    }
+}
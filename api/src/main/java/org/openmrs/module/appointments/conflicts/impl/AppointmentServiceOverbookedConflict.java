@@ -0,0 +1,198 @@
+package org.openmrs.module.appointments.conflicts.impl;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.openmrs.module.appointments.conflicts.AppointmentConflict;
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentConflictType;
+import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceOccupancy;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.model.ServiceWeeklyAvailability;
+
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.openmrs.module.appointments.model.AppointmentConflictType.SERVICE_OVERBOOKED;
+
+public class AppointmentServiceOverbookedConflict implements AppointmentConflict {
+
+    private static final List<AppointmentStatus> OCCUPYING_STATUSES = Collections.unmodifiableList(
+            Arrays.asList(AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled));
+
+    private AppointmentDao appointmentDao;
+
+    public void setAppointmentDao(AppointmentDao appointmentDao) {
+        this.appointmentDao = appointmentDao;
+    }
+
+    @Override
+    public AppointmentConflictType getType() {
+        return SERVICE_OVERBOOKED;
+    }
+
+    /**
+     * Every appointment falls in the capacity window of its service it starts in: the weekly availability of that
+     * day, or the service hours when the service has no weekly availability. The booked appointments of a service are
+     * counted with one grouped query over the range its windows span, then the given appointments are added to their
+     * window in turn, and those taking the window over its limit conflict.
+     */
+    @Override
+    public List<Appointment> getConflicts(List<Appointment> appointments) {
+        List<Appointment> conflictingAppointments = new ArrayList<>();
+        if (CollectionUtils.isEmpty(appointments)) {
+            return conflictingAppointments;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        List<String> persistedUuids = new ArrayList<>();
+        Map<Integer, List<Appointment>> appointmentsByService = new LinkedHashMap<>();
+        Map<Appointment, CapacityWindow> windows = new IdentityHashMap<>();
+        Map<AppointmentServiceDefinition, Set<ServiceWeeklyAvailability>> weeklyAvailabilities = new IdentityHashMap<>();
+        for (Appointment appointment : appointments) {
+            if (appointment.getId() != null) {
+                persistedUuids.add(appointment.getUuid());
+            }
+            CapacityWindow window = canOccupy(appointment) ? getCapacityWindow(appointment,
+                    weeklyAvailabilities.computeIfAbsent(appointment.getService(), AppointmentServiceDefinition::getWeeklyAvailability),
+                    zone) : null;
+            if (window != null) {
+                windows.put(appointment, window);
+                appointmentsByService.computeIfAbsent(appointment.getService().getAppointmentServiceId(), id -> new ArrayList<>())
+                        .add(appointment);
+            }
+        }
+        Set<Appointment> overbookedAppointments = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Integer, List<Appointment>> entry : appointmentsByService.entrySet()) {
+            overbookedAppointments.addAll(getOverbookedAppointments(entry.getKey(), entry.getValue(), windows, persistedUuids));
+        }
+        for (Appointment appointment : appointments) {
+            if (overbookedAppointments.contains(appointment)) {
+                conflictingAppointments.add(appointment);
+            }
+        }
+        return conflictingAppointments;
+    }
+
+    private List<Appointment> getOverbookedAppointments(Integer appointmentServiceId, List<Appointment> serviceAppointments,
+                                                        Map<Appointment, CapacityWindow> windows, List<String> persistedUuids) {
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (Appointment appointment : serviceAppointments) {
+            from = Math.min(from, windows.get(appointment).start);
+            to = Math.max(to, windows.get(appointment).end);
+        }
+        NavigableMap<Long, Integer> bookedByStart = new TreeMap<>();
+        for (AppointmentServiceOccupancy occupancy : appointmentDao.getAppointmentServiceOccupancy(appointmentServiceId,
+                new Date(from), new Date(to), OCCUPYING_STATUSES, persistedUuids)) {
+            bookedByStart.merge(occupancy.getStartDateTime().getTime(), occupancy.getCount(), Integer::sum);
+        }
+        Map<CapacityWindow, Integer> occupied = new HashMap<>();
+        List<Appointment> overbookedAppointments = new ArrayList<>();
+        for (Appointment appointment : serviceAppointments) {
+            CapacityWindow window = windows.get(appointment);
+            int count = occupied.computeIfAbsent(window, w -> countBooked(bookedByStart, w)) + 1;
+            occupied.put(window, count);
+            if (count > window.limit) {
+                overbookedAppointments.add(appointment);
+            }
+        }
+        return overbookedAppointments;
+    }
+
+    private int countBooked(NavigableMap<Long, Integer> bookedByStart, CapacityWindow window) {
+        int count = 0;
+        for (Integer booked : bookedByStart.subMap(window.start, true, window.end, false).values()) {
+            count += booked;
+        }
+        return count;
+    }
+
+    private boolean canOccupy(Appointment appointment) {
+        return !Boolean.TRUE.equals(appointment.getVoided())
+                && appointment.getStatus() != AppointmentStatus.Cancelled
+                && appointment.getStartDateTime() != null
+                && appointment.getService() != null && appointment.getService().getAppointmentServiceId() != null;
+    }
+
+    private CapacityWindow getCapacityWindow(Appointment appointment, Set<ServiceWeeklyAvailability> weeklyAvailability, ZoneId zone) {
+        AppointmentServiceDefinition service = appointment.getService();
+        long startMillis = appointment.getStartDateTime().getTime();
+        LocalDate date = appointment.getStartDateTime().toInstant().atZone(zone).toLocalDate();
+        if (weeklyAvailability.isEmpty()) {
+            CapacityWindow window = createWindow(date, service.getStartTime(), service.getEndTime(),
+                    service.getMaxAppointmentsLimit(), zone);
+            return window != null && window.contains(startMillis) ? window : null;
+        }
+        for (ServiceWeeklyAvailability availability : weeklyAvailability) {
+            if (availability.getDayOfWeek() != date.getDayOfWeek()) {
+                continue;
+            }
+            Integer limit = availability.getMaxAppointmentsLimit() != null ? availability.getMaxAppointmentsLimit()
+                    : service.getMaxAppointmentsLimit();
+            CapacityWindow window = createWindow(date, availability.getStartTime(), availability.getEndTime(), limit, zone);
+            if (window != null && window.contains(startMillis)) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    private CapacityWindow createWindow(LocalDate date, Time startTime, Time endTime, Integer limit, ZoneId zone) {
+        if (limit == null) {
+            return null;
+        }
+        LocalDateTime start = startTime != null ? date.atTime(startTime.toLocalTime()) : date.atStartOfDay();
+        LocalDateTime end = endTime != null ? date.atTime(endTime.toLocalTime()) : date.plusDays(1).atStartOfDay();
+        return new CapacityWindow(start.atZone(zone).toInstant().toEpochMilli(), end.atZone(zone).toInstant().toEpochMilli(), limit);
+    }
+
+    private static final class CapacityWindow {
+
+        private final long start;
+
+        private final long end;
+
+        private final int limit;
+
+        private CapacityWindow(long start, long end, int limit) {
+            this.start = start;
+            this.end = end;
+            this.limit = limit;
+        }
+
+        private boolean contains(long millis) {
+            return millis >= start && millis < end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CapacityWindow)) {
+                return false;
+            }
+            CapacityWindow that = (CapacityWindow) o;
+            return start == that.start && end == that.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(start) + Long.hashCode(end);
+        }
+    }
+}
@@ -8,7 +8,6 @@ import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,38 +26,38 @@ public class PatientDoubleBookingConflict implements AppointmentConflict {
         return PATIENT_DOUBLE_BOOKING;
     }
 
+    /**
+     * The patient's bookable appointments are indexed by time once, so a long recurring series is checked in
+     * O((n + m) log m) instead of comparing every appointment of the series with every existing appointment.
+     */
     @Override
     public List<Appointment> getConflicts(List<Appointment> appointments) {
         List<Appointment> conflictingAppointments = new ArrayList<>();
         if(CollectionUtils.isNotEmpty(appointments)) {
             List<Appointment> patientAppointments = getPatientAppointments(appointments.get(0).getPatient().getPatientId());
+            AppointmentIntervalIndex index = new AppointmentIntervalIndex(patientAppointments.stream()
+                    .filter(this::canConflict)
+                    .collect(Collectors.toList()));
             for (Appointment appointment : appointments) {
-                conflictingAppointments.addAll(getConflictingAppointments(appointment, patientAppointments));
+                conflictingAppointments.addAll(getConflictingAppointments(appointment, index));
             }
         }
         return conflictingAppointments;
     }
 
-    private List<Appointment> getConflictingAppointments(Appointment appointment, List<Appointment> patientAppointments) {
-        return patientAppointments.stream()
-                .filter(patientAppointment -> isConflicting(appointment, patientAppointment))
+    private List<Appointment> getConflictingAppointments(Appointment appointment, AppointmentIntervalIndex index) {
+        return index.getOverlapping(appointment.getStartDateTime().getTime(), appointment.getEndDateTime().getTime())
+                .stream()
+                .filter(patientAppointment -> !patientAppointment.isSameAppointment(appointment))
                 .collect(Collectors.toList());
     }
 
-    private boolean isConflicting(Appointment appointment, Appointment patientAppointment) {
-        return !patientAppointment.isSameAppointment(appointment)
-                && !patientAppointment.getVoided()
+    private boolean canConflict(Appointment patientAppointment) {
+        return !patientAppointment.getVoided()
                 && patientAppointment.isFutureAppointment()
-                && isAppointmentOverlapping(patientAppointment, appointment)
                 && patientAppointment.getStatus() != AppointmentStatus.Cancelled;
     }
 
-    private boolean isAppointmentOverlapping(Appointment patientAppointment, Appointment appointment) {
-        Date startTime = patientAppointment.getStartDateTime();
-        Date endTime = patientAppointment.getEndDateTime();
-        return appointment.getStartDateTime().before(endTime) && appointment.getEndDateTime().after(startTime);
-    }
-
     private List<Appointment> getPatientAppointments(Integer patientId) {
         return appointmentDao.getAppointmentsForPatient(patientId);
     }
@@ -0,0 +1,87 @@
+package org.openmrs.module.appointments.conflicts.impl;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.openmrs.module.appointments.conflicts.AppointmentConflict;
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.helper.ProviderScheduleIndex;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentConflictType;
+import org.openmrs.module.appointments.model.AppointmentSlot;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.openmrs.module.appointments.model.AppointmentConflictType.PROVIDER_DOUBLE_BOOKING;
+
+public class ProviderDoubleBookingConflict implements AppointmentConflict {
+
+    private ProviderScheduleIndex providerScheduleIndex;
+
+    private AppointmentDao appointmentDao;
+
+    public void setProviderScheduleIndex(ProviderScheduleIndex providerScheduleIndex) {
+        this.providerScheduleIndex = providerScheduleIndex;
+    }
+
+    public void setAppointmentDao(AppointmentDao appointmentDao) {
+        this.appointmentDao = appointmentDao;
+    }
+
+    @Override
+    public AppointmentConflictType getType() {
+        return PROVIDER_DOUBLE_BOOKING;
+    }
+
+    /**
+     * Checks every appointment against the schedules of the providers it books, and returns the other appointments
+     * those providers are already booked for at the same time. Only the conflicting appointments are read from the
+     * database.
+     */
+    @Override
+    public List<Appointment> getConflicts(List<Appointment> appointments) {
+        if (CollectionUtils.isEmpty(appointments)) {
+            return Collections.emptyList();
+        }
+        Set<String> conflictingUuids = new LinkedHashSet<>();
+        for (Appointment appointment : appointments) {
+            if (!canConflict(appointment)) {
+                continue;
+            }
+            long start = appointment.getStartDateTime().getTime();
+            long end = appointment.getEndDateTime().getTime();
+            for (Integer providerId : ProviderScheduleIndex.getBookedProviderIds(appointment)) {
+                for (AppointmentSlot slot : providerScheduleIndex.getOverlappingSlots(providerId, start, end)) {
+                    if (!slot.getAppointmentUuid().equals(appointment.getUuid())) {
+                        conflictingUuids.add(slot.getAppointmentUuid());
+                    }
+                }
+            }
+        }
+        if (conflictingUuids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Appointment> appointmentsByUuid = new HashMap<>();
+        for (Appointment conflictingAppointment : appointmentDao.getAppointmentsByUuids(conflictingUuids)) {
+            appointmentsByUuid.put(conflictingAppointment.getUuid(), conflictingAppointment);
+        }
+        List<Appointment> conflictingAppointments = new ArrayList<>();
+        for (String uuid : conflictingUuids) {
+            if (appointmentsByUuid.containsKey(uuid)) {
+                conflictingAppointments.add(appointmentsByUuid.get(uuid));
+            }
+        }
+        return conflictingAppointments;
+    }
+
+    private boolean canConflict(Appointment appointment) {
+        return !Boolean.TRUE.equals(appointment.getVoided())
+                && appointment.getStatus() != AppointmentStatus.Cancelled
+                && appointment.getStartDateTime() != null && appointment.getEndDateTime() != null;
+    }
+}
@@ -0,0 +1,78 @@
+package org.openmrs.module.appointments.conflicts.impl;
+
+import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.ServiceWeeklyAvailability;
+
+import java.sql.Time;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * The opening hours of a service compiled into one array of second-of-day windows per day of the week, each window
+ * stored as a start and an end second. A service without weekly availability is open in its start and end time, or
+ * all day, on every day; a service with weekly availability is closed on the days it has none. Checking an
+ * appointment against the table does not allocate, so a long recurring series is checked in a tight loop.
+ */
+class WeeklyAvailabilityTable {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private static final int LAST_SECOND_OF_DAY = 24 * 60 * 60 - 1;
+
+    private static final int[] NO_WINDOWS = new int[0];
+
+    private final TimeZone timeZone;
+
+    private final int[][] windowsByDay = new int[7][];
+
+    /**
+     * @param timeZone the time zone the opening hours and the appointments are interpreted in
+     */
+    WeeklyAvailabilityTable(AppointmentServiceDefinition appointmentServiceDefinition, TimeZone timeZone) {
+        this.timeZone = timeZone;
+        Set<ServiceWeeklyAvailability> weeklyAvailability = appointmentServiceDefinition.getWeeklyAvailability();
+        if (weeklyAvailability == null || weeklyAvailability.isEmpty()) {
+            int[] windows = {secondOfDay(appointmentServiceDefinition.getStartTime(), 0),
+                    secondOfDay(appointmentServiceDefinition.getEndTime(), LAST_SECOND_OF_DAY)};
+            Arrays.fill(windowsByDay, windows);
+            return;
+        }
+        Arrays.fill(windowsByDay, NO_WINDOWS);
+        for (ServiceWeeklyAvailability availability : weeklyAvailability) {
+            int day = availability.getDayOfWeek().ordinal();
+            int[] windows = Arrays.copyOf(windowsByDay[day], windowsByDay[day].length + 2);
+            windows[windows.length - 2] = secondOfDay(availability.getStartTime(), 0);
+            windows[windows.length - 1] = secondOfDay(availability.getEndTime(), LAST_SECOND_OF_DAY);
+            windowsByDay[day] = windows;
+        }
+    }
+
+    /**
+     * Tells whether an appointment fits in one of the windows of the day it starts on. Only the time of day of the
+     * end is compared, so an appointment has to end after it starts on the same day.
+     */
+    boolean isAvailable(long startMillis, long endMillis) {
+        long localStart = startMillis + timeZone.getOffset(startMillis);
+        int[] windows = windowsByDay[(int) Math.floorMod(Math.floorDiv(localStart, MILLIS_PER_DAY) + 3, 7)];
+        int startSecond = (int) (Math.floorMod(localStart, MILLIS_PER_DAY) / 1000);
+        int endSecond = secondOfDay(endMillis);
+        if (startSecond >= endSecond) {
+            return false;
+        }
+        for (int i = 0; i < windows.length; i += 2) {
+            if (startSecond >= windows[i] && endSecond <= windows[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int secondOfDay(Time time, int defaultSecond) {
+        return time != null ? secondOfDay(time.getTime()) : defaultSecond;
+    }
+
+    private int secondOfDay(long millis) {
+        return (int) (Math.floorMod(millis + timeZone.getOffset(millis), MILLIS_PER_DAY) / 1000);
+    }
+}
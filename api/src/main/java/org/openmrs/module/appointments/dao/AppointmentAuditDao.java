@@ -2,14 +2,23 @@ package org.openmrs.module.appointments.dao;
 
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface AppointmentAuditDao {
 
 	void save(AppointmentAudit appointmentAuditEvent);
 
+	void saveAll(Collection<AppointmentAudit> appointmentAudits);
+
 	List<AppointmentAudit> getAppointmentHistoryForAppointment(Appointment appointment);
 
 	AppointmentAudit getPriorStatusChangeEvent(Appointment appointment);
+
+	void scrollAppointmentHistory(AppointmentAuditSearchRequest appointmentAuditSearchRequest,
+	                              Consumer<AppointmentAuditProjection> consumer);
 }
@@ -1,10 +1,17 @@
 package org.openmrs.module.appointments.dao;
 
+import java.util.Collection;
 import java.util.Date;
+import org.openmrs.User;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProjection;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentServiceDailyCount;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
+import org.openmrs.module.appointments.model.AppointmentServiceOccupancy;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
+import org.openmrs.module.appointments.model.AppointmentSlot;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,22 +20,55 @@ import java.util.List;
 public interface AppointmentDao {
     List<Appointment> getAllAppointments(Date forDate);
 
+    List<AppointmentProjection> getAllAppointmentProjections(Date forDate);
+
     @Transactional
     void save(Appointment appointment);
 
     List<Appointment> search(Appointment appointment);
 
+    List<AppointmentProjection> searchProjections(Appointment appointment);
+
     List<Appointment> getAllFutureAppointmentsForService(AppointmentServiceDefinition appointmentServiceDefinition);
 
     List<Appointment> getAllFutureAppointmentsForServiceType(AppointmentServiceType appointmentServiceType);
 
     List<Appointment> getAppointmentsForService(AppointmentServiceDefinition appointmentServiceDefinition, Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusFilterList);
 
+    Integer getAppointmentsCountForService(AppointmentServiceDefinition appointmentServiceDefinition, Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusFilterList);
+
+    List<Integer> getAppointmentsCountForServices(List<AppointmentServiceLoadWindow> loadWindows, List<AppointmentStatus> appointmentStatusFilterList);
+
+    List<AppointmentServiceDailyCount> getAppointmentServiceDailyCounts(Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusFilterList);
+
 	Appointment getAppointmentByUuid(String uuid);
 
+    List<Appointment> getAppointmentsByUuids(Collection<String> uuids);
+
+    void updateStatus(Collection<Appointment> appointments, AppointmentStatus status, User changedBy, Date dateChanged);
+
     List<Appointment> getAllAppointmentsInDateRange(Date startDate, Date endDate);
 
+    List<Appointment> getAppointmentsWithStatusEndingBefore(List<AppointmentStatus> appointmentStatuses, Date endDate,
+                                                            Appointment lastAppointment, int maxResults);
+
     List<Appointment> search(AppointmentSearchRequest appointmentSearchRequest);
 
+    List<AppointmentProjection> searchProjections(AppointmentSearchRequest appointmentSearchRequest);
+
     List<Appointment> getAppointmentsForPatient(Integer patientId);
+
+    /**
+     * Returns the slots of the non voided, non cancelled appointments starting on or after the given date, that
+     * the provider is assigned to and has not rejected or cancelled.
+     */
+    List<AppointmentSlot> getAppointmentSlotsForProvider(Integer providerId, Date fromDate);
+
+    /**
+     * Counts the appointments of the service in the given statuses starting in [startDate, endDate), grouped by start
+     * date time, leaving out the appointments with the given uuids.
+     */
+    List<AppointmentServiceOccupancy> getAppointmentServiceOccupancy(Integer appointmentServiceId, Date startDate, Date endDate,
+                                                                     List<AppointmentStatus> appointmentStatusFilterList,
+                                                                     Collection<String> excludedAppointmentUuids);
 }
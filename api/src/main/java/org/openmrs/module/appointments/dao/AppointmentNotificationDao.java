@@ -0,0 +1,17 @@
+package org.openmrs.module.appointments.dao;
+
+import org.openmrs.module.appointments.model.AppointmentNotification;
+
+import java.util.Date;
+import java.util.List;
+
+public interface AppointmentNotificationDao {
+
+    void save(AppointmentNotification appointmentNotification);
+
+    AppointmentNotification getNotificationById(Integer appointmentNotificationId);
+
+    List<Integer> getDueNotificationIds(Date onDate, int limit);
+
+    boolean claim(Integer appointmentNotificationId, Date onDate, Date leaseExpiryDateTime);
+}
@@ -0,0 +1,6 @@
+package org.openmrs.module.appointments.dao;
+
+public interface AppointmentNumberSequenceDao {
+
+    long allocate(String name, int blockSize);
+}
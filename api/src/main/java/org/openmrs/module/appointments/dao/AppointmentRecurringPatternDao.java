@@ -1,8 +1,11 @@
 package org.openmrs.module.appointments.dao;
 
+import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.List;
 
 
@@ -10,6 +13,16 @@ public interface AppointmentRecurringPatternDao {
     @Transactional
     void save(AppointmentRecurringPattern appointmentRecurringPattern);
 
+    /**
+     * Inserts a pattern that has not been saved yet together with its appointments and their providers, in batches,
+     * setting the generated ids on them.
+     */
+    @Transactional
+    void saveNewSeries(AppointmentRecurringPattern appointmentRecurringPattern);
+
     List<AppointmentRecurringPattern> getAllAppointmentRecurringPatterns();
 
+    List<Appointment> getPendingOccurrences(AppointmentRecurringPattern appointmentRecurringPattern, Date fromDate,
+                                            List<AppointmentStatus> statuses);
+
 }
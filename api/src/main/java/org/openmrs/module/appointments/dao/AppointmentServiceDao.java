@@ -17,4 +17,8 @@ public interface AppointmentServiceDao {
     AppointmentServiceDefinition getNonVoidedAppointmentServiceByName(String serviceName);
 
     AppointmentServiceType getAppointmentServiceTypeByUuid(String uuid);
+
+    AppointmentServiceDefinition getAppointmentServiceReference(Integer appointmentServiceId);
+
+    AppointmentServiceType getAppointmentServiceTypeReference(Integer appointmentServiceTypeId);
 }
@@ -1,32 +1,118 @@
 package org.openmrs.module.appointments.dao.impl;
 
+import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.dao.AppointmentAuditDao;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class AppointmentAuditDaoImpl implements AppointmentAuditDao{
 
+	private static final int DEFAULT_BATCH_SIZE = 50;
+
+	private static final int HISTORY_FETCH_SIZE = 1000;
+
+	/**
+	 * MySQL Connector/J ignores a positive fetch size unless the connection url sets useCursorFetch=true and buffers
+	 * the whole result instead; this fetch size makes it stream the rows one by one on any connection.
+	 */
+	private static final int MYSQL_STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+	private static final String INSERT_AUDIT_SQL = "INSERT INTO patient_appointment_audit" +
+			" (appointment_id, status, notes, creator, date_created, voided, uuid) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
 	private SessionFactory sessionFactory;
 
+	private Integer historyFetchSize;
+
 	public void setSessionFactory(SessionFactory sessionFactory) {
 		this.sessionFactory = sessionFactory;
 	}
 
+	/**
+	 * Overrides the fetch size used to read history, which otherwise depends on the database.
+	 */
+	public void setHistoryFetchSize(Integer historyFetchSize) {
+		this.historyFetchSize = historyFetchSize;
+	}
+
 	@Transactional
 	@Override
 	public void save(AppointmentAudit appointmentAuditEvent) {
 		sessionFactory.getCurrentSession().saveOrUpdate(appointmentAuditEvent);
 	}
 
+	/**
+	 * Inserts all audits with JDBC batches of hibernate.jdbc.batch_size (or {@link #DEFAULT_BATCH_SIZE} when batching
+	 * is not configured). Hibernate cannot batch these inserts itself because the audit id is database generated.
+	 * The rows bypass the session, so creator and date created are filled in here as the OpenMRS interceptor would.
+	 */
+	@Override
+	public void saveAll(Collection<AppointmentAudit> appointmentAudits) {
+		if (appointmentAudits == null || appointmentAudits.isEmpty()) {
+			return;
+		}
+		int configuredBatchSize = ((SessionFactoryImplementor) sessionFactory).getSettings().getJdbcBatchSize();
+		int batchSize = configuredBatchSize > 0 ? configuredBatchSize : DEFAULT_BATCH_SIZE;
+		User authenticatedUser = Context.getAuthenticatedUser();
+		Date now = new Date();
+		sessionFactory.getCurrentSession().doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(INSERT_AUDIT_SQL)) {
+				int pending = 0;
+				for (AppointmentAudit appointmentAudit : appointmentAudits) {
+					User creator = appointmentAudit.getCreator() != null ? appointmentAudit.getCreator() : authenticatedUser;
+					Date dateCreated = appointmentAudit.getDateCreated() != null ? appointmentAudit.getDateCreated() : now;
+					appointmentAudit.setCreator(creator);
+					appointmentAudit.setDateCreated(dateCreated);
+					statement.setInt(1, appointmentAudit.getAppointment().getAppointmentId());
+					if (appointmentAudit.getStatus() != null) {
+						statement.setString(2, appointmentAudit.getStatus().name());
+					} else {
+						statement.setNull(2, Types.VARCHAR);
+					}
+					statement.setString(3, appointmentAudit.getNotes());
+					statement.setInt(4, creator.getUserId());
+					statement.setTimestamp(5, new Timestamp(dateCreated.getTime()));
+					statement.setBoolean(6, Boolean.TRUE.equals(appointmentAudit.getVoided()));
+					statement.setString(7, appointmentAudit.getUuid());
+					statement.addBatch();
+					if (++pending == batchSize) {
+						statement.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					statement.executeBatch();
+				}
+			}
+		});
+	}
+
 	@Override
 	public List<AppointmentAudit> getAppointmentHistoryForAppointment(Appointment appointment) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(AppointmentAudit.class, "appointmentAudit");
@@ -44,4 +130,65 @@ public class AppointmentAuditDaoImpl implements AppointmentAuditDao{
 		return (AppointmentAudit) criteria.uniqueResult();
 	}
 
+	/**
+	 * Passes the matching audit events to the consumer in the order they were recorded, reading them through a forward
+	 * only cursor {@link #HISTORY_FETCH_SIZE} rows at a time, or row by row on MySQL. Only the exported columns are
+	 * selected and no entity is loaded into the session, so memory stays flat however many events match. On MySQL the
+	 * connection can run no other statement until all rows are read, so the consumer must not query the database.
+	 */
+	@Override
+	public void scrollAppointmentHistory(AppointmentAuditSearchRequest appointmentAuditSearchRequest,
+	                                     Consumer<AppointmentAuditProjection> consumer) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(AppointmentAudit.class, "appointmentAudit");
+		criteria.createAlias("appointment", "appointment");
+		criteria.createAlias("appointment.patient", "patient");
+		criteria.createAlias("creator", "creator");
+		criteria.add(Restrictions.eq("voided", false));
+		if (appointmentAuditSearchRequest.getAppointmentUuid() != null) {
+			criteria.add(Restrictions.eq("appointment.uuid", appointmentAuditSearchRequest.getAppointmentUuid()));
+		}
+		if (appointmentAuditSearchRequest.getPatientUuid() != null) {
+			criteria.add(Restrictions.eq("patient.uuid", appointmentAuditSearchRequest.getPatientUuid()));
+		}
+		if (appointmentAuditSearchRequest.getStartDate() != null) {
+			criteria.add(Restrictions.ge("dateCreated", appointmentAuditSearchRequest.getStartDate()));
+		}
+		if (appointmentAuditSearchRequest.getEndDate() != null) {
+			criteria.add(Restrictions.lt("dateCreated", appointmentAuditSearchRequest.getEndDate()));
+		}
+		if (appointmentAuditSearchRequest.getStatuses() != null && !appointmentAuditSearchRequest.getStatuses().isEmpty()) {
+			criteria.add(Restrictions.in("status", appointmentAuditSearchRequest.getStatuses()));
+		}
+		if (appointmentAuditSearchRequest.getActorUuid() != null) {
+			criteria.add(Restrictions.eq("creator.uuid", appointmentAuditSearchRequest.getActorUuid()));
+		}
+		criteria.setProjection(Projections.projectionList()
+				.add(Projections.property("uuid"))
+				.add(Projections.property("appointment.uuid"))
+				.add(Projections.property("patient.uuid"))
+				.add(Projections.property("status"))
+				.add(Projections.property("notes"))
+				.add(Projections.property("creator.uuid"))
+				.add(Projections.property("dateCreated")));
+		criteria.addOrder(Order.asc("dateCreated"));
+		criteria.addOrder(Order.asc("appointmentAuditId"));
+		criteria.setFetchSize(historyFetchSize != null ? historyFetchSize
+				: getHistoryFetchSize(((SessionFactoryImplementor) sessionFactory).getDialect()));
+		criteria.setReadOnly(true);
+		criteria.setCacheMode(CacheMode.IGNORE);
+		ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				Object[] columns = results.get();
+				consumer.accept(new AppointmentAuditProjection((String) columns[0], (String) columns[1], (String) columns[2],
+						(AppointmentStatus) columns[3], (String) columns[4], (String) columns[5], (Date) columns[6]));
+			}
+		} finally {
+			results.close();
+		}
+	}
+
+	static int getHistoryFetchSize(Dialect dialect) {
+		return dialect instanceof MySQLDialect ? MYSQL_STREAMING_FETCH_SIZE : HISTORY_FETCH_SIZE;
+	}
 }
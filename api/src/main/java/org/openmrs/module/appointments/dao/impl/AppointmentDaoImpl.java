@@ -2,28 +2,60 @@ package org.openmrs.module.appointments.dao.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
 import org.hibernate.criterion.Example;
 
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.sql.JoinType;
+import org.hibernate.transform.Transformers;
+import org.openmrs.PersonName;
+import org.openmrs.User;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProjection;
+import org.openmrs.module.appointments.model.AppointmentProviderProjection;
+import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentServiceDailyCount;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
+import org.openmrs.module.appointments.model.AppointmentServiceOccupancy;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
+import org.openmrs.module.appointments.model.AppointmentSlot;
 import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.util.AppointmentSearchCursor;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 public class AppointmentDaoImpl implements AppointmentDao {
 
-    private static final int APPOINTMENT_SEARCH_DEFAULT_LIMIT = 50;
+    private static final int BULK_UPDATE_CHUNK_SIZE = 1000;
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
     private SessionFactory sessionFactory;
 
     public void setSessionFactory(SessionFactory sessionFactory) {
@@ -32,17 +64,27 @@ public class AppointmentDaoImpl implements AppointmentDao {
 
     @Override
     public List<Appointment> getAllAppointments(Date forDate) {
+        return fetchResponseAssociations(createAllAppointmentsCriteria(forDate));
+    }
+
+    @Override
+    public List<AppointmentProjection> getAllAppointmentProjections(Date forDate) {
+        return listProjections(excludeVoidedServices(createAllAppointmentsCriteria(forDate)));
+    }
+
+    private Criteria createAllAppointmentsCriteria(Date forDate) {
         Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class);
         criteria.add(Restrictions.eq("voided", false));
         criteria.createAlias("patient", "patient");
         criteria.add(Restrictions.eq("patient.voided", false));
         criteria.add(Restrictions.eq("patient.personVoided", false));
+        createResponseAliases(criteria);
         if (forDate != null) {
             Date maxDate = new Date(forDate.getTime() + TimeUnit.DAYS.toMillis(1));
             criteria.add(Restrictions.ge("startDateTime", forDate));
             criteria.add(Restrictions.lt("endDateTime", maxDate));
         }
-        return criteria.list();
+        return criteria;
     }
 
     @Transactional
@@ -53,22 +95,40 @@ public class AppointmentDaoImpl implements AppointmentDao {
 
     @Override
     public List<Appointment> search(Appointment appointment) {
+        return createSearchCriteria(appointment).list();
+    }
+
+    @Override
+    public List<AppointmentProjection> searchProjections(Appointment appointment) {
+        return listProjections(excludeVoidedServices(createSearchCriteria(appointment)));
+    }
+
+    private Criteria createSearchCriteria(Appointment appointment) {
         Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class).add(
                 Example.create(appointment).excludeProperty("uuid"));
 
-        if(appointment.getPatient()!=null) criteria.createCriteria("patient").add(
+        Criteria patientCriteria = criteria.createCriteria("patient", "patient");
+        if(appointment.getPatient()!=null) patientCriteria.add(
                 Example.create(appointment.getPatient()));
 
-        if(appointment.getLocation()!=null) criteria.createCriteria("location").add(
+        Criteria locationCriteria = criteria.createCriteria("location", "location", joinTypeFor(appointment.getLocation()));
+        if(appointment.getLocation()!=null) locationCriteria.add(
                 Example.create(appointment.getLocation()));
 
-        if(appointment.getService()!=null) criteria.createCriteria("service").add(
+        Criteria serviceCriteria = criteria.createCriteria("service", "service", joinTypeFor(appointment.getService()));
+        if(appointment.getService()!=null) serviceCriteria.add(
                 Example.create(appointment.getService()));
 
+        criteria.createAlias("serviceType", "serviceType", JoinType.LEFT_OUTER_JOIN);
+
         if(appointment.getProvider()!=null) criteria.createCriteria("provider").add(
                 Example.create(appointment.getProvider()));
 
-        return criteria.list();
+        return criteria;
+    }
+
+    private JoinType joinTypeFor(Object example) {
+        return example != null ? JoinType.INNER_JOIN : JoinType.LEFT_OUTER_JOIN;
     }
 
     @Override
@@ -116,6 +176,139 @@ public class AppointmentDaoImpl implements AppointmentDao {
 
     }
 
+    @Override
+    public Integer getAppointmentsCountForService(AppointmentServiceDefinition appointmentServiceDefinition, Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusFilterList) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class);
+        criteria.createAlias("serviceType", "serviceType", JoinType.LEFT_OUTER_JOIN);
+        criteria.add(Restrictions.or(Restrictions.isNull("serviceType"), Restrictions.eq("serviceType.voided", false)));
+        criteria.add(Restrictions.eq("voided", false));
+        criteria.createAlias("patient", "patient");
+        criteria.add(Restrictions.eq("patient.voided", false));
+        criteria.add(Restrictions.eq("patient.personVoided", false));
+        criteria.add(Restrictions.ge("startDateTime", startDate));
+        criteria.add(Restrictions.le("startDateTime", endDate));
+        criteria.add(Restrictions.eq("service", appointmentServiceDefinition));
+        if (appointmentStatusFilterList != null && !appointmentStatusFilterList.isEmpty()) {
+            criteria.add(Restrictions.in("status", appointmentStatusFilterList));
+        }
+        criteria.setProjection(Projections.rowCount());
+        return ((Number) criteria.uniqueResult()).intValue();
+    }
+
+    /**
+     * Counts the appointments of every (service, window) pair. One query reads only the appointments of the asked
+     * services that start inside one of the windows, grouped by service and start time; the grouped counts are then
+     * summed per window, so overlapping windows are each counted in full. Counts are returned in the same order as
+     * the given windows.
+     */
+    @Override
+    public List<Integer> getAppointmentsCountForServices(List<AppointmentServiceLoadWindow> loadWindows, List<AppointmentStatus> appointmentStatusFilterList) {
+        if (loadWindows == null || loadWindows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Integer> serviceIds = new HashSet<>();
+        for (AppointmentServiceLoadWindow loadWindow : loadWindows) {
+            serviceIds.add(loadWindow.getService().getAppointmentServiceId());
+        }
+
+        StringBuilder hql = new StringBuilder("select appointment.service.appointmentServiceId, appointment.startDateTime, count(appointment)")
+                .append(" from Appointment appointment")
+                .append(" left join appointment.serviceType serviceType")
+                .append(" join appointment.patient patient")
+                .append(" where appointment.voided = false")
+                .append(" and (serviceType is null or serviceType.voided = false)")
+                .append(" and patient.voided = false and patient.personVoided = false")
+                .append(" and appointment.service.appointmentServiceId in (:serviceIds)")
+                .append(" and (");
+        for (int i = 0; i < loadWindows.size(); i++) {
+            if (i > 0) {
+                hql.append(" or ");
+            }
+            hql.append("(appointment.service.appointmentServiceId = :serviceId").append(i)
+                    .append(" and appointment.startDateTime >= :startDate").append(i)
+                    .append(" and appointment.startDateTime <= :endDate").append(i).append(")");
+        }
+        hql.append(")");
+        boolean filterByStatus = appointmentStatusFilterList != null && !appointmentStatusFilterList.isEmpty();
+        if (filterByStatus) {
+            hql.append(" and appointment.status in (:statuses)");
+        }
+        hql.append(" group by appointment.service.appointmentServiceId, appointment.startDateTime");
+
+        Query query = sessionFactory.getCurrentSession().createQuery(hql.toString());
+        query.setParameterList("serviceIds", serviceIds);
+        for (int i = 0; i < loadWindows.size(); i++) {
+            AppointmentServiceLoadWindow loadWindow = loadWindows.get(i);
+            query.setInteger("serviceId" + i, loadWindow.getService().getAppointmentServiceId());
+            query.setTimestamp("startDate" + i, loadWindow.getStartDateTime());
+            query.setTimestamp("endDate" + i, loadWindow.getEndDateTime());
+        }
+        if (filterByStatus) {
+            query.setParameterList("statuses", appointmentStatusFilterList);
+        }
+
+        Map<Integer, NavigableMap<Date, Integer>> countsByService = new HashMap<>();
+        for (Object[] row : (List<Object[]>) query.list()) {
+            countsByService.computeIfAbsent((Integer) row[0], serviceId -> new TreeMap<>())
+                    .put(new Date(((Date) row[1]).getTime()), ((Number) row[2]).intValue());
+        }
+        List<Integer> counts = new ArrayList<>(loadWindows.size());
+        for (AppointmentServiceLoadWindow loadWindow : loadWindows) {
+            NavigableMap<Date, Integer> countsByStartDate = countsByService.get(loadWindow.getService().getAppointmentServiceId());
+            int count = 0;
+            if (countsByStartDate != null) {
+                for (Integer startDateCount : countsByStartDate.subMap(loadWindow.getStartDateTime(), true, loadWindow.getEndDateTime(), true).values()) {
+                    count += startDateCount;
+                }
+            }
+            counts.add(count);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts appointments of non-voided services per service, calendar day of start and status in one grouped query.
+     */
+    @Override
+    public List<AppointmentServiceDailyCount> getAppointmentServiceDailyCounts(Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusFilterList) {
+        StringBuilder hql = new StringBuilder("select service.appointmentServiceId,")
+                .append(" year(appointment.startDateTime), month(appointment.startDateTime), day(appointment.startDateTime),")
+                .append(" appointment.status, count(appointment)")
+                .append(" from Appointment appointment")
+                .append(" join appointment.service service")
+                .append(" left join appointment.serviceType serviceType")
+                .append(" join appointment.patient patient")
+                .append(" where appointment.voided = false and service.voided = false")
+                .append(" and (serviceType is null or serviceType.voided = false)")
+                .append(" and patient.voided = false and patient.personVoided = false")
+                .append(" and appointment.startDateTime >= :startDate and appointment.startDateTime <= :endDate");
+        boolean filterByStatus = appointmentStatusFilterList != null && !appointmentStatusFilterList.isEmpty();
+        if (filterByStatus) {
+            hql.append(" and appointment.status in (:statuses)");
+        }
+        hql.append(" group by service.appointmentServiceId,")
+                .append(" year(appointment.startDateTime), month(appointment.startDateTime), day(appointment.startDateTime),")
+                .append(" appointment.status");
+
+        Query query = sessionFactory.getCurrentSession().createQuery(hql.toString());
+        query.setTimestamp("startDate", startDate);
+        query.setTimestamp("endDate", endDate);
+        if (filterByStatus) {
+            query.setParameterList("statuses", appointmentStatusFilterList);
+        }
+
+        List<Object[]> rows = query.list();
+        List<AppointmentServiceDailyCount> dailyCounts = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(((Number) row[1]).intValue(), ((Number) row[2]).intValue() - 1, ((Number) row[3]).intValue());
+            dailyCounts.add(new AppointmentServiceDailyCount((Integer) row[0], calendar.getTime(),
+                    (AppointmentStatus) row[4], ((Number) row[5]).intValue()));
+        }
+        return dailyCounts;
+    }
+
     @Override
     public Appointment getAppointmentByUuid(String uuid) {
         Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class, "appointment");
@@ -123,6 +316,63 @@ public class AppointmentDaoImpl implements AppointmentDao {
         return (Appointment) criteria.uniqueResult();
     }
 
+    @Override
+    public List<Appointment> getAppointmentsByUuids(Collection<String> uuids) {
+        if (uuids == null || uuids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class);
+        criteria.add(Restrictions.in("uuid", uuids));
+        return fetchResponseAssociations(criteria);
+    }
+
+    /**
+     * Sets the status of all given appointments with HQL bulk updates instead of one UPDATE per entity. Appointments
+     * are updated together with others read at the same version, and only while they still have that version, so a
+     * change made since they were read is never overwritten; {@link StaleStateException} is thrown instead. The given
+     * instances are updated in memory as well, including their new version, and when attached to the session their
+     * loaded state is re-synchronised so that the next flush neither writes the same change again nor fails the
+     * version check.
+     */
+    @Override
+    public void updateStatus(Collection<Appointment> appointments, AppointmentStatus status, User changedBy, Date dateChanged) {
+        Session session = sessionFactory.getCurrentSession();
+        Map<Integer, List<Integer>> appointmentIdsByVersion = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            appointmentIdsByVersion.computeIfAbsent(appointment.getVersion(), version -> new ArrayList<>())
+                    .add(appointment.getAppointmentId());
+        }
+        for (Map.Entry<Integer, List<Integer>> versionAndIds : appointmentIdsByVersion.entrySet()) {
+            List<Integer> appointmentIds = versionAndIds.getValue();
+            for (int from = 0; from < appointmentIds.size(); from += BULK_UPDATE_CHUNK_SIZE) {
+                List<Integer> chunk = appointmentIds.subList(from, Math.min(from + BULK_UPDATE_CHUNK_SIZE, appointmentIds.size()));
+                int updated = session.createQuery("update versioned Appointment set status = :status, changedBy = :changedBy," +
+                        " dateChanged = :dateChanged where appointmentId in (:appointmentIds) and version = :version")
+                        .setParameter("status", status)
+                        .setParameter("changedBy", changedBy)
+                        .setTimestamp("dateChanged", dateChanged)
+                        .setParameterList("appointmentIds", chunk)
+                        .setInteger("version", versionAndIds.getKey())
+                        .executeUpdate();
+                if (updated != chunk.size()) {
+                    throw new StaleStateException("Appointments were updated or deleted by another transaction");
+                }
+            }
+        }
+        PersistenceContext persistenceContext = ((SessionImplementor) session).getPersistenceContext();
+        for (Appointment appointment : appointments) {
+            appointment.setStatus(status);
+            appointment.setChangedBy(changedBy);
+            appointment.setDateChanged(dateChanged);
+            appointment.setVersion(appointment.getVersion() + 1);
+            EntityEntry entityEntry = persistenceContext.getEntry(appointment);
+            if (entityEntry != null) {
+                entityEntry.postUpdate(appointment, entityEntry.getPersister().getPropertyValues(appointment),
+                        appointment.getVersion());
+            }
+        }
+    }
+
     @Override
     public List<Appointment> getAllAppointmentsInDateRange(Date startDate, Date endDate) {
         Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class);
@@ -136,21 +386,63 @@ public class AppointmentDaoImpl implements AppointmentDao {
         if (endDate != null) {
             criteria.add(Restrictions.lt("endDateTime", endDate));
         }
+        return fetchResponseAssociations(criteria);
+    }
+
+    /**
+     * Returns at most maxResults appointments in one of the given statuses that end before endDate, ordered by end date
+     * time and id. When lastAppointment is given, only appointments after it in that order are returned, so callers can
+     * walk all of them in fixed-size chunks.
+     */
+    @Override
+    public List<Appointment> getAppointmentsWithStatusEndingBefore(List<AppointmentStatus> appointmentStatuses, Date endDate,
+                                                                   Appointment lastAppointment, int maxResults) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class);
+        criteria.add(Restrictions.eq("voided", false));
+        criteria.createAlias("patient", "patient");
+        criteria.add(Restrictions.eq("patient.voided", false));
+        criteria.add(Restrictions.eq("patient.personVoided", false));
+        criteria.createAlias("service", "service", JoinType.LEFT_OUTER_JOIN);
+        criteria.add(Restrictions.or(Restrictions.isNull("service"), Restrictions.eq("service.voided", false)));
+        criteria.createAlias("serviceType", "serviceType", JoinType.LEFT_OUTER_JOIN);
+        criteria.add(Restrictions.or(Restrictions.isNull("serviceType"), Restrictions.eq("serviceType.voided", false)));
+        criteria.add(Restrictions.in("status", appointmentStatuses));
+        criteria.add(Restrictions.lt("endDateTime", endDate));
+        if (lastAppointment != null) {
+            criteria.add(Restrictions.or(Restrictions.gt("endDateTime", lastAppointment.getEndDateTime()),
+                    Restrictions.and(Restrictions.eq("endDateTime", lastAppointment.getEndDateTime()),
+                            Restrictions.gt("appointmentId", lastAppointment.getAppointmentId()))));
+        }
+        criteria.addOrder(Order.asc("endDateTime"));
+        criteria.addOrder(Order.asc("appointmentId"));
+        criteria.setMaxResults(maxResults);
         return criteria.list();
     }
 
     @Override
     public List<Appointment> search(AppointmentSearchRequest appointmentSearchRequest) {
+        return fetchResponseAssociations(createSearchCriteria(appointmentSearchRequest));
+    }
+
+    @Override
+    public List<AppointmentProjection> searchProjections(AppointmentSearchRequest appointmentSearchRequest) {
+        return listProjections(createSearchCriteria(appointmentSearchRequest));
+    }
+
+    private Criteria createSearchCriteria(AppointmentSearchRequest appointmentSearchRequest) {
         Criteria criteria = sessionFactory.getCurrentSession().createCriteria(Appointment.class);
 
         criteria.add(Restrictions.eq("voided", false));
         criteria.addOrder(Order.asc("startDateTime"));
+        criteria.addOrder(Order.asc("appointmentId"));
         setDateCriteria(appointmentSearchRequest, criteria);
+        setContinuationCriteria(appointmentSearchRequest, criteria);
         setPatientCriteria(appointmentSearchRequest, criteria);
         setLimitCriteria(appointmentSearchRequest, criteria);
         setProviderCriteria(appointmentSearchRequest, criteria);
+        createResponseAliases(criteria);
 
-        return criteria.list();
+        return criteria;
     }
 
     private void setProviderCriteria(AppointmentSearchRequest appointmentSearchRequest, Criteria criteria) {
@@ -179,14 +471,211 @@ public class AppointmentDaoImpl implements AppointmentDao {
         }
     }
 
+    private void setContinuationCriteria(AppointmentSearchRequest appointmentSearchRequest, Criteria criteria) {
+        if (StringUtils.isEmpty(appointmentSearchRequest.getContinuationToken())) {
+            return;
+        }
+        AppointmentSearchCursor cursor = AppointmentSearchCursor.decode(appointmentSearchRequest.getContinuationToken());
+        criteria.add(Restrictions.ge("startDateTime", cursor.getStartDateTime()));
+        criteria.add(Restrictions.or(
+                Restrictions.gt("startDateTime", cursor.getStartDateTime()),
+                Restrictions.gt("appointmentId", cursor.getAppointmentId())));
+    }
+
     private void setLimitCriteria(AppointmentSearchRequest appointmentSearchRequest, Criteria criteria) {
-        if (appointmentSearchRequest.getLimit() > 0) {
-            criteria.setMaxResults(appointmentSearchRequest.getLimit());
-        } else if (appointmentSearchRequest.getEndDate() == null) {
-            criteria.setMaxResults(APPOINTMENT_SEARCH_DEFAULT_LIMIT);
+        int pageSize = AppointmentSearchCursor.getPageSize(appointmentSearchRequest);
+        if (pageSize > 0) {
+            criteria.setMaxResults(pageSize);
         }
     }
 
+    private void createResponseAliases(Criteria criteria) {
+        criteria.createAlias("service", "service", JoinType.LEFT_OUTER_JOIN);
+        criteria.createAlias("serviceType", "serviceType", JoinType.LEFT_OUTER_JOIN);
+        criteria.createAlias("location", "location", JoinType.LEFT_OUTER_JOIN);
+    }
+
+    /**
+     * Leaves out appointments of a voided service or service type, as the service layer does for the entity variants
+     * of the same lookups. The criteria must have the service and serviceType aliases.
+     */
+    private Criteria excludeVoidedServices(Criteria criteria) {
+        criteria.add(Restrictions.or(Restrictions.isNull("service.appointmentServiceId"), Restrictions.eq("service.voided", false)));
+        criteria.add(Restrictions.or(Restrictions.isNull("serviceType.id"), Restrictions.eq("serviceType.voided", false)));
+        return criteria;
+    }
+
+    /**
+     * Lists the criteria as {@link AppointmentProjection}s. The criteria must have the patient, service, serviceType
+     * and location aliases. Only the columns an appointment response shows are selected, and patient names,
+     * identifiers, email attributes, providers and services are read with one query each for the whole page.
+     */
+    private List<AppointmentProjection> listProjections(Criteria criteria) {
+        criteria.setProjection(Projections.projectionList()
+                .add(Projections.property("appointmentId"), "appointmentId")
+                .add(Projections.property("uuid"), "uuid")
+                .add(Projections.property("appointmentNumber"), "appointmentNumber")
+                .add(Projections.property("patient.patientId"), "patientId")
+                .add(Projections.property("patient.uuid"), "patientUuid")
+                .add(Projections.property("service.appointmentServiceId"), "serviceId")
+                .add(Projections.property("serviceType.name"), "serviceTypeName")
+                .add(Projections.property("serviceType.uuid"), "serviceTypeUuid")
+                .add(Projections.property("serviceType.duration"), "serviceTypeDuration")
+                .add(Projections.property("location.name"), "locationName")
+                .add(Projections.property("location.uuid"), "locationUuid")
+                .add(Projections.property("startDateTime"), "startDateTime")
+                .add(Projections.property("endDateTime"), "endDateTime")
+                .add(Projections.property("appointmentKind"), "appointmentKind")
+                .add(Projections.property("status"), "status")
+                .add(Projections.property("comments"), "comments")
+                .add(Projections.property("teleHealthVideoLink"), "teleHealthVideoLink")
+                .add(Projections.property("voided"), "voided")
+                .add(Projections.property("appointmentRecurringPattern.id"), "recurringPatternId"));
+        criteria.setResultTransformer(Transformers.aliasToBean(AppointmentProjection.class));
+        List<AppointmentProjection> appointments = criteria.list();
+        if (appointments.isEmpty()) {
+            return appointments;
+        }
+        Map<Integer, AppointmentProjection> appointmentsById = new LinkedHashMap<>();
+        Set<Integer> patientIds = new LinkedHashSet<>();
+        Set<Integer> serviceIds = new LinkedHashSet<>();
+        for (AppointmentProjection appointment : appointments) {
+            appointmentsById.put(appointment.getAppointmentId(), appointment);
+            patientIds.add(appointment.getPatientId());
+            if (appointment.getServiceId() != null) {
+                serviceIds.add(appointment.getServiceId());
+            }
+        }
+
+        Set<Integer> personIds = new LinkedHashSet<>(patientIds);
+        Map<AppointmentProviderProjection, Integer> providerPersonIds = new HashMap<>();
+        for (Object row : listInChunks("select appointmentProvider.appointment.appointmentId, provider.uuid, provider.name," +
+                " person.personId, appointmentProvider.response, appointmentProvider.comments" +
+                " from AppointmentProvider appointmentProvider join appointmentProvider.provider provider" +
+                " left join provider.person person where appointmentProvider.appointment.appointmentId in (:ids)", appointmentsById.keySet())) {
+            Object[] columns = (Object[]) row;
+            AppointmentProviderProjection provider = new AppointmentProviderProjection((String) columns[1], (String) columns[2],
+                    (AppointmentProviderResponse) columns[4], (String) columns[5]);
+            appointmentsById.get(columns[0]).getProviders().add(provider);
+            if (StringUtils.isBlank(provider.getName()) && columns[3] != null) {
+                providerPersonIds.put(provider, (Integer) columns[3]);
+                personIds.add((Integer) columns[3]);
+            }
+        }
+
+        Map<Integer, String> personNames = getPersonNames(personIds);
+        Map<Integer, String> patientIdentifiers = getPatientIdentifiers(patientIds);
+        Set<Integer> patientIdsWithEmail = new HashSet<>(listInChunks("select distinct attribute.person.personId" +
+                " from PersonAttribute attribute where attribute.voided = false and attribute.attributeType.name = 'email'" +
+                " and attribute.person.personId in (:ids)", patientIds));
+        Map<Integer, AppointmentServiceDefinition> services = new HashMap<>();
+        for (Object service : listInChunks("select service from AppointmentServiceDefinition service" +
+                " left join fetch service.speciality left join fetch service.location" +
+                " where service.appointmentServiceId in (:ids)", serviceIds)) {
+            services.put(((AppointmentServiceDefinition) service).getAppointmentServiceId(), (AppointmentServiceDefinition) service);
+        }
+
+        for (AppointmentProjection appointment : appointments) {
+            appointment.setPatientName(personNames.get(appointment.getPatientId()));
+            appointment.setPatientIdentifier(patientIdentifiers.get(appointment.getPatientId()));
+            appointment.setPatientEmailDefined(patientIdsWithEmail.contains(appointment.getPatientId()));
+            appointment.setService(services.get(appointment.getServiceId()));
+        }
+        for (Map.Entry<AppointmentProviderProjection, Integer> providerPersonId : providerPersonIds.entrySet()) {
+            providerPersonId.getKey().setName(personNames.get(providerPersonId.getValue()));
+        }
+        return appointments;
+    }
+
+    /**
+     * Full name of the preferred non voided name of each person, falling back to any non voided name the same way
+     * {@link org.openmrs.Person#getPersonName()} does.
+     */
+    private Map<Integer, String> getPersonNames(Collection<Integer> personIds) {
+        Map<Integer, String> personNames = new HashMap<>();
+        for (Object row : listInChunks("select name.person.personId, name.preferred, name.prefix, name.givenName," +
+                " name.middleName, name.familyNamePrefix, name.familyName, name.familyName2, name.familyNameSuffix, name.degree" +
+                " from PersonName name where name.voided = false and name.person.personId in (:ids)" +
+                " order by name.preferred desc", personIds)) {
+            Object[] columns = (Object[]) row;
+            if (personNames.containsKey(columns[0])) {
+                continue;
+            }
+            PersonName name = new PersonName();
+            name.setPrefix((String) columns[2]);
+            name.setGivenName((String) columns[3]);
+            name.setMiddleName((String) columns[4]);
+            name.setFamilyNamePrefix((String) columns[5]);
+            name.setFamilyName((String) columns[6]);
+            name.setFamilyName2((String) columns[7]);
+            name.setFamilyNameSuffix((String) columns[8]);
+            name.setDegree((String) columns[9]);
+            personNames.put((Integer) columns[0], name.getFullName());
+        }
+        return personNames;
+    }
+
+    private Map<Integer, String> getPatientIdentifiers(Collection<Integer> patientIds) {
+        Map<Integer, String> patientIdentifiers = new HashMap<>();
+        for (Object row : listInChunks("select identifier.patient.patientId, identifier.identifier from PatientIdentifier identifier" +
+                " where identifier.voided = false and identifier.patient.patientId in (:ids)" +
+                " order by identifier.preferred desc", patientIds)) {
+            Object[] columns = (Object[]) row;
+            patientIdentifiers.putIfAbsent((Integer) columns[0], (String) columns[1]);
+        }
+        return patientIdentifiers;
+    }
+
+    /**
+     * Lists the criteria with everything an appointment response reads loaded up front: the many-to-one associations
+     * are joined into the main query and the collections are initialised with one query per collection role instead
+     * of one per appointment or patient.
+     */
+    private List<Appointment> fetchResponseAssociations(Criteria criteria) {
+        criteria.setFetchMode("patient", FetchMode.JOIN);
+        criteria.setFetchMode("service", FetchMode.JOIN);
+        criteria.setFetchMode("service.speciality", FetchMode.JOIN);
+        criteria.setFetchMode("service.location", FetchMode.JOIN);
+        criteria.setFetchMode("serviceType", FetchMode.JOIN);
+        criteria.setFetchMode("location", FetchMode.JOIN);
+        List<Appointment> appointments = criteria.list();
+        if (appointments.isEmpty()) {
+            return appointments;
+        }
+        Set<Integer> appointmentIds = new LinkedHashSet<>();
+        Set<Integer> patientIds = new LinkedHashSet<>();
+        for (Appointment appointment : appointments) {
+            appointmentIds.add(appointment.getAppointmentId());
+            if (appointment.getPatient() != null) {
+                patientIds.add(appointment.getPatient().getPatientId());
+            }
+        }
+        Set<Integer> personIds = new LinkedHashSet<>(patientIds);
+        for (Object providerPersonId : listInChunks("select distinct provider.person.personId from AppointmentProvider appointmentProvider" +
+                " join appointmentProvider.provider provider where appointmentProvider.appointment.appointmentId in (:ids)", appointmentIds)) {
+            personIds.add((Integer) providerPersonId);
+        }
+        listInChunks("select distinct appointment from Appointment appointment left join fetch appointment.providers appointmentProvider" +
+                " left join fetch appointmentProvider.provider provider left join fetch provider.person" +
+                " where appointment.appointmentId in (:ids)", appointmentIds);
+        listInChunks("select distinct person from Person person left join fetch person.names where person.personId in (:ids)", personIds);
+        listInChunks("select distinct patient from Patient patient left join fetch patient.identifiers where patient.patientId in (:ids)", patientIds);
+        listInChunks("select distinct person from Person person left join fetch person.attributes attribute" +
+                " left join fetch attribute.attributeType where person.personId in (:ids)", patientIds);
+        return appointments;
+    }
+
+    private List listInChunks(String hql, Collection<Integer> ids) {
+        List<Integer> idList = new ArrayList<>(ids);
+        List results = new ArrayList();
+        for (int from = 0; from < idList.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            results.addAll(sessionFactory.getCurrentSession().createQuery(hql)
+                    .setParameterList("ids", idList.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, idList.size())))
+                    .list());
+        }
+        return results;
+    }
+
     @Override
     public List<Appointment> getAppointmentsForPatient(Integer patientId) {
 
@@ -200,4 +689,55 @@ public class AppointmentDaoImpl implements AppointmentDao {
 
         return criteria.list();
     }
+
+    @Override
+    public List<AppointmentSlot> getAppointmentSlotsForProvider(Integer providerId, Date fromDate) {
+        return sessionFactory.getCurrentSession().createQuery("select new org.openmrs.module.appointments.model.AppointmentSlot(" +
+                "appointment.uuid, appointment.startDateTime, appointment.endDateTime)" +
+                " from AppointmentProvider appointmentProvider join appointmentProvider.appointment appointment" +
+                " where appointmentProvider.provider.providerId = :providerId and appointmentProvider.voided = false" +
+                " and appointmentProvider.response not in (:inactiveResponses)" +
+                " and appointment.voided = false and appointment.status <> :cancelled and appointment.startDateTime >= :fromDate")
+                .setParameter("providerId", providerId)
+                .setParameterList("inactiveResponses", Arrays.asList(AppointmentProviderResponse.REJECTED, AppointmentProviderResponse.CANCELLED))
+                .setParameter("cancelled", AppointmentStatus.Cancelled)
+                .setTimestamp("fromDate", fromDate)
+                .list();
+    }
+
+    @Override
+    public List<AppointmentServiceOccupancy> getAppointmentServiceOccupancy(Integer appointmentServiceId, Date startDate, Date endDate,
+                                                                            List<AppointmentStatus> appointmentStatusFilterList,
+                                                                            Collection<String> excludedAppointmentUuids) {
+        StringBuilder hql = new StringBuilder("select new org.openmrs.module.appointments.model.AppointmentServiceOccupancy(")
+                .append("appointment.startDateTime, count(appointment))")
+                .append(" from Appointment appointment")
+                .append(" left join appointment.serviceType serviceType")
+                .append(" join appointment.patient patient")
+                .append(" where appointment.service.appointmentServiceId = :appointmentServiceId and appointment.voided = false")
+                .append(" and (serviceType is null or serviceType.voided = false)")
+                .append(" and patient.voided = false and patient.personVoided = false")
+                .append(" and appointment.startDateTime >= :startDate and appointment.startDateTime < :endDate");
+        boolean filterByStatus = appointmentStatusFilterList != null && !appointmentStatusFilterList.isEmpty();
+        if (filterByStatus) {
+            hql.append(" and appointment.status in (:statuses)");
+        }
+        boolean excludeAppointments = excludedAppointmentUuids != null && !excludedAppointmentUuids.isEmpty();
+        if (excludeAppointments) {
+            hql.append(" and appointment.uuid not in (:excludedUuids)");
+        }
+        hql.append(" group by appointment.startDateTime");
+
+        Query query = sessionFactory.getCurrentSession().createQuery(hql.toString());
+        query.setParameter("appointmentServiceId", appointmentServiceId);
+        query.setTimestamp("startDate", startDate);
+        query.setTimestamp("endDate", endDate);
+        if (filterByStatus) {
+            query.setParameterList("statuses", appointmentStatusFilterList);
+        }
+        if (excludeAppointments) {
+            query.setParameterList("excludedUuids", excludedAppointmentUuids);
+        }
+        return query.list();
+    }
 }
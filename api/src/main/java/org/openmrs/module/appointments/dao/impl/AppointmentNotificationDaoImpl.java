@@ -0,0 +1,70 @@
+package org.openmrs.module.appointments.dao.impl;
+
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.openmrs.module.appointments.dao.AppointmentNotificationDao;
+import org.openmrs.module.appointments.model.AppointmentNotification;
+import org.openmrs.module.appointments.model.AppointmentNotificationStatus;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class AppointmentNotificationDaoImpl implements AppointmentNotificationDao {
+
+    private static final List<AppointmentNotificationStatus> DUE_STATUSES = Arrays.asList(
+            AppointmentNotificationStatus.Pending, AppointmentNotificationStatus.Sending);
+
+    private SessionFactory sessionFactory;
+
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void save(AppointmentNotification appointmentNotification) {
+        sessionFactory.getCurrentSession().saveOrUpdate(appointmentNotification);
+    }
+
+    @Override
+    public AppointmentNotification getNotificationById(Integer appointmentNotificationId) {
+        return (AppointmentNotification) sessionFactory.getCurrentSession().get(AppointmentNotification.class, appointmentNotificationId);
+    }
+
+    /**
+     * Pending notifications whose next attempt is due, along with notifications that are being sent but whose
+     * lease has expired because the worker sending them died.
+     */
+    @Override
+    public List<Integer> getDueNotificationIds(Date onDate, int limit) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(AppointmentNotification.class);
+        criteria.add(Restrictions.in("status", DUE_STATUSES));
+        criteria.add(Restrictions.le("nextAttemptDateTime", onDate));
+        criteria.add(Restrictions.eq("voided", false));
+        criteria.addOrder(Order.asc("nextAttemptDateTime"));
+        criteria.setProjection(Projections.id());
+        criteria.setMaxResults(limit);
+        return criteria.list();
+    }
+
+    /**
+     * Marks a due notification as being sent until the lease expires. Only one of several workers racing for the
+     * same notification gets to claim it.
+     */
+    @Override
+    public boolean claim(Integer appointmentNotificationId, Date onDate, Date leaseExpiryDateTime) {
+        int claimed = sessionFactory.getCurrentSession().createQuery(
+                "update AppointmentNotification set status = :sending, nextAttemptDateTime = :leaseExpiry" +
+                        " where appointmentNotificationId = :id and status in (:dueStatuses) and nextAttemptDateTime <= :onDate")
+                .setParameter("sending", AppointmentNotificationStatus.Sending)
+                .setParameter("leaseExpiry", leaseExpiryDateTime)
+                .setParameter("id", appointmentNotificationId)
+                .setParameterList("dueStatuses", DUE_STATUSES)
+                .setParameter("onDate", onDate)
+                .executeUpdate();
+        return claimed == 1;
+    }
+}
@@ -0,0 +1,37 @@
+package org.openmrs.module.appointments.dao.impl;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.appointments.dao.AppointmentNumberSequenceDao;
+import org.openmrs.module.appointments.model.AppointmentNumberSequence;
+
+public class AppointmentNumberSequenceDaoImpl implements AppointmentNumberSequenceDao {
+
+    private SessionFactory sessionFactory;
+
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Moves the sequence on by a block and returns the first number of that block, starting a missing sequence at 1.
+     * The sequence row stays locked until the transaction ends, so this should run in a short transaction of its own.
+     */
+    @Override
+    public long allocate(String name, int blockSize) {
+        Session session = sessionFactory.getCurrentSession();
+        int updated = session.createQuery("update AppointmentNumberSequence set nextValue = nextValue + :blockSize where name = :name")
+                .setLong("blockSize", blockSize)
+                .setString("name", name)
+                .executeUpdate();
+        if (updated == 0) {
+            session.save(new AppointmentNumberSequence(name, 1L + blockSize));
+            session.flush();
+            return 1L;
+        }
+        Long nextValue = (Long) session.createQuery("select nextValue from AppointmentNumberSequence where name = :name")
+                .setString("name", name)
+                .uniqueResult();
+        return nextValue - blockSize;
+    }
+}
@@ -2,14 +2,53 @@ package org.openmrs.module.appointments.dao.impl;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openmrs.BaseOpenmrsData;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.dao.AppointmentRecurringPatternDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProvider;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class AppointmentRecurringPatternDaoImpl implements AppointmentRecurringPatternDao {
 
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final String INSERT_PATTERN_SQL = "INSERT INTO patient_appointment_recurring_time" +
+            " (recurrence_type, period, frequency, end_date, days_of_week, version) VALUES (?, ?, ?, ?, ?, 0)";
+
+    private static final String INSERT_APPOINTMENT_SQL = "INSERT INTO patient_appointment" +
+            " (appointment_number, patient_id, appointment_service_id, appointment_service_type_id, location_id," +
+            " start_date_time, end_date_time, appointment_kind, status, comments, related_appointment_id," +
+            " tele_health_video_link, creator, date_created, voided, uuid, version)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String INSERT_PROVIDER_SQL = "INSERT INTO patient_appointment_provider" +
+            " (patient_appointment_id, provider_id, response, comments, creator, date_created, voided, uuid)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_OCCURRENCE_SQL = "INSERT INTO patient_appointment_occurrence" +
+            " (patient_appointment_timings_id, patient_appointment_id) VALUES (?, ?)";
+
     private SessionFactory sessionFactory;
 
     public void setSessionFactory(SessionFactory sessionFactory) {
@@ -22,12 +61,205 @@ public class AppointmentRecurringPatternDaoImpl implements AppointmentRecurringP
         session().saveOrUpdate(appointmentRecurringPattern);
     }
 
+    /**
+     * Inserts the pattern, its appointments, their providers and the links between them with JDBC batches of
+     * hibernate.jdbc.batch_size (or {@link #DEFAULT_BATCH_SIZE} when batching is not configured). Hibernate cannot
+     * batch these inserts itself because the ids are database generated. The generated ids are read back by uuid, one
+     * query per batch, and set on the given instances along with the initial version. The rows bypass the session, so
+     * creator and date created are filled in here as the OpenMRS interceptor would.
+     */
+    @Override
+    public void saveNewSeries(AppointmentRecurringPattern appointmentRecurringPattern) {
+        int batchSize = getBatchSize();
+        User authenticatedUser = Context.getAuthenticatedUser();
+        Date now = new Date();
+        List<Appointment> appointments = new ArrayList<>(appointmentRecurringPattern.getAppointments());
+        List<AppointmentProvider> appointmentProviders = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            setCreated(appointment, authenticatedUser, now);
+            if (appointment.getProviders() != null) {
+                for (AppointmentProvider appointmentProvider : appointment.getProviders()) {
+                    setCreated(appointmentProvider, authenticatedUser, now);
+                    appointmentProviders.add(appointmentProvider);
+                }
+            }
+        }
+        session().doWork(connection -> {
+            appointmentRecurringPattern.setId(insertPattern(connection, appointmentRecurringPattern));
+            appointmentRecurringPattern.setVersion(0);
+            insertInBatches(connection, INSERT_APPOINTMENT_SQL, appointments, batchSize, this::bindAppointment);
+            Map<String, Integer> appointmentIds = getIdsByUuid(connection, "patient_appointment",
+                    "patient_appointment_id", appointments, batchSize);
+            appointments.forEach(appointment -> {
+                appointment.setAppointmentId(appointmentIds.get(appointment.getUuid()));
+                appointment.setVersion(0);
+            });
+
+            insertInBatches(connection, INSERT_PROVIDER_SQL, appointmentProviders, batchSize, this::bindAppointmentProvider);
+            Map<String, Integer> appointmentProviderIds = getIdsByUuid(connection, "patient_appointment_provider",
+                    "patient_appointment_provider_id", appointmentProviders, batchSize);
+            appointmentProviders.forEach(appointmentProvider -> appointmentProvider
+                    .setAppointmentProviderId(appointmentProviderIds.get(appointmentProvider.getUuid())));
+
+            insertInBatches(connection, INSERT_OCCURRENCE_SQL, appointments, batchSize, (statement, appointment) -> {
+                statement.setInt(1, appointmentRecurringPattern.getId());
+                statement.setInt(2, appointment.getAppointmentId());
+            });
+        });
+    }
+
     @Override
     public List<AppointmentRecurringPattern> getAllAppointmentRecurringPatterns() {
         return session().createCriteria(AppointmentRecurringPattern.class).list();
     }
 
+    /**
+     * Selects the occurrences of the pattern from the given date on in the database, so the cost of a status change
+     * does not grow with the history of the series.
+     */
+    @Override
+    public List<Appointment> getPendingOccurrences(AppointmentRecurringPattern appointmentRecurringPattern, Date fromDate,
+                                                   List<AppointmentStatus> statuses) {
+        return session().createQuery("select appointment from AppointmentRecurringPattern appointmentRecurringPattern" +
+                " join appointmentRecurringPattern.appointments appointment" +
+                " where appointmentRecurringPattern = :appointmentRecurringPattern" +
+                " and appointment.startDateTime >= :fromDate and appointment.status in (:statuses)")
+                .setParameter("appointmentRecurringPattern", appointmentRecurringPattern)
+                .setTimestamp("fromDate", fromDate)
+                .setParameterList("statuses", statuses)
+                .list();
+    }
+
+    private Integer insertPattern(Connection connection, AppointmentRecurringPattern appointmentRecurringPattern) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_PATTERN_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            setString(statement, 1, appointmentRecurringPattern.getType() != null ? appointmentRecurringPattern.getType().name() : null);
+            setInteger(statement, 2, appointmentRecurringPattern.getPeriod());
+            setInteger(statement, 3, appointmentRecurringPattern.getFrequency());
+            setTimestamp(statement, 4, appointmentRecurringPattern.getEndDate());
+            setString(statement, 5, appointmentRecurringPattern.getDaysOfWeek());
+            statement.executeUpdate();
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                generatedKeys.next();
+                return generatedKeys.getInt(1);
+            }
+        }
+    }
+
+    private void bindAppointment(PreparedStatement statement, Appointment appointment) throws SQLException {
+        setString(statement, 1, appointment.getAppointmentNumber());
+        setInteger(statement, 2, appointment.getPatient() != null ? appointment.getPatient().getPatientId() : null);
+        setInteger(statement, 3, appointment.getService() != null ? appointment.getService().getAppointmentServiceId() : null);
+        setInteger(statement, 4, appointment.getServiceType() != null ? appointment.getServiceType().getId() : null);
+        setInteger(statement, 5, appointment.getLocation() != null ? appointment.getLocation().getLocationId() : null);
+        setTimestamp(statement, 6, appointment.getStartDateTime());
+        setTimestamp(statement, 7, appointment.getEndDateTime());
+        setString(statement, 8, appointment.getAppointmentKind() != null ? appointment.getAppointmentKind().name() : null);
+        setString(statement, 9, appointment.getStatus() != null ? appointment.getStatus().name() : null);
+        setString(statement, 10, appointment.getComments());
+        setInteger(statement, 11, appointment.getRelatedAppointment() != null ? appointment.getRelatedAppointment().getAppointmentId() : null);
+        setString(statement, 12, appointment.getTeleHealthVideoLink());
+        statement.setInt(13, appointment.getCreator().getUserId());
+        setTimestamp(statement, 14, appointment.getDateCreated());
+        statement.setBoolean(15, Boolean.TRUE.equals(appointment.getVoided()));
+        statement.setString(16, appointment.getUuid());
+    }
+
+    private void bindAppointmentProvider(PreparedStatement statement, AppointmentProvider appointmentProvider) throws SQLException {
+        statement.setInt(1, appointmentProvider.getAppointment().getAppointmentId());
+        setInteger(statement, 2, appointmentProvider.getProvider() != null ? appointmentProvider.getProvider().getProviderId() : null);
+        setString(statement, 3, appointmentProvider.getResponse() != null ? appointmentProvider.getResponse().name() : null);
+        setString(statement, 4, appointmentProvider.getComments());
+        statement.setInt(5, appointmentProvider.getCreator().getUserId());
+        setTimestamp(statement, 6, appointmentProvider.getDateCreated());
+        statement.setBoolean(7, Boolean.TRUE.equals(appointmentProvider.getVoided()));
+        statement.setString(8, appointmentProvider.getUuid());
+    }
+
+    private <T> void insertInBatches(Connection connection, String sql, Collection<T> rows, int batchSize,
+                                     RowBinder<T> rowBinder) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (T row : rows) {
+                rowBinder.bind(statement, row);
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private Map<String, Integer> getIdsByUuid(Connection connection, String table, String idColumn,
+                                              List<? extends OpenmrsObject> rows, int batchSize) throws SQLException {
+        Map<String, Integer> idsByUuid = new HashMap<>();
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<? extends OpenmrsObject> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement statement = connection.prepareStatement("SELECT " + idColumn + ", uuid FROM " + table +
+                    " WHERE uuid IN (" + placeholders + ")")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setString(i + 1, chunk.get(i).getUuid());
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        idsByUuid.put(resultSet.getString(2), resultSet.getInt(1));
+                    }
+                }
+            }
+        }
+        return idsByUuid;
+    }
+
+    private void setCreated(BaseOpenmrsData data, User authenticatedUser, Date now) {
+        if (data.getCreator() == null) {
+            data.setCreator(authenticatedUser);
+        }
+        if (data.getDateCreated() == null) {
+            data.setDateCreated(now);
+        }
+    }
+
+    private void setString(PreparedStatement statement, int index, String value) throws SQLException {
+        if (value != null) {
+            statement.setString(index, value);
+        } else {
+            statement.setNull(index, Types.VARCHAR);
+        }
+    }
+
+    private void setInteger(PreparedStatement statement, int index, Integer value) throws SQLException {
+        if (value != null) {
+            statement.setInt(index, value);
+        } else {
+            statement.setNull(index, Types.INTEGER);
+        }
+    }
+
+    private void setTimestamp(PreparedStatement statement, int index, Date value) throws SQLException {
+        if (value != null) {
+            statement.setTimestamp(index, new Timestamp(value.getTime()));
+        } else {
+            statement.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    private int getBatchSize() {
+        int configuredBatchSize = ((SessionFactoryImplementor) sessionFactory).getSettings().getJdbcBatchSize();
+        return configuredBatchSize > 0 ? configuredBatchSize : DEFAULT_BATCH_SIZE;
+    }
+
     private Session session() {
         return sessionFactory.getCurrentSession();
     }
+
+    private interface RowBinder<T> {
+        void bind(PreparedStatement statement, T row) throws SQLException;
+    }
 }
@@ -1,6 +1,7 @@
 package org.openmrs.module.appointments.dao.impl;
 
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Restrictions;
@@ -64,8 +65,20 @@ public class AppointmentServiceDaoImpl implements AppointmentServiceDao{
         return (AppointmentServiceType) criteria.uniqueResult();
     }
 
+    @Override
+    public AppointmentServiceDefinition getAppointmentServiceReference(Integer appointmentServiceId) {
+        return (AppointmentServiceDefinition) sessionFactory.getCurrentSession().load(AppointmentServiceDefinition.class, appointmentServiceId);
+    }
+
+    @Override
+    public AppointmentServiceType getAppointmentServiceTypeReference(Integer appointmentServiceTypeId) {
+        return (AppointmentServiceType) sessionFactory.getCurrentSession().load(AppointmentServiceType.class, appointmentServiceTypeId);
+    }
+
     private void evictObjectFromSession(Session currentSession, AppointmentServiceDefinition appointmentServiceDefinition) {
         if (appointmentServiceDefinition != null) {
+            Hibernate.initialize(appointmentServiceDefinition.getLocation());
+            Hibernate.initialize(appointmentServiceDefinition.getSpeciality());
             currentSession.evict(appointmentServiceDefinition);
         }
     }
@@ -0,0 +1,167 @@
+package org.openmrs.module.appointments.helper;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.api.APIException;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentAuditSnapshot;
+import org.openmrs.module.appointments.model.AppointmentKind;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the details of an appointment into the notes of its audit events and reads them back. Notes start with a
+ * version character followed by the service and service type uuids, the uuids of the providers that are not voided
+ * joined by commas, the location uuid, the start and end times in epoch milliseconds, the appointment kind and the
+ * comments, separated by unit separators. Missing values are left empty, so empty comments read back as none. The
+ * comments come last and are not escaped. Notes written as JSON by earlier versions are read as well. The codec holds
+ * no state and can be shared between threads.
+ */
+public final class AppointmentAuditSnapshotCodec {
+
+    static final char VERSION = '\u0001';
+
+    private static final char SEPARATOR = '\u001F';
+
+    private static final char PROVIDER_SEPARATOR = ',';
+
+    private static final int FIELDS = 8;
+
+    private static final int FIXED_LENGTH = 4 * 36 + 2 * 13 + 9 + FIELDS;
+
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper();
+
+    private AppointmentAuditSnapshotCodec() {
+    }
+
+    public static String write(Appointment appointment) {
+        String comments = appointment.getComments();
+        StringBuilder notes = new StringBuilder(FIXED_LENGTH + (comments != null ? comments.length() : 0));
+        notes.append(VERSION);
+        appendUuid(notes, appointment.getService());
+        notes.append(SEPARATOR);
+        appendUuid(notes, appointment.getServiceType());
+        notes.append(SEPARATOR);
+        appendProviderUuids(notes, appointment);
+        notes.append(SEPARATOR);
+        appendUuid(notes, appointment.getLocation());
+        notes.append(SEPARATOR);
+        appendTime(notes, appointment.getStartDateTime());
+        notes.append(SEPARATOR);
+        appendTime(notes, appointment.getEndDateTime());
+        notes.append(SEPARATOR);
+        if (appointment.getAppointmentKind() != null) {
+            notes.append(appointment.getAppointmentKind().name());
+        }
+        notes.append(SEPARATOR);
+        if (comments != null) {
+            notes.append(comments);
+        }
+        return notes.toString();
+    }
+
+    /**
+     * Returns the appointment details kept in the notes, or null when the notes hold something else, such as the
+     * description of a provider response. Throws {@link APIException} when the notes look like appointment details but
+     * can not be read.
+     */
+    public static AppointmentAuditSnapshot read(String notes) {
+        if (notes == null || notes.isEmpty()) {
+            return null;
+        }
+        try {
+            if (notes.charAt(0) == VERSION) {
+                return readFields(notes);
+            }
+            if (notes.charAt(0) == '{') {
+                return readLegacyJson(notes);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new APIException("Can not read appointment audit notes", e);
+        }
+        return null;
+    }
+
+    private static AppointmentAuditSnapshot readFields(String notes) {
+        String[] fields = notes.substring(1).split(String.valueOf(SEPARATOR), FIELDS);
+        if (fields.length != FIELDS) {
+            throw new APIException("Can not read appointment audit notes with " + fields.length + " fields");
+        }
+        AppointmentAuditSnapshot snapshot = new AppointmentAuditSnapshot();
+        snapshot.setServiceUuid(emptyToNull(fields[0]));
+        snapshot.setServiceTypeUuid(emptyToNull(fields[1]));
+        snapshot.setProviderUuids(fields[2].isEmpty() ? Collections.emptyList()
+                : Arrays.asList(fields[2].split(String.valueOf(PROVIDER_SEPARATOR))));
+        snapshot.setLocationUuid(emptyToNull(fields[3]));
+        snapshot.setStartDateTime(fields[4].isEmpty() ? null : new Date(Long.parseLong(fields[4])));
+        snapshot.setEndDateTime(fields[5].isEmpty() ? null : new Date(Long.parseLong(fields[5])));
+        snapshot.setAppointmentKind(fields[6].isEmpty() ? null : AppointmentKind.valueOf(fields[6]));
+        snapshot.setAppointmentNotes(emptyToNull(fields[7]));
+        return snapshot;
+    }
+
+    private static AppointmentAuditSnapshot readLegacyJson(String notes) {
+        Map<String, String> fields;
+        try {
+            fields = LEGACY_MAPPER.readValue(notes, Map.class);
+        } catch (IOException e) {
+            throw new APIException("Can not read appointment audit notes", e);
+        }
+        AppointmentAuditSnapshot snapshot = new AppointmentAuditSnapshot();
+        snapshot.setServiceUuid(fields.get("serviceUuid"));
+        snapshot.setServiceTypeUuid(fields.get("serviceTypeUuid"));
+        snapshot.setProviderUuids(fields.get("providerUuid") != null
+                ? Collections.singletonList(fields.get("providerUuid")) : Collections.emptyList());
+        snapshot.setLocationUuid(fields.get("locationUuid"));
+        snapshot.setStartDateTime(fields.get("startDateTime") != null ? Date.from(Instant.parse(fields.get("startDateTime"))) : null);
+        snapshot.setEndDateTime(fields.get("endDateTime") != null ? Date.from(Instant.parse(fields.get("endDateTime"))) : null);
+        snapshot.setAppointmentKind(fields.get("appointmentKind") != null ? AppointmentKind.valueOf(fields.get("appointmentKind")) : null);
+        snapshot.setAppointmentNotes(fields.get("appointmentNotes"));
+        return snapshot;
+    }
+
+    private static void appendUuid(StringBuilder notes, OpenmrsObject object) {
+        if (object != null && object.getUuid() != null) {
+            notes.append(object.getUuid());
+        }
+    }
+
+    private static void appendProviderUuids(StringBuilder notes, Appointment appointment) {
+        if (appointment.getProviders() == null) {
+            return;
+        }
+        List<String> providerUuids = new ArrayList<>();
+        for (AppointmentProvider appointmentProvider : appointment.getProviders()) {
+            if (!Boolean.TRUE.equals(appointmentProvider.getVoided()) && appointmentProvider.getProvider() != null
+                    && appointmentProvider.getProvider().getUuid() != null) {
+                providerUuids.add(appointmentProvider.getProvider().getUuid());
+            }
+        }
+        Collections.sort(providerUuids);
+        for (int i = 0; i < providerUuids.size(); i++) {
+            if (i > 0) {
+                notes.append(PROVIDER_SEPARATOR);
+            }
+            notes.append(providerUuids.get(i));
+        }
+    }
+
+    private static void appendTime(StringBuilder notes, Date date) {
+        if (date != null) {
+            notes.append(date.getTime());
+        }
+    }
+
+    private static String emptyToNull(String field) {
+        return field.isEmpty() ? null : field;
+    }
+}
@@ -0,0 +1,325 @@
+package org.openmrs.module.appointments.helper;
+
+import org.openmrs.Location;
+import org.openmrs.User;
+import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceType;
+import org.openmrs.module.appointments.model.ServiceWeeklyAvailability;
+import org.openmrs.module.appointments.model.Speciality;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Process wide cache of appointment service definitions, looked up by uuid or by the name of a non voided service.
+ * Entries are read only snapshots: the definition handed to {@link #getByUuid} or {@link #getByName} by the loader is
+ * copied before it is cached, and every lookup, hit or miss, returns a fresh copy of the snapshot. Weekly availability
+ * and service types of a snapshot can not be changed, and location, speciality and users are copied down to their id,
+ * uuid and name, so no entity of the loading session is shared between threads. Snapshots are for reading only;
+ * callers that change and save a definition must load it from the DAO instead, and callers that store a definition
+ * on an appointment must store the instance of their session. Entries expire after
+ * {@link #setTimeToLiveMillis time to live} and the least recently used entries are evicted once
+ * {@link #setMaxSize max size} is reached. Writers must call {@link #invalidate} after changing a definition.
+ */
+public class AppointmentServiceDefinitionCache {
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000L;
+
+    public static final int DEFAULT_MAX_SIZE = 500;
+
+    private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final Map<String, Entry> entriesByUuid = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Entry> entriesByName = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public AppointmentServiceDefinition getByUuid(String uuid, Function<String, AppointmentServiceDefinition> loader) {
+        return get(entriesByUuid, uuid, loader);
+    }
+
+    public AppointmentServiceDefinition getByName(String name, Function<String, AppointmentServiceDefinition> loader) {
+        return get(entriesByName, name, loader);
+    }
+
+    /**
+     * Drops the entries of the given definition, both under its uuid and under any name it was cached with. When a
+     * transaction is active the entries are dropped again once it completes, so a snapshot read by a concurrent
+     * request before the change was committed does not outlive the transaction.
+     */
+    public void invalidate(AppointmentServiceDefinition appointmentServiceDefinition) {
+        String uuid = appointmentServiceDefinition.getUuid();
+        String name = appointmentServiceDefinition.getName();
+        remove(uuid, name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(uuid, name);
+                }
+            });
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entriesByUuid.clear();
+        entriesByName.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public synchronized int size() {
+        return entriesByUuid.size() + entriesByName.size();
+    }
+
+    private AppointmentServiceDefinition get(Map<String, Entry> entries, String key,
+                                             Function<String, AppointmentServiceDefinition> loader) {
+        if (key == null) {
+            return loader.apply(null);
+        }
+        AppointmentServiceDefinition snapshot = lookup(entries, key);
+        if (snapshot != null) {
+            hitCount.incrementAndGet();
+            return copyOf(snapshot);
+        }
+        missCount.incrementAndGet();
+        AppointmentServiceDefinition appointmentServiceDefinition = loader.apply(key);
+        if (appointmentServiceDefinition == null) {
+            return null;
+        }
+        snapshot = copyOf(appointmentServiceDefinition);
+        store(entries, key, snapshot);
+        return copyOf(snapshot);
+    }
+
+    private synchronized AppointmentServiceDefinition lookup(Map<String, Entry> entries, String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            evictionCount.incrementAndGet();
+            return null;
+        }
+        return entry.snapshot;
+    }
+
+    private synchronized void store(Map<String, Entry> entries, String key, AppointmentServiceDefinition snapshot) {
+        entries.put(key, new Entry(snapshot, clock.getAsLong() + timeToLiveMillis));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String uuid, String name) {
+        if (uuid != null) {
+            entriesByUuid.remove(uuid);
+            entriesByName.values().removeIf(entry -> uuid.equals(entry.snapshot.getUuid()));
+        }
+        if (name != null) {
+            entriesByName.remove(name);
+        }
+    }
+
+    private static AppointmentServiceDefinition copyOf(AppointmentServiceDefinition source) {
+        return new ReadOnlyAppointmentServiceDefinition(source);
+    }
+
+    private static ServiceWeeklyAvailability copyOf(ServiceWeeklyAvailability source, AppointmentServiceDefinition service) {
+        ServiceWeeklyAvailability copy = new ServiceWeeklyAvailability();
+        copy.setServiceWeeklyAvailabilityId(source.getServiceWeeklyAvailabilityId());
+        copy.setUuid(source.getUuid());
+        copy.setService(service);
+        copy.setDayOfWeek(source.getDayOfWeek());
+        copy.setStartTime(source.getStartTime());
+        copy.setEndTime(source.getEndTime());
+        copy.setMaxAppointmentsLimit(source.getMaxAppointmentsLimit());
+        copy.setCreator(copyOf(source.getCreator()));
+        copy.setDateCreated(source.getDateCreated());
+        copy.setChangedBy(copyOf(source.getChangedBy()));
+        copy.setDateChanged(source.getDateChanged());
+        copy.setVoided(source.getVoided());
+        copy.setVoidedBy(copyOf(source.getVoidedBy()));
+        copy.setDateVoided(source.getDateVoided());
+        copy.setVoidReason(source.getVoidReason());
+        return copy;
+    }
+
+    private static AppointmentServiceType copyOf(AppointmentServiceType source, AppointmentServiceDefinition service) {
+        AppointmentServiceType copy = new AppointmentServiceType();
+        copy.setId(source.getId());
+        copy.setUuid(source.getUuid());
+        copy.setAppointmentServiceDefinition(service);
+        copy.setName(source.getName());
+        copy.setDuration(source.getDuration());
+        copy.setCreator(copyOf(source.getCreator()));
+        copy.setDateCreated(source.getDateCreated());
+        copy.setChangedBy(copyOf(source.getChangedBy()));
+        copy.setDateChanged(source.getDateChanged());
+        copy.setVoided(source.getVoided());
+        copy.setVoidedBy(copyOf(source.getVoidedBy()));
+        copy.setDateVoided(source.getDateVoided());
+        copy.setVoidReason(source.getVoidReason());
+        return copy;
+    }
+
+    private static Location copyOf(Location source) {
+        if (source == null) {
+            return null;
+        }
+        Location copy = new Location(source.getLocationId());
+        copy.setUuid(source.getUuid());
+        copy.setName(source.getName());
+        return copy;
+    }
+
+    private static Speciality copyOf(Speciality source) {
+        if (source == null) {
+            return null;
+        }
+        Speciality copy = new Speciality();
+        copy.setSpecialityId(source.getSpecialityId());
+        copy.setUuid(source.getUuid());
+        copy.setName(source.getName());
+        return copy;
+    }
+
+    private static User copyOf(User source) {
+        if (source == null) {
+            return null;
+        }
+        User copy = new User(source.getUserId());
+        copy.setUuid(source.getUuid());
+        return copy;
+    }
+
+    /**
+     * A definition whose weekly availability and service types are fixed when it is copied. Replacing or adding to
+     * them throws {@link UnsupportedOperationException}, so a snapshot can not be edited and saved by mistake.
+     */
+    private static class ReadOnlyAppointmentServiceDefinition extends AppointmentServiceDefinition {
+
+        private final Set<ServiceWeeklyAvailability> weeklyAvailability;
+
+        private final Set<AppointmentServiceType> serviceTypes;
+
+        ReadOnlyAppointmentServiceDefinition(AppointmentServiceDefinition source) {
+            setAppointmentServiceId(source.getAppointmentServiceId());
+            setUuid(source.getUuid());
+            setName(source.getName());
+            setDescription(source.getDescription());
+            setSpeciality(copyOf(source.getSpeciality()));
+            setStartTime(source.getStartTime());
+            setEndTime(source.getEndTime());
+            setMaxAppointmentsLimit(source.getMaxAppointmentsLimit());
+            setDurationMins(source.getDurationMins());
+            setLocation(copyOf(source.getLocation()));
+            setColor(source.getColor());
+            setInitialAppointmentStatus(source.getInitialAppointmentStatus());
+            setCreator(copyOf(source.getCreator()));
+            setDateCreated(source.getDateCreated());
+            setChangedBy(copyOf(source.getChangedBy()));
+            setDateChanged(source.getDateChanged());
+            setVoided(source.getVoided());
+            setVoidedBy(copyOf(source.getVoidedBy()));
+            setDateVoided(source.getDateVoided());
+            setVoidReason(source.getVoidReason());
+
+            Set<ServiceWeeklyAvailability> weeklyAvailability = new LinkedHashSet<>();
+            for (ServiceWeeklyAvailability availability : source.getWeeklyAvailability(true)) {
+                weeklyAvailability.add(copyOf(availability, this));
+            }
+            this.weeklyAvailability = Collections.unmodifiableSet(weeklyAvailability);
+
+            Set<AppointmentServiceType> serviceTypes = new LinkedHashSet<>();
+            for (AppointmentServiceType serviceType : source.getServiceTypes(true)) {
+                serviceTypes.add(copyOf(serviceType, this));
+            }
+            this.serviceTypes = Collections.unmodifiableSet(serviceTypes);
+        }
+
+        @Override
+        public Set<ServiceWeeklyAvailability> getWeeklyAvailability(boolean includeVoided) {
+            if (includeVoided) {
+                return weeklyAvailability;
+            }
+            Set<ServiceWeeklyAvailability> nonVoided = new LinkedHashSet<>(weeklyAvailability);
+            nonVoided.removeIf(ServiceWeeklyAvailability::getVoided);
+            return Collections.unmodifiableSet(nonVoided);
+        }
+
+        @Override
+        public void setWeeklyAvailability(Set<ServiceWeeklyAvailability> availability) {
+            throw new UnsupportedOperationException("Appointment service snapshots are read only");
+        }
+
+        @Override
+        public Set<AppointmentServiceType> getServiceTypes(boolean includeVoided) {
+            if (includeVoided) {
+                return serviceTypes;
+            }
+            Set<AppointmentServiceType> nonVoided = new LinkedHashSet<>(serviceTypes);
+            nonVoided.removeIf(AppointmentServiceType::getVoided);
+            return Collections.unmodifiableSet(nonVoided);
+        }
+
+        @Override
+        public void setServiceTypes(Set<AppointmentServiceType> serviceTypes) {
+            throw new UnsupportedOperationException("Appointment service snapshots are read only");
+        }
+    }
+
+    private static class Entry {
+        private final AppointmentServiceDefinition snapshot;
+        private final long expiresAt;
+
+        Entry(AppointmentServiceDefinition snapshot, long expiresAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
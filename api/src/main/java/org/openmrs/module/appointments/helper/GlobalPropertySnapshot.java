@@ -0,0 +1,92 @@
+package org.openmrs.module.appointments.helper;
+
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.api.context.Context;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory copy of the global properties the module reads on every request. A property is read from the database
+ * the first time it is asked for and served from memory afterwards. The snapshot is registered as a
+ * {@link GlobalPropertyListener}, so saving or purging a property through the administration service drops the
+ * cached value and the next read loads the new one.
+ */
+public class GlobalPropertySnapshot implements GlobalPropertyListener {
+
+    public static final String BEAN_NAME = "appointmentsGlobalPropertySnapshot";
+
+    private final Map<String, Optional<String>> values = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public static GlobalPropertySnapshot getInstance() {
+        return Context.getRegisteredComponent(BEAN_NAME, GlobalPropertySnapshot.class);
+    }
+
+    public String getGlobalProperty(String propertyName) {
+        Optional<String> value = values.get(propertyName);
+        if (value == null) {
+            long generationBeforeLoad = generation.get();
+            value = Optional.ofNullable(Context.getAdministrationService().getGlobalProperty(propertyName));
+            if (generation.get() == generationBeforeLoad) {
+                values.putIfAbsent(propertyName, value);
+            }
+        }
+        return value.orElse(null);
+    }
+
+    public String getGlobalProperty(String propertyName, String defaultValue) {
+        String value = getGlobalProperty(propertyName);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean getBooleanGlobalProperty(String propertyName) {
+        return Boolean.parseBoolean(getGlobalProperty(propertyName));
+    }
+
+    /**
+     * Every property is supported, including those not cached yet, so that a change made while a value is being
+     * loaded keeps the loaded value out of the snapshot.
+     */
+    @Override
+    public boolean supportsPropertyName(String propertyName) {
+        return true;
+    }
+
+    @Override
+    public void globalPropertyChanged(GlobalProperty newValue) {
+        evict(newValue.getProperty());
+    }
+
+    @Override
+    public void globalPropertyDeleted(String propertyName) {
+        evict(propertyName);
+    }
+
+    /**
+     * Listeners are notified before the change is committed, so the value is dropped again once the transaction
+     * completes. Otherwise a read by a concurrent request in between would cache the previous value.
+     */
+    private void evict(String propertyName) {
+        remove(propertyName);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(propertyName);
+                }
+            });
+        }
+    }
+
+    private void remove(String propertyName) {
+        generation.incrementAndGet();
+        values.remove(propertyName);
+    }
+}
@@ -0,0 +1,206 @@
+package org.openmrs.module.appointments.helper;
+
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderResponse;
+import org.openmrs.module.appointments.model.AppointmentSlot;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.util.DateUtil;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * In memory schedule of every provider the module has been asked about, holding the slots of their upcoming, non
+ * cancelled appointments sorted by start time. The schedule of a provider is read from the database on first use and
+ * then kept up to date by {@link #update}, which the appointment services call whenever they save appointments or
+ * change their status. Schedules are reloaded after {@link #setTimeToLiveMillis time to live}, which bounds how long
+ * changes made outside the services go unnoticed.
+ */
+public class ProviderScheduleIndex {
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 10 * 60 * 1000L;
+
+    private static final Comparator<AppointmentSlot> BY_START = Comparator.comparingLong(AppointmentSlot::getStartMillis)
+            .thenComparing(AppointmentSlot::getAppointmentUuid);
+
+    private AppointmentDao appointmentDao;
+
+    private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final Map<Integer, ProviderSchedule> schedules = new ConcurrentHashMap<>();
+
+    public void setAppointmentDao(AppointmentDao appointmentDao) {
+        this.appointmentDao = appointmentDao;
+    }
+
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the slots of the provider's appointments that start before {@code end} and end after {@code start}.
+     */
+    public List<AppointmentSlot> getOverlappingSlots(Integer providerId, long start, long end) {
+        ProviderSchedule schedule = schedules.computeIfAbsent(providerId, id -> new ProviderSchedule());
+        synchronized (schedule) {
+            long now = clock.getAsLong();
+            if (schedule.loadedAt == null || schedule.loadedAt + timeToLiveMillis <= now) {
+                schedule.load(appointmentDao.getAppointmentSlotsForProvider(providerId, DateUtil.getStartOfDay()), now);
+            }
+            return schedule.getOverlapping(start, end);
+        }
+    }
+
+    /**
+     * Brings the schedules of the providers of the given appointments up to date. Inside a transaction the schedules
+     * are updated once it commits, so an appointment rolled back never shows up as booked.
+     */
+    public void update(Collection<Appointment> appointments) {
+        Map<String, List<Integer>> providerIdsByAppointment = new HashMap<>();
+        List<AppointmentSlot> slots = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            if (appointment.getUuid() == null || appointment.getStartDateTime() == null || appointment.getEndDateTime() == null) {
+                continue;
+            }
+            AppointmentSlot slot = new AppointmentSlot(appointment.getUuid(), appointment.getStartDateTime(), appointment.getEndDateTime());
+            slots.add(slot);
+            providerIdsByAppointment.put(slot.getAppointmentUuid(), isBooked(appointment) ? getBookedProviderIds(appointment)
+                    : Collections.emptyList());
+        }
+        if (slots.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(slots, providerIdsByAppointment);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                apply(slots, providerIdsByAppointment);
+            }
+        });
+    }
+
+    public void update(Appointment appointment) {
+        update(Collections.singletonList(appointment));
+    }
+
+    public void invalidateAll() {
+        schedules.clear();
+    }
+
+    /**
+     * Returns the ids of the providers the appointment books, those assigned to it that did not reject or cancel.
+     */
+    public static List<Integer> getBookedProviderIds(Appointment appointment) {
+        if (appointment.getProviders() == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> providerIds = new ArrayList<>();
+        for (AppointmentProvider appointmentProvider : appointment.getProviders()) {
+            if (!Boolean.TRUE.equals(appointmentProvider.getVoided())
+                    && appointmentProvider.getResponse() != AppointmentProviderResponse.REJECTED
+                    && appointmentProvider.getResponse() != AppointmentProviderResponse.CANCELLED
+                    && appointmentProvider.getProvider() != null && appointmentProvider.getProvider().getProviderId() != null) {
+                providerIds.add(appointmentProvider.getProvider().getProviderId());
+            }
+        }
+        return providerIds;
+    }
+
+    private boolean isBooked(Appointment appointment) {
+        return !Boolean.TRUE.equals(appointment.getVoided()) && appointment.getStatus() != AppointmentStatus.Cancelled;
+    }
+
+    private void apply(List<AppointmentSlot> slots, Map<String, List<Integer>> providerIdsByAppointment) {
+        for (ProviderSchedule schedule : schedules.values()) {
+            synchronized (schedule) {
+                for (AppointmentSlot slot : slots) {
+                    schedule.remove(slot.getAppointmentUuid());
+                }
+            }
+        }
+        for (AppointmentSlot slot : slots) {
+            for (Integer providerId : providerIdsByAppointment.get(slot.getAppointmentUuid())) {
+                ProviderSchedule schedule = schedules.get(providerId);
+                if (schedule != null) {
+                    synchronized (schedule) {
+                        schedule.add(slot);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class ProviderSchedule {
+
+        private final NavigableSet<AppointmentSlot> slotsByStart = new TreeSet<>(BY_START);
+
+        private final Map<String, AppointmentSlot> slotsByAppointment = new HashMap<>();
+
+        private long longestSlotMillis;
+
+        private Long loadedAt;
+
+        void load(List<AppointmentSlot> slots, long now) {
+            slotsByStart.clear();
+            slotsByAppointment.clear();
+            longestSlotMillis = 0;
+            loadedAt = now;
+            slots.forEach(this::add);
+        }
+
+        void add(AppointmentSlot slot) {
+            if (loadedAt == null) {
+                return;
+            }
+            remove(slot.getAppointmentUuid());
+            slotsByStart.add(slot);
+            slotsByAppointment.put(slot.getAppointmentUuid(), slot);
+            longestSlotMillis = Math.max(longestSlotMillis, slot.getEndMillis() - slot.getStartMillis());
+        }
+
+        void remove(String appointmentUuid) {
+            AppointmentSlot slot = slotsByAppointment.remove(appointmentUuid);
+            if (slot != null) {
+                slotsByStart.remove(slot);
+            }
+        }
+
+        /**
+         * Only slots starting less than the longest slot before {@code start} can reach into the interval, so the
+         * scan is limited to those.
+         */
+        List<AppointmentSlot> getOverlapping(long start, long end) {
+            List<AppointmentSlot> overlapping = new ArrayList<>();
+            AppointmentSlot from = new AppointmentSlot("", start - longestSlotMillis, start - longestSlotMillis);
+            AppointmentSlot to = new AppointmentSlot("", end, end);
+            for (AppointmentSlot slot : slotsByStart.subSet(from, true, to, false)) {
+                if (slot.overlaps(start, end)) {
+                    overlapping.add(slot);
+                }
+            }
+            return overlapping;
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class Appointment extends BaseOpenmrsData implements Serializable {
     private Set<AppointmentAudit> appointmentAudits = new HashSet<>();
     private Appointment relatedAppointment;
     private String teleHealthVideoLink;
+    private Integer version;
 
     /**
      * This attribute is not a entity property. Just a placeholder for the clients to prepare response relevant  to notification
@@ -223,6 +224,18 @@ public class Appointment extends BaseOpenmrsData implements Serializable {
         this.teleHealthVideoLink = teleHealthVideoLink;
     }
 
+    /**
+     * Incremented by Hibernate on every update; an update made from an older version fails instead of overwriting
+     * the change made in between.
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public void setNotificationResults(List<NotificationResult> notificationResults) {
         this.notificationResults = notificationResults;
     }
@@ -0,0 +1,88 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+
+/**
+ * Read-only, flat view of an audit event of an appointment. It is filled from a column projection so exporting the
+ * history does not hydrate audit, appointment, patient or user entities.
+ */
+public class AppointmentAuditProjection {
+
+    private String uuid;
+    private String appointmentUuid;
+    private String patientUuid;
+    private AppointmentStatus status;
+    private String notes;
+    private String creatorUuid;
+    private Date dateCreated;
+
+    public AppointmentAuditProjection() {
+    }
+
+    public AppointmentAuditProjection(String uuid, String appointmentUuid, String patientUuid, AppointmentStatus status,
+                                      String notes, String creatorUuid, Date dateCreated) {
+        this.uuid = uuid;
+        this.appointmentUuid = appointmentUuid;
+        this.patientUuid = patientUuid;
+        this.status = status;
+        this.notes = notes;
+        this.creatorUuid = creatorUuid;
+        this.dateCreated = dateCreated;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getAppointmentUuid() {
+        return appointmentUuid;
+    }
+
+    public void setAppointmentUuid(String appointmentUuid) {
+        this.appointmentUuid = appointmentUuid;
+    }
+
+    public String getPatientUuid() {
+        return patientUuid;
+    }
+
+    public void setPatientUuid(String patientUuid) {
+        this.patientUuid = patientUuid;
+    }
+
+    public AppointmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AppointmentStatus status) {
+        this.status = status;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    public String getCreatorUuid() {
+        return creatorUuid;
+    }
+
+    public void setCreatorUuid(String creatorUuid) {
+        this.creatorUuid = creatorUuid;
+    }
+
+    public Date getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(Date dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+}
@@ -0,0 +1,62 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+import java.util.List;
+
+public class AppointmentAuditSearchRequest {
+
+    private String appointmentUuid;
+    private String patientUuid;
+    private Date startDate;
+    private Date endDate;
+    private List<AppointmentStatus> statuses;
+    private String actorUuid;
+
+    public String getAppointmentUuid() {
+        return appointmentUuid;
+    }
+
+    public void setAppointmentUuid(String appointmentUuid) {
+        this.appointmentUuid = appointmentUuid;
+    }
+
+    public String getPatientUuid() {
+        return patientUuid;
+    }
+
+    public void setPatientUuid(String patientUuid) {
+        this.patientUuid = patientUuid;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    public List<AppointmentStatus> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(List<AppointmentStatus> statuses) {
+        this.statuses = statuses;
+    }
+
+    public String getActorUuid() {
+        return actorUuid;
+    }
+
+    public void setActorUuid(String actorUuid) {
+        this.actorUuid = actorUuid;
+    }
+}
@@ -0,0 +1,90 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The details of an appointment as recorded in the notes of one of its audit events.
+ */
+public class AppointmentAuditSnapshot {
+
+    private String serviceUuid;
+
+    private String serviceTypeUuid;
+
+    private List<String> providerUuids;
+
+    private String locationUuid;
+
+    private Date startDateTime;
+
+    private Date endDateTime;
+
+    private AppointmentKind appointmentKind;
+
+    private String appointmentNotes;
+
+    public String getServiceUuid() {
+        return serviceUuid;
+    }
+
+    public void setServiceUuid(String serviceUuid) {
+        this.serviceUuid = serviceUuid;
+    }
+
+    public String getServiceTypeUuid() {
+        return serviceTypeUuid;
+    }
+
+    public void setServiceTypeUuid(String serviceTypeUuid) {
+        this.serviceTypeUuid = serviceTypeUuid;
+    }
+
+    public List<String> getProviderUuids() {
+        return providerUuids;
+    }
+
+    public void setProviderUuids(List<String> providerUuids) {
+        this.providerUuids = providerUuids;
+    }
+
+    public String getLocationUuid() {
+        return locationUuid;
+    }
+
+    public void setLocationUuid(String locationUuid) {
+        this.locationUuid = locationUuid;
+    }
+
+    public Date getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Date startDateTime) {
+        this.startDateTime = startDateTime;
+    }
+
+    public Date getEndDateTime() {
+        return endDateTime;
+    }
+
+    public void setEndDateTime(Date endDateTime) {
+        this.endDateTime = endDateTime;
+    }
+
+    public AppointmentKind getAppointmentKind() {
+        return appointmentKind;
+    }
+
+    public void setAppointmentKind(AppointmentKind appointmentKind) {
+        this.appointmentKind = appointmentKind;
+    }
+
+    public String getAppointmentNotes() {
+        return appointmentNotes;
+    }
+
+    public void setAppointmentNotes(String appointmentNotes) {
+        this.appointmentNotes = appointmentNotes;
+    }
+}
@@ -1,5 +1,5 @@
 package org.openmrs.module.appointments.model;
 
 public enum AppointmentConflictType {
-    SERVICE_UNAVAILABLE, PATIENT_DOUBLE_BOOKING
+    SERVICE_UNAVAILABLE, PATIENT_DOUBLE_BOOKING, PROVIDER_DOUBLE_BOOKING, SERVICE_OVERBOOKED
 }
@@ -0,0 +1,109 @@
+package org.openmrs.module.appointments.model;
+
+import org.openmrs.BaseOpenmrsData;
+import org.openmrs.module.appointments.notification.NotificationResult;
+
+import java.util.Date;
+
+/**
+ * A notification about an appointment that is to be sent, or has been sent, through one medium. Notifications are
+ * saved along with the appointment and sent after the transaction commits; the outcome of the last attempt is
+ * recorded as the result.
+ */
+public class AppointmentNotification extends BaseOpenmrsData {
+
+	private Integer appointmentNotificationId;
+
+	private Appointment appointment;
+
+	private String medium;
+
+	private AppointmentNotificationStatus status = AppointmentNotificationStatus.Pending;
+
+	private Integer attempts = 0;
+
+	private Date nextAttemptDateTime;
+
+	private Integer resultStatus;
+
+	private String resultMessage;
+
+	public Integer getAppointmentNotificationId() {
+		return appointmentNotificationId;
+	}
+
+	public void setAppointmentNotificationId(Integer appointmentNotificationId) {
+		this.appointmentNotificationId = appointmentNotificationId;
+	}
+
+	@Override
+	public Integer getId() {
+		return getAppointmentNotificationId();
+	}
+
+	@Override
+	public void setId(Integer id) {
+		setAppointmentNotificationId(id);
+	}
+
+	public Appointment getAppointment() {
+		return appointment;
+	}
+
+	public void setAppointment(Appointment appointment) {
+		this.appointment = appointment;
+	}
+
+	public String getMedium() {
+		return medium;
+	}
+
+	public void setMedium(String medium) {
+		this.medium = medium;
+	}
+
+	public AppointmentNotificationStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(AppointmentNotificationStatus status) {
+		this.status = status;
+	}
+
+	public Integer getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(Integer attempts) {
+		this.attempts = attempts;
+	}
+
+	public Date getNextAttemptDateTime() {
+		return nextAttemptDateTime;
+	}
+
+	public void setNextAttemptDateTime(Date nextAttemptDateTime) {
+		this.nextAttemptDateTime = nextAttemptDateTime;
+	}
+
+	public Integer getResultStatus() {
+		return resultStatus;
+	}
+
+	public void setResultStatus(Integer resultStatus) {
+		this.resultStatus = resultStatus;
+	}
+
+	public String getResultMessage() {
+		return resultMessage;
+	}
+
+	public void setResultMessage(String resultMessage) {
+		this.resultMessage = resultMessage;
+	}
+
+	public NotificationResult getResult() {
+		int status = resultStatus != null ? resultStatus : NotificationResult.QUEUED;
+		return new NotificationResult(getUuid(), medium, status, resultMessage);
+	}
+}
@@ -0,0 +1,5 @@
+package org.openmrs.module.appointments.model;
+
+public enum AppointmentNotificationStatus {
+    Pending, Sending, Completed, Failed
+}
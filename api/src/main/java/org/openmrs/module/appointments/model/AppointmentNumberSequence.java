@@ -0,0 +1,35 @@
+package org.openmrs.module.appointments.model;
+
+/**
+ * A named sequence that appointment numbers are taken from; the next value is the first number not yet handed out.
+ */
+public class AppointmentNumberSequence {
+
+    private String name;
+
+    private Long nextValue;
+
+    public AppointmentNumberSequence() {
+    }
+
+    public AppointmentNumberSequence(String name, Long nextValue) {
+        this.name = name;
+        this.nextValue = nextValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getNextValue() {
+        return nextValue;
+    }
+
+    public void setNextValue(Long nextValue) {
+        this.nextValue = nextValue;
+    }
+}
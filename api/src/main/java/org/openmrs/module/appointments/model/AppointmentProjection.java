@@ -0,0 +1,233 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Read-only, flat view of an appointment holding only what appointment list responses show. It is filled from a column
+ * projection so listing appointments does not hydrate appointment, patient, person or provider entities.
+ */
+public class AppointmentProjection {
+
+    private Integer appointmentId;
+    private String uuid;
+    private String appointmentNumber;
+    private Integer patientId;
+    private String patientUuid;
+    private String patientName;
+    private String patientIdentifier;
+    private Boolean patientEmailDefined;
+    private Integer serviceId;
+    private AppointmentServiceDefinition service;
+    private String serviceTypeName;
+    private String serviceTypeUuid;
+    private Integer serviceTypeDuration;
+    private String locationName;
+    private String locationUuid;
+    private Date startDateTime;
+    private Date endDateTime;
+    private AppointmentKind appointmentKind;
+    private AppointmentStatus status;
+    private String comments;
+    private String teleHealthVideoLink;
+    private Boolean voided;
+    private Integer recurringPatternId;
+    private List<AppointmentProviderProjection> providers = new ArrayList<>();
+
+    public Integer getAppointmentId() {
+        return appointmentId;
+    }
+
+    public void setAppointmentId(Integer appointmentId) {
+        this.appointmentId = appointmentId;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getAppointmentNumber() {
+        return appointmentNumber;
+    }
+
+    public void setAppointmentNumber(String appointmentNumber) {
+        this.appointmentNumber = appointmentNumber;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Integer patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getPatientUuid() {
+        return patientUuid;
+    }
+
+    public void setPatientUuid(String patientUuid) {
+        this.patientUuid = patientUuid;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public void setPatientName(String patientName) {
+        this.patientName = patientName;
+    }
+
+    public String getPatientIdentifier() {
+        return patientIdentifier;
+    }
+
+    public void setPatientIdentifier(String patientIdentifier) {
+        this.patientIdentifier = patientIdentifier;
+    }
+
+    public Boolean getPatientEmailDefined() {
+        return patientEmailDefined;
+    }
+
+    public void setPatientEmailDefined(Boolean patientEmailDefined) {
+        this.patientEmailDefined = patientEmailDefined;
+    }
+
+    public Integer getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(Integer serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public AppointmentServiceDefinition getService() {
+        return service;
+    }
+
+    public void setService(AppointmentServiceDefinition service) {
+        this.service = service;
+    }
+
+    public String getServiceTypeName() {
+        return serviceTypeName;
+    }
+
+    public void setServiceTypeName(String serviceTypeName) {
+        this.serviceTypeName = serviceTypeName;
+    }
+
+    public String getServiceTypeUuid() {
+        return serviceTypeUuid;
+    }
+
+    public void setServiceTypeUuid(String serviceTypeUuid) {
+        this.serviceTypeUuid = serviceTypeUuid;
+    }
+
+    public Integer getServiceTypeDuration() {
+        return serviceTypeDuration;
+    }
+
+    public void setServiceTypeDuration(Integer serviceTypeDuration) {
+        this.serviceTypeDuration = serviceTypeDuration;
+    }
+
+    public String getLocationName() {
+        return locationName;
+    }
+
+    public void setLocationName(String locationName) {
+        this.locationName = locationName;
+    }
+
+    public String getLocationUuid() {
+        return locationUuid;
+    }
+
+    public void setLocationUuid(String locationUuid) {
+        this.locationUuid = locationUuid;
+    }
+
+    public Date getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Date startDateTime) {
+        this.startDateTime = startDateTime;
+    }
+
+    public Date getEndDateTime() {
+        return endDateTime;
+    }
+
+    public void setEndDateTime(Date endDateTime) {
+        this.endDateTime = endDateTime;
+    }
+
+    public AppointmentKind getAppointmentKind() {
+        return appointmentKind;
+    }
+
+    public void setAppointmentKind(AppointmentKind appointmentKind) {
+        this.appointmentKind = appointmentKind;
+    }
+
+    public AppointmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AppointmentStatus status) {
+        this.status = status;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    public void setComments(String comments) {
+        this.comments = comments;
+    }
+
+    public String getTeleHealthVideoLink() {
+        return teleHealthVideoLink;
+    }
+
+    public void setTeleHealthVideoLink(String teleHealthVideoLink) {
+        this.teleHealthVideoLink = teleHealthVideoLink;
+    }
+
+    public Boolean getVoided() {
+        return voided;
+    }
+
+    public void setVoided(Boolean voided) {
+        this.voided = voided;
+    }
+
+    public Integer getRecurringPatternId() {
+        return recurringPatternId;
+    }
+
+    public void setRecurringPatternId(Integer recurringPatternId) {
+        this.recurringPatternId = recurringPatternId;
+    }
+
+    public List<AppointmentProviderProjection> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(List<AppointmentProviderProjection> providers) {
+        this.providers = providers;
+    }
+
+    public boolean isRecurring() {
+        return recurringPatternId != null;
+    }
+}
@@ -0,0 +1,51 @@
+package org.openmrs.module.appointments.model;
+
+public class AppointmentProviderProjection {
+
+    private String uuid;
+    private String name;
+    private AppointmentProviderResponse response;
+    private String comments;
+
+    public AppointmentProviderProjection() {
+    }
+
+    public AppointmentProviderProjection(String uuid, String name, AppointmentProviderResponse response, String comments) {
+        this.uuid = uuid;
+        this.name = name;
+        this.response = response;
+        this.comments = comments;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public AppointmentProviderResponse getResponse() {
+        return response;
+    }
+
+    public void setResponse(AppointmentProviderResponse response) {
+        this.response = response;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    public void setComments(String comments) {
+        this.comments = comments;
+    }
+}
@@ -16,6 +16,7 @@ public class AppointmentRecurringPattern {
     private RecurringAppointmentType type;
     private String daysOfWeek;
     private Set<Appointment> appointments = new LinkedHashSet<>();
+    private Integer version;
 
     public Integer getId() {
         return id;
@@ -73,6 +74,14 @@ public class AppointmentRecurringPattern {
         this.appointments = appointments;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public Boolean isAppointmentsEmptyOrNull (){
         return this.appointments == null || this.appointments.isEmpty();
     }
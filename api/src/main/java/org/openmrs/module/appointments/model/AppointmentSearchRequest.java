@@ -9,6 +9,7 @@ public class AppointmentSearchRequest {
     private String patientUuid;
     private String providerUuid;
     private int limit;
+    private String continuationToken;
 
     public Date getStartDate() {
         return startDate;
@@ -49,4 +50,12 @@ public class AppointmentSearchRequest {
     public void setProviderUuid(String providerUuid) {
         this.providerUuid = providerUuid;
     }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
 }
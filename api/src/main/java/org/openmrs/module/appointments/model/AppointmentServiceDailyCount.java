@@ -0,0 +1,53 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+
+public class AppointmentServiceDailyCount {
+
+    private Integer appointmentServiceId;
+    private Date appointmentDate;
+    private AppointmentStatus status;
+    private Integer count;
+
+    public AppointmentServiceDailyCount() {
+    }
+
+    public AppointmentServiceDailyCount(Integer appointmentServiceId, Date appointmentDate, AppointmentStatus status, Integer count) {
+        this.appointmentServiceId = appointmentServiceId;
+        this.appointmentDate = appointmentDate;
+        this.status = status;
+        this.count = count;
+    }
+
+    public Integer getAppointmentServiceId() {
+        return appointmentServiceId;
+    }
+
+    public void setAppointmentServiceId(Integer appointmentServiceId) {
+        this.appointmentServiceId = appointmentServiceId;
+    }
+
+    public Date getAppointmentDate() {
+        return appointmentDate;
+    }
+
+    public void setAppointmentDate(Date appointmentDate) {
+        this.appointmentDate = appointmentDate;
+    }
+
+    public AppointmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AppointmentStatus status) {
+        this.status = status;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+}
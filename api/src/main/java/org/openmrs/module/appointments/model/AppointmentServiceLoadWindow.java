@@ -0,0 +1,43 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+
+public class AppointmentServiceLoadWindow {
+
+    private AppointmentServiceDefinition service;
+    private Date startDateTime;
+    private Date endDateTime;
+
+    public AppointmentServiceLoadWindow() {
+    }
+
+    public AppointmentServiceLoadWindow(AppointmentServiceDefinition service, Date startDateTime, Date endDateTime) {
+        this.service = service;
+        this.startDateTime = startDateTime;
+        this.endDateTime = endDateTime;
+    }
+
+    public AppointmentServiceDefinition getService() {
+        return service;
+    }
+
+    public void setService(AppointmentServiceDefinition service) {
+        this.service = service;
+    }
+
+    public Date getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Date startDateTime) {
+        this.startDateTime = startDateTime;
+    }
+
+    public Date getEndDateTime() {
+        return endDateTime;
+    }
+
+    public void setEndDateTime(Date endDateTime) {
+        this.endDateTime = endDateTime;
+    }
+}
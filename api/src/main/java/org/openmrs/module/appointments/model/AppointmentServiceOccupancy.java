@@ -0,0 +1,36 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+
+/**
+ * The number of appointments of a service starting at the same date time.
+ */
+public class AppointmentServiceOccupancy {
+
+    private Date startDateTime;
+    private Integer count;
+
+    public AppointmentServiceOccupancy() {
+    }
+
+    public AppointmentServiceOccupancy(Date startDateTime, Long count) {
+        this.startDateTime = startDateTime;
+        this.count = count.intValue();
+    }
+
+    public Date getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Date startDateTime) {
+        this.startDateTime = startDateTime;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,39 @@
+package org.openmrs.module.appointments.model;
+
+import java.util.Date;
+
+/**
+ * The time an appointment takes up, identified by the appointment uuid.
+ */
+public class AppointmentSlot {
+
+    private final String appointmentUuid;
+    private final long startMillis;
+    private final long endMillis;
+
+    public AppointmentSlot(String appointmentUuid, Date startDateTime, Date endDateTime) {
+        this(appointmentUuid, startDateTime.getTime(), endDateTime.getTime());
+    }
+
+    public AppointmentSlot(String appointmentUuid, long startMillis, long endMillis) {
+        this.appointmentUuid = appointmentUuid;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    public String getAppointmentUuid() {
+        return appointmentUuid;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public boolean overlaps(long start, long end) {
+        return startMillis < end && endMillis > start;
+    }
+}
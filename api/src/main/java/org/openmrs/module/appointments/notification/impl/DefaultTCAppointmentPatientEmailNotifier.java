@@ -75,7 +75,7 @@ public class DefaultTCAppointmentPatientEmailNotifier implements AppointmentEven
             }
         } else {
             log.warn(EMAIL_NOT_CONFIGURED);
-            return new NotificationResult(null, "EMAIL", 1, EMAIL_NOT_CONFIGURED);
+            return new NotificationResult(null, "EMAIL", NotificationResult.IGNORED, EMAIL_NOT_CONFIGURED);
         }
     }
 
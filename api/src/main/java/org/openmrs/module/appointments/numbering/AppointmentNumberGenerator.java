@@ -0,0 +1,13 @@
+package org.openmrs.module.appointments.numbering;
+
+import org.openmrs.module.appointments.model.Appointment;
+
+/**
+ * Gives new appointments the number they are known by at the registration desk. Numbers must be unique and may be
+ * asked for from many threads at once. To number appointments differently, override the bean
+ * "appointmentNumberGenerator".
+ */
+public interface AppointmentNumberGenerator {
+
+    String generateAppointmentNumber(Appointment appointment);
+}
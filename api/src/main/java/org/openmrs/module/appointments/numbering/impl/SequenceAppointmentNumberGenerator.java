@@ -0,0 +1,62 @@
+package org.openmrs.module.appointments.numbering.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.appointments.dao.AppointmentNumberSequenceDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.numbering.AppointmentNumberGenerator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Numbers appointments from a sequence kept in the database. Numbers are taken from the sequence a block at a time,
+ * in a transaction of their own, and handed out from memory until the block runs out, so saves on one node only meet
+ * on the database row once per block. Numbers left in a block when the node stops are never used; numbers are unique
+ * but not gapless, and are zero padded to the minimum number of digits.
+ */
+public class SequenceAppointmentNumberGenerator implements AppointmentNumberGenerator {
+
+    public static final String SEQUENCE_NAME = "appointment";
+
+    private AppointmentNumberSequenceDao appointmentNumberSequenceDao;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int blockSize = 100;
+
+    private int minimumDigits = 6;
+
+    private long nextNumber;
+
+    private long blockEnd;
+
+    public void setAppointmentNumberSequenceDao(AppointmentNumberSequenceDao appointmentNumberSequenceDao) {
+        this.appointmentNumberSequenceDao = appointmentNumberSequenceDao;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public void setMinimumDigits(int minimumDigits) {
+        this.minimumDigits = minimumDigits;
+    }
+
+    @Override
+    public String generateAppointmentNumber(Appointment appointment) {
+        return StringUtils.leftPad(Long.toString(nextNumber()), minimumDigits, '0');
+    }
+
+    private synchronized long nextNumber() {
+        if (nextNumber == blockEnd) {
+            nextNumber = transactionTemplate.execute(status -> appointmentNumberSequenceDao.allocate(SEQUENCE_NAME, blockSize));
+            blockEnd = nextNumber + blockSize;
+        }
+        return nextNumber++;
+    }
+}
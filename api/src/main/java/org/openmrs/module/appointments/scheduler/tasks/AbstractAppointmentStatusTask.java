@@ -0,0 +1,38 @@
+package org.openmrs.module.appointments.scheduler.tasks;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.service.AppointmentsService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Moves appointments that ended before now from one set of statuses to another. Appointments are selected by status
+ * rather than from where the previous run stopped, so ones that become eligible later (backdated, undone or checked in
+ * late) are still picked up. They are read and updated in chunks of {@link #CHUNK_SIZE}, each chunk in its own
+ * transaction; a rerun after a crash only finds the appointments that were not changed yet.
+ */
+public abstract class AbstractAppointmentStatusTask extends AbstractTask {
+
+    static final int CHUNK_SIZE = 500;
+
+    protected void changeStatusOfEndedAppointments(List<AppointmentStatus> fromStatuses, AppointmentStatus toStatus) {
+        AppointmentsService appointmentsService = Context.getService(AppointmentsService.class);
+        Date today = new Date();
+        Appointment lastAppointment = null;
+        List<Appointment> appointments;
+        do {
+            appointments = appointmentsService.getAppointmentsWithStatusEndingBefore(fromStatuses, today, lastAppointment, CHUNK_SIZE);
+            if (appointments.isEmpty()) {
+                break;
+            }
+            appointmentsService.changeStatus(appointments, toStatus, today);
+            lastAppointment = appointments.get(appointments.size() - 1);
+            Context.flushSession();
+            Context.clearSession();
+        } while (appointments.size() == CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,19 @@
+package org.openmrs.module.appointments.scheduler.tasks;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.service.impl.AppointmentNotificationDispatcher;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Sends appointment notifications that are due, i.e. the ones that failed and are waiting for a retry and the ones
+ * that could not be handed to the notification workers when their appointment was saved.
+ */
+public class DispatchAppointmentNotificationsTask extends AbstractTask {
+
+    @Override
+    public void execute() {
+        AppointmentNotificationDispatcher dispatcher = Context.getRegisteredComponent("appointmentNotificationDispatcher",
+                AppointmentNotificationDispatcher.class);
+        dispatcher.dispatchDueNotifications();
+    }
+}
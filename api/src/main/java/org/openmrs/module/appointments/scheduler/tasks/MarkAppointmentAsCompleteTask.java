@@ -1,43 +1,21 @@
 package org.openmrs.module.appointments.scheduler.tasks;
 
-import org.openmrs.GlobalProperty;
-import org.openmrs.api.AdministrationService;
-import org.openmrs.api.context.Context;
-import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.AppointmentStatus;
-import org.openmrs.module.appointments.service.AppointmentsService;
-import org.openmrs.scheduler.tasks.AbstractTask;
 
-import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Collections;
 
-public class MarkAppointmentAsCompleteTask extends AbstractTask {
+public class MarkAppointmentAsCompleteTask extends AbstractAppointmentStatusTask {
 
     @Override
     public void execute() {
-        AppointmentsService appointmentsService = Context.getService(AppointmentsService.class);
-        AdministrationService administrationService = Context.getService(AdministrationService.class);
-        GlobalProperty schedulerMarksCompleteProperty = administrationService.getGlobalPropertyObject("SchedulerMarksComplete");
-        Boolean schedulerMarksComplete = Boolean.valueOf(schedulerMarksCompleteProperty.getPropertyValue());
+        boolean schedulerMarksComplete = GlobalPropertySnapshot.getInstance().getBooleanGlobalProperty("SchedulerMarksComplete");
 
         if (!schedulerMarksComplete) {
             return;
         }
 
-        Date today = new Date();
-        List<Appointment> appointments = appointmentsService.getAllAppointmentsInDateRange(null, today);
-        List<Appointment> scheduledAndCheckedInAppointments = appointments.stream()
-                .filter(appointment -> isAppointmentCheckedIn(appointment))
-                .collect(Collectors.toList());
-        for (Appointment appointment : scheduledAndCheckedInAppointments) {
-            String status = AppointmentStatus.Completed.toString();
-            appointmentsService.changeStatus(appointment, status, today);
-        }
-    }
-
-    private boolean isAppointmentCheckedIn(Appointment appointment) {
-        return appointment.getStatus().equals(AppointmentStatus.CheckedIn);
+        changeStatusOfEndedAppointments(Collections.singletonList(AppointmentStatus.CheckedIn), AppointmentStatus.Completed);
     }
 
 }
@@ -3,6 +3,7 @@ package org.openmrs.module.appointments.service;
 
 import org.openmrs.annotation.Authorized;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +27,29 @@ public interface AppointmentServiceDefinitionService {
     @Authorized({VIEW_APPOINTMENTS_SERVICE, MANAGE_APPOINTMENTS_SERVICE})
     AppointmentServiceDefinition getAppointmentServiceByUuid(String uuid);
 
+    /**
+     * Loads the definition itself rather than a cached read only snapshot, for callers that change and save it.
+     */
+    @Transactional
+    @Authorized({MANAGE_APPOINTMENTS_SERVICE})
+    AppointmentServiceDefinition getEditableAppointmentServiceByUuid(String uuid);
+
+    /**
+     * Returns the instance of the current session for a definition, such as a cached snapshot, to be stored on an
+     * appointment. Every call in one session returns the same instance.
+     */
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS_SERVICE, MANAGE_APPOINTMENTS_SERVICE})
+    AppointmentServiceDefinition getAppointmentServiceReference(AppointmentServiceDefinition appointmentServiceDefinition);
+
+    /**
+     * Returns the instance of the current session for a service type, such as one of a cached snapshot, to be stored
+     * on an appointment.
+     */
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS_SERVICE, MANAGE_APPOINTMENTS_SERVICE})
+    AppointmentServiceType getAppointmentServiceTypeReference(AppointmentServiceType appointmentServiceType);
+
     @Transactional
     @Authorized({MANAGE_APPOINTMENTS_SERVICE})
     AppointmentServiceDefinition voidAppointmentService(AppointmentServiceDefinition appointmentServiceDefinition, String voidReason);
@@ -37,5 +61,9 @@ public interface AppointmentServiceDefinitionService {
     @Transactional
     @Authorized({VIEW_APPOINTMENTS_SERVICE, MANAGE_APPOINTMENTS_SERVICE})
     Integer calculateCurrentLoad(AppointmentServiceDefinition appointmentServiceDefinition, Date startDateTime, Date endDateTime);
+
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS_SERVICE, MANAGE_APPOINTMENTS_SERVICE})
+    List<Integer> calculateCurrentLoad(List<AppointmentServiceLoadWindow> loadWindows);
 }
 
@@ -3,17 +3,24 @@ package org.openmrs.module.appointments.service;
 
 import org.openmrs.annotation.Authorized;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentProjection;
 import org.openmrs.module.appointments.model.AppointmentProvider;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentServiceDailyCount;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.validator.AppointmentValidator;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static org.openmrs.module.appointments.constants.PrivilegeConstants.MANAGE_APPOINTMENTS;
@@ -30,10 +37,18 @@ public interface AppointmentsService {
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     List<Appointment> getAllAppointments(Date forDate);
 
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<AppointmentProjection> getAllAppointmentProjections(Date forDate);
+
     @Transactional
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     List<Appointment> search(Appointment appointment);
 
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<AppointmentProjection> searchProjections(Appointment appointment);
+
     @Transactional
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     List<Appointment> getAllFutureAppointmentsForService(AppointmentServiceDefinition appointmentServiceDefinition);
@@ -46,6 +61,18 @@ public interface AppointmentsService {
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     List<Appointment> getAppointmentsForService(AppointmentServiceDefinition appointmentServiceDefinition, Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusList);
 
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    Integer getAppointmentsCountForService(AppointmentServiceDefinition appointmentServiceDefinition, Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusList);
+
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<Integer> getAppointmentsCountForServices(List<AppointmentServiceLoadWindow> loadWindows, List<AppointmentStatus> appointmentStatusList);
+
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<AppointmentServiceDailyCount> getAppointmentServiceDailyCounts(Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusList);
+
     @Transactional
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     Appointment getAppointmentByUuid(String uuid);
@@ -54,10 +81,23 @@ public interface AppointmentsService {
     @Authorized({MANAGE_APPOINTMENTS, MANAGE_OWN_APPOINTMENTS})
     void changeStatus(Appointment appointment, String status, Date onDate);
 
+    @Transactional
+    @Authorized({MANAGE_APPOINTMENTS, MANAGE_OWN_APPOINTMENTS})
+    void changeStatus(Collection<Appointment> appointments, AppointmentStatus status, Date onDate);
+
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<Appointment> getAppointmentsByUuids(Collection<String> uuids);
+
     @Transactional
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     List<Appointment> getAllAppointmentsInDateRange(Date startDate, Date endDate);
 
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<Appointment> getAppointmentsWithStatusEndingBefore(List<AppointmentStatus> appointmentStatuses, Date endDate,
+                                                            Appointment lastAppointment, int maxResults);
+
     @Transactional
     @Authorized({MANAGE_APPOINTMENTS, MANAGE_OWN_APPOINTMENTS})
     void undoStatusChange(Appointment appointment);
@@ -78,6 +118,19 @@ public interface AppointmentsService {
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     List<Appointment> search(AppointmentSearchRequest appointmentSearchRequest);
 
+    @Transactional
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    List<AppointmentProjection> searchProjections(AppointmentSearchRequest appointmentSearchRequest);
+
+    /**
+     * Passes the audit events matching the request to the consumer one at a time, oldest first, without holding them
+     * in memory. The consumer runs inside the read-only transaction of the call.
+     */
+    @Transactional(readOnly = true)
+    @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
+    void streamAppointmentHistory(AppointmentAuditSearchRequest appointmentAuditSearchRequest,
+                                  Consumer<AppointmentAuditProjection> consumer);
+
     @Authorized({VIEW_APPOINTMENTS, MANAGE_APPOINTMENTS})
     Map<Enum, List<Appointment>> getAppointmentConflicts(Appointment appointment);
 
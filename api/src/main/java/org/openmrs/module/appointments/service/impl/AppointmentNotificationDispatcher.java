@@ -0,0 +1,262 @@
+package org.openmrs.module.appointments.service.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.dao.AppointmentNotificationDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentNotification;
+import org.openmrs.module.appointments.model.AppointmentNotificationStatus;
+import org.openmrs.module.appointments.notification.NotificationException;
+import org.openmrs.module.appointments.notification.NotificationResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends appointment notifications through an outbox. {@link #queue(Appointment)} saves one
+ * {@link AppointmentNotification} per applicable medium in the transaction that saves the appointment, and hands
+ * them to a bounded pool of worker threads once that transaction commits, so saving never waits on a mail relay.
+ * A notifier that fails, by throwing or by returning a {@link NotificationResult#GENERAL_ERROR general error}, is
+ * retried with exponential backoff up to {@link #setMaxAttempts max attempts}; any other result, such as a medium
+ * that is not configured, is final and recorded as it is. Notifications the pool had no room for, or that are due for
+ * a retry, are picked up by {@link #dispatchDueNotifications()}, which the dispatch scheduler task calls periodically.
+ */
+public class AppointmentNotificationDispatcher {
+
+    private static final String QUEUED = "Notification queued";
+    private static final String NO_RESULT = "Notifier returned no result";
+    private static final String GAVE_UP = "Gave up sending notification after %d attempts: %s";
+
+    private Log log = LogFactory.getLog(this.getClass());
+
+    private AppointmentNotificationDao appointmentNotificationDao;
+
+    private PatientAppointmentNotifierService appointmentNotifierService;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int poolSize = 2;
+
+    private int queueCapacity = 1000;
+
+    private int maxAttempts = 5;
+
+    private long initialBackoffMillis = 60 * 1000L;
+
+    private long maxBackoffMillis = 60 * 60 * 1000L;
+
+    private long leaseMillis = 10 * 60 * 1000L;
+
+    private int sweepSize = 100;
+
+    private volatile ThreadPoolExecutor executor;
+
+    public void setAppointmentNotificationDao(AppointmentNotificationDao appointmentNotificationDao) {
+        this.appointmentNotificationDao = appointmentNotificationDao;
+    }
+
+    public void setAppointmentNotifierService(PatientAppointmentNotifierService appointmentNotifierService) {
+        this.appointmentNotifierService = appointmentNotifierService;
+    }
+
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void setLeaseMillis(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    public void setSweepSize(int sweepSize) {
+        this.sweepSize = sweepSize;
+    }
+
+    /**
+     * Saves a notification for every medium applicable to the appointment. Has to be called inside the transaction
+     * that saves the appointment.
+     *
+     * @return a {@link NotificationResult#QUEUED queued} result per medium
+     */
+    public List<NotificationResult> queue(Appointment appointment) {
+        List<String> mediums = appointmentNotifierService.getApplicableMediums(appointment);
+        if (mediums.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Date now = new Date();
+        List<Integer> notificationIds = new ArrayList<>();
+        List<NotificationResult> results = new ArrayList<>();
+        for (String medium : mediums) {
+            AppointmentNotification notification = new AppointmentNotification();
+            notification.setAppointment(appointment);
+            notification.setMedium(medium);
+            notification.setNextAttemptDateTime(now);
+            notification.setResultMessage(QUEUED);
+            appointmentNotificationDao.save(notification);
+            notificationIds.add(notification.getId());
+            results.add(notification.getResult());
+        }
+        dispatchAfterCommit(notificationIds);
+        return results;
+    }
+
+    /**
+     * Sends every notification that is due, one at a time on the calling thread, which must have an open session.
+     */
+    public void dispatchDueNotifications() {
+        List<Integer> notificationIds;
+        do {
+            notificationIds = transactionTemplate.execute(status ->
+                    appointmentNotificationDao.getDueNotificationIds(new Date(), sweepSize));
+            notificationIds.forEach(this::dispatch);
+        } while (notificationIds.size() == sweepSize);
+    }
+
+    /**
+     * Claims and sends one notification and records the result. The notifier is called outside of any transaction;
+     * the notification is claimed in one short transaction and the result is recorded in another.
+     */
+    public void dispatch(Integer notificationId) {
+        AppointmentNotification notification = transactionTemplate.execute(status -> {
+            Date now = new Date();
+            if (!appointmentNotificationDao.claim(notificationId, now, new Date(now.getTime() + leaseMillis))) {
+                return null;
+            }
+            return appointmentNotificationDao.getNotificationById(notificationId);
+        });
+        if (notification == null) {
+            return;
+        }
+        NotificationResult result;
+        String failure = null;
+        try {
+            result = appointmentNotifierService.sendNotification(notification.getMedium(), notification.getAppointment());
+            if (result == null || result.getStatus() == NotificationResult.GENERAL_ERROR) {
+                failure = result != null ? result.getMessage() : NO_RESULT;
+                log.error("Unable to send appointment notification " + notification.getUuid() + " through "
+                        + notification.getMedium() + ": " + failure);
+                result = null;
+            }
+        } catch (NotificationException | RuntimeException e) {
+            log.error("Unable to send appointment notification " + notification.getUuid() + " through " + notification.getMedium(), e);
+            result = null;
+            failure = e.getMessage();
+        }
+        NotificationResult sentResult = result;
+        String failureMessage = failure;
+        transactionTemplate.execute(status -> {
+            recordAttempt(notification, sentResult, failureMessage);
+            appointmentNotificationDao.save(notification);
+            return null;
+        });
+    }
+
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void recordAttempt(AppointmentNotification notification, NotificationResult result, String failureMessage) {
+        int attempts = notification.getAttempts() + 1;
+        notification.setAttempts(attempts);
+        if (result != null) {
+            notification.setStatus(AppointmentNotificationStatus.Completed);
+            notification.setResultStatus(result.getStatus());
+            notification.setResultMessage(result.getMessage());
+        } else if (attempts >= maxAttempts) {
+            notification.setStatus(AppointmentNotificationStatus.Failed);
+            notification.setResultStatus(NotificationResult.GENERAL_ERROR);
+            notification.setResultMessage(String.format(GAVE_UP, attempts, failureMessage));
+        } else {
+            notification.setStatus(AppointmentNotificationStatus.Pending);
+            notification.setResultMessage(failureMessage);
+            notification.setNextAttemptDateTime(new Date(System.currentTimeMillis() + getBackoffMillis(attempts)));
+        }
+    }
+
+    long getBackoffMillis(int attempts) {
+        long backoff = initialBackoffMillis << Math.min(attempts - 1, 30);
+        return backoff > 0 ? Math.min(backoff, maxBackoffMillis) : maxBackoffMillis;
+    }
+
+    private void dispatchAfterCommit(List<Integer> notificationIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (Integer notificationId : notificationIds) {
+                    submit(notificationId);
+                }
+            }
+        });
+    }
+
+    private void submit(Integer notificationId) {
+        try {
+            getExecutor().execute(() -> {
+                Context.openSession();
+                try {
+                    dispatch(notificationId);
+                } catch (RuntimeException e) {
+                    log.error("Unable to dispatch appointment notification " + notificationId, e);
+                } finally {
+                    Context.closeSession();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Notification queue is full, appointment notification " + notificationId + " will be sent by the scheduler");
+        }
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "appointment-notification-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                }
+            }
+        }
+        return executor;
+    }
+}
@@ -1,8 +1,11 @@
 package org.openmrs.module.appointments.service.impl;
 
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.dao.AppointmentAuditDao;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.dao.AppointmentRecurringPatternDao;
 import org.openmrs.module.appointments.helper.AppointmentServiceHelper;
+import org.openmrs.module.appointments.helper.ProviderScheduleIndex;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
@@ -12,10 +15,8 @@ import org.openmrs.module.appointments.validator.AppointmentStatusChangeValidato
 import org.openmrs.module.appointments.validator.AppointmentValidator;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -41,6 +42,10 @@ public class AppointmentRecurringPatternServiceImpl implements AppointmentRecurr
 
     private AppointmentDao appointmentDao;
 
+    private AppointmentAuditDao appointmentAuditDao;
+
+    private ProviderScheduleIndex providerScheduleIndex;
+
     public void setAppointmentRecurringPatternDao(AppointmentRecurringPatternDao appointmentRecurringPatternDao) {
         this.appointmentRecurringPatternDao = appointmentRecurringPatternDao;
     }
@@ -61,25 +66,47 @@ public class AppointmentRecurringPatternServiceImpl implements AppointmentRecurr
         this.appointmentDao = appointmentDao;
     }
 
+    public void setAppointmentAuditDao(AppointmentAuditDao appointmentAuditDao) {
+        this.appointmentAuditDao = appointmentAuditDao;
+    }
+
     public void setEditAppointmentValidators(List<AppointmentValidator> editAppointmentValidators) {
         this.editAppointmentValidators = editAppointmentValidators;
     }
 
+    public void setProviderScheduleIndex(ProviderScheduleIndex providerScheduleIndex) {
+        this.providerScheduleIndex = providerScheduleIndex;
+    }
+
     @Override
     public AppointmentRecurringPattern validateAndSave(AppointmentRecurringPattern appointmentRecurringPattern) {
         List<Appointment> appointments = new ArrayList<>(appointmentRecurringPattern.getAppointments());
         appointmentServiceHelper.validate(appointments.get(0), appointmentValidators);
         updateAppointmentsDetails(appointmentRecurringPattern, appointments);
-        appointmentRecurringPatternDao.save(appointmentRecurringPattern);
+        if (isNewSeries(appointmentRecurringPattern, appointments)) {
+            appointmentRecurringPatternDao.saveNewSeries(appointmentRecurringPattern);
+            appointmentAuditDao.saveAll(appointments.stream()
+                    .flatMap(appointment -> appointment.getAppointmentAudits().stream())
+                    .collect(Collectors.toList()));
+        } else {
+            appointmentRecurringPatternDao.save(appointmentRecurringPattern);
+        }
+        providerScheduleIndex.update(appointments);
         return appointmentRecurringPattern;
     }
 
+    private boolean isNewSeries(AppointmentRecurringPattern appointmentRecurringPattern, List<Appointment> appointments) {
+        return appointmentRecurringPattern.getId() == null
+                && appointments.stream().allMatch(appointment -> appointment.getAppointmentId() == null);
+    }
+
     @Override
     public AppointmentRecurringPattern update(AppointmentRecurringPattern appointmentRecurringPattern, Appointment editedAppointment) {
         List<Appointment> appointments = new ArrayList<>(appointmentRecurringPattern.getAppointments());
         updateAppointmentsDetails(appointmentRecurringPattern, appointments);
         appointmentServiceHelper.validate(editedAppointment, editAppointmentValidators);
         appointmentRecurringPatternDao.save(appointmentRecurringPattern);
+        providerScheduleIndex.update(appointments);
         return appointmentRecurringPattern;
     }
 
@@ -101,6 +128,7 @@ public class AppointmentRecurringPatternServiceImpl implements AppointmentRecurr
         updateAppointmentsDetails(appointmentRecurringPattern, updatedAppointments);
         appointmentServiceHelper.validate(editedAppointment.getRelatedAppointment(), editAppointmentValidators);
         appointmentRecurringPatternDao.save(appointmentRecurringPattern);
+        providerScheduleIndex.update(updatedAppointments);
         return editedAppointment;
     }
 
@@ -108,42 +136,31 @@ public class AppointmentRecurringPatternServiceImpl implements AppointmentRecurr
     public List<Appointment> changeStatus(Appointment appointment, String status, String clientTimeZone) {
         AppointmentStatus appointmentStatus = AppointmentStatus.valueOf(status);
         appointmentServiceHelper.validateStatusChangeAndGetErrors(appointment, appointmentStatus, statusChangeValidators);
-        String serverTimeZone = Calendar.getInstance().getTimeZone().getID();
-        TimeZone.setDefault(TimeZone.getTimeZone(clientTimeZone));
+        TimeZone timeZone = clientTimeZone != null ? TimeZone.getTimeZone(clientTimeZone) : TimeZone.getDefault();
         List<Appointment> pendingAppointments = getPendingOccurrences(appointment.getUuid(),
-                Arrays.asList(AppointmentStatus.Requested, AppointmentStatus.Scheduled, AppointmentStatus.CheckedIn));
-        TimeZone.setDefault(TimeZone.getTimeZone(serverTimeZone));
-        pendingAppointments.stream()
-                .map(pendingAppointment -> {
-                    pendingAppointment.setStatus(appointmentStatus);
-                    updateAppointmentAudits(pendingAppointment, null);
-                    appointmentDao.save(pendingAppointment);
-                    return pendingAppointment;
-                })
-                .collect(Collectors.toList());
+                Arrays.asList(AppointmentStatus.Requested, AppointmentStatus.Scheduled, AppointmentStatus.CheckedIn),
+                getStartOfDay(timeZone));
+        if (!pendingAppointments.isEmpty()) {
+            appointmentDao.updateStatus(pendingAppointments, appointmentStatus, Context.getAuthenticatedUser(), new Date());
+            providerScheduleIndex.update(pendingAppointments);
+            appointmentAuditDao.saveAll(pendingAppointments.stream()
+                    .map(pendingAppointment -> appointmentServiceHelper.getAppointmentAuditEvent(pendingAppointment, null))
+                    .collect(Collectors.toList()));
+        }
         return pendingAppointments;
     }
 
 
 
-    private List<Appointment> getPendingOccurrences(String appointmentUuid, List<AppointmentStatus> applicableStatusList) {
-        Date startOfDay = getStartOfDay();
+    private List<Appointment> getPendingOccurrences(String appointmentUuid, List<AppointmentStatus> applicableStatusList,
+                                                    Date startOfDay) {
         Appointment appointment = appointmentDao.getAppointmentByUuid(appointmentUuid);
-        return appointment.getAppointmentRecurringPattern().getAppointments()
-                .stream()
-                .filter(appointmentInList -> (appointmentInList.getStartDateTime().after(startOfDay)
-                        || startOfDay.equals(appointmentInList.getStartDateTime()))
-                        && applicableStatusList.contains(appointmentInList.getStatus()))
-                .collect(Collectors.toList());
+        return appointmentRecurringPatternDao.getPendingOccurrences(appointment.getAppointmentRecurringPattern(),
+                startOfDay, applicableStatusList);
     }
 
     private void setAppointmentAudit(Appointment appointment) {
-        try {
-            String notes = appointmentServiceHelper.getAppointmentAsJsonString(appointment);
-            updateAppointmentAudits(appointment, notes);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        updateAppointmentAudits(appointment, appointmentServiceHelper.getAppointmentAuditNotes(appointment));
     }
 
     private void updateAppointmentAudits(Appointment appointment, String notes) {
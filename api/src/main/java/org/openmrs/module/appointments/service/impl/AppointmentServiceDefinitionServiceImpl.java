@@ -2,8 +2,10 @@ package org.openmrs.module.appointments.service.impl;
 
 import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.dao.AppointmentServiceDao;
+import org.openmrs.module.appointments.helper.AppointmentServiceDefinitionCache;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.model.ServiceWeeklyAvailability;
@@ -15,10 +17,15 @@ import java.util.*;
 @Transactional
 public class AppointmentServiceDefinitionServiceImpl implements AppointmentServiceDefinitionService {
 
+    private static final List<AppointmentStatus> LOAD_STATUSES = Collections.unmodifiableList(
+            Arrays.asList(AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled));
+
     AppointmentServiceDao appointmentServiceDao;
 
     AppointmentsService appointmentsService;
 
+    AppointmentServiceDefinitionCache appointmentServiceDefinitionCache;
+
     public void setAppointmentServiceDao(AppointmentServiceDao appointmentServiceDao) {
         this.appointmentServiceDao = appointmentServiceDao;
     }
@@ -27,12 +34,18 @@ public class AppointmentServiceDefinitionServiceImpl implements AppointmentServi
         this.appointmentsService = appointmentsService;
     }
 
+    public void setAppointmentServiceDefinitionCache(AppointmentServiceDefinitionCache appointmentServiceDefinitionCache) {
+        this.appointmentServiceDefinitionCache = appointmentServiceDefinitionCache;
+    }
+
     @Override
     public AppointmentServiceDefinition save(AppointmentServiceDefinition appointmentServiceDefinition) {
-        AppointmentServiceDefinition service = appointmentServiceDao.getNonVoidedAppointmentServiceByName(appointmentServiceDefinition.getName());
+        AppointmentServiceDefinition service = appointmentServiceDefinitionCache.getByName(appointmentServiceDefinition.getName(),
+                appointmentServiceDao::getNonVoidedAppointmentServiceByName);
         if(service != null && !service.getUuid().equals(appointmentServiceDefinition.getUuid())) {
             throw new RuntimeException("The service '" + appointmentServiceDefinition.getName() + "' is already present");
         }
+        appointmentServiceDefinitionCache.invalidate(appointmentServiceDefinition);
         return appointmentServiceDao.save(appointmentServiceDefinition);
     }
 
@@ -44,10 +57,32 @@ public class AppointmentServiceDefinitionServiceImpl implements AppointmentServi
 
     @Override
     public AppointmentServiceDefinition getAppointmentServiceByUuid(String uuid) {
-        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDao.getAppointmentServiceByUuid(uuid);
+        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDefinitionCache.getByUuid(uuid,
+                appointmentServiceDao::getAppointmentServiceByUuid);
         return appointmentServiceDefinition;
     }
 
+    @Override
+    public AppointmentServiceDefinition getEditableAppointmentServiceByUuid(String uuid) {
+        return appointmentServiceDao.getAppointmentServiceByUuid(uuid);
+    }
+
+    @Override
+    public AppointmentServiceDefinition getAppointmentServiceReference(AppointmentServiceDefinition appointmentServiceDefinition) {
+        if (appointmentServiceDefinition == null || appointmentServiceDefinition.getAppointmentServiceId() == null) {
+            return appointmentServiceDefinition;
+        }
+        return appointmentServiceDao.getAppointmentServiceReference(appointmentServiceDefinition.getAppointmentServiceId());
+    }
+
+    @Override
+    public AppointmentServiceType getAppointmentServiceTypeReference(AppointmentServiceType appointmentServiceType) {
+        if (appointmentServiceType == null || appointmentServiceType.getId() == null) {
+            return appointmentServiceType;
+        }
+        return appointmentServiceDao.getAppointmentServiceTypeReference(appointmentServiceType.getId());
+    }
+
     @Override
     public AppointmentServiceDefinition voidAppointmentService(AppointmentServiceDefinition appointmentServiceDefinition, String voidReason) {
         List<Appointment> allFutureAppointmentsForService = appointmentsService.getAllFutureAppointmentsForService(appointmentServiceDefinition);
@@ -55,6 +90,7 @@ public class AppointmentServiceDefinitionServiceImpl implements AppointmentServi
             throw new RuntimeException("Please cancel all future appointments for this service to proceed. After deleting this service, you will not be able to see any appointments for it");
         }
         setVoidInfoForAppointmentService(appointmentServiceDefinition, voidReason);
+        appointmentServiceDefinitionCache.invalidate(appointmentServiceDefinition);
         return appointmentServiceDao.save(appointmentServiceDefinition);
     }
 
@@ -65,10 +101,12 @@ public class AppointmentServiceDefinitionServiceImpl implements AppointmentServi
 
     @Override
     public Integer calculateCurrentLoad(AppointmentServiceDefinition appointmentServiceDefinition, Date startDateTime, Date endDateTime) {
-        AppointmentStatus[] includeStatus = new AppointmentStatus[]{AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled};
-        List<Appointment> appointmentsForService = appointmentsService
-                .getAppointmentsForService(appointmentServiceDefinition, startDateTime, endDateTime, Arrays.asList(includeStatus));
-        return appointmentsForService.size();
+        return appointmentsService.getAppointmentsCountForService(appointmentServiceDefinition, startDateTime, endDateTime, LOAD_STATUSES);
+    }
+
+    @Override
+    public List<Integer> calculateCurrentLoad(List<AppointmentServiceLoadWindow> loadWindows) {
+        return appointmentsService.getAppointmentsCountForServices(loadWindows, LOAD_STATUSES);
     }
 
     private void setVoidInfoForAppointmentService(AppointmentServiceDefinition appointmentServiceDefinition, String voidReason) {
@@ -11,13 +11,19 @@ import org.openmrs.module.appointments.conflicts.AppointmentConflict;
 import org.openmrs.module.appointments.dao.AppointmentAuditDao;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.helper.AppointmentServiceHelper;
+import org.openmrs.module.appointments.helper.ProviderScheduleIndex;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProjection;
 import org.openmrs.module.appointments.model.AppointmentAudit;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
 import org.openmrs.module.appointments.model.AppointmentKind;
 import org.openmrs.module.appointments.model.AppointmentProvider;
 import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentServiceDailyCount;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.notification.NotificationResult;
@@ -26,8 +32,8 @@ import org.openmrs.module.appointments.validator.AppointmentStatusChangeValidato
 import org.openmrs.module.appointments.validator.AppointmentValidator;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -36,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -66,7 +73,9 @@ public class AppointmentsServiceImpl implements AppointmentsService {
 
     private TeleconsultationAppointmentService teleconsultationAppointmentService;
 
-    private PatientAppointmentNotifierService appointmentNotifierService;
+    private AppointmentNotificationDispatcher appointmentNotificationDispatcher;
+
+    private ProviderScheduleIndex providerScheduleIndex;
 
     public void setAppointmentDao(AppointmentDao appointmentDao) {
         this.appointmentDao = appointmentDao;
@@ -100,8 +109,12 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         this.teleconsultationAppointmentService = teleconsultationAppointmentService;
     }
 
-    public void setAppointmentNotifierService(PatientAppointmentNotifierService appointmentNotifierService) {
-        this.appointmentNotifierService = appointmentNotifierService;
+    public void setAppointmentNotificationDispatcher(AppointmentNotificationDispatcher appointmentNotificationDispatcher) {
+        this.appointmentNotificationDispatcher = appointmentNotificationDispatcher;
+    }
+
+    public void setProviderScheduleIndex(ProviderScheduleIndex providerScheduleIndex) {
+        this.providerScheduleIndex = providerScheduleIndex;
     }
 
     private boolean validateIfUserHasSelfOrAllAppointmentsAccess(Appointment appointment) {
@@ -155,7 +168,7 @@ public class AppointmentsServiceImpl implements AppointmentsService {
     }
 
     private void notifyUpdates(Appointment appointment) {
-        List<NotificationResult> notificationResults = appointmentNotifierService.notifyAll(appointment);
+        List<NotificationResult> notificationResults = appointmentNotificationDispatcher.queue(appointment);
         if (!notificationResults.isEmpty()) {
             notificationResults.stream().forEach(nr -> {
                 String notificationMsg = String.format("Appointment Notification Result - medium: %s, uuid: %s, status: %d, message: %s",
@@ -170,6 +183,7 @@ public class AppointmentsServiceImpl implements AppointmentsService {
     private void save(Appointment appointment) {
         createAndSetAppointmentAudit(appointment);
         appointmentDao.save(appointment);
+        providerScheduleIndex.update(appointment);
     }
 
     @Transactional
@@ -189,6 +203,12 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         return appointments.stream().filter(appointment -> !isServiceOrServiceTypeVoided(appointment)).collect(Collectors.toList());
     }
 
+    @Transactional
+    @Override
+    public List<AppointmentProjection> getAllAppointmentProjections(Date forDate) {
+        return appointmentDao.getAllAppointmentProjections(forDate);
+    }
+
     private boolean isServiceOrServiceTypeVoided(Appointment appointment) {
         return (appointment.getService() != null && appointment.getService().getVoided()) ||
                 (appointment.getServiceType() != null && appointment.getServiceType().getVoided());
@@ -207,6 +227,12 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         return appointments.stream().filter(searchedAppointment -> !isServiceOrServiceTypeVoided(searchedAppointment)).collect(Collectors.toList());
     }
 
+    @Transactional
+    @Override
+    public List<AppointmentProjection> searchProjections(Appointment appointment) {
+        return appointmentDao.searchProjections(appointment);
+    }
+
     @Transactional
     @Override
     public List<Appointment> getAllFutureAppointmentsForService(AppointmentServiceDefinition appointmentServiceDefinition) {
@@ -225,6 +251,29 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         return appointmentDao.getAppointmentsForService(appointmentServiceDefinition, startDate, endDate, appointmentStatusList);
     }
 
+    @Transactional
+    @Override
+    public Integer getAppointmentsCountForService(AppointmentServiceDefinition appointmentServiceDefinition, Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusList) {
+        return appointmentDao.getAppointmentsCountForService(appointmentServiceDefinition, startDate, endDate, appointmentStatusList);
+    }
+
+    @Transactional
+    @Override
+    public List<Integer> getAppointmentsCountForServices(List<AppointmentServiceLoadWindow> loadWindows, List<AppointmentStatus> appointmentStatusList) throws APIException {
+        for (AppointmentServiceLoadWindow loadWindow : loadWindows) {
+            if (loadWindow.getService() == null || loadWindow.getStartDateTime() == null || loadWindow.getEndDateTime() == null) {
+                throw new APIException("Service, start date time and end date time are required for every load window");
+            }
+        }
+        return appointmentDao.getAppointmentsCountForServices(loadWindows, appointmentStatusList);
+    }
+
+    @Transactional
+    @Override
+    public List<AppointmentServiceDailyCount> getAppointmentServiceDailyCounts(Date startDate, Date endDate, List<AppointmentStatus> appointmentStatusList) {
+        return appointmentDao.getAppointmentServiceDailyCounts(startDate, endDate, appointmentStatusList);
+    }
+
     @Transactional
     @Override
     public Appointment getAppointmentByUuid(String uuid) {
@@ -241,10 +290,30 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         validateUserPrivilege(appointment, appointmentStatus);
         appointment.setStatus(appointmentStatus);
         appointmentDao.save(appointment);
+        providerScheduleIndex.update(appointment);
         String notes = onDate != null ? onDate.toInstant().toString() : null;
         createEventInAppointmentAudit(appointment, notes);
     }
 
+    @Transactional
+    @Override
+    public void changeStatus(Collection<Appointment> appointments, AppointmentStatus status, Date onDate) throws APIException {
+        if (appointments.isEmpty()) {
+            return;
+        }
+        for (Appointment appointment : appointments) {
+            validateUserPrivilege(appointment, status);
+            appointmentServiceHelper.validateStatusChangeAndGetErrors(appointment, status, statusChangeValidators);
+        }
+        appointmentDao.updateStatus(appointments, status, Context.getAuthenticatedUser(), new Date());
+        providerScheduleIndex.update(appointments);
+        String notes = onDate != null ? onDate.toInstant().toString() : null;
+        List<AppointmentAudit> appointmentAudits = appointments.stream()
+                .map(appointment -> appointmentServiceHelper.getAppointmentAuditEvent(appointment, notes))
+                .collect(Collectors.toList());
+        appointmentAuditDao.saveAll(appointmentAudits);
+    }
+
     private void validateUserPrivilege(Appointment appointment, AppointmentStatus appointmentStatus) {
         if (!validateIfUserHasSelfOrAllAppointmentsAccess(appointment)) {
             throw new APIAuthenticationException(Context.getMessageSourceService().getMessage(PRIVILEGES_EXCEPTION_CODE,
@@ -262,6 +331,12 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         return Context.hasPrivilege(RESET_APPOINTMENT_STATUS);
     }
 
+    @Transactional
+    @Override
+    public List<Appointment> getAppointmentsByUuids(Collection<String> uuids) {
+        return appointmentDao.getAppointmentsByUuids(uuids);
+    }
+
     @Transactional
     @Override
     public List<Appointment> getAllAppointmentsInDateRange(Date startDate, Date endDate) {
@@ -269,6 +344,13 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         return appointments.stream().filter(appointment -> !isServiceOrServiceTypeVoided(appointment)).collect(Collectors.toList());
     }
 
+    @Transactional
+    @Override
+    public List<Appointment> getAppointmentsWithStatusEndingBefore(List<AppointmentStatus> appointmentStatuses, Date endDate,
+                                                                   Appointment lastAppointment, int maxResults) {
+        return appointmentDao.getAppointmentsWithStatusEndingBefore(appointmentStatuses, endDate, lastAppointment, maxResults);
+    }
+
     @Transactional
     @Override
     public void undoStatusChange(Appointment appointment) throws APIException {
@@ -280,6 +362,7 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         if (statusChangeEvent != null) {
             appointment.setStatus(statusChangeEvent.getStatus());
             appointmentDao.save(appointment);
+            providerScheduleIndex.update(appointment);
             createEventInAppointmentAudit(appointment, statusChangeEvent.getNotes());
         } else
             throw new APIException("No status change actions to undo");
@@ -294,6 +377,19 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         return appointmentDao.search(appointmentSearchRequest);
     }
 
+    @Transactional
+    @Override
+    public List<AppointmentProjection> searchProjections(AppointmentSearchRequest appointmentSearchRequest) {
+        return appointmentDao.searchProjections(appointmentSearchRequest);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void streamAppointmentHistory(AppointmentAuditSearchRequest appointmentAuditSearchRequest,
+                                         Consumer<AppointmentAuditProjection> consumer) {
+        appointmentAuditDao.scrollAppointmentHistory(appointmentAuditSearchRequest, consumer);
+    }
+
     @Override
     public Map<Enum, List<Appointment>> getAppointmentConflicts(Appointment appointment) {
         return getAllConflicts(Collections.singletonList(appointment));
@@ -339,6 +435,7 @@ public class AppointmentsServiceImpl implements AppointmentsService {
             changeStatus(appointment, AppointmentStatus.Scheduled.name(), Date.from(Instant.now()));
         } else {
             appointmentDao.save(appointment);
+            providerScheduleIndex.update(appointment);
         }
         createAppointmentAudit(providerWithNewResponse, appointment, existingProviderInAppointment);
     }
@@ -371,30 +468,25 @@ public class AppointmentsServiceImpl implements AppointmentsService {
         }
 
 
-        try {
-            //cancel the previous appointment
-            changeStatus(prevAppointment, AppointmentStatus.Cancelled.toString(), new Date());
-            createEventInAppointmentAudit(prevAppointment,
-                    appointmentServiceHelper.getAppointmentAsJsonString(prevAppointment));
+        //cancel the previous appointment
+        changeStatus(prevAppointment, AppointmentStatus.Cancelled.toString(), new Date());
+        createEventInAppointmentAudit(prevAppointment, appointmentServiceHelper.getAppointmentAuditNotes(prevAppointment));
 
-            //create a new appointment
-            newAppointment.setUuid(null);
-            newAppointment.setDateCreated(null);
-            newAppointment.setCreator(null);
-            newAppointment.setDateChanged(null);
-            newAppointment.setChangedBy(null);
+        //create a new appointment
+        newAppointment.setUuid(null);
+        newAppointment.setDateCreated(null);
+        newAppointment.setCreator(null);
+        newAppointment.setDateChanged(null);
+        newAppointment.setChangedBy(null);
 
-            //TODO: should we copy the original appointment
-            //newAppointment.setAppointmentNumber(prevAppointment.getAppointmentNumber());
-            appointmentServiceHelper.checkAndAssignAppointmentNumber(newAppointment);
+        //TODO: should we copy the original appointment
+        //newAppointment.setAppointmentNumber(prevAppointment.getAppointmentNumber());
+        appointmentServiceHelper.checkAndAssignAppointmentNumber(newAppointment);
 
-            newAppointment.setStatus(AppointmentStatus.Scheduled);
-            validateAndSave(newAppointment);
+        newAppointment.setStatus(AppointmentStatus.Scheduled);
+        validateAndSave(newAppointment);
 
-            return newAppointment;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return newAppointment;
     }
 
     private void createEventInAppointmentAudit(Appointment appointment,
@@ -416,13 +508,8 @@ public class AppointmentsServiceImpl implements AppointmentsService {
     }
 
     private void createAndSetAppointmentAudit(Appointment appointment) {
-        AppointmentAudit appointmentAudit;
-        try {
-            String notes = appointmentServiceHelper.getAppointmentAsJsonString(appointment);
-            appointmentAudit = appointmentServiceHelper.getAppointmentAuditEvent(appointment, notes);
-        } catch (IOException e) {
-            throw new APIException(e);
-        }
+        String notes = appointmentServiceHelper.getAppointmentAuditNotes(appointment);
+        AppointmentAudit appointmentAudit = appointmentServiceHelper.getAppointmentAuditEvent(appointment, notes);
         Set<AppointmentAudit> appointmentAudits = appointment.getAppointmentAudits();
         appointmentAudits.addAll(new HashSet<>(Collections.singleton(appointmentAudit)));
     }
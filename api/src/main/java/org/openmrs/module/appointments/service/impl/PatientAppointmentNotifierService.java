@@ -16,6 +16,7 @@ public class PatientAppointmentNotifierService {
 
     private static final String CANNOT_SEND_NOTIFICATION_USING_MEDIUM = "Unable to send tele-consultation appointment information through ";
     private static final String NOT_APPLICABLE = "This appointment is not applicable to the notifier. Medium: ";
+    private static final String NO_NOTIFIER_FOR_MEDIUM = "No notifier registered for medium: ";
     private Log log = LogFactory.getLog(this.getClass());
 
     private List<AppointmentEventNotifier> eventNotifiers = new ArrayList<>();
@@ -48,6 +49,25 @@ public class PatientAppointmentNotifierService {
         return notificationResults;
     }
 
+    public List<String> getApplicableMediums(final Appointment appointment) {
+        if (eventNotifiers == null) return Collections.emptyList();
+        return eventNotifiers.stream()
+                .filter(eventNotifier -> eventNotifier.isApplicable(appointment))
+                .map(AppointmentEventNotifier::getMedium)
+                .collect(Collectors.toList());
+    }
+
+    public NotificationResult sendNotification(String medium, final Appointment appointment) throws NotificationException {
+        AppointmentEventNotifier eventNotifier = eventNotifiers.stream()
+                .filter(n -> n.getMedium().equalsIgnoreCase(medium))
+                .findFirst().orElse(null);
+        if (eventNotifier == null) {
+            return new NotificationResult("", medium, NotificationResult.IGNORED, NO_NOTIFIER_FOR_MEDIUM + medium);
+        }
+        log.debug("Invoking Appointment Notifier: " + eventNotifier.getClass());
+        return eventNotifier.sendNotification(appointment);
+    }
+
     public List<AppointmentEventNotifier> getEventNotifiers() {
         return eventNotifiers;
     }
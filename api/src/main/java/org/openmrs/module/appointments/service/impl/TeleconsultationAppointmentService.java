@@ -1,6 +1,6 @@
 package org.openmrs.module.appointments.service.impl;
 
-import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 
 import java.text.MessageFormat;
@@ -11,7 +11,7 @@ public class TeleconsultationAppointmentService {
     private final static String DEFAULT_TC_SERVER_URL_PATTERN = "https://meet.jit.si/{0}";
 
     public String generateTeleconsultationLink(Appointment appointment) {
-        String tcServerUrl = Context.getAdministrationService().getGlobalProperty(PROP_TC_SERVER);
+        String tcServerUrl = GlobalPropertySnapshot.getInstance().getGlobalProperty(PROP_TC_SERVER);
         if ((tcServerUrl == null) || "".equals(tcServerUrl)) {
             tcServerUrl = DEFAULT_TC_SERVER_URL_PATTERN;
         }
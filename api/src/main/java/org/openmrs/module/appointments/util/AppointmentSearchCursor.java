@@ -0,0 +1,97 @@
+package org.openmrs.module.appointments.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProjection;
+import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Position of an appointment in the (start date time, appointment id) order used by appointment search. The position
+ * is handed to clients as an opaque continuation token so the next page can be read with a range seek instead of an
+ * offset.
+ */
+public class AppointmentSearchCursor {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final String SEPARATOR = ":";
+
+    private final Date startDateTime;
+    private final Integer appointmentId;
+
+    public AppointmentSearchCursor(Date startDateTime, Integer appointmentId) {
+        this.startDateTime = startDateTime;
+        this.appointmentId = appointmentId;
+    }
+
+    public Date getStartDateTime() {
+        return startDateTime;
+    }
+
+    public Integer getAppointmentId() {
+        return appointmentId;
+    }
+
+    public String encode() {
+        String position = startDateTime.getTime() + SEPARATOR + appointmentId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static AppointmentSearchCursor decode(String continuationToken) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+            String[] parts = position.split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            return new AppointmentSearchCursor(new Date(Long.parseLong(parts[0])), Integer.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+
+    /**
+     * Returns the number of appointments a search returns at most, or 0 when the search is not paged. Searches with
+     * an end date and neither a limit nor a continuation token return every match, as they always have.
+     */
+    public static int getPageSize(AppointmentSearchRequest appointmentSearchRequest) {
+        if (appointmentSearchRequest.getLimit() > 0) {
+            return appointmentSearchRequest.getLimit();
+        }
+        if (appointmentSearchRequest.getEndDate() == null
+                || StringUtils.isNotEmpty(appointmentSearchRequest.getContinuationToken())) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the token for the page after the given one, or null when the given page is the last one.
+     */
+    public static String getNextPageToken(AppointmentSearchRequest appointmentSearchRequest, List<Appointment> page) {
+        if (!isFullPage(appointmentSearchRequest, page)) {
+            return null;
+        }
+        Appointment lastAppointment = page.get(page.size() - 1);
+        return new AppointmentSearchCursor(lastAppointment.getStartDateTime(), lastAppointment.getAppointmentId()).encode();
+    }
+
+    public static String getNextPageTokenForProjections(AppointmentSearchRequest appointmentSearchRequest,
+                                                        List<AppointmentProjection> page) {
+        if (!isFullPage(appointmentSearchRequest, page)) {
+            return null;
+        }
+        AppointmentProjection lastAppointment = page.get(page.size() - 1);
+        return new AppointmentSearchCursor(lastAppointment.getStartDateTime(), lastAppointment.getAppointmentId()).encode();
+    }
+
+    private static boolean isFullPage(AppointmentSearchRequest appointmentSearchRequest, List<?> page) {
+        int pageSize = getPageSize(appointmentSearchRequest);
+        return pageSize > 0 && page.size() >= pageSize;
+    }
+}
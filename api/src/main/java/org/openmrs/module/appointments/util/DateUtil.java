@@ -48,7 +48,11 @@ public class DateUtil {
     }
 
     public static Date getStartOfDay() {
-        Calendar calendar = Calendar.getInstance();
+        return getStartOfDay(TimeZone.getDefault());
+    }
+
+    public static Date getStartOfDay(TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
         calendar.set(Calendar.HOUR_OF_DAY, calendar.getMinimum(Calendar.HOUR_OF_DAY));
         calendar.set(Calendar.MINUTE, calendar.getMinimum(Calendar.MINUTE));
         calendar.set(Calendar.SECOND, calendar.getMinimum(Calendar.SECOND));
@@ -1,6 +1,6 @@
 package org.openmrs.module.appointments.validator.impl;
 
-import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.validator.AppointmentStatusChangeValidator;
@@ -12,7 +12,7 @@ public class DefaultAppointmentStatusChangeValidator implements AppointmentStatu
 
     @Override
     public void validate(Appointment appointment, AppointmentStatus toStatus, List<String> errors) {
-        String disableDefaultValidationValue = Context.getAdministrationService().getGlobalProperty("disableDefaultAppointmentValidations");
+        String disableDefaultValidationValue = GlobalPropertySnapshot.getInstance().getGlobalProperty("disableDefaultAppointmentValidations");
         boolean disableValidation = disableDefaultValidationValue != null ? Boolean.valueOf(disableDefaultValidationValue) : false;
         if (!disableValidation) {
             AppointmentStatus currentStatus = appointment.getStatus();
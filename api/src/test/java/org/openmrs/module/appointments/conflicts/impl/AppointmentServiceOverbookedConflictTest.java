@@ -0,0 +1,145 @@
+package org.openmrs.module.appointments.conflicts.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentConflictType;
+import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceOccupancy;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.model.ServiceWeeklyAvailability;
+
+import java.sql.Time;
+import java.time.DayOfWeek;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openmrs.module.appointments.helper.DateHelper.getDate;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AppointmentServiceOverbookedConflictTest {
+
+    @InjectMocks
+    private AppointmentServiceOverbookedConflict appointmentServiceOverbookedConflict;
+
+    @Mock
+    private AppointmentDao appointmentDao;
+
+    @Test
+    public void shouldReturnServiceOverbookedType() {
+        assertEquals(AppointmentConflictType.SERVICE_OVERBOOKED, appointmentServiceOverbookedConflict.getType());
+    }
+
+    @Test
+    public void shouldNotCheckServicesWithoutALimit() {
+        AppointmentServiceDefinition service = createService(null);
+        Appointment appointment = createAppointment(service, getDate(2019, 8, 24, 11, 0, 0));
+
+        List<Appointment> conflicts = appointmentServiceOverbookedConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertTrue(conflicts.isEmpty());
+        verify(appointmentDao, never()).getAppointmentServiceOccupancy(any(Integer.class), any(Date.class), any(Date.class),
+                anyListOf(AppointmentStatus.class), anyListOf(String.class));
+    }
+
+    @Test
+    public void shouldReturnTheAppointmentsThatTakeTheServiceOverItsLimit() {
+        AppointmentServiceDefinition service = createService(2);
+        service.setStartTime(new Time(9, 0, 0));
+        service.setEndTime(new Time(17, 0, 0));
+        Appointment first = createAppointment(service, getDate(2019, 8, 24, 10, 30, 0));
+        Appointment second = createAppointment(service, getDate(2019, 8, 24, 11, 0, 0));
+        Appointment nextDay = createAppointment(service, getDate(2019, 8, 25, 11, 0, 0));
+        when(appointmentDao.getAppointmentServiceOccupancy(eq(1), any(Date.class), any(Date.class),
+                anyListOf(AppointmentStatus.class), anyListOf(String.class)))
+                .thenReturn(Arrays.asList(new AppointmentServiceOccupancy(getDate(2019, 8, 24, 10, 0, 0), 1L),
+                        new AppointmentServiceOccupancy(getDate(2019, 8, 24, 18, 0, 0), 5L)));
+
+        List<Appointment> conflicts = appointmentServiceOverbookedConflict.getConflicts(Arrays.asList(first, second, nextDay));
+
+        assertEquals(Collections.singletonList(second), conflicts);
+    }
+
+    @Test
+    public void shouldCountAWholeRecurringSeriesWithOneQueryAgainstEachAvailabilityWindow() {
+        AppointmentServiceDefinition service = createService(null);
+        ServiceWeeklyAvailability monday = new ServiceWeeklyAvailability();
+        monday.setDayOfWeek(DayOfWeek.MONDAY);
+        monday.setStartTime(new Time(9, 0, 0));
+        monday.setEndTime(new Time(13, 0, 0));
+        monday.setMaxAppointmentsLimit(1);
+        service.setWeeklyAvailability(new HashSet<>(Collections.singletonList(monday)));
+        Appointment firstMonday = createAppointment(service, getDate(2019, 8, 2, 10, 0, 0));
+        Appointment secondMonday = createAppointment(service, getDate(2019, 8, 9, 10, 0, 0));
+        Appointment thirdMonday = createAppointment(service, getDate(2019, 8, 16, 10, 0, 0));
+        when(appointmentDao.getAppointmentServiceOccupancy(eq(1), any(Date.class), any(Date.class),
+                anyListOf(AppointmentStatus.class), anyListOf(String.class)))
+                .thenReturn(Collections.singletonList(new AppointmentServiceOccupancy(getDate(2019, 8, 9, 12, 0, 0), 1L)));
+
+        List<Appointment> conflicts = appointmentServiceOverbookedConflict.getConflicts(Arrays.asList(firstMonday, secondMonday, thirdMonday));
+
+        assertEquals(Collections.singletonList(secondMonday), conflicts);
+        verify(appointmentDao, times(1)).getAppointmentServiceOccupancy(eq(1), any(Date.class), any(Date.class),
+                anyListOf(AppointmentStatus.class), anyListOf(String.class));
+    }
+
+    @Test
+    public void shouldNotCountTheStoredCopyOfAnEditedAppointment() {
+        AppointmentServiceDefinition service = createService(1);
+        Appointment appointment = createAppointment(service, getDate(2019, 8, 24, 11, 0, 0));
+        appointment.setAppointmentId(10);
+        ArgumentCaptor<Collection> excludedUuids = ArgumentCaptor.forClass(Collection.class);
+
+        List<Appointment> conflicts = appointmentServiceOverbookedConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertTrue(conflicts.isEmpty());
+        verify(appointmentDao).getAppointmentServiceOccupancy(eq(1), any(Date.class), any(Date.class),
+                anyListOf(AppointmentStatus.class), excludedUuids.capture());
+        assertEquals(Collections.singletonList(appointment.getUuid()), excludedUuids.getValue());
+    }
+
+    @Test
+    public void shouldNotCountCancelledAppointments() {
+        AppointmentServiceDefinition service = createService(0);
+        Appointment appointment = createAppointment(service, getDate(2019, 8, 24, 11, 0, 0));
+        appointment.setStatus(AppointmentStatus.Cancelled);
+
+        List<Appointment> conflicts = appointmentServiceOverbookedConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertTrue(conflicts.isEmpty());
+    }
+
+    private AppointmentServiceDefinition createService(Integer maxAppointmentsLimit) {
+        AppointmentServiceDefinition service = new AppointmentServiceDefinition();
+        service.setAppointmentServiceId(1);
+        service.setMaxAppointmentsLimit(maxAppointmentsLimit);
+        return service;
+    }
+
+    private Appointment createAppointment(AppointmentServiceDefinition service, Date startDateTime) {
+        Appointment appointment = new Appointment();
+        appointment.setService(service);
+        appointment.setStatus(AppointmentStatus.Scheduled);
+        appointment.setStartDateTime(startDateTime);
+        appointment.setEndDateTime(new Date(startDateTime.getTime() + 30 * 60 * 1000L));
+        return appointment;
+    }
+}
@@ -15,9 +15,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.openmrs.module.appointments.helper.DateHelper.getDate;
 
@@ -217,4 +219,59 @@ public class AppointmentServiceUnavailabilityConflictTest {
         assertNotNull(appointments);
         assertEquals(appointment, appointments.get(0));
     }
+
+    @Test
+    public void shouldReturnConflictsOnlyForTheDaysOfADailySeriesTheServiceIsClosed() {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        ServiceWeeklyAvailability monday = new ServiceWeeklyAvailability();
+        monday.setStartTime(new Time(8, 30, 0));
+        monday.setEndTime(new Time(17, 0, 0));
+        monday.setDayOfWeek(DayOfWeek.MONDAY);
+        ServiceWeeklyAvailability tuesday = new ServiceWeeklyAvailability();
+        tuesday.setStartTime(new Time(8, 30, 0));
+        tuesday.setEndTime(new Time(17, 0, 0));
+        tuesday.setDayOfWeek(DayOfWeek.TUESDAY);
+        appointmentServiceDefinition.setWeeklyAvailability(new HashSet<>(Arrays.asList(monday, tuesday)));
+        List<Appointment> series = new ArrayList<>();
+        for (int day = 0; day < 365; day++) {
+            Appointment appointment = new Appointment();
+            appointment.setService(appointmentServiceDefinition);
+            // the series starts on Monday, 23 September 2019
+            appointment.setStartDateTime(getDate(2019, 8, 23 + day, 10, 0, 0));
+            appointment.setEndDateTime(getDate(2019, 8, 23 + day, 10, 30, 0));
+            series.add(appointment);
+        }
+
+        List<Appointment> conflicts = appointmentServiceUnavailabilityConflict.getConflicts(series);
+
+        assertEquals(365 - 53 - 52, conflicts.size());
+        assertFalse(conflicts.contains(series.get(0)));
+        assertFalse(conflicts.contains(series.get(1)));
+        assertEquals(series.get(2), conflicts.get(0));
+        assertFalse(conflicts.contains(series.get(7)));
+    }
+
+    @Test
+    public void shouldFindTheDayOfTheWeekWhateverTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.FRENCH);
+        try {
+            AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+            ServiceWeeklyAvailability monday = new ServiceWeeklyAvailability();
+            monday.setStartTime(new Time(8, 30, 0));
+            monday.setEndTime(new Time(17, 0, 0));
+            monday.setDayOfWeek(DayOfWeek.MONDAY);
+            appointmentServiceDefinition.setWeeklyAvailability(new HashSet<>(Collections.singletonList(monday)));
+            Appointment appointment = new Appointment();
+            appointment.setService(appointmentServiceDefinition);
+            appointment.setStartDateTime(getDate(2019, 8, 23, 10, 0, 0));
+            appointment.setEndDateTime(getDate(2019, 8, 23, 10, 30, 0));
+
+            List<Appointment> conflicts = appointmentServiceUnavailabilityConflict.getConflicts(Collections.singletonList(appointment));
+
+            assertEquals(0, conflicts.size());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
 }
@@ -12,10 +12,14 @@ import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.helper.DateHelper;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.util.DateUtil;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -158,5 +162,56 @@ public class PatientDoubleBookingConflictTest {
         assertEquals(0,appointments.size());
     }
 
+    @Test
+    public void shouldFindTheSameConflictsAsComparingEveryPairOfAppointments() {
+        Random random = new Random(20190801L);
+        Patient patient = new Patient();
+        patient.setId(1);
+        for (int run = 0; run < 300; run++) {
+            List<Appointment> patientAppointments = createRandomAppointments(random, random.nextInt(40), patient);
+            List<Appointment> appointments = createRandomAppointments(random, 1 + random.nextInt(40), patient);
+            for (int i = 0; i < 3 && !patientAppointments.isEmpty(); i++) {
+                appointments.add(patientAppointments.get(random.nextInt(patientAppointments.size())));
+            }
+            when(appointmentDao.getAppointmentsForPatient(1)).thenReturn(patientAppointments);
+
+            List<Appointment> conflicts = patientDoubleBookingConflict.getConflicts(appointments);
+
+            assertEquals("run " + run, getConflictsComparingEveryPair(appointments, patientAppointments), conflicts);
+        }
+    }
 
+    private List<Appointment> createRandomAppointments(Random random, int count, Patient patient) {
+        long slot = 15 * 60 * 1000L;
+        long firstSlot = DateUtil.getStartOfDay().getTime() - 8 * slot;
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patient);
+            long start = firstSlot + random.nextInt(200) * slot;
+            appointment.setStartDateTime(new Date(start));
+            appointment.setEndDateTime(new Date(start + random.nextInt(8) * slot));
+            appointment.setVoided(random.nextInt(10) == 0);
+            appointment.setStatus(random.nextInt(10) == 0 ? AppointmentStatus.Cancelled : AppointmentStatus.Scheduled);
+            appointments.add(appointment);
+        }
+        return appointments;
+    }
+
+    private List<Appointment> getConflictsComparingEveryPair(List<Appointment> appointments, List<Appointment> patientAppointments) {
+        List<Appointment> conflicts = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            for (Appointment patientAppointment : patientAppointments) {
+                if (!patientAppointment.isSameAppointment(appointment)
+                        && !patientAppointment.getVoided()
+                        && patientAppointment.isFutureAppointment()
+                        && appointment.getStartDateTime().before(patientAppointment.getEndDateTime())
+                        && appointment.getEndDateTime().after(patientAppointment.getStartDateTime())
+                        && patientAppointment.getStatus() != AppointmentStatus.Cancelled) {
+                    conflicts.add(patientAppointment);
+                }
+            }
+        }
+        return conflicts;
+    }
 }
@@ -0,0 +1,145 @@
+package org.openmrs.module.appointments.conflicts.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.Provider;
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.helper.DateHelper;
+import org.openmrs.module.appointments.helper.ProviderScheduleIndex;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentConflictType;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderResponse;
+import org.openmrs.module.appointments.model.AppointmentSlot;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProviderDoubleBookingConflictTest {
+
+    @InjectMocks
+    private ProviderDoubleBookingConflict providerDoubleBookingConflict;
+
+    @Mock
+    private ProviderScheduleIndex providerScheduleIndex;
+
+    @Mock
+    private AppointmentDao appointmentDao;
+
+    @Test
+    public void shouldReturnProviderDoubleBookingType() {
+        assertEquals(AppointmentConflictType.PROVIDER_DOUBLE_BOOKING, providerDoubleBookingConflict.getType());
+    }
+
+    @Test
+    public void shouldReturnAppointmentsTheProviderIsAlreadyBookedForAtTheSameTime() {
+        Date start = DateHelper.getDate(2119, 8, 1, 11, 0, 0);
+        Date end = DateHelper.getDate(2119, 8, 1, 12, 0, 0);
+        Appointment appointment = createAppointment("new", start, end, createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED));
+        Appointment bookedAppointment = createAppointment("booked", start, end);
+        when(providerScheduleIndex.getOverlappingSlots(1, start.getTime(), end.getTime()))
+                .thenReturn(Collections.singletonList(new AppointmentSlot("booked", start, end)));
+        when(appointmentDao.getAppointmentsByUuids(Collections.singleton("booked")))
+                .thenReturn(Collections.singletonList(bookedAppointment));
+
+        List<Appointment> conflicts = providerDoubleBookingConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertEquals(Collections.singletonList(bookedAppointment), conflicts);
+    }
+
+    @Test
+    public void shouldNotConflictWithItself() {
+        Date start = DateHelper.getDate(2119, 8, 1, 11, 0, 0);
+        Date end = DateHelper.getDate(2119, 8, 1, 12, 0, 0);
+        Appointment appointment = createAppointment("edited", start, end, createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED));
+        when(providerScheduleIndex.getOverlappingSlots(1, start.getTime(), end.getTime()))
+                .thenReturn(Collections.singletonList(new AppointmentSlot("edited", start, end)));
+
+        List<Appointment> conflicts = providerDoubleBookingConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertTrue(conflicts.isEmpty());
+        verify(appointmentDao, never()).getAppointmentsByUuids(any());
+    }
+
+    @Test
+    public void shouldNotCheckProvidersThatRejectedTheAppointment() {
+        Date start = DateHelper.getDate(2119, 8, 1, 11, 0, 0);
+        Date end = DateHelper.getDate(2119, 8, 1, 12, 0, 0);
+        Appointment appointment = createAppointment("new", start, end, createAppointmentProvider(1, AppointmentProviderResponse.REJECTED));
+
+        List<Appointment> conflicts = providerDoubleBookingConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertTrue(conflicts.isEmpty());
+        verify(providerScheduleIndex, never()).getOverlappingSlots(eq(1), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldNotCheckCancelledAppointments() {
+        Date start = DateHelper.getDate(2119, 8, 1, 11, 0, 0);
+        Date end = DateHelper.getDate(2119, 8, 1, 12, 0, 0);
+        Appointment appointment = createAppointment("new", start, end, createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED));
+        appointment.setStatus(AppointmentStatus.Cancelled);
+
+        List<Appointment> conflicts = providerDoubleBookingConflict.getConflicts(Collections.singletonList(appointment));
+
+        assertTrue(conflicts.isEmpty());
+        verify(providerScheduleIndex, never()).getOverlappingSlots(eq(1), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldReadEachConflictingAppointmentOnceForARecurringSeries() {
+        Date firstStart = DateHelper.getDate(2119, 8, 1, 11, 0, 0);
+        Date firstEnd = DateHelper.getDate(2119, 8, 1, 12, 0, 0);
+        Date secondStart = DateHelper.getDate(2119, 8, 1, 11, 30, 0);
+        Date secondEnd = DateHelper.getDate(2119, 8, 1, 12, 30, 0);
+        Appointment first = createAppointment("first", firstStart, firstEnd, createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED));
+        Appointment second = createAppointment("second", secondStart, secondEnd, createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED));
+        Appointment bookedAppointment = createAppointment("booked", firstStart, secondEnd);
+        AppointmentSlot bookedSlot = new AppointmentSlot("booked", firstStart, secondEnd);
+        when(providerScheduleIndex.getOverlappingSlots(1, firstStart.getTime(), firstEnd.getTime())).thenReturn(Collections.singletonList(bookedSlot));
+        when(providerScheduleIndex.getOverlappingSlots(1, secondStart.getTime(), secondEnd.getTime())).thenReturn(Collections.singletonList(bookedSlot));
+        when(appointmentDao.getAppointmentsByUuids(Collections.singleton("booked")))
+                .thenReturn(Collections.singletonList(bookedAppointment));
+
+        List<Appointment> conflicts = providerDoubleBookingConflict.getConflicts(Arrays.asList(first, second));
+
+        assertEquals(Collections.singletonList(bookedAppointment), conflicts);
+    }
+
+    private Appointment createAppointment(String uuid, Date start, Date end, AppointmentProvider... appointmentProviders) {
+        Appointment appointment = new Appointment();
+        appointment.setUuid(uuid);
+        appointment.setStatus(AppointmentStatus.Scheduled);
+        appointment.setStartDateTime(start);
+        appointment.setEndDateTime(end);
+        appointment.setProviders(new HashSet<>(Arrays.asList(appointmentProviders)));
+        return appointment;
+    }
+
+    private AppointmentProvider createAppointmentProvider(Integer providerId, AppointmentProviderResponse response) {
+        Provider provider = new Provider();
+        provider.setProviderId(providerId);
+        AppointmentProvider appointmentProvider = new AppointmentProvider();
+        appointmentProvider.setProvider(provider);
+        appointmentProvider.setResponse(response);
+        appointmentProvider.setVoided(false);
+        return appointmentProvider;
+    }
+}
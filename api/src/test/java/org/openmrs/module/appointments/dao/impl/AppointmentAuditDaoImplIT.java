@@ -1,21 +1,32 @@
 package org.openmrs.module.appointments.dao.impl;
 
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQL5InnoDBDialect;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.BaseIntegrationTest;
 import org.openmrs.module.appointments.dao.AppointmentAuditDao;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class AppointmentAuditDaoImplIT extends BaseIntegrationTest {
 
@@ -44,6 +55,28 @@ public class AppointmentAuditDaoImplIT extends BaseIntegrationTest {
         assertEquals(2, allAuditEvents.size());
     }
 
+    @Test
+    public void shouldSaveAllAppointmentAudits() throws Exception {
+        Appointment appointment = appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c1111");
+        List<AppointmentAudit> audits = new ArrayList<>();
+        for (AppointmentStatus status : Arrays.asList(AppointmentStatus.CheckedIn, AppointmentStatus.Completed)) {
+            AppointmentAudit audit = new AppointmentAudit();
+            audit.setAppointment(appointment);
+            audit.setStatus(status);
+            audit.setNotes(status.name());
+            audits.add(audit);
+        }
+
+        appointmentAuditDao.saveAll(audits);
+
+        List<AppointmentAudit> allAuditEvents = appointmentAuditDao.getAppointmentHistoryForAppointment(appointment);
+        assertEquals(3, allAuditEvents.size());
+        for (AppointmentAudit audit : audits) {
+            assertNotNull(audit.getCreator());
+            assertNotNull(audit.getDateCreated());
+        }
+    }
+
     @Test
     public void shouldGetAppointmentAuditForAppointment() throws Exception {
         Appointment appointment = appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c1111");
@@ -68,4 +101,66 @@ public class AppointmentAuditDaoImplIT extends BaseIntegrationTest {
         AppointmentAudit priorStatusChangeEvent = appointmentAuditDao.getPriorStatusChangeEvent(appointment);
         assertNull(priorStatusChangeEvent);
     }
+
+    @Test
+    public void shouldScrollHistoryOfAnAppointmentInTheOrderItWasRecorded() {
+        AppointmentAuditSearchRequest appointmentAuditSearchRequest = new AppointmentAuditSearchRequest();
+        appointmentAuditSearchRequest.setAppointmentUuid("75504r42-3ca8-11e3-bf2b-0800271c12222");
+
+        List<AppointmentAuditProjection> history = scrollAppointmentHistory(appointmentAuditSearchRequest);
+
+        assertEquals(Arrays.asList("26104r42-3ca8-11e3-bf2b-0800271c13233", "26104r42-3ca8-11e3-bf2b-0800271c13234",
+                "26104r42-3ca8-11e3-bf2b-0800271c13235"),
+                history.stream().map(AppointmentAuditProjection::getUuid).collect(Collectors.toList()));
+        assertEquals(AppointmentStatus.CheckedIn, history.get(0).getStatus());
+        assertEquals("75504r42-3ca8-11e3-bf2b-0800271c12222", history.get(0).getAppointmentUuid());
+        assertNotNull(history.get(0).getDateCreated());
+    }
+
+    @Test
+    public void shouldScrollHistoryOfAPatientFilteredByStatusAndActor() {
+        Appointment appointment = appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c12222");
+        String actorUuid = Context.getUserService().getUser(1).getUuid();
+        AppointmentAuditSearchRequest appointmentAuditSearchRequest = new AppointmentAuditSearchRequest();
+        appointmentAuditSearchRequest.setPatientUuid(appointment.getPatient().getUuid());
+        appointmentAuditSearchRequest.setStatuses(Arrays.asList(AppointmentStatus.Scheduled, AppointmentStatus.CheckedIn));
+        appointmentAuditSearchRequest.setActorUuid(actorUuid);
+
+        List<AppointmentAuditProjection> history = scrollAppointmentHistory(appointmentAuditSearchRequest);
+
+        assertEquals(3, history.size());
+        for (AppointmentAuditProjection appointmentAudit : history) {
+            assertEquals(appointment.getPatient().getUuid(), appointmentAudit.getPatientUuid());
+            assertEquals(actorUuid, appointmentAudit.getCreatorUuid());
+            assertNotEquals(AppointmentStatus.Completed, appointmentAudit.getStatus());
+        }
+
+        appointmentAuditSearchRequest.setActorUuid("unknown-user-uuid");
+        assertTrue(scrollAppointmentHistory(appointmentAuditSearchRequest).isEmpty());
+    }
+
+    @Test
+    public void shouldScrollHistoryRecordedInADateRange() throws ParseException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        AppointmentAuditSearchRequest appointmentAuditSearchRequest = new AppointmentAuditSearchRequest();
+        appointmentAuditSearchRequest.setStartDate(dateFormat.parse("2108-08-10 00:00:00"));
+        appointmentAuditSearchRequest.setEndDate(dateFormat.parse("2108-08-11 00:00:00"));
+
+        assertEquals(4, scrollAppointmentHistory(appointmentAuditSearchRequest).size());
+
+        appointmentAuditSearchRequest.setEndDate(dateFormat.parse("2108-08-10 15:57:09"));
+        assertTrue(scrollAppointmentHistory(appointmentAuditSearchRequest).isEmpty());
+    }
+
+    @Test
+    public void shouldStreamHistoryRowByRowOnMySQLAndInBatchesElsewhere() {
+        assertEquals(Integer.MIN_VALUE, AppointmentAuditDaoImpl.getHistoryFetchSize(new MySQL5InnoDBDialect()));
+        assertEquals(1000, AppointmentAuditDaoImpl.getHistoryFetchSize(new H2Dialect()));
+    }
+
+    private List<AppointmentAuditProjection> scrollAppointmentHistory(AppointmentAuditSearchRequest appointmentAuditSearchRequest) {
+        List<AppointmentAuditProjection> history = new ArrayList<>();
+        appointmentAuditDao.scrollAppointmentHistory(appointmentAuditSearchRequest, history::add);
+        return history;
+    }
 }
@@ -1,17 +1,26 @@
 package org.openmrs.module.appointments.dao.impl;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.stat.Statistics;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.BaseIntegrationTest;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.dao.AppointmentServiceDao;
 import org.openmrs.module.appointments.model.*;
+import org.openmrs.module.appointments.util.AppointmentSearchCursor;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -23,6 +32,9 @@ public class AppointmentDaoImplIT extends BaseIntegrationTest {
     @Autowired
     AppointmentServiceDao appointmentServiceDao;
 
+    @Autowired
+    SessionFactory sessionFactory;
+
     @Before
     public void setUp() throws Exception {
         executeDataSet("appointmentTestData.xml");
@@ -34,6 +46,84 @@ public class AppointmentDaoImplIT extends BaseIntegrationTest {
         assertEquals(11, allAppointmentServices.size());
     }
 
+    @Test
+    public void shouldGetSlotsOfUpcomingAppointmentsOfAProvider() throws Exception {
+        List<AppointmentSlot> slots = appointmentDao.getAppointmentSlotsForProvider(2220, DateUtil.getStartOfDay());
+
+        assertEquals(1, slots.size());
+        assertEquals("75504r42-3ca8-11e3-bf2b-0800271c1111", slots.get(0).getAppointmentUuid());
+        assertEquals(60 * 60 * 1000L, slots.get(0).getEndMillis() - slots.get(0).getStartMillis());
+    }
+
+    @Test
+    public void shouldCountBookedAppointmentsOfAServiceByStartTime() throws Exception {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        List<AppointmentStatus> statuses = Arrays.asList(AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled);
+
+        List<AppointmentServiceOccupancy> occupancy = appointmentDao.getAppointmentServiceOccupancy(1,
+                dateFormat.parse("2108-08-15 00:00:00"), dateFormat.parse("2108-08-16 00:00:00"), statuses,
+                Collections.singletonList("75504r42-3ca8-11e3-bf2b-0800271c1111"));
+
+        assertEquals(1, occupancy.size());
+        assertEquals(dateFormat.parse("2108-08-15 13:00:00"), occupancy.get(0).getStartDateTime());
+        assertEquals(1, occupancy.get(0).getCount().intValue());
+        assertEquals(2, appointmentDao.getAppointmentServiceOccupancy(1, dateFormat.parse("2108-08-15 00:00:00"),
+                dateFormat.parse("2108-08-16 00:00:00"), statuses, Collections.emptyList()).size());
+    }
+
+    @Test
+    public void shouldUpdateStatusOfAllGivenAppointments() throws Exception {
+        List<Appointment> appointments = appointmentDao.getAppointmentsByUuids(Arrays.asList(
+                "75504r42-3ca8-11e3-bf2b-0800271c1111", "75504r42-3ca8-11e3-bf2b-0800271c12222"));
+        assertEquals(2, appointments.size());
+        Date dateChanged = new Date();
+
+        appointmentDao.updateStatus(appointments, AppointmentStatus.Cancelled, Context.getAuthenticatedUser(), dateChanged);
+
+        for (Appointment appointment : appointments) {
+            assertEquals(AppointmentStatus.Cancelled, appointment.getStatus());
+            assertEquals(dateChanged, appointment.getDateChanged());
+        }
+        Context.flushSession();
+        Context.clearSession();
+        for (Appointment appointment : appointmentDao.getAppointmentsByUuids(Arrays.asList(
+                "75504r42-3ca8-11e3-bf2b-0800271c1111", "75504r42-3ca8-11e3-bf2b-0800271c12222"))) {
+            assertEquals(AppointmentStatus.Cancelled, appointment.getStatus());
+            assertEquals(Integer.valueOf(1), appointment.getVersion());
+        }
+    }
+
+    @Test(expected = StaleStateException.class)
+    public void shouldNotUpdateStatusOfAppointmentsChangedSinceTheyWereRead() throws Exception {
+        List<Appointment> appointments = appointmentDao.getAppointmentsByUuids(Arrays.asList(
+                "75504r42-3ca8-11e3-bf2b-0800271c1111", "75504r42-3ca8-11e3-bf2b-0800271c12222"));
+        changeInAnotherTransaction("75504r42-3ca8-11e3-bf2b-0800271c12222");
+
+        appointmentDao.updateStatus(appointments, AppointmentStatus.Cancelled, Context.getAuthenticatedUser(), new Date());
+    }
+
+    @Test
+    public void shouldIncrementTheVersionOfAnUpdatedAppointment() throws Exception {
+        Appointment appointment = appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c1111");
+        Integer version = appointment.getVersion();
+
+        appointment.setComments("Moved to the afternoon");
+        appointmentDao.save(appointment);
+        sessionFactory.getCurrentSession().flush();
+
+        assertEquals(Integer.valueOf(version + 1), appointment.getVersion());
+    }
+
+    @Test(expected = StaleStateException.class)
+    public void shouldNotOverwriteAnAppointmentChangedSinceItWasRead() throws Exception {
+        Appointment appointment = appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c1111");
+        changeInAnotherTransaction("75504r42-3ca8-11e3-bf2b-0800271c1111");
+
+        appointment.setStatus(AppointmentStatus.CheckedIn);
+        appointmentDao.save(appointment);
+        sessionFactory.getCurrentSession().flush();
+    }
+
     @Test
     public void shouldGetAllNonVoidedAppointmentsForDate() throws Exception {
         Date forDate = DateUtil.convertToDate("2108-08-15T00:00:00.0Z", DateUtil.DateFormatType.UTC);
@@ -107,6 +197,111 @@ public class AppointmentDaoImplIT extends BaseIntegrationTest {
         assertEquals(AppointmentStatus.Scheduled, appointment1.getStatus());
     }
 
+    @Test
+    public void shouldCountAppointmentsForServiceInADateRange() throws ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Date startDate = simpleDateFormat.parse("2017-08-08");
+        Date endDate = simpleDateFormat.parse("2017-08-09");
+        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDao.getAppointmentServiceByUuid("c36006e5-9fbb-4f20-866b-0ece245615a6");
+
+        Integer count = appointmentDao.getAppointmentsCountForService(appointmentServiceDefinition, startDate, endDate, null);
+
+        assertEquals(2, count.intValue());
+    }
+
+    @Test
+    public void shouldCountAppointmentsForServiceFilteredByStatus() throws ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Date startDate = simpleDateFormat.parse("2017-08-08");
+        Date endDate = simpleDateFormat.parse("2017-08-09");
+        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDao.getAppointmentServiceByUuid("c36006e5-9fbb-4f20-866b-0ece245615a6");
+
+        Integer count = appointmentDao.getAppointmentsCountForService(appointmentServiceDefinition, startDate, endDate,
+                Collections.singletonList(AppointmentStatus.Scheduled));
+
+        assertEquals(1, count.intValue());
+    }
+
+    @Test
+    public void shouldCountAppointmentsForMultipleServiceWindowsInOneCall() throws ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDao.getAppointmentServiceByUuid("c36006e5-9fbb-4f20-866b-0ece245615a6");
+        List<AppointmentServiceLoadWindow> loadWindows = Arrays.asList(
+                new AppointmentServiceLoadWindow(appointmentServiceDefinition, simpleDateFormat.parse("2017-08-08"), simpleDateFormat.parse("2017-08-09")),
+                new AppointmentServiceLoadWindow(appointmentServiceDefinition, simpleDateFormat.parse("2108-08-15"), simpleDateFormat.parse("2108-08-16")),
+                new AppointmentServiceLoadWindow(appointmentServiceDefinition, simpleDateFormat.parse("2050-01-01"), simpleDateFormat.parse("2050-01-02")));
+
+        List<Integer> counts = appointmentDao.getAppointmentsCountForServices(loadWindows,
+                Arrays.asList(AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled));
+
+        assertEquals(Arrays.asList(2, 2, 0), counts);
+    }
+
+    @Test
+    public void shouldCountOnlyTheAppointmentsOfTheServiceOfEachWindow() throws ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        AppointmentServiceDefinition service = appointmentServiceDao.getAppointmentServiceByUuid("c36006e5-9fbb-4f20-866b-0ece245615a6");
+        AppointmentServiceDefinition otherService = appointmentServiceDao.getAppointmentServiceByUuid("c36006d4-9fbb-4f20-866b-0ece245615b1");
+        List<AppointmentServiceLoadWindow> loadWindows = Arrays.asList(
+                new AppointmentServiceLoadWindow(otherService, simpleDateFormat.parse("2017-08-08"), simpleDateFormat.parse("2017-08-09")),
+                new AppointmentServiceLoadWindow(service, simpleDateFormat.parse("2017-08-08"), simpleDateFormat.parse("2017-08-09")));
+
+        List<Integer> counts = appointmentDao.getAppointmentsCountForServices(loadWindows,
+                Arrays.asList(AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled));
+
+        assertEquals(Arrays.asList(0, 2), counts);
+    }
+
+    @Test
+    public void shouldReturnEmptyCountsWhenNoServiceWindowsAreGiven() {
+        List<Integer> counts = appointmentDao.getAppointmentsCountForServices(new ArrayList<>(), null);
+
+        assertTrue(counts.isEmpty());
+    }
+
+    @Test
+    public void shouldGetAppointmentCountsGroupedByServiceDateAndStatus() throws Exception {
+        Date startDate = DateUtil.convertToDate("2017-08-08T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        Date endDate = DateUtil.convertToDate("2017-08-09T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        List<AppointmentStatus> appointmentStatuses = Arrays.asList(AppointmentStatus.Scheduled, AppointmentStatus.Completed,
+                AppointmentStatus.Missed);
+
+        List<AppointmentServiceDailyCount> dailyCounts = appointmentDao.getAppointmentServiceDailyCounts(startDate, endDate, appointmentStatuses);
+
+        assertEquals(2, dailyCounts.size());
+        Date appointmentDate = new SimpleDateFormat("yyyy-MM-dd").parse("2017-08-08");
+        for (AppointmentServiceDailyCount dailyCount : dailyCounts) {
+            assertEquals(1, dailyCount.getAppointmentServiceId(), 0);
+            assertEquals(appointmentDate, dailyCount.getAppointmentDate());
+            assertEquals(1, dailyCount.getCount(), 0);
+        }
+        assertTrue(dailyCounts.stream().anyMatch(dailyCount -> dailyCount.getStatus() == AppointmentStatus.Scheduled));
+        assertTrue(dailyCounts.stream().anyMatch(dailyCount -> dailyCount.getStatus() == AppointmentStatus.Completed));
+    }
+
+    @Test
+    public void shouldGetAppointmentsWithStatusEndingBeforeADateInChunksOrderedByEndDateTime() throws Exception {
+        List<AppointmentStatus> appointmentStatuses = Collections.singletonList(AppointmentStatus.Scheduled);
+        Date toEndDate = DateUtil.convertToDate("2108-08-16T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+
+        List<Appointment> allAppointments = appointmentDao.getAppointmentsWithStatusEndingBefore(appointmentStatuses, toEndDate, null, 100);
+        List<Appointment> firstChunk = appointmentDao.getAppointmentsWithStatusEndingBefore(appointmentStatuses, toEndDate, null, 2);
+        List<Appointment> secondChunk = appointmentDao.getAppointmentsWithStatusEndingBefore(appointmentStatuses, toEndDate,
+                firstChunk.get(firstChunk.size() - 1), 100);
+
+        assertTrue(allAppointments.size() > 2);
+        for (int i = 0; i < allAppointments.size(); i++) {
+            assertEquals(AppointmentStatus.Scheduled, allAppointments.get(i).getStatus());
+            assertFalse(allAppointments.get(i).getVoided());
+            assertTrue(allAppointments.get(i).getEndDateTime().before(toEndDate));
+            if (i > 0) {
+                assertFalse(allAppointments.get(i).getEndDateTime().before(allAppointments.get(i - 1).getEndDateTime()));
+            }
+        }
+        assertEquals(allAppointments.subList(0, 2), firstChunk);
+        assertEquals(allAppointments.subList(2, allAppointments.size()), secondChunk);
+    }
+
     @Test
     public void shouldGetAppointmentByUuid() throws Exception {
         String appointmentUuid="75504r42-3ca8-11e3-bf2b-0800271c1b77";
@@ -197,6 +392,29 @@ public class AppointmentDaoImplIT extends BaseIntegrationTest {
         assertEquals(2, appointments.size());
     }
 
+    @Test
+    public void shouldWalkAllAppointmentsBetweenGivenDatesInPages() throws ParseException {
+        Date startDate = DateUtil.convertToDate("2008-08-10T18:30:00.0Z", DateUtil.DateFormatType.UTC);
+        Date endDate = DateUtil.convertToDate("2120-08-16T18:29:59.0Z", DateUtil.DateFormatType.UTC);
+        AppointmentSearchRequest appointmentSearchRequest = new AppointmentSearchRequest();
+        appointmentSearchRequest.setStartDate(startDate);
+        appointmentSearchRequest.setEndDate(endDate);
+        List<Appointment> allAppointments = appointmentDao.search(appointmentSearchRequest);
+        appointmentSearchRequest.setLimit(3);
+
+        List<Appointment> pagedAppointments = new ArrayList<>();
+        String continuationToken;
+        do {
+            List<Appointment> page = appointmentDao.search(appointmentSearchRequest);
+            assertTrue(page.size() <= 3);
+            pagedAppointments.addAll(page);
+            continuationToken = AppointmentSearchCursor.getNextPageToken(appointmentSearchRequest, page);
+            appointmentSearchRequest.setContinuationToken(continuationToken);
+        } while (continuationToken != null);
+
+        assertEquals(allAppointments, pagedAppointments);
+    }
+
     @Test
     public void shouldReturnAllAppointmentsBetweenGivenDatesInSortedOrder() throws ParseException {
         AppointmentSearchRequest appointmentSearchRequest = new AppointmentSearchRequest();
@@ -260,4 +478,147 @@ public class AppointmentDaoImplIT extends BaseIntegrationTest {
         assertNotNull(appointments);
         assertEquals(0, appointments.size());
     }
+
+    @Test
+    public void shouldProjectTheSameAppointmentsAsTheEntityQueryForADate() throws Exception {
+        Date forDate = DateUtil.convertToDate("2108-08-15T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        Map<String, Appointment> appointments = new HashMap<>();
+        for (Appointment appointment : appointmentDao.getAllAppointments(forDate)) {
+            boolean serviceVoided = appointment.getService() != null && appointment.getService().getVoided();
+            boolean serviceTypeVoided = appointment.getServiceType() != null && appointment.getServiceType().getVoided();
+            if (!serviceVoided && !serviceTypeVoided) {
+                appointments.put(appointment.getUuid(), appointment);
+            }
+        }
+
+        List<AppointmentProjection> projections = appointmentDao.getAllAppointmentProjections(forDate);
+
+        assertEquals(appointments.size(), projections.size());
+        for (AppointmentProjection projection : projections) {
+            Appointment appointment = appointments.get(projection.getUuid());
+            assertNotNull(appointment);
+            assertEquals(appointment.getAppointmentId(), projection.getAppointmentId());
+            assertEquals(appointment.getPatient().getUuid(), projection.getPatientUuid());
+            assertEquals(appointment.getPatient().getPersonName() == null ? null
+                    : appointment.getPatient().getPersonName().getFullName(), projection.getPatientName());
+            assertEquals(appointment.getPatient().getPatientIdentifier() == null ? null
+                    : appointment.getPatient().getPatientIdentifier().getIdentifier(), projection.getPatientIdentifier());
+            assertEquals(appointment.hasPatientAttribute("email"), projection.getPatientEmailDefined());
+            assertEquals(appointment.getService(), projection.getService());
+            assertEquals(appointment.getStartDateTime(), projection.getStartDateTime());
+            assertEquals(appointment.getEndDateTime(), projection.getEndDateTime());
+            assertEquals(appointment.getStatus(), projection.getStatus());
+            assertEquals(appointment.getAppointmentKind(), projection.getAppointmentKind());
+            assertEquals(appointment.isRecurring(), projection.isRecurring());
+            assertEquals(appointment.getProviders().size(), projection.getProviders().size());
+        }
+    }
+
+    @Test
+    public void shouldProjectAPageOfSearchedAppointmentsInOrder() throws Exception {
+        AppointmentSearchRequest appointmentSearchRequest = new AppointmentSearchRequest();
+        appointmentSearchRequest.setStartDate(DateUtil.convertToDate("2008-08-10T18:30:00.0Z", DateUtil.DateFormatType.UTC));
+        appointmentSearchRequest.setEndDate(DateUtil.convertToDate("2120-08-16T18:29:59.0Z", DateUtil.DateFormatType.UTC));
+        appointmentSearchRequest.setLimit(3);
+
+        List<Appointment> appointments = appointmentDao.search(appointmentSearchRequest);
+        List<AppointmentProjection> projections = appointmentDao.searchProjections(appointmentSearchRequest);
+
+        assertEquals(appointments.stream().map(Appointment::getUuid).collect(Collectors.toList()),
+                projections.stream().map(AppointmentProjection::getUuid).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldProjectSearchedAppointmentsOfVoidedServiceTypesLikeTheEntitySearch() throws Exception {
+        AppointmentSearchRequest appointmentSearchRequest = new AppointmentSearchRequest();
+        appointmentSearchRequest.setStartDate(DateUtil.convertToDate("2017-08-08T00:00:00.0Z", DateUtil.DateFormatType.UTC));
+        appointmentSearchRequest.setEndDate(DateUtil.convertToDate("2017-08-09T00:00:00.0Z", DateUtil.DateFormatType.UTC));
+
+        List<Appointment> appointments = appointmentDao.search(appointmentSearchRequest);
+        List<AppointmentProjection> projections = appointmentDao.searchProjections(appointmentSearchRequest);
+
+        assertEquals(appointments.stream().map(Appointment::getUuid).collect(Collectors.toList()),
+                projections.stream().map(AppointmentProjection::getUuid).collect(Collectors.toList()));
+        assertTrue(projections.stream().anyMatch(projection -> "678906e5-9fbb-4f20-866b-0ece24564878".equals(projection.getServiceTypeUuid())));
+    }
+
+    @Test
+    public void shouldLoadEverythingAnAppointmentResponseReadsInAConstantNumberOfStatements() throws Exception {
+        Date forDate = DateUtil.convertToDate("2108-09-01T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        createAppointmentsOn(forDate, 500);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<Appointment> appointments = appointmentDao.getAllAppointments(forDate);
+        for (Appointment appointment : appointments) {
+            readResponseFields(appointment);
+        }
+
+        long statementCount = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertEquals(500, appointments.size());
+        assertTrue("Expected a constant number of statements but was " + statementCount, statementCount <= 8);
+    }
+
+    private void createAppointmentsOn(Date forDate, int count) {
+        Appointment template = appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c1111");
+        List<Patient> patients = new ArrayList<>(new LinkedHashSet<>(appointmentDao.getAllAppointments(null).stream()
+                .map(Appointment::getPatient).collect(Collectors.toList())));
+        Provider provider = Context.getProviderService().getProvider(2220);
+        for (int i = 0; i < count; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patients.get(i % patients.size()));
+            appointment.setService(template.getService());
+            appointment.setServiceType(template.getServiceType());
+            appointment.setLocation(template.getLocation());
+            appointment.setStartDateTime(new Date(forDate.getTime() + TimeUnit.MINUTES.toMillis(i)));
+            appointment.setEndDateTime(new Date(forDate.getTime() + TimeUnit.MINUTES.toMillis(i + 10)));
+            appointment.setAppointmentKind(AppointmentKind.Scheduled);
+            appointment.setStatus(AppointmentStatus.Scheduled);
+            AppointmentProvider appointmentProvider = new AppointmentProvider();
+            appointmentProvider.setAppointment(appointment);
+            appointmentProvider.setProvider(provider);
+            appointmentProvider.setResponse(AppointmentProviderResponse.ACCEPTED);
+            appointment.setProviders(new HashSet<>(Collections.singletonList(appointmentProvider)));
+            appointmentDao.save(appointment);
+        }
+        Context.flushSession();
+        Context.clearSession();
+    }
+
+    private void readResponseFields(Appointment appointment) {
+        Patient patient = appointment.getPatient();
+        if (patient.getPersonName() != null) {
+            patient.getPersonName().getFullName();
+        }
+        if (patient.getPatientIdentifier() != null) {
+            patient.getPatientIdentifier().getIdentifier();
+        }
+        appointment.hasPatientAttribute("email");
+        AppointmentServiceDefinition service = appointment.getService();
+        service.getName();
+        if (service.getSpeciality() != null) {
+            service.getSpeciality().getName();
+        }
+        if (service.getLocation() != null) {
+            service.getLocation().getName();
+        }
+        if (appointment.getServiceType() != null) {
+            appointment.getServiceType().getName();
+        }
+        if (appointment.getLocation() != null) {
+            appointment.getLocation().getName();
+        }
+        for (AppointmentProvider appointmentProvider : appointment.getProviders()) {
+            appointmentProvider.getProvider().getName();
+        }
+    }
+
+    private void changeInAnotherTransaction(String appointmentUuid) {
+        sessionFactory.getCurrentSession()
+                .createSQLQuery("update patient_appointment set version = version + 1 where uuid = :uuid")
+                .setString("uuid", appointmentUuid)
+                .executeUpdate();
+    }
 }
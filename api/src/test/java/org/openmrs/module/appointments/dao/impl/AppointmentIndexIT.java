@@ -0,0 +1,110 @@
+package org.openmrs.module.appointments.dao.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.appointments.BaseIntegrationTest;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AppointmentIndexIT extends BaseIntegrationTest {
+
+    private static final List<String> INDEX_CHANGE_SET_IDS = Arrays.asList(
+            "create-index-patient_appointment_start_end_idx-202610171200",
+            "create-index-patient_appointment_service_start_status_idx-202610171201",
+            "create-index-patient_appointment_patient_start_idx-202610171202",
+            "create-index-patient_appointment_status_start_idx-202610171203",
+            "create-index-patient_appointment_audit_appointment_date_idx-202610171204");
+
+    @Before
+    public void setUp() throws Exception {
+        executeDataSet("appointmentTestData.xml");
+        createIndexesFromChangeLog();
+    }
+
+    @Test
+    public void shouldUseServiceIndexForAppointmentsOfAServiceInADateRange() throws Exception {
+        assertPlanUsesIndex("patient_appointment_service_start_status_idx",
+                "SELECT * FROM patient_appointment WHERE appointment_service_id = 1" +
+                        " AND start_date_time >= TIMESTAMP '2017-08-08 00:00:00' AND start_date_time <= TIMESTAMP '2017-08-09 00:00:00'" +
+                        " AND voided = FALSE");
+    }
+
+    @Test
+    public void shouldUsePatientIndexForAppointmentsOfAPatientFromADate() throws Exception {
+        assertPlanUsesIndex("patient_appointment_patient_start_idx",
+                "SELECT * FROM patient_appointment WHERE patient_id = 1" +
+                        " AND start_date_time >= TIMESTAMP '2017-08-08 00:00:00' AND voided = FALSE");
+    }
+
+    @Test
+    public void shouldUseStatusIndexForAppointmentsOfAStatusBeforeADate() throws Exception {
+        assertPlanUsesIndex("patient_appointment_status_start_idx",
+                "SELECT * FROM patient_appointment WHERE status = 'Scheduled'" +
+                        " AND start_date_time <= TIMESTAMP '2017-08-09 00:00:00' AND voided = FALSE");
+    }
+
+    @Test
+    public void shouldUseDateIndexForAppointmentsInADateRange() throws Exception {
+        assertPlanUsesIndex("patient_appointment_start_end_idx",
+                "SELECT * FROM patient_appointment WHERE start_date_time >= TIMESTAMP '2108-08-15 00:00:00'" +
+                        " AND end_date_time < TIMESTAMP '2108-08-16 00:00:00' AND voided = FALSE");
+    }
+
+    @Test
+    public void shouldUseAuditIndexForLatestAuditEventOfAnAppointment() throws Exception {
+        assertPlanUsesIndex("patient_appointment_audit_appointment_date_idx",
+                "SELECT * FROM patient_appointment_audit WHERE appointment_id = 2 AND status <> 'Scheduled'" +
+                        " ORDER BY date_created DESC LIMIT 1");
+    }
+
+    private void assertPlanUsesIndex(String indexName, String query) throws Exception {
+        String plan;
+        try (Statement statement = getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN " + query)) {
+            resultSet.next();
+            plan = resultSet.getString(1);
+        }
+        assertTrue("Expected plan to use " + indexName + " but was: " + plan,
+                plan.toUpperCase().contains(indexName.toUpperCase()));
+    }
+
+    private void createIndexesFromChangeLog() throws Exception {
+        List<String> createIndexStatements = new ArrayList<>();
+        try (InputStream changeLog = getClass().getClassLoader().getResourceAsStream("liquibase.xml")) {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(changeLog);
+            NodeList changeSets = document.getElementsByTagName("changeSet");
+            for (int i = 0; i < changeSets.getLength(); i++) {
+                Element changeSet = (Element) changeSets.item(i);
+                if (!INDEX_CHANGE_SET_IDS.contains(changeSet.getAttribute("id"))) {
+                    continue;
+                }
+                Element createIndex = (Element) changeSet.getElementsByTagName("createIndex").item(0);
+                NodeList columns = createIndex.getElementsByTagName("column");
+                List<String> columnNames = new ArrayList<>();
+                for (int j = 0; j < columns.getLength(); j++) {
+                    columnNames.add(((Element) columns.item(j)).getAttribute("name"));
+                }
+                createIndexStatements.add("CREATE INDEX IF NOT EXISTS " + createIndex.getAttribute("indexName") +
+                        " ON " + createIndex.getAttribute("tableName") + " (" + String.join(", ", columnNames) + ")");
+            }
+        }
+        assertEquals(INDEX_CHANGE_SET_IDS.size(), createIndexStatements.size());
+        try (Statement statement = getConnection().createStatement()) {
+            for (String createIndexStatement : createIndexStatements) {
+                statement.execute(createIndexStatement);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.openmrs.module.appointments.dao.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.appointments.BaseIntegrationTest;
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.dao.AppointmentNotificationDao;
+import org.openmrs.module.appointments.model.AppointmentNotification;
+import org.openmrs.module.appointments.model.AppointmentNotificationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppointmentNotificationDaoImplIT extends BaseIntegrationTest {
+
+    @Autowired
+    AppointmentNotificationDao appointmentNotificationDao;
+
+    @Autowired
+    AppointmentDao appointmentDao;
+
+    @Before
+    public void setUp() throws Exception {
+        executeDataSet("appointmentTestData.xml");
+    }
+
+    @Test
+    public void shouldGetNotificationsDueOnDateInOrderOfNextAttempt() throws Exception {
+        Date now = new Date();
+        AppointmentNotification later = createNotification(new Date(now.getTime() - 1000));
+        AppointmentNotification earlier = createNotification(new Date(now.getTime() - 2000));
+        createNotification(new Date(now.getTime() + 60000));
+        AppointmentNotification completed = createNotification(new Date(now.getTime() - 3000));
+        completed.setStatus(AppointmentNotificationStatus.Completed);
+        appointmentNotificationDao.save(completed);
+
+        List<Integer> dueNotificationIds = appointmentNotificationDao.getDueNotificationIds(now, 10);
+
+        assertEquals(Arrays.asList(earlier.getId(), later.getId()), dueNotificationIds);
+        assertEquals(Collections.singletonList(earlier.getId()), appointmentNotificationDao.getDueNotificationIds(now, 1));
+    }
+
+    @Test
+    public void shouldClaimADueNotificationOnlyOnceUntilTheLeaseExpires() throws Exception {
+        Date now = new Date();
+        Date leaseExpiry = new Date(now.getTime() + 60000);
+        AppointmentNotification notification = createNotification(new Date(now.getTime() - 1000));
+
+        assertTrue(appointmentNotificationDao.claim(notification.getId(), now, leaseExpiry));
+        assertFalse(appointmentNotificationDao.claim(notification.getId(), now, leaseExpiry));
+        assertTrue(appointmentNotificationDao.getDueNotificationIds(now, 10).isEmpty());
+        assertTrue(appointmentNotificationDao.claim(notification.getId(), leaseExpiry, new Date(leaseExpiry.getTime() + 60000)));
+    }
+
+    private AppointmentNotification createNotification(Date nextAttemptDateTime) {
+        AppointmentNotification notification = new AppointmentNotification();
+        notification.setAppointment(appointmentDao.getAppointmentByUuid("75504r42-3ca8-11e3-bf2b-0800271c1111"));
+        notification.setMedium("EMAIL");
+        notification.setNextAttemptDateTime(nextAttemptDateTime);
+        appointmentNotificationDao.save(notification);
+        return notification;
+    }
+}
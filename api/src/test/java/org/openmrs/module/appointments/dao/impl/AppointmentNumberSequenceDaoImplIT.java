@@ -0,0 +1,27 @@
+package org.openmrs.module.appointments.dao.impl;
+
+import org.junit.Test;
+import org.openmrs.module.appointments.BaseIntegrationTest;
+import org.openmrs.module.appointments.dao.AppointmentNumberSequenceDao;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.Assert.assertEquals;
+
+public class AppointmentNumberSequenceDaoImplIT extends BaseIntegrationTest {
+
+    @Autowired
+    AppointmentNumberSequenceDao appointmentNumberSequenceDao;
+
+    @Test
+    public void shouldStartAMissingSequenceAtOne() {
+        assertEquals(1L, appointmentNumberSequenceDao.allocate("testSequence", 10));
+    }
+
+    @Test
+    public void shouldAllocateBlocksThatFollowEachOther() {
+        assertEquals(1L, appointmentNumberSequenceDao.allocate("testSequence", 10));
+        assertEquals(11L, appointmentNumberSequenceDao.allocate("testSequence", 10));
+        assertEquals(21L, appointmentNumberSequenceDao.allocate("testSequence", 5));
+        assertEquals(26L, appointmentNumberSequenceDao.allocate("testSequence", 1));
+    }
+}
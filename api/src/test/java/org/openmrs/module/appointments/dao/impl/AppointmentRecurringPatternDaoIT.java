@@ -2,19 +2,29 @@ package org.openmrs.module.appointments.dao.impl;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.Provider;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.BaseIntegrationTest;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.dao.AppointmentRecurringPatternDao;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.openmrs.module.appointments.service.impl.RecurringAppointmentType.DAY;
 
 public class AppointmentRecurringPatternDaoIT extends BaseIntegrationTest {
@@ -59,4 +69,77 @@ public class AppointmentRecurringPatternDaoIT extends BaseIntegrationTest {
         assertNull(actualAppointmentRecurringPattern.getDaysOfWeek());
 
     }
+
+    @Test
+    public void shouldGetOccurrencesOfAPatternFromADateOnInTheGivenStatuses() {
+        Appointment pastOccurrence = appointmentDao.getAppointmentByUuid("91c62b6b-d7ef-49b4-9a8b-164b2aa55edf");
+        Appointment pendingOccurrence = appointmentDao.getAppointmentByUuid("638180c8-98f3-4fe4-b14a-9196da665bc6");
+        AppointmentRecurringPattern appointmentRecurringPattern = new AppointmentRecurringPattern();
+        appointmentRecurringPattern.setType(DAY);
+        appointmentRecurringPattern.setFrequency(2);
+        appointmentRecurringPattern.setPeriod(2);
+        appointmentRecurringPattern.setAppointments(new HashSet<>(Arrays.asList(pastOccurrence, pendingOccurrence)));
+        appointmentRecurringPatternDao.save(appointmentRecurringPattern);
+        Date fromDate = pendingOccurrence.getStartDateTime();
+
+        List<Appointment> scheduledOccurrences = appointmentRecurringPatternDao.getPendingOccurrences(
+                appointmentRecurringPattern, fromDate, Arrays.asList(AppointmentStatus.Requested, AppointmentStatus.Scheduled));
+        List<Appointment> checkedInOccurrences = appointmentRecurringPatternDao.getPendingOccurrences(
+                appointmentRecurringPattern, fromDate, Collections.singletonList(AppointmentStatus.CheckedIn));
+
+        assertEquals(Collections.singletonList(pendingOccurrence), scheduledOccurrences);
+        assertTrue(checkedInOccurrences.isEmpty());
+    }
+
+    @Test
+    public void shouldSaveNewSeriesOfDifferentLengthsWithTheirProvidersAndGeneratedIds() {
+        Appointment template = appointmentDao.getAppointmentByUuid("91c62b6b-d7ef-49b4-9a8b-164b2aa55edf");
+        Provider provider = Context.getProviderService().getProviderByUuid("2bdc3f7d-d911-401a-84e9-5494dda83e8e");
+
+        for (int occurrences : Arrays.asList(10, 100, 1000)) {
+            AppointmentRecurringPattern appointmentRecurringPattern = new AppointmentRecurringPattern();
+            appointmentRecurringPattern.setType(DAY);
+            appointmentRecurringPattern.setFrequency(occurrences);
+            appointmentRecurringPattern.setPeriod(1);
+            List<Appointment> appointments = new ArrayList<>();
+            for (int i = 0; i < occurrences; i++) {
+                appointments.add(getOccurrence(template, provider, appointmentRecurringPattern, i));
+            }
+            appointmentRecurringPattern.setAppointments(new HashSet<>(appointments));
+
+            appointmentRecurringPatternDao.saveNewSeries(appointmentRecurringPattern);
+
+            assertNotNull(appointmentRecurringPattern.getId());
+            for (Appointment appointment : appointments) {
+                assertNotNull(appointment.getAppointmentId());
+                assertNotNull(appointment.getProviders().iterator().next().getAppointmentProviderId());
+            }
+            Appointment lastOccurrence = appointmentDao.getAppointmentByUuid(appointments.get(occurrences - 1).getUuid());
+            assertEquals(appointments.get(occurrences - 1).getAppointmentId(), lastOccurrence.getAppointmentId());
+            assertEquals(appointmentRecurringPattern.getId(), lastOccurrence.getAppointmentRecurringPattern().getId());
+            assertEquals(provider, lastOccurrence.getProviders().iterator().next().getProvider());
+            assertEquals(occurrences, appointmentRecurringPatternDao.getPendingOccurrences(appointmentRecurringPattern,
+                    template.getStartDateTime(), Collections.singletonList(AppointmentStatus.Scheduled)).size());
+        }
+    }
+
+    private Appointment getOccurrence(Appointment template, Provider provider,
+                                      AppointmentRecurringPattern appointmentRecurringPattern, int day) {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentNumber("0000");
+        appointment.setPatient(template.getPatient());
+        appointment.setService(template.getService());
+        appointment.setLocation(template.getLocation());
+        appointment.setAppointmentKind(template.getAppointmentKind());
+        appointment.setStatus(AppointmentStatus.Scheduled);
+        appointment.setStartDateTime(new Date(template.getStartDateTime().getTime() + day * 86400000L));
+        appointment.setEndDateTime(new Date(template.getEndDateTime().getTime() + day * 86400000L));
+        appointment.setAppointmentRecurringPattern(appointmentRecurringPattern);
+        AppointmentProvider appointmentProvider = new AppointmentProvider();
+        appointmentProvider.setAppointment(appointment);
+        appointmentProvider.setProvider(provider);
+        appointmentProvider.setResponse(AppointmentProviderResponse.ACCEPTED);
+        appointment.setProviders(new HashSet<>(Collections.singletonList(appointmentProvider)));
+        return appointment;
+    }
 }
@@ -49,6 +49,17 @@ public class AppointmentServiceDaoImplIT extends BaseIntegrationTest {
         assertEquals(appointmentServiceUuid, appointmentServiceDefinition.getUuid());
     }
 
+    @Test
+    public void shouldReturnTheSameSessionInstanceForEveryReferenceToAService() throws Exception {
+        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDao.getAppointmentServiceByUuid("c36006e5-9fbb-4f20-866b-0ece245615a6");
+
+        AppointmentServiceDefinition reference = appointmentServiceDao.getAppointmentServiceReference(appointmentServiceDefinition.getAppointmentServiceId());
+
+        assertSame(reference, appointmentServiceDao.getAppointmentServiceReference(appointmentServiceDefinition.getAppointmentServiceId()));
+        assertNotSame(appointmentServiceDefinition, reference);
+        assertEquals("c36006e5-9fbb-4f20-866b-0ece245615a6", reference.getUuid());
+    }
+
     @Test
     public void shouldGetAppointmentServiceByUuidAndChangeTheStateOfObjectFromPersistedToDetachedUsingEvict() throws Exception {
         String appointmentServiceUuid = "c36006e5-9fbb-4f20-866b-0ece245615a6";
@@ -0,0 +1,113 @@
+package org.openmrs.module.appointments.helper;
+
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.Provider;
+import org.openmrs.api.APIException;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentAuditSnapshot;
+import org.openmrs.module.appointments.model.AppointmentKind;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AppointmentAuditSnapshotCodecTest {
+
+    @Test
+    public void shouldReadBackEveryFieldOfTheAppointment() {
+        Appointment appointment = new Appointment();
+        appointment.setService(new AppointmentServiceDefinition());
+        appointment.setProviders(new HashSet<>(Arrays.asList(appointmentProvider("b-provider", false),
+                appointmentProvider("a-provider", false), appointmentProvider("voided-provider", true))));
+        appointment.setLocation(new Location());
+        appointment.setStartDateTime(new Date(1534327200000L));
+        appointment.setEndDateTime(new Date(1534329000000L));
+        appointment.setAppointmentKind(AppointmentKind.WalkIn);
+        appointment.setComments("Bring reports\u001Ffrom last visit\n{\"not\": \"json\"}");
+
+        String notes = AppointmentAuditSnapshotCodec.write(appointment);
+        AppointmentAuditSnapshot snapshot = AppointmentAuditSnapshotCodec.read(notes);
+
+        assertEquals(AppointmentAuditSnapshotCodec.VERSION, notes.charAt(0));
+        assertEquals(appointment.getService().getUuid(), snapshot.getServiceUuid());
+        assertNull(snapshot.getServiceTypeUuid());
+        assertEquals(Arrays.asList("a-provider", "b-provider"), snapshot.getProviderUuids());
+        assertEquals(appointment.getLocation().getUuid(), snapshot.getLocationUuid());
+        assertEquals(appointment.getStartDateTime(), snapshot.getStartDateTime());
+        assertEquals(appointment.getEndDateTime(), snapshot.getEndDateTime());
+        assertEquals(AppointmentKind.WalkIn, snapshot.getAppointmentKind());
+        assertEquals(appointment.getComments(), snapshot.getAppointmentNotes());
+    }
+
+    @Test
+    public void shouldWriteShorterNotesThanTheJsonItReplaces() {
+        Appointment appointment = new Appointment();
+        appointment.setService(new AppointmentServiceDefinition());
+        appointment.setStartDateTime(new Date(1534327200000L));
+        appointment.setEndDateTime(new Date(1534329000000L));
+        appointment.setAppointmentKind(AppointmentKind.Scheduled);
+
+        String notes = AppointmentAuditSnapshotCodec.write(appointment);
+
+        assertTrue(notes.length() < 80);
+    }
+
+    @Test
+    public void shouldReadNotesWrittenAsJson() {
+        String notes = "{\"serviceTypeUuid\":\"672546e5-9fbb-4f20-866b-0ece24564578\",\"startDateTime\":\"2108-08-15T10:00:00Z\"," +
+                "\"locationUuid\":null,\"appointmentKind\":\"Scheduled\",\"providerUuid\":null," +
+                "\"endDateTime\":\"2108-08-15T10:30:00Z\",\"serviceUuid\":\"c36006d4-9fbb-4f20-866b-0ece245615c1\"," +
+                "\"appointmentNotes\":\"Some notes\"}";
+
+        AppointmentAuditSnapshot snapshot = AppointmentAuditSnapshotCodec.read(notes);
+
+        assertEquals("c36006d4-9fbb-4f20-866b-0ece245615c1", snapshot.getServiceUuid());
+        assertEquals("672546e5-9fbb-4f20-866b-0ece24564578", snapshot.getServiceTypeUuid());
+        assertEquals(Collections.emptyList(), snapshot.getProviderUuids());
+        assertNull(snapshot.getLocationUuid());
+        assertEquals(Date.from(Instant.parse("2108-08-15T10:00:00Z")), snapshot.getStartDateTime());
+        assertEquals(Date.from(Instant.parse("2108-08-15T10:30:00Z")), snapshot.getEndDateTime());
+        assertEquals(AppointmentKind.Scheduled, snapshot.getAppointmentKind());
+        assertEquals("Some notes", snapshot.getAppointmentNotes());
+    }
+
+    @Test
+    public void shouldReadTheProviderOfNotesWrittenAsJson() {
+        String notes = "{\"serviceUuid\":\"c36006d4-9fbb-4f20-866b-0ece245615c1\"," +
+                "\"providerUuid\":\"823fdcd7-3f10-11e4-adec-0800271c1b75\"}";
+
+        AppointmentAuditSnapshot snapshot = AppointmentAuditSnapshotCodec.read(notes);
+
+        assertEquals(Collections.singletonList("823fdcd7-3f10-11e4-adec-0800271c1b75"), snapshot.getProviderUuids());
+    }
+
+    @Test
+    public void shouldReadNothingFromNotesThatAreNotAnAppointment() {
+        assertNull(AppointmentAuditSnapshotCodec.read(null));
+        assertNull(AppointmentAuditSnapshotCodec.read("2108-08-15T10:00:00Z"));
+        assertNull(AppointmentAuditSnapshotCodec.read("Changed Provider Response to ACCEPTED for provider with UUID 1"));
+    }
+
+    @Test(expected = APIException.class)
+    public void shouldNotReadTruncatedNotes() {
+        AppointmentAuditSnapshotCodec.read(AppointmentAuditSnapshotCodec.VERSION + "c36006d4-9fbb-4f20-866b-0ece245615c1");
+    }
+
+    private AppointmentProvider appointmentProvider(String providerUuid, boolean voided) {
+        Provider provider = new Provider();
+        provider.setUuid(providerUuid);
+        AppointmentProvider appointmentProvider = new AppointmentProvider();
+        appointmentProvider.setProvider(provider);
+        appointmentProvider.setVoided(voided);
+        return appointmentProvider;
+    }
+}
@@ -0,0 +1,192 @@
+package org.openmrs.module.appointments.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Location;
+import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceType;
+import org.openmrs.module.appointments.model.ServiceWeeklyAvailability;
+import org.openmrs.module.appointments.model.Speciality;
+
+import java.time.DayOfWeek;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AppointmentServiceDefinitionCacheTest {
+
+    private AppointmentServiceDefinitionCache cache;
+
+    private AtomicLong now;
+
+    private AtomicInteger loads;
+
+    private AppointmentServiceDefinition appointmentServiceDefinition;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong(1000);
+        loads = new AtomicInteger();
+        cache = new AppointmentServiceDefinitionCache();
+        cache.setClock(now::get);
+        appointmentServiceDefinition = createAppointmentServiceDefinition("serviceUuid", "Cardiology OPD");
+    }
+
+    @Test
+    public void shouldLoadOnFirstLookupAndServeCopiesOnMissesAndHits() {
+        AppointmentServiceDefinition loaded = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        AppointmentServiceDefinition cached = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+
+        assertNotSame(appointmentServiceDefinition, loaded);
+        assertNotSame(appointmentServiceDefinition, cached);
+        assertNotSame(loaded, cached);
+        assertEquals(loaded.getClass(), cached.getClass());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(Integer.valueOf(1), cached.getAppointmentServiceId());
+        assertEquals("Cardiology OPD", cached.getName());
+        ServiceWeeklyAvailability availability = cached.getWeeklyAvailability().iterator().next();
+        assertEquals(Integer.valueOf(11), availability.getId());
+        assertSame(cached, availability.getService());
+        AppointmentServiceType serviceType = cached.getServiceTypes().iterator().next();
+        assertEquals(Integer.valueOf(21), serviceType.getId());
+        assertSame(cached, serviceType.getAppointmentServiceDefinition());
+    }
+
+    @Test
+    public void shouldNotLetChangesToReturnedDefinitionsLeakIntoTheCache() {
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        appointmentServiceDefinition.setName("Changed after load");
+        AppointmentServiceDefinition cached = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        cached.setName("Changed after hit");
+        cached.getLocation().setName("Changed after hit");
+
+        AppointmentServiceDefinition cachedAgain = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+
+        assertEquals("Cardiology OPD", cachedAgain.getName());
+        assertEquals("Room 1", cachedAgain.getLocation().getName());
+        assertEquals(1, cachedAgain.getWeeklyAvailability().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowChangingTheWeeklyAvailabilityOfASnapshot() {
+        AppointmentServiceDefinition cached = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+
+        cached.getWeeklyAvailability(true).clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowReplacingTheServiceTypesOfASnapshot() {
+        AppointmentServiceDefinition cached = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+
+        cached.setServiceTypes(Collections.emptySet());
+    }
+
+    @Test
+    public void shouldCopyLocationAndSpecialityInsteadOfSharingTheLoadedEntities() {
+        AppointmentServiceDefinition cached = cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+
+        assertNotSame(appointmentServiceDefinition.getLocation(), cached.getLocation());
+        assertEquals(Integer.valueOf(5), cached.getLocation().getLocationId());
+        assertEquals("locationUuid", cached.getLocation().getUuid());
+        assertEquals("Room 1", cached.getLocation().getName());
+        assertNotSame(appointmentServiceDefinition.getSpeciality(), cached.getSpeciality());
+        assertEquals("specialityUuid", cached.getSpeciality().getUuid());
+        assertEquals("Cardiology", cached.getSpeciality().getName());
+    }
+
+    @Test
+    public void shouldReloadEntriesOlderThanTimeToLive() {
+        cache.setTimeToLiveMillis(100);
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        now.addAndGet(99);
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        now.addAndGet(1);
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntriesBeyondMaxSize() {
+        cache.setMaxSize(2);
+        AppointmentServiceDefinition second = createAppointmentServiceDefinition("secondUuid", "Dental");
+        AppointmentServiceDefinition third = createAppointmentServiceDefinition("thirdUuid", "Ortho");
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        cache.getByUuid("secondUuid", loader(second));
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        cache.getByUuid("thirdUuid", loader(third));
+
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        cache.getByUuid("secondUuid", loader(second));
+
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldNotCacheMissingDefinitions() {
+        assertNull(cache.getByName("Unknown", loader(null)));
+        assertNull(cache.getByName("Unknown", loader(null)));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldInvalidateEntriesByUuidAndByPreviousName() {
+        cache.getByUuid("serviceUuid", loader(appointmentServiceDefinition));
+        cache.getByName("Cardiology OPD", loader(appointmentServiceDefinition));
+        AppointmentServiceDefinition renamed = createAppointmentServiceDefinition("serviceUuid", "Cardiology IPD");
+
+        cache.invalidate(renamed);
+
+        assertEquals(0, cache.size());
+        cache.getByName("Cardiology OPD", loader(null));
+        assertEquals(3, loads.get());
+    }
+
+    private Function<String, AppointmentServiceDefinition> loader(AppointmentServiceDefinition result) {
+        return key -> {
+            loads.incrementAndGet();
+            return result;
+        };
+    }
+
+    private AppointmentServiceDefinition createAppointmentServiceDefinition(String uuid, String name) {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        appointmentServiceDefinition.setAppointmentServiceId(1);
+        appointmentServiceDefinition.setUuid(uuid);
+        appointmentServiceDefinition.setName(name);
+        Location location = new Location(5);
+        location.setUuid("locationUuid");
+        location.setName("Room 1");
+        appointmentServiceDefinition.setLocation(location);
+        Speciality speciality = new Speciality();
+        speciality.setSpecialityId(7);
+        speciality.setUuid("specialityUuid");
+        speciality.setName("Cardiology");
+        appointmentServiceDefinition.setSpeciality(speciality);
+        ServiceWeeklyAvailability availability = new ServiceWeeklyAvailability();
+        availability.setId(11);
+        availability.setDayOfWeek(DayOfWeek.MONDAY);
+        availability.setService(appointmentServiceDefinition);
+        appointmentServiceDefinition.setWeeklyAvailability(Collections.singleton(availability));
+        AppointmentServiceType serviceType = new AppointmentServiceType();
+        serviceType.setId(21);
+        serviceType.setName("Consultation");
+        serviceType.setAppointmentServiceDefinition(appointmentServiceDefinition);
+        appointmentServiceDefinition.setServiceTypes(Collections.singleton(serviceType));
+        return appointmentServiceDefinition;
+    }
+}
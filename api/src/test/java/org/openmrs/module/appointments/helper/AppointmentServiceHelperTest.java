@@ -11,15 +11,16 @@ import org.openmrs.Patient;
 import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
+import org.openmrs.module.appointments.model.AppointmentAuditSnapshot;
 import org.openmrs.module.appointments.model.AppointmentKind;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.openmrs.module.appointments.numbering.AppointmentNumberGenerator;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.validator.AppointmentStatusChangeValidator;
 import org.openmrs.module.appointments.validator.AppointmentValidator;
 
-import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -27,12 +28,14 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class AppointmentServiceHelperTest {
@@ -49,6 +52,9 @@ public class AppointmentServiceHelperTest {
     @Mock
     private AppointmentStatusChangeValidator appointmentStatusChangeValidator;
 
+    @Mock
+    private AppointmentNumberGenerator appointmentNumberGenerator;
+
     @Test
     public void shouldRunDefaultAppointmentValidatorsOnSave(){
         Appointment appointment = new Appointment();
@@ -85,10 +91,11 @@ public class AppointmentServiceHelperTest {
     @Test
     public void shouldAssignAppointmentNumberIfNumberIsNull() {
         Appointment appointment = new Appointment();
+        when(appointmentNumberGenerator.generateAppointmentNumber(appointment)).thenReturn("000042");
 
         appointmentServiceHelper.checkAndAssignAppointmentNumber(appointment);
 
-        assertEquals("0000", appointment.getAppointmentNumber());
+        assertEquals("000042", appointment.getAppointmentNumber());
     }
 
     @Test
@@ -99,6 +106,7 @@ public class AppointmentServiceHelperTest {
         appointmentServiceHelper.checkAndAssignAppointmentNumber(appointment);
 
         assertEquals("1234", appointment.getAppointmentNumber());
+        verify(appointmentNumberGenerator, never()).generateAppointmentNumber(any(Appointment.class));
     }
 
     @Test
@@ -116,7 +124,7 @@ public class AppointmentServiceHelperTest {
     }
 
     @Test
-    public void shouldGetJsonStringOfAppointment() throws ParseException, IOException {
+    public void shouldReadBackTheAuditNotesOfAnAppointment() throws ParseException {
         Appointment appointment = new Appointment();
         Patient patient = new Patient();
         appointment.setPatient(patient);
@@ -130,12 +138,18 @@ public class AppointmentServiceHelperTest {
         appointment.setEndDateTime(endDateTime);
         appointment.setAppointmentKind(AppointmentKind.Scheduled);
 
-        String jsonString = appointmentServiceHelper.getAppointmentAsJsonString(appointment);
-        String notes = "{\"serviceTypeUuid\":\""+ serviceType.getUuid() +"\",\"startDateTime\":\""+
-                startDateTime.toInstant().toString() +"\",\"locationUuid\":null,\"appointmentKind\":\"Scheduled\"," +
-                "\"providerUuid\":null,\"endDateTime\":\""+ endDateTime.toInstant().toString()
-                +"\",\"serviceUuid\":\""+ service.getUuid() +"\",\"appointmentNotes\":null}";
-        assertEquals(notes, jsonString);
+        AppointmentAudit appointmentAudit = new AppointmentAudit();
+        appointmentAudit.setNotes(appointmentServiceHelper.getAppointmentAuditNotes(appointment));
+        AppointmentAuditSnapshot snapshot = appointmentServiceHelper.getAppointmentAuditSnapshot(appointmentAudit);
+
+        assertEquals(service.getUuid(), snapshot.getServiceUuid());
+        assertEquals(serviceType.getUuid(), snapshot.getServiceTypeUuid());
+        assertEquals(Collections.emptyList(), snapshot.getProviderUuids());
+        assertNull(snapshot.getLocationUuid());
+        assertEquals(startDateTime, snapshot.getStartDateTime());
+        assertEquals(endDateTime, snapshot.getEndDateTime());
+        assertEquals(AppointmentKind.Scheduled, snapshot.getAppointmentKind());
+        assertNull(snapshot.getAppointmentNotes());
     }
 
     @Test
@@ -0,0 +1,100 @@
+package org.openmrs.module.appointments.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@PrepareForTest(Context.class)
+@RunWith(PowerMockRunner.class)
+public class GlobalPropertySnapshotTest {
+
+    private static final String PROPERTY = "atomfeed.publish.eventsForAppointments";
+
+    @Mock
+    private AdministrationService administrationService;
+
+    private GlobalPropertySnapshot globalPropertySnapshot;
+
+    @Before
+    public void setUp() {
+        PowerMockito.mockStatic(Context.class);
+        when(Context.getAdministrationService()).thenReturn(administrationService);
+        globalPropertySnapshot = new GlobalPropertySnapshot();
+    }
+
+    @Test
+    public void shouldReadAPropertyFromTheDatabaseOnlyOnce() {
+        when(administrationService.getGlobalProperty(PROPERTY)).thenReturn("true");
+
+        assertTrue(globalPropertySnapshot.getBooleanGlobalProperty(PROPERTY));
+        assertEquals("true", globalPropertySnapshot.getGlobalProperty(PROPERTY));
+
+        verify(administrationService, times(1)).getGlobalProperty(PROPERTY);
+    }
+
+    @Test
+    public void shouldRememberPropertiesThatAreNotSet() {
+        assertEquals("default", globalPropertySnapshot.getGlobalProperty(PROPERTY, "default"));
+        assertNull(globalPropertySnapshot.getGlobalProperty(PROPERTY));
+        assertFalse(globalPropertySnapshot.getBooleanGlobalProperty(PROPERTY));
+
+        verify(administrationService, times(1)).getGlobalProperty(PROPERTY);
+    }
+
+    @Test
+    public void shouldReloadAPropertyOnceItIsChanged() {
+        when(administrationService.getGlobalProperty(PROPERTY)).thenReturn("true");
+        globalPropertySnapshot.getGlobalProperty(PROPERTY);
+        when(administrationService.getGlobalProperty(PROPERTY)).thenReturn("false");
+
+        globalPropertySnapshot.globalPropertyChanged(new GlobalProperty(PROPERTY, "false"));
+
+        assertEquals("false", globalPropertySnapshot.getGlobalProperty(PROPERTY));
+        verify(administrationService, times(2)).getGlobalProperty(PROPERTY);
+    }
+
+    @Test
+    public void shouldReloadAPropertyOnceItIsDeleted() {
+        when(administrationService.getGlobalProperty(PROPERTY)).thenReturn("true");
+        globalPropertySnapshot.getGlobalProperty(PROPERTY);
+        when(administrationService.getGlobalProperty(PROPERTY)).thenReturn(null);
+
+        globalPropertySnapshot.globalPropertyDeleted(PROPERTY);
+
+        assertNull(globalPropertySnapshot.getGlobalProperty(PROPERTY));
+        verify(administrationService, times(2)).getGlobalProperty(PROPERTY);
+    }
+
+    @Test
+    public void shouldNotKeepAValueThatWasChangedWhileItWasBeingLoaded() {
+        when(administrationService.getGlobalProperty(PROPERTY)).thenAnswer(invocation -> {
+            globalPropertySnapshot.globalPropertyChanged(new GlobalProperty(PROPERTY, "false"));
+            return "true";
+        });
+
+        globalPropertySnapshot.getGlobalProperty(PROPERTY);
+        globalPropertySnapshot.getGlobalProperty(PROPERTY);
+
+        verify(administrationService, times(2)).getGlobalProperty(PROPERTY);
+    }
+
+    @Test
+    public void shouldBeNotifiedOfChangesToAnyProperty() {
+        assertTrue(globalPropertySnapshot.supportsPropertyName("any.property"));
+    }
+}
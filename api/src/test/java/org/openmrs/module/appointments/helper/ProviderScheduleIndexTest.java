@@ -0,0 +1,177 @@
+package org.openmrs.module.appointments.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.Provider;
+import org.openmrs.module.appointments.dao.AppointmentDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderResponse;
+import org.openmrs.module.appointments.model.AppointmentSlot;
+import org.openmrs.module.appointments.model.AppointmentStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProviderScheduleIndexTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final long DAY = 24 * HOUR;
+
+    @Mock
+    private AppointmentDao appointmentDao;
+
+    @InjectMocks
+    private ProviderScheduleIndex providerScheduleIndex;
+
+    private long now;
+
+    private long tomorrow;
+
+    @Before
+    public void setUp() {
+        now = System.currentTimeMillis();
+        tomorrow = now + DAY;
+        providerScheduleIndex.setClock(() -> now);
+    }
+
+    @Test
+    public void shouldLoadTheScheduleOfAProviderOnlyOnce() {
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(1), any(Date.class))).thenReturn(Arrays.asList(
+                new AppointmentSlot("first", tomorrow, tomorrow + HOUR),
+                new AppointmentSlot("second", tomorrow + 2 * HOUR, tomorrow + 3 * HOUR)));
+
+        assertEquals(Collections.singletonList("first"), getOverlappingUuids(1, tomorrow + HOUR / 2, tomorrow + 2 * HOUR));
+        assertEquals(Arrays.asList("first", "second"), getOverlappingUuids(1, tomorrow, tomorrow + 3 * HOUR));
+        assertTrue(getOverlappingUuids(1, tomorrow + HOUR, tomorrow + 2 * HOUR).isEmpty());
+
+        verify(appointmentDao, times(1)).getAppointmentSlotsForProvider(eq(1), any(Date.class));
+    }
+
+    @Test
+    public void shouldFindALongAppointmentStartingWellBeforeTheInterval() {
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(1), any(Date.class))).thenReturn(Arrays.asList(
+                new AppointmentSlot("allDay", tomorrow, tomorrow + 8 * HOUR),
+                new AppointmentSlot("short", tomorrow + HOUR, tomorrow + 2 * HOUR)));
+
+        assertEquals(Collections.singletonList("allDay"), getOverlappingUuids(1, tomorrow + 6 * HOUR, tomorrow + 7 * HOUR));
+    }
+
+    @Test
+    public void shouldReloadTheScheduleOnceItHasLived() {
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(1), any(Date.class)))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(new AppointmentSlot("booked", tomorrow, tomorrow + HOUR)));
+        assertTrue(getOverlappingUuids(1, tomorrow, tomorrow + HOUR).isEmpty());
+
+        now += ProviderScheduleIndex.DEFAULT_TIME_TO_LIVE_MILLIS;
+
+        assertEquals(Collections.singletonList("booked"), getOverlappingUuids(1, tomorrow, tomorrow + HOUR));
+        verify(appointmentDao, times(2)).getAppointmentSlotsForProvider(eq(1), any(Date.class));
+    }
+
+    @Test
+    public void shouldMoveAnAppointmentToTheScheduleOfItsNewProvider() {
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(1), any(Date.class)))
+                .thenReturn(Collections.singletonList(new AppointmentSlot("booked", tomorrow, tomorrow + HOUR)));
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(2), any(Date.class))).thenReturn(Collections.emptyList());
+        getOverlappingUuids(1, tomorrow, tomorrow + HOUR);
+        getOverlappingUuids(2, tomorrow, tomorrow + HOUR);
+
+        providerScheduleIndex.update(createAppointment("booked", tomorrow, tomorrow + HOUR,
+                createAppointmentProvider(2, AppointmentProviderResponse.ACCEPTED)));
+
+        assertTrue(getOverlappingUuids(1, tomorrow, tomorrow + HOUR).isEmpty());
+        assertEquals(Collections.singletonList("booked"), getOverlappingUuids(2, tomorrow, tomorrow + HOUR));
+    }
+
+    @Test
+    public void shouldDropCancelledAppointmentsAndRejectedProvidersFromSchedules() {
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(1), any(Date.class))).thenReturn(Arrays.asList(
+                new AppointmentSlot("cancelled", tomorrow, tomorrow + HOUR),
+                new AppointmentSlot("rejected", tomorrow, tomorrow + HOUR)));
+        getOverlappingUuids(1, tomorrow, tomorrow + HOUR);
+        Appointment cancelled = createAppointment("cancelled", tomorrow, tomorrow + HOUR,
+                createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED));
+        cancelled.setStatus(AppointmentStatus.Cancelled);
+        Appointment rejected = createAppointment("rejected", tomorrow, tomorrow + HOUR,
+                createAppointmentProvider(1, AppointmentProviderResponse.REJECTED));
+
+        providerScheduleIndex.update(Arrays.asList(cancelled, rejected));
+
+        assertTrue(getOverlappingUuids(1, tomorrow, tomorrow + HOUR).isEmpty());
+    }
+
+    @Test
+    public void shouldUpdateSchedulesOnlyOnceTheTransactionCommits() {
+        when(appointmentDao.getAppointmentSlotsForProvider(eq(1), any(Date.class))).thenReturn(Collections.emptyList());
+        getOverlappingUuids(1, tomorrow, tomorrow + HOUR);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            providerScheduleIndex.update(createAppointment("booked", tomorrow, tomorrow + HOUR,
+                    createAppointmentProvider(1, AppointmentProviderResponse.AWAITING)));
+            assertTrue(getOverlappingUuids(1, tomorrow, tomorrow + HOUR).isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Collections.singletonList("booked"), getOverlappingUuids(1, tomorrow, tomorrow + HOUR));
+    }
+
+    @Test
+    public void shouldNotLoadSchedulesOfProvidersNobodyAskedAbout() {
+        providerScheduleIndex.update(createAppointment("booked", tomorrow, tomorrow + HOUR,
+                createAppointmentProvider(1, AppointmentProviderResponse.ACCEPTED)));
+
+        verify(appointmentDao, never()).getAppointmentSlotsForProvider(any(Integer.class), any(Date.class));
+    }
+
+    private List<String> getOverlappingUuids(Integer providerId, long start, long end) {
+        return providerScheduleIndex.getOverlappingSlots(providerId, start, end).stream()
+                .map(AppointmentSlot::getAppointmentUuid)
+                .collect(Collectors.toList());
+    }
+
+    private Appointment createAppointment(String uuid, long start, long end, AppointmentProvider... appointmentProviders) {
+        Appointment appointment = new Appointment();
+        appointment.setUuid(uuid);
+        appointment.setStatus(AppointmentStatus.Scheduled);
+        appointment.setStartDateTime(new Date(start));
+        appointment.setEndDateTime(new Date(end));
+        appointment.setProviders(new HashSet<>(Arrays.asList(appointmentProviders)));
+        return appointment;
+    }
+
+    private AppointmentProvider createAppointmentProvider(Integer providerId, AppointmentProviderResponse response) {
+        Provider provider = new Provider();
+        provider.setProviderId(providerId);
+        AppointmentProvider appointmentProvider = new AppointmentProvider();
+        appointmentProvider.setProvider(provider);
+        appointmentProvider.setResponse(response);
+        appointmentProvider.setVoided(false);
+        return appointmentProvider;
+    }
+}
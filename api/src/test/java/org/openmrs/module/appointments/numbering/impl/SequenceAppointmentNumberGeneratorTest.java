@@ -0,0 +1,106 @@
+package org.openmrs.module.appointments.numbering.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openmrs.module.appointments.model.Appointment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SequenceAppointmentNumberGeneratorTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SequenceAppointmentNumberGenerator appointmentNumberGenerator;
+
+    private AtomicLong sequence;
+
+    private AtomicInteger allocations;
+
+    @Before
+    public void setUp() {
+        sequence = new AtomicLong(1);
+        allocations = new AtomicInteger();
+        appointmentNumberGenerator = new SequenceAppointmentNumberGenerator();
+        appointmentNumberGenerator.setTransactionManager(transactionManager);
+        appointmentNumberGenerator.setAppointmentNumberSequenceDao((name, blockSize) -> {
+            allocations.incrementAndGet();
+            return sequence.getAndAdd(blockSize);
+        });
+    }
+
+    @Test
+    public void shouldHandOutZeroPaddedNumbersFromABlockAllocatedInANewTransaction() {
+        appointmentNumberGenerator.setBlockSize(2);
+
+        assertEquals("000001", appointmentNumberGenerator.generateAppointmentNumber(new Appointment()));
+        assertEquals("000002", appointmentNumberGenerator.generateAppointmentNumber(new Appointment()));
+        assertEquals("000003", appointmentNumberGenerator.generateAppointmentNumber(new Appointment()));
+
+        assertEquals(2, allocations.get());
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(2)).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, definition.getValue().getPropagationBehavior());
+    }
+
+    @Test
+    public void shouldNotPadNumbersLongerThanTheMinimumDigits() {
+        appointmentNumberGenerator.setMinimumDigits(2);
+        sequence.set(12345);
+
+        assertEquals("12345", appointmentNumberGenerator.generateAppointmentNumber(new Appointment()));
+    }
+
+    @Test
+    public void shouldHandOutUniqueNumbersToConcurrentCallersWithOneAllocationPerBlock() throws Exception {
+        int blockSize = 50;
+        int threads = 16;
+        int numbersPerThread = 500;
+        appointmentNumberGenerator.setBlockSize(blockSize);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<String> numbers = new ArrayList<>();
+                    for (int j = 0; j < numbersPerThread; j++) {
+                        numbers.add(appointmentNumberGenerator.generateAppointmentNumber(new Appointment()));
+                    }
+                    return numbers;
+                }));
+            }
+            start.countDown();
+            Set<String> numbers = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                numbers.addAll(future.get());
+            }
+
+            assertEquals(threads * numbersPerThread, numbers.size());
+            assertEquals(threads * numbersPerThread / blockSize, allocations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
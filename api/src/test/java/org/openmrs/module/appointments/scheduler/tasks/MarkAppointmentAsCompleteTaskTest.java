@@ -5,22 +5,29 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.openmrs.GlobalProperty;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.AppointmentsService;
+import org.openmrs.module.appointments.util.DateUtil;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -35,40 +42,81 @@ public class MarkAppointmentAsCompleteTaskTest {
     private AdministrationService administrationService;
 
     private MarkAppointmentAsCompleteTask markAppointmentAsCompleteTask;
-    private GlobalProperty globalProperty;
 
     @Before
     public void setUp() throws Exception {
         PowerMockito.mockStatic(Context.class);
         when(Context.getService(AppointmentsService.class)).thenReturn(appointmentsService);
-        when(Context.getService(AdministrationService.class)).thenReturn(administrationService);
+        when(Context.getAdministrationService()).thenReturn(administrationService);
+        when(Context.getRegisteredComponent(GlobalPropertySnapshot.BEAN_NAME, GlobalPropertySnapshot.class))
+                .thenReturn(new GlobalPropertySnapshot());
         markAppointmentAsCompleteTask = new MarkAppointmentAsCompleteTask();
     }
 
     @Test
     public void executeShouldMarkCheckedInAppointmentsAsCompletedWhenSchedulerTurnedOn() throws Exception {
         String schedulerMarksComplete = "SchedulerMarksComplete";
-        globalProperty = new GlobalProperty(schedulerMarksComplete, "true");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksComplete)).thenReturn(globalProperty);
-        List<Appointment> appointments = new ArrayList<>();
-        Appointment appointment1 = new Appointment();
-        Appointment appointment2 = new Appointment();
-        appointments.add(appointment1);
-        appointments.add(appointment2);
-        appointment1.setStatus(AppointmentStatus.CheckedIn);
-        when(appointmentsService.getAllAppointmentsInDateRange(any(Date.class), any(Date.class))).thenReturn(appointments);
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("true");
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(1);
+        appointment.setStatus(AppointmentStatus.CheckedIn);
+        appointment.setEndDateTime(DateUtil.convertToDate("2108-08-15T10:30:00.000", DateUtil.DateFormatType.UTC));
+        List<Appointment> appointments = Collections.singletonList(appointment);
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(eq(Collections.singletonList(AppointmentStatus.CheckedIn)),
+                any(Date.class), (Appointment) isNull(), anyInt())).thenReturn(appointments);
+
         markAppointmentAsCompleteTask.execute();
 
-        String completedStatus = AppointmentStatus.Completed.toString();
-        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(appointment1), eq(completedStatus), any(Date.class));
+        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(appointments), eq(AppointmentStatus.Completed), any(Date.class));
     }
 
     @Test
     public void shouldNotMarkAppointmentAsCompleteWhenSchedulerIsTurnedOff() {
         String schedulerMarksComplete = "SchedulerMarksComplete";
-        globalProperty = new GlobalProperty(schedulerMarksComplete, "false");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksComplete)).thenReturn(globalProperty);
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("false");
+        markAppointmentAsCompleteTask.execute();
+        Mockito.verify(appointmentsService, times(0)).changeStatus(any(Collection.class), any(AppointmentStatus.class), any(Date.class));
+    }
+
+    @Test
+    public void shouldLookAtEveryEndedCheckedInAppointmentOnEachRun() throws Exception {
+        String schedulerMarksComplete = "SchedulerMarksComplete";
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("true");
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(anyListOf(AppointmentStatus.class), any(Date.class),
+                any(Appointment.class), anyInt())).thenReturn(new ArrayList<>());
+
+        markAppointmentAsCompleteTask.execute();
+        markAppointmentAsCompleteTask.execute();
+
+        Mockito.verify(appointmentsService, times(2)).getAppointmentsWithStatusEndingBefore(eq(Collections.singletonList(AppointmentStatus.CheckedIn)),
+                any(Date.class), (Appointment) isNull(), eq(AbstractAppointmentStatusTask.CHUNK_SIZE));
+        Mockito.verify(appointmentsService, never()).changeStatus(any(Collection.class), any(AppointmentStatus.class), any(Date.class));
+    }
+
+    @Test
+    public void shouldMarkAppointmentsInChunksContinuingAfterTheLastAppointmentOfEachChunk() throws Exception {
+        String schedulerMarksComplete = "SchedulerMarksComplete";
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("true");
+        List<Appointment> firstChunk = new ArrayList<>();
+        for (int i = 0; i < AbstractAppointmentStatusTask.CHUNK_SIZE; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setAppointmentId(i);
+            appointment.setEndDateTime(new Date(i));
+            firstChunk.add(appointment);
+        }
+        Appointment lastAppointmentOfFirstChunk = firstChunk.get(firstChunk.size() - 1);
+        List<Appointment> secondChunk = Collections.singletonList(new Appointment());
+        secondChunk.get(0).setEndDateTime(new Date());
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(anyListOf(AppointmentStatus.class), any(Date.class),
+                (Appointment) isNull(), anyInt())).thenReturn(firstChunk);
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(anyListOf(AppointmentStatus.class), any(Date.class),
+                eq(lastAppointmentOfFirstChunk), anyInt())).thenReturn(secondChunk);
+
         markAppointmentAsCompleteTask.execute();
-        Mockito.verify(appointmentsService, times(0)).changeStatus(any(Appointment.class), any(String.class), any(Date.class));
+
+        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(firstChunk), eq(AppointmentStatus.Completed), any(Date.class));
+        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(secondChunk), eq(AppointmentStatus.Completed), any(Date.class));
+        PowerMockito.verifyStatic(times(2));
+        Context.clearSession();
     }
-}
\ No newline at end of file
+}
@@ -5,9 +5,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.openmrs.GlobalProperty;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.AppointmentsService;
@@ -15,12 +15,16 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -37,88 +41,71 @@ public class MarkAppointmentAsMissedTaskTest {
 
     private MarkAppointmentAsMissedTask markAppointmentAsMissedTask;
 
-    private GlobalProperty globalProperty;
-
     @Before
     public void setUp() throws Exception {
         PowerMockito.mockStatic(Context.class);
         when(Context.getService(AppointmentsService.class)).thenReturn(appointmentsService);
         when(Context.getService(AdministrationService.class)).thenReturn(administrationService);
+        when(Context.getAdministrationService()).thenReturn(administrationService);
+        when(Context.getRegisteredComponent(GlobalPropertySnapshot.BEAN_NAME, GlobalPropertySnapshot.class))
+                .thenReturn(new GlobalPropertySnapshot());
         String schedulerMarksMissed = "SchedulerMarksMissed";
-        GlobalProperty missedGlobalProperty = new GlobalProperty(schedulerMarksMissed, "true");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksMissed)).thenReturn(missedGlobalProperty);
+        when(administrationService.getGlobalProperty(schedulerMarksMissed)).thenReturn("true");
         markAppointmentAsMissedTask = new MarkAppointmentAsMissedTask();
     }
 
     @Test
     public void shouldNotMarkAppointmentAsMissedWhenSchedulerIsTurnedOff() {
         String schedulerMarksMissed = "SchedulerMarksMissed";
-        globalProperty = new GlobalProperty(schedulerMarksMissed, "false");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksMissed)).thenReturn(globalProperty);
+        when(administrationService.getGlobalProperty(schedulerMarksMissed)).thenReturn("false");
         markAppointmentAsMissedTask.execute();
-        Mockito.verify(appointmentsService, never()).changeStatus(any(Appointment.class), any(String.class), any(Date.class));
+        Mockito.verify(appointmentsService, never()).changeStatus(any(Collection.class), any(AppointmentStatus.class), any(Date.class));
     }
 
     @Test
-    public void executeShouldMarkCheckedInAppointmentsAsMissedWhenCompleteSchedulerIsTurnedOff() throws Exception {
+    public void executeShouldMarkScheduledAndCheckedInAppointmentsAsMissedWhenCompleteSchedulerIsTurnedOff() throws Exception {
         String schedulerMarksComplete = "SchedulerMarksComplete";
-        globalProperty = new GlobalProperty(schedulerMarksComplete, "false");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksComplete)).thenReturn(globalProperty);
-        List<Appointment> appointments = new ArrayList<>();
-        Appointment appointment = new Appointment();
-        appointments.add(appointment);
-        appointment.setStatus(AppointmentStatus.CheckedIn);
-        when(appointmentsService.getAllAppointmentsInDateRange(any(Date.class), any(Date.class))).thenReturn(appointments);
-        markAppointmentAsMissedTask.execute();
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("false");
+        Appointment scheduledAppointment = new Appointment();
+        scheduledAppointment.setStatus(AppointmentStatus.Scheduled);
+        scheduledAppointment.setEndDateTime(new Date());
+        Appointment checkedInAppointment = new Appointment();
+        checkedInAppointment.setStatus(AppointmentStatus.CheckedIn);
+        checkedInAppointment.setEndDateTime(new Date());
+        List<Appointment> appointments = Arrays.asList(scheduledAppointment, checkedInAppointment);
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(eq(Arrays.asList(AppointmentStatus.Scheduled, AppointmentStatus.CheckedIn)),
+                any(Date.class), (Appointment) isNull(), anyInt())).thenReturn(appointments);
 
-        String missedStatus = AppointmentStatus.Missed.toString();
-        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(appointment), eq(missedStatus), any(Date.class));
-    }
-    @Test
-    public void shouldMarkScheduledAppointmentsAsMissedWhenCompleteSchedulerIsTurnedOff() {
-        String schedulerMarksComplete = "SchedulerMarksComplete";
-        globalProperty = new GlobalProperty(schedulerMarksComplete, "false");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksComplete)).thenReturn(globalProperty);
-        List<Appointment> appointments = new ArrayList<>();
-        Appointment appointment = new Appointment();
-        appointments.add(appointment);
-        appointment.setStatus(AppointmentStatus.Scheduled);
-        when(appointmentsService.getAllAppointmentsInDateRange(any(Date.class), any(Date.class))).thenReturn(appointments);
         markAppointmentAsMissedTask.execute();
 
-        String missedStatus = AppointmentStatus.Missed.toString();
-        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(appointment), eq(missedStatus), any(Date.class));
+        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(appointments), eq(AppointmentStatus.Missed), any(Date.class));
     }
 
     @Test
-    public void shouldNotMarkCheckedInAppointmentAsMissedWhenCompleteSchedulerIsTurnedOn() {
+    public void shouldOnlyLookAtScheduledAppointmentsWhenCompleteSchedulerIsTurnedOn() {
         String schedulerMarksComplete = "SchedulerMarksComplete";
-        globalProperty = new GlobalProperty(schedulerMarksComplete, "true");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksComplete)).thenReturn(globalProperty);
-        List<Appointment> appointments = new ArrayList<>();
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("true");
         Appointment appointment = new Appointment();
-        appointments.add(appointment);
-        appointment.setStatus(AppointmentStatus.CheckedIn);
-        when(appointmentsService.getAllAppointmentsInDateRange(any(Date.class), any(Date.class))).thenReturn(appointments);
+        appointment.setStatus(AppointmentStatus.Scheduled);
+        appointment.setEndDateTime(new Date());
+        List<Appointment> appointments = Collections.singletonList(appointment);
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(eq(Collections.singletonList(AppointmentStatus.Scheduled)),
+                any(Date.class), (Appointment) isNull(), anyInt())).thenReturn(appointments);
+
         markAppointmentAsMissedTask.execute();
 
-        String missedStatus = AppointmentStatus.Missed.toString();
-        Mockito.verify(appointmentsService, times(0)).changeStatus(eq(appointment), eq(missedStatus), any(Date.class));
+        Mockito.verify(appointmentsService, times(1)).changeStatus(eq(appointments), eq(AppointmentStatus.Missed), any(Date.class));
     }
 
     @Test
-    public void shouldNotMarkCancelledAppointmentAsMissed() {
+    public void shouldNotChangeStatusWhenThereAreNoAppointmentsToMarkAsMissed() {
         String schedulerMarksComplete = "SchedulerMarksComplete";
-        globalProperty = new GlobalProperty(schedulerMarksComplete, "true");
-        when(administrationService.getGlobalPropertyObject(schedulerMarksComplete)).thenReturn(globalProperty);
-        List<Appointment> appointments = new ArrayList<>();
-        Appointment appointment = new Appointment();
-        appointments.add(appointment);
-        appointment.setStatus(AppointmentStatus.Cancelled);
-        when(appointmentsService.getAllAppointmentsInDateRange(any(Date.class), any(Date.class))).thenReturn(appointments);
+        when(administrationService.getGlobalProperty(schedulerMarksComplete)).thenReturn("true");
+        when(appointmentsService.getAppointmentsWithStatusEndingBefore(any(List.class), any(Date.class),
+                any(Appointment.class), anyInt())).thenReturn(Collections.emptyList());
+
         markAppointmentAsMissedTask.execute();
 
-        String missedStatus = AppointmentStatus.Missed.toString();
-        Mockito.verify(appointmentsService, times(0)).changeStatus(eq(appointment), eq(missedStatus), any(Date.class));
+        Mockito.verify(appointmentsService, never()).changeStatus(any(Collection.class), any(AppointmentStatus.class), any(Date.class));
     }
-}
\ No newline at end of file
+}
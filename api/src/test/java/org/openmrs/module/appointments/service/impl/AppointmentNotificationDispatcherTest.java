@@ -0,0 +1,210 @@
+package org.openmrs.module.appointments.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openmrs.module.appointments.dao.AppointmentNotificationDao;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentNotification;
+import org.openmrs.module.appointments.model.AppointmentNotificationStatus;
+import org.openmrs.module.appointments.notification.NotificationException;
+import org.openmrs.module.appointments.notification.NotificationResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AppointmentNotificationDispatcherTest {
+
+    @Mock
+    private AppointmentNotificationDao appointmentNotificationDao;
+
+    @Mock
+    private PatientAppointmentNotifierService appointmentNotifierService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AppointmentNotificationDispatcher dispatcher;
+
+    private Appointment appointment;
+
+    private AppointmentNotification notification;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        dispatcher = new AppointmentNotificationDispatcher();
+        dispatcher.setAppointmentNotificationDao(appointmentNotificationDao);
+        dispatcher.setAppointmentNotifierService(appointmentNotifierService);
+        dispatcher.setTransactionManager(transactionManager);
+        dispatcher.setMaxAttempts(3);
+        appointment = new Appointment();
+        notification = new AppointmentNotification();
+        notification.setId(7);
+        notification.setAppointment(appointment);
+        notification.setMedium("EMAIL");
+        when(appointmentNotificationDao.claim(eq(7), any(Date.class), any(Date.class))).thenReturn(true);
+        when(appointmentNotificationDao.getNotificationById(7)).thenReturn(notification);
+    }
+
+    @Test
+    public void shouldQueueANotificationPerApplicableMediumWithoutSendingIt() throws Exception {
+        when(appointmentNotifierService.getApplicableMediums(appointment)).thenReturn(Arrays.asList("EMAIL", "SMS"));
+
+        List<NotificationResult> results = dispatcher.queue(appointment);
+
+        ArgumentCaptor<AppointmentNotification> captor = ArgumentCaptor.forClass(AppointmentNotification.class);
+        verify(appointmentNotificationDao, times(2)).save(captor.capture());
+        assertEquals("EMAIL", captor.getAllValues().get(0).getMedium());
+        assertEquals("SMS", captor.getAllValues().get(1).getMedium());
+        assertEquals(AppointmentNotificationStatus.Pending, captor.getAllValues().get(0).getStatus());
+        assertEquals(2, results.size());
+        assertEquals(NotificationResult.QUEUED, results.get(0).getStatus());
+        assertEquals(captor.getAllValues().get(0).getUuid(), results.get(0).getUuid());
+        verify(appointmentNotifierService, never()).sendNotification(anyString(), any(Appointment.class));
+    }
+
+    @Test
+    public void shouldNotQueueAnythingWhenNoMediumIsApplicable() {
+        when(appointmentNotifierService.getApplicableMediums(appointment)).thenReturn(Collections.emptyList());
+
+        assertTrue(dispatcher.queue(appointment).isEmpty());
+        verify(appointmentNotificationDao, never()).save(any(AppointmentNotification.class));
+    }
+
+    @Test
+    public void shouldRecordTheResultOfTheNotifier() throws Exception {
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenReturn(new NotificationResult("", "EMAIL", NotificationResult.SUCCESS_STATUS, "Email sent to Patient"));
+
+        dispatcher.dispatch(7);
+
+        verify(appointmentNotificationDao).save(notification);
+        assertEquals(AppointmentNotificationStatus.Completed, notification.getStatus());
+        assertEquals(1, notification.getAttempts().intValue());
+        assertEquals(NotificationResult.SUCCESS_STATUS, notification.getResultStatus().intValue());
+        assertEquals("Email sent to Patient", notification.getResultMessage());
+    }
+
+    @Test
+    public void shouldScheduleARetryWithBackoffWhenTheNotifierFails() throws Exception {
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenThrow(new NotificationException("Failed to send email to patient", new RuntimeException()));
+        long before = System.currentTimeMillis();
+
+        dispatcher.dispatch(7);
+
+        assertEquals(AppointmentNotificationStatus.Pending, notification.getStatus());
+        assertEquals(1, notification.getAttempts().intValue());
+        assertEquals("Failed to send email to patient", notification.getResultMessage());
+        assertTrue(notification.getNextAttemptDateTime().getTime() >= before + 60 * 1000L);
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() throws Exception {
+        notification.setAttempts(2);
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenThrow(new NotificationException("Failed to send email to patient", new RuntimeException()));
+
+        dispatcher.dispatch(7);
+
+        assertEquals(AppointmentNotificationStatus.Failed, notification.getStatus());
+        assertEquals(3, notification.getAttempts().intValue());
+        assertEquals(NotificationResult.GENERAL_ERROR, notification.getResultStatus().intValue());
+    }
+
+    @Test
+    public void shouldScheduleARetryWithBackoffWhenTheNotifierReturnsAGeneralError() throws Exception {
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenReturn(new NotificationResult("", "EMAIL", NotificationResult.GENERAL_ERROR, "Failed to send email to patient"));
+        long before = System.currentTimeMillis();
+
+        dispatcher.dispatch(7);
+
+        verify(appointmentNotificationDao).save(notification);
+        assertEquals(AppointmentNotificationStatus.Pending, notification.getStatus());
+        assertEquals(1, notification.getAttempts().intValue());
+        assertEquals("Failed to send email to patient", notification.getResultMessage());
+        assertTrue(notification.getNextAttemptDateTime().getTime() >= before + 60 * 1000L);
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttemptsWhenTheNotifierKeepsReturningGeneralErrors() throws Exception {
+        notification.setAttempts(2);
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenReturn(new NotificationResult("", "EMAIL", NotificationResult.GENERAL_ERROR, "Failed to send email to patient"));
+
+        dispatcher.dispatch(7);
+
+        assertEquals(AppointmentNotificationStatus.Failed, notification.getStatus());
+        assertEquals(3, notification.getAttempts().intValue());
+        assertEquals(NotificationResult.GENERAL_ERROR, notification.getResultStatus().intValue());
+        assertEquals("Gave up sending notification after 3 attempts: Failed to send email to patient", notification.getResultMessage());
+    }
+
+    @Test
+    public void shouldNotRetryANotificationTheNotifierIgnored() throws Exception {
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenReturn(new NotificationResult(null, "EMAIL", NotificationResult.IGNORED, "Email address not configured"));
+
+        dispatcher.dispatch(7);
+
+        verify(appointmentNotificationDao).save(notification);
+        assertEquals(AppointmentNotificationStatus.Completed, notification.getStatus());
+        assertEquals(1, notification.getAttempts().intValue());
+        assertEquals(NotificationResult.IGNORED, notification.getResultStatus().intValue());
+        assertEquals("Email address not configured", notification.getResultMessage());
+    }
+
+    @Test
+    public void shouldNotSendANotificationClaimedByAnotherWorker() throws Exception {
+        when(appointmentNotificationDao.claim(eq(7), any(Date.class), any(Date.class))).thenReturn(false);
+
+        dispatcher.dispatch(7);
+
+        verify(appointmentNotifierService, never()).sendNotification(anyString(), any(Appointment.class));
+        verify(appointmentNotificationDao, never()).save(any(AppointmentNotification.class));
+    }
+
+    @Test
+    public void shouldDispatchDueNotificationsInBatches() throws Exception {
+        dispatcher.setSweepSize(1);
+        when(appointmentNotificationDao.getDueNotificationIds(any(Date.class), anyInt()))
+                .thenReturn(Collections.singletonList(7), Collections.emptyList());
+        when(appointmentNotifierService.sendNotification("EMAIL", appointment))
+                .thenReturn(new NotificationResult("", "EMAIL", NotificationResult.SUCCESS_STATUS, "Email sent to Patient"));
+
+        dispatcher.dispatchDueNotifications();
+
+        verify(appointmentNotificationDao, times(2)).getDueNotificationIds(any(Date.class), eq(1));
+        verify(appointmentNotifierService, times(1)).sendNotification("EMAIL", appointment);
+    }
+
+    @Test
+    public void shouldDoubleTheBackoffUpToTheMaximum() {
+        dispatcher.setInitialBackoffMillis(1000);
+        dispatcher.setMaxBackoffMillis(5000);
+
+        assertEquals(1000, dispatcher.getBackoffMillis(1));
+        assertEquals(2000, dispatcher.getBackoffMillis(2));
+        assertEquals(4000, dispatcher.getBackoffMillis(3));
+        assertEquals(5000, dispatcher.getBackoffMillis(4));
+        assertEquals(5000, dispatcher.getBackoffMillis(40));
+    }
+}
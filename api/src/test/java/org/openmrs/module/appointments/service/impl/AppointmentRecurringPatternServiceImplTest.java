@@ -2,37 +2,54 @@ package org.openmrs.module.appointments.service.impl;
 
 
 import org.apache.commons.lang.time.DateUtils;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
-import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.MockitoAnnotations;
 import org.openmrs.Patient;
+import org.openmrs.User;
 import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.dao.AppointmentAuditDao;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.dao.AppointmentRecurringPatternDao;
 import org.openmrs.module.appointments.helper.AppointmentServiceHelper;
+import org.openmrs.module.appointments.helper.ProviderScheduleIndex;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
 import org.openmrs.module.appointments.model.AppointmentKind;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.util.AppointmentBuilder;
+import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.validator.AppointmentStatusChangeValidator;
 import org.openmrs.module.appointments.validator.AppointmentValidator;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyString;
@@ -40,8 +57,10 @@ import static org.mockito.Mockito.*;
 import static org.openmrs.module.appointments.model.AppointmentStatus.CheckedIn;
 import static org.openmrs.module.appointments.model.AppointmentStatus.Requested;
 import static org.openmrs.module.appointments.model.AppointmentStatus.Scheduled;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
-@RunWith(MockitoJUnitRunner.class)
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Context.class)
 public class AppointmentRecurringPatternServiceImplTest {
 
     @InjectMocks
@@ -53,12 +72,18 @@ public class AppointmentRecurringPatternServiceImplTest {
     @Mock
     private AppointmentDao appointmentDao;
 
+    @Mock
+    private AppointmentAuditDao appointmentAuditDao;
+
     @Mock
     private AppointmentStatusChangeValidator statusChangeValidator;
 
     @Mock
     private AppointmentServiceHelper appointmentServiceHelper;
 
+    @Mock
+    private ProviderScheduleIndex providerScheduleIndex;
+
     @Mock
     private Patient patient;
 
@@ -68,9 +93,29 @@ public class AppointmentRecurringPatternServiceImplTest {
     @Spy
     private List<AppointmentValidator> editAppointmentValidators = new ArrayList<>();
 
+    @Mock
+    private User user;
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mockStatic(Context.class);
+        when(Context.getAuthenticatedUser()).thenReturn(user);
+        // stands in for the query selecting the pending occurrences of a pattern in the database
+        when(appointmentRecurringPatternDao.getPendingOccurrences(any(AppointmentRecurringPattern.class), any(Date.class),
+                anyListOf(AppointmentStatus.class))).thenAnswer(invocation -> {
+            AppointmentRecurringPattern appointmentRecurringPattern = (AppointmentRecurringPattern) invocation.getArguments()[0];
+            Date fromDate = (Date) invocation.getArguments()[1];
+            List<AppointmentStatus> statuses = (List<AppointmentStatus>) invocation.getArguments()[2];
+            return appointmentRecurringPattern.getAppointments().stream()
+                    .filter(appointment -> !appointment.getStartDateTime().before(fromDate) && statuses.contains(appointment.getStatus()))
+                    .collect(Collectors.toList());
+        });
+    }
+
     @Test
     public void shouldSaveRecurringAppointmentsForGivenRecurringPatternAndAppointment() throws IOException {
         AppointmentRecurringPattern appointmentRecurringPattern = new AppointmentRecurringPattern();
@@ -79,23 +124,42 @@ public class AppointmentRecurringPatternServiceImplTest {
         List<Appointment> appointments = Collections.singletonList(appointment);
         appointmentRecurringPattern.setAppointments(new HashSet<>(appointments));
         String notes = "Notes";
-        doReturn(notes).when(appointmentServiceHelper).getAppointmentAsJsonString(appointment);
+        doReturn(notes).when(appointmentServiceHelper).getAppointmentAuditNotes(appointment);
         doReturn(appointmentAudit).when(appointmentServiceHelper).getAppointmentAuditEvent(appointment, notes);
-        doNothing().when(appointmentRecurringPatternDao).save(appointmentRecurringPattern);
+        doNothing().when(appointmentRecurringPatternDao).saveNewSeries(appointmentRecurringPattern);
 
         AppointmentRecurringPattern savedAppointmentRecurringPattern = recurringAppointmentService
                 .validateAndSave(appointmentRecurringPattern);
 
         List<Appointment> appointmentsList = new ArrayList<>(savedAppointmentRecurringPattern.getAppointments());
         assertEquals(1, appointmentsList.size());
-        verify(appointmentRecurringPatternDao).save(appointmentRecurringPattern);
-        verify(appointmentServiceHelper).getAppointmentAsJsonString(appointment);
+        verify(appointmentRecurringPatternDao).saveNewSeries(appointmentRecurringPattern);
+        verify(appointmentRecurringPatternDao, never()).save(any(AppointmentRecurringPattern.class));
+        verify(appointmentAuditDao).saveAll(Collections.singletonList(appointmentAudit));
+        verify(appointmentServiceHelper).getAppointmentAuditNotes(appointment);
         verify(appointmentServiceHelper).getAppointmentAuditEvent(appointment, notes);
         verify(appointmentServiceHelper).checkAndAssignAppointmentNumber(appointment);
         assertEquals(1, appointmentRecurringPattern.getAppointments().size());
         assertEquals(1, appointmentsList.get(0).getAppointmentAudits().size());
     }
 
+    @Test
+    public void shouldSaveThroughTheSessionWhenThePatternIsAlreadySaved() throws IOException {
+        AppointmentRecurringPattern appointmentRecurringPattern = new AppointmentRecurringPattern();
+        appointmentRecurringPattern.setId(1);
+        Appointment appointment = new Appointment();
+        appointmentRecurringPattern.setAppointments(new HashSet<>(Collections.singletonList(appointment)));
+        String notes = "Notes";
+        doReturn(notes).when(appointmentServiceHelper).getAppointmentAuditNotes(appointment);
+        doReturn(new AppointmentAudit()).when(appointmentServiceHelper).getAppointmentAuditEvent(appointment, notes);
+
+        recurringAppointmentService.validateAndSave(appointmentRecurringPattern);
+
+        verify(appointmentRecurringPatternDao).save(appointmentRecurringPattern);
+        verify(appointmentRecurringPatternDao, never()).saveNewSeries(any(AppointmentRecurringPattern.class));
+        verify(appointmentAuditDao, never()).saveAll(any(Collection.class));
+    }
+
     @Test
     public void shouldUpdateStatusOfScheduledFutureOccurrences() {
         Calendar startTimeCalendar = Calendar.getInstance();
@@ -147,7 +211,7 @@ public class AppointmentRecurringPatternServiceImplTest {
         when(appointmentServiceHelper.getAppointmentAuditEvent(appointmentTwo, null)).thenReturn(appointmentAudit);
 
         recurringAppointmentService.changeStatus(appointmentTwo, "Cancelled", "");
-        verify(appointmentDao, times(2)).save(any(Appointment.class));
+        verifyPendingOccurrencesAreUpdatedAndAudited(2);
     }
 
     @Test
@@ -201,7 +265,7 @@ public class AppointmentRecurringPatternServiceImplTest {
         when(appointmentServiceHelper.getAppointmentAuditEvent(appointmentTwo, null)).thenReturn(appointmentAudit);
 
         recurringAppointmentService.changeStatus(appointmentTwo, "Cancelled", "");
-        verify(appointmentDao, times(2)).save(any(Appointment.class));
+        verifyPendingOccurrencesAreUpdatedAndAudited(2);
     }
 
     @Test
@@ -260,11 +324,78 @@ public class AppointmentRecurringPatternServiceImplTest {
         when(appointmentServiceHelper.getAppointmentAuditEvent(appointmentTwo, null)).thenReturn(appointmentAudit);
 
         recurringAppointmentService.changeStatus(appointmentTwo, "Cancelled", "");
-        verify(appointmentDao, times(2)).save(any(Appointment.class));
+        verifyPendingOccurrencesAreUpdatedAndAudited(2);
         verify(appointmentServiceHelper, times(2))
                 .getAppointmentAuditEvent(any(Appointment.class), any(String.class));
     }
 
+    @Test
+    public void shouldQueryPendingOccurrencesInsteadOfLoadingTheWholeSeries() {
+        AppointmentRecurringPattern appointmentRecurringPattern = mock(AppointmentRecurringPattern.class);
+        Appointment appointment = getAppointment("uuid", patient, Scheduled, AppointmentKind.Scheduled, new Date(), new Date());
+        appointment.setAppointmentRecurringPattern(appointmentRecurringPattern);
+        Appointment pendingAppointment = getAppointment("pending", patient, Scheduled, AppointmentKind.Scheduled,
+                DateUtils.addDays(new Date(), 7), DateUtils.addDays(new Date(), 7));
+        when(appointmentDao.getAppointmentByUuid("uuid")).thenReturn(appointment);
+        when(appointmentRecurringPatternDao.getPendingOccurrences(eq(appointmentRecurringPattern),
+                eq(DateUtil.getStartOfDay(TimeZone.getTimeZone("Asia/Kolkata"))),
+                eq(Arrays.asList(Requested, Scheduled, CheckedIn)))).thenReturn(Collections.singletonList(pendingAppointment));
+
+        List<Appointment> pendingAppointments = recurringAppointmentService.changeStatus(appointment, "Cancelled", "Asia/Kolkata");
+
+        assertEquals(Collections.singletonList(pendingAppointment), pendingAppointments);
+        verify(appointmentRecurringPattern, never()).getAppointments();
+        verifyPendingOccurrencesAreUpdatedAndAudited(1);
+    }
+
+    @Test
+    public void shouldFindPendingOccurrencesInTheTimeZoneOfEachOfManyConcurrentStatusChanges() throws Exception {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        List<String> timeZones = Arrays.asList("Pacific/Kiritimati", "Pacific/Honolulu", "Asia/Kolkata",
+                "America/New_York", "Europe/London", "Australia/Sydney");
+        int statusChanges = 200;
+        List<Appointment> changedAppointments = new ArrayList<>();
+        List<Set<String>> expectedPendingUuids = new ArrayList<>();
+        for (int i = 0; i < statusChanges; i++) {
+            Date startOfDay = DateUtil.getStartOfDay(TimeZone.getTimeZone(timeZones.get(i % timeZones.size())));
+            Appointment yesterday = getAppointment("yesterday" + i, patient, Scheduled, AppointmentKind.Scheduled,
+                    DateUtils.addMinutes(startOfDay, -1), startOfDay);
+            Appointment today = getAppointment("today" + i, patient, Scheduled, AppointmentKind.Scheduled,
+                    startOfDay, DateUtils.addMinutes(startOfDay, 30));
+            Appointment later = getAppointment("later" + i, patient, Requested, AppointmentKind.Scheduled,
+                    DateUtils.addDays(startOfDay, 2), DateUtils.addDays(startOfDay, 2));
+            AppointmentRecurringPattern appointmentRecurringPattern = new AppointmentRecurringPattern();
+            appointmentRecurringPattern.setAppointments(new HashSet<>(Arrays.asList(yesterday, today, later)));
+            today.setAppointmentRecurringPattern(appointmentRecurringPattern);
+            when(appointmentDao.getAppointmentByUuid(today.getUuid())).thenReturn(today);
+            changedAppointments.add(today);
+            expectedPendingUuids.add(new HashSet<>(Arrays.asList(today.getUuid(), later.getUuid())));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Appointment>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < statusChanges; i++) {
+                Appointment appointment = changedAppointments.get(i);
+                String timeZone = timeZones.get(i % timeZones.size());
+                results.add(executorService.submit(() -> {
+                    start.await();
+                    return recurringAppointmentService.changeStatus(appointment, "Cancelled", timeZone);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < statusChanges; i++) {
+                Set<String> pendingUuids = results.get(i).get(30, TimeUnit.SECONDS).stream()
+                        .map(Appointment::getUuid).collect(Collectors.toSet());
+                assertEquals(expectedPendingUuids.get(i), pendingUuids);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(defaultTimeZone, TimeZone.getDefault());
+    }
+
     @Test
     public void shouldSaveAndReturnTheUpdatedRecurringPatternWhenUpdateIsCalled() throws IOException {
         AppointmentRecurringPattern appointmentRecurringPattern = new AppointmentRecurringPattern();
@@ -274,14 +405,14 @@ public class AppointmentRecurringPatternServiceImplTest {
         appointmentRecurringPattern.setAppointments(new HashSet<>(appointments));
         String notes = "Notes";
         doNothing().when(appointmentRecurringPatternDao).save(appointmentRecurringPattern);
-        doReturn(notes).when(appointmentServiceHelper).getAppointmentAsJsonString(appointment);
+        doReturn(notes).when(appointmentServiceHelper).getAppointmentAuditNotes(appointment);
         doReturn(appointmentAudit).when(appointmentServiceHelper).getAppointmentAuditEvent(appointment, notes);
         doNothing().when(appointmentRecurringPatternDao).save(appointmentRecurringPattern);
 
         recurringAppointmentService.update(appointmentRecurringPattern, appointment);
 
         verify(appointmentRecurringPatternDao, times(1)).save(appointmentRecurringPattern);
-        verify(appointmentServiceHelper).getAppointmentAsJsonString(appointment);
+        verify(appointmentServiceHelper).getAppointmentAuditNotes(appointment);
         verify(appointmentServiceHelper).getAppointmentAuditEvent(appointment, notes);
         verify(appointmentServiceHelper).checkAndAssignAppointmentNumber(appointment);
     }
@@ -301,7 +432,7 @@ public class AppointmentRecurringPatternServiceImplTest {
         recurringAppointmentService.update(appointmentRecurringPattern, appointment);
 
         verify(appointmentDao, never()).save(any(Appointment.class));
-        verify(appointmentServiceHelper,never()).getAppointmentAsJsonString(any());
+        verify(appointmentServiceHelper,never()).getAppointmentAuditNotes(any());
         verify(appointmentServiceHelper, never()).getAppointmentAuditEvent(any(), any());
         verify(appointmentServiceHelper, never()).checkAndAssignAppointmentNumber(any());
     }
@@ -319,7 +450,7 @@ public class AppointmentRecurringPatternServiceImplTest {
         Appointment appointment = recurringAppointmentService.update(appointmentRecurringPattern, updatedAppointments);
 
         verify(appointmentRecurringPatternDao, times(1)).save(appointmentRecurringPattern);
-        verify(appointmentServiceHelper, times(2)).getAppointmentAsJsonString(any(Appointment.class));
+        verify(appointmentServiceHelper, times(2)).getAppointmentAuditNotes(any(Appointment.class));
         verify(appointmentServiceHelper, times(2)).getAppointmentAuditEvent(any(Appointment.class), anyString());
         verify(appointmentServiceHelper, times(2)).checkAndAssignAppointmentNumber(any(Appointment.class));
         assertEquals(newAppointment, appointment);
@@ -342,7 +473,7 @@ public class AppointmentRecurringPatternServiceImplTest {
         recurringAppointmentService.update(appointmentRecurringPattern, updatedAppointments);
 
         verify(appointmentDao, never()).save(any(Appointment.class));
-        verify(appointmentServiceHelper,never()).getAppointmentAsJsonString(any());
+        verify(appointmentServiceHelper,never()).getAppointmentAuditNotes(any());
         verify(appointmentServiceHelper, never()).getAppointmentAuditEvent(any(), any());
         verify(appointmentServiceHelper, never()).checkAndAssignAppointmentNumber(any());
     }
@@ -359,4 +490,14 @@ public class AppointmentRecurringPatternServiceImplTest {
                 .build();
     }
 
+    private void verifyPendingOccurrencesAreUpdatedAndAudited(int pendingOccurrences) {
+        ArgumentCaptor<Collection> updatedAppointments = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Collection> savedAudits = ArgumentCaptor.forClass(Collection.class);
+        verify(appointmentDao).updateStatus(updatedAppointments.capture(), eq(AppointmentStatus.Cancelled), eq(user), any(Date.class));
+        verify(appointmentAuditDao).saveAll(savedAudits.capture());
+        verify(appointmentDao, never()).save(any(Appointment.class));
+        assertEquals(pendingOccurrences, updatedAppointments.getValue().size());
+        assertEquals(pendingOccurrences, savedAudits.getValue().size());
+        verify(providerScheduleIndex).update(updatedAppointments.getValue());
+    }
 }
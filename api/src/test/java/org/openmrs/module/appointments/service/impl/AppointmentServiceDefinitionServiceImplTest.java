@@ -9,6 +9,7 @@ import org.mockito.*;
 import org.openmrs.User;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.dao.AppointmentServiceDao;
+import org.openmrs.module.appointments.helper.AppointmentServiceDefinitionCache;
 import org.openmrs.module.appointments.model.*;
 import org.openmrs.module.appointments.service.AppointmentsService;
 import org.openmrs.module.appointments.util.DateUtil;
@@ -22,6 +23,9 @@ import java.util.*;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -53,6 +57,7 @@ public class AppointmentServiceDefinitionServiceImplTest {
         mockStatic(Context.class);
         authenticatedUser = new User(8);
         PowerMockito.when(Context.getAuthenticatedUser()).thenReturn(authenticatedUser);
+        appointmentServiceService.setAppointmentServiceDefinitionCache(new AppointmentServiceDefinitionCache());
     }
 
     @Test
@@ -75,6 +80,56 @@ public class AppointmentServiceDefinitionServiceImplTest {
         Mockito.verify(appointmentServiceDao, times(1)).getAppointmentServiceByUuid("uuid");
     }
 
+    @Test
+    public void shouldServeRepeatedLookupsByUuidFromTheCacheUntilTheServiceIsSaved() throws Exception {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        appointmentServiceDefinition.setUuid("uuid");
+        appointmentServiceDefinition.setName("Cardiology OPD");
+        when(appointmentServiceDao.getAppointmentServiceByUuid("uuid")).thenReturn(appointmentServiceDefinition);
+
+        appointmentServiceService.getAppointmentServiceByUuid("uuid");
+        AppointmentServiceDefinition cachedAppointmentServiceDefinition = appointmentServiceService.getAppointmentServiceByUuid("uuid");
+        Mockito.verify(appointmentServiceDao, times(1)).getAppointmentServiceByUuid("uuid");
+
+        AppointmentServiceDefinition editableAppointmentServiceDefinition = appointmentServiceService.getEditableAppointmentServiceByUuid("uuid");
+        Mockito.verify(appointmentServiceDao, times(2)).getAppointmentServiceByUuid("uuid");
+        assertNotSame(cachedAppointmentServiceDefinition, editableAppointmentServiceDefinition);
+
+        editableAppointmentServiceDefinition.setName("Cardiology IPD");
+        appointmentServiceService.save(editableAppointmentServiceDefinition);
+        appointmentServiceService.getAppointmentServiceByUuid("uuid");
+        Mockito.verify(appointmentServiceDao, times(3)).getAppointmentServiceByUuid("uuid");
+    }
+
+    @Test
+    public void shouldLoadTheDefinitionItselfForEditsInsteadOfACachedSnapshot() throws Exception {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        appointmentServiceDefinition.setUuid("uuid");
+        when(appointmentServiceDao.getAppointmentServiceByUuid("uuid")).thenReturn(appointmentServiceDefinition);
+
+        appointmentServiceService.getAppointmentServiceByUuid("uuid");
+        AppointmentServiceDefinition editableAppointmentServiceDefinition = appointmentServiceService.getEditableAppointmentServiceByUuid("uuid");
+
+        assertSame(appointmentServiceDefinition, editableAppointmentServiceDefinition);
+    }
+
+    @Test
+    public void shouldReferToTheSessionInstancesOfACachedSnapshotAndItsServiceType() throws Exception {
+        AppointmentServiceDefinition snapshot = new AppointmentServiceDefinition();
+        snapshot.setAppointmentServiceId(3);
+        AppointmentServiceType snapshotServiceType = new AppointmentServiceType();
+        snapshotServiceType.setId(5);
+        AppointmentServiceDefinition managedService = new AppointmentServiceDefinition();
+        AppointmentServiceType managedServiceType = new AppointmentServiceType();
+        when(appointmentServiceDao.getAppointmentServiceReference(3)).thenReturn(managedService);
+        when(appointmentServiceDao.getAppointmentServiceTypeReference(5)).thenReturn(managedServiceType);
+
+        assertSame(managedService, appointmentServiceService.getAppointmentServiceReference(snapshot));
+        assertSame(managedServiceType, appointmentServiceService.getAppointmentServiceTypeReference(snapshotServiceType));
+        assertNull(appointmentServiceService.getAppointmentServiceReference(null));
+        assertNull(appointmentServiceService.getAppointmentServiceTypeReference(null));
+    }
+
     @Test
     public void shouldVoidTheAppointmentService() throws Exception {
         String voidReason = "voidReason";
@@ -295,7 +350,26 @@ public class AppointmentServiceDefinitionServiceImplTest {
                 startDateTime, endDateTime);
         AppointmentStatus[] includeStatus = new AppointmentStatus[]{AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled};
 
-        Mockito.verify(appointmentsService, times(1)).getAppointmentsForService(appointmentServiceDefinition, startDateTime, endDateTime,
+        Mockito.verify(appointmentsService, times(1)).getAppointmentsCountForService(appointmentServiceDefinition, startDateTime, endDateTime,
                 Arrays.asList(includeStatus));
+        Mockito.verify(appointmentsService, times(0)).getAppointmentsForService(appointmentServiceDefinition, startDateTime, endDateTime,
+                Arrays.asList(includeStatus));
+    }
+
+    @Test
+    public void shouldCalculateLoadForAllServiceWindowsInOneCall() throws Exception {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        Date startDateTime = DateUtil.convertToLocalDateFromUTC("2108-08-14T18:30:00.0Z");
+        Date endDateTime = DateUtil.convertToLocalDateFromUTC("2108-08-15T18:29:29.0Z");
+        List<AppointmentServiceLoadWindow> loadWindows = Arrays.asList(
+                new AppointmentServiceLoadWindow(appointmentServiceDefinition, startDateTime, endDateTime),
+                new AppointmentServiceLoadWindow(appointmentServiceDefinition, endDateTime, endDateTime));
+        AppointmentStatus[] includeStatus = new AppointmentStatus[]{AppointmentStatus.CheckedIn, AppointmentStatus.Completed, AppointmentStatus.Scheduled};
+        when(appointmentsService.getAppointmentsCountForServices(loadWindows, Arrays.asList(includeStatus))).thenReturn(Arrays.asList(3, 0));
+
+        List<Integer> load = appointmentServiceService.calculateCurrentLoad(loadWindows);
+
+        assertEquals(Arrays.asList(3, 0), load);
+        Mockito.verify(appointmentsService, times(1)).getAppointmentsCountForServices(loadWindows, Arrays.asList(includeStatus));
     }
 }
@@ -24,6 +24,7 @@ import org.openmrs.module.appointments.conflicts.impl.PatientDoubleBookingConfli
 import org.openmrs.module.appointments.dao.AppointmentAuditDao;
 import org.openmrs.module.appointments.dao.AppointmentDao;
 import org.openmrs.module.appointments.helper.AppointmentServiceHelper;
+import org.openmrs.module.appointments.helper.ProviderScheduleIndex;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
 import org.openmrs.module.appointments.model.AppointmentKind;
@@ -31,6 +32,7 @@ import org.openmrs.module.appointments.model.AppointmentProvider;
 import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.util.DateUtil;
@@ -60,7 +62,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -131,7 +136,10 @@ public class AppointmentsServiceImplTest {
     private TeleconsultationAppointmentService teleconsultationAppointmentService;
 
     @Mock
-    private PatientAppointmentNotifierService patientAppointmentNotifierService;
+    private AppointmentNotificationDispatcher appointmentNotificationDispatcher;
+
+    @Mock
+    private ProviderScheduleIndex providerScheduleIndex;
 
     @InjectMocks
     private AppointmentsServiceImpl appointmentsService;
@@ -176,6 +184,16 @@ public class AppointmentsServiceImplTest {
         verify(appointmentDao, times(1)).save(appointment);
     }
 
+    @Test
+    public void shouldUpdateProviderSchedulesOnSaveOfAppointment() {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentAudits(new HashSet<>());
+
+        appointmentsService.validateAndSave(appointment);
+
+        verify(providerScheduleIndex, times(1)).update(appointment);
+    }
+
     @Test
     public void shouldCallCreateAuditEventOnSaveOfAppointment() throws IOException {
         Appointment appointment = new Appointment();
@@ -184,7 +202,7 @@ public class AppointmentsServiceImplTest {
         AppointmentAudit appointmentAuditMock = mock(AppointmentAudit.class);
         when(appointmentServiceHelper.getAppointmentAuditEvent(appointment, notes))
                 .thenReturn(appointmentAuditMock);
-        when(appointmentServiceHelper.getAppointmentAsJsonString(appointment)).thenReturn(notes);
+        when(appointmentServiceHelper.getAppointmentAuditNotes(appointment)).thenReturn(notes);
 
         appointmentsService.validateAndSave(appointment);
 
@@ -203,7 +221,7 @@ public class AppointmentsServiceImplTest {
         appointment.setAppointmentKind(AppointmentKind.Virtual);
         appointment.setAppointmentAudits(new HashSet<>());
         appointmentsService.validateAndSave(appointment);
-        verify(patientAppointmentNotifierService, times(1)).notifyAll(appointment);
+        verify(appointmentNotificationDispatcher, times(1)).queue(appointment);
     }
 
     @Test
@@ -216,7 +234,7 @@ public class AppointmentsServiceImplTest {
         appointment.setAppointmentKind(AppointmentKind.Scheduled);
         appointment.setAppointmentAudits(new HashSet<>());
         appointmentsService.validateAndSave(appointment);
-        verify(patientAppointmentNotifierService, times(1)).notifyAll(appointment);
+        verify(appointmentNotificationDispatcher, times(1)).queue(appointment);
     }
 
     @Test
@@ -303,6 +321,31 @@ public class AppointmentsServiceImplTest {
         verify(appointmentDao, times(1)).getAppointmentsForService(appointmentServiceDefinition, startDate, endDate, null);
     }
 
+    @Test
+    public void shouldGetAppointmentsCountForServiceFromDao() throws ParseException {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        Date startDate = DateUtil.convertToDate("2108-08-15T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        Date endDate = DateUtil.convertToDate("2108-08-22T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        when(appointmentDao.getAppointmentsCountForService(appointmentServiceDefinition, startDate, endDate, null)).thenReturn(4);
+
+        Integer count = appointmentsService.getAppointmentsCountForService(appointmentServiceDefinition, startDate, endDate, null);
+
+        assertEquals(4, count.intValue());
+        verify(appointmentDao, never()).getAppointmentsForService(appointmentServiceDefinition, startDate, endDate, null);
+    }
+
+    @Test
+    public void shouldRejectLoadWindowsWithoutStartOrEndDateTime() throws ParseException {
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        Date startDate = DateUtil.convertToDate("2108-08-15T00:00:00.0Z", DateUtil.DateFormatType.UTC);
+        List<AppointmentServiceLoadWindow> loadWindows = Collections.singletonList(
+                new AppointmentServiceLoadWindow(appointmentServiceDefinition, startDate, null));
+        expectedException.expect(APIException.class);
+        expectedException.expectMessage("Service, start date time and end date time are required for every load window");
+
+        appointmentsService.getAppointmentsCountForServices(loadWindows, null);
+    }
+
     @Test
     public void shouldSearchForAnAppointment() {
         Appointment appointment = new Appointment();
@@ -382,6 +425,38 @@ public class AppointmentsServiceImplTest {
         verify(appointmentAuditDao, times(1)).save(appointmentAudit);
     }
 
+    @Test
+    public void shouldChangeStatusOfEveryAppointmentInTheCollection() {
+        Appointment scheduledAppointment = new Appointment();
+        scheduledAppointment.setStatus(AppointmentStatus.Scheduled);
+        Appointment checkedInAppointment = new Appointment();
+        checkedInAppointment.setStatus(AppointmentStatus.CheckedIn);
+
+        List<Appointment> appointments = asList(scheduledAppointment, checkedInAppointment);
+        AppointmentAudit scheduledAppointmentAudit = new AppointmentAudit();
+        AppointmentAudit checkedInAppointmentAudit = new AppointmentAudit();
+        when(Context.getAuthenticatedUser()).thenReturn(user);
+        when(appointmentServiceHelper.getAppointmentAuditEvent(eq(scheduledAppointment), anyString())).thenReturn(scheduledAppointmentAudit);
+        when(appointmentServiceHelper.getAppointmentAuditEvent(eq(checkedInAppointment), anyString())).thenReturn(checkedInAppointmentAudit);
+
+        appointmentsService.changeStatus(appointments, AppointmentStatus.Missed, new Date());
+
+        verify(appointmentServiceHelper, times(2)).validateStatusChangeAndGetErrors(any(Appointment.class),
+                eq(AppointmentStatus.Missed), anyListOf(AppointmentStatusChangeValidator.class));
+        verify(appointmentDao).updateStatus(eq(appointments), eq(AppointmentStatus.Missed), eq(user), any(Date.class));
+        verify(appointmentDao, never()).save(any(Appointment.class));
+        verify(appointmentAuditDao).saveAll(asList(scheduledAppointmentAudit, checkedInAppointmentAudit));
+    }
+
+    @Test
+    public void shouldNotUpdateAnythingWhenChangingStatusOfNoAppointments() {
+        appointmentsService.changeStatus(new ArrayList<>(), AppointmentStatus.Missed, new Date());
+
+        verify(appointmentDao, never()).updateStatus(anyCollectionOf(Appointment.class), any(AppointmentStatus.class),
+                any(User.class), any(Date.class));
+        verify(appointmentAuditDao, never()).saveAll(anyCollectionOf(AppointmentAudit.class));
+    }
+
     @Test
     public void shouldCallAppointmentDaoOnce() {
         appointmentsService.getAllAppointmentsInDateRange(null, null);
@@ -572,13 +647,13 @@ public class AppointmentsServiceImplTest {
         Appointment appointment = new Appointment();
         appointment.setAppointmentAudits(new HashSet<>());
         String anyString = any(String.class);
-        when(appointmentServiceHelper.getAppointmentAsJsonString(appointment)).thenReturn(anyString);
+        when(appointmentServiceHelper.getAppointmentAuditNotes(appointment)).thenReturn(anyString);
         AppointmentAudit appointmentAudit = mock(AppointmentAudit.class);
         when(appointmentServiceHelper.getAppointmentAuditEvent(appointment, anyString)).thenReturn(appointmentAudit);
 
         Appointment actual = appointmentsService.validateAndSave(appointment);
 
-        verify(appointmentServiceHelper).getAppointmentAsJsonString(appointment);
+        verify(appointmentServiceHelper).getAppointmentAuditNotes(appointment);
         verify(appointmentServiceHelper).getAppointmentAuditEvent(appointment, anyString);
         verify(appointmentDao).save(appointment);
         assertEquals(1, actual.getAppointmentAudits().size());
@@ -595,7 +670,7 @@ public class AppointmentsServiceImplTest {
 
         appointmentsService.validateAndSave(appointment);
 
-        verify(appointmentServiceHelper, never()).getAppointmentAsJsonString(any(Appointment.class));
+        verify(appointmentServiceHelper, never()).getAppointmentAuditNotes(any(Appointment.class));
         verify(appointmentServiceHelper, never()).getAppointmentAuditEvent(any(Appointment.class), any(String.class));
         verify(appointmentDao, never()).save(any(Appointment.class));
     }
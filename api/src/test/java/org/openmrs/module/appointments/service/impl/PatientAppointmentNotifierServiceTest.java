@@ -13,6 +13,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.Collections;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -40,4 +41,17 @@ public class PatientAppointmentNotifierServiceTest {
         notifierService.notifyAll(appointment);
         verify(appointmentEventNotifier, times(1)).sendNotification(appointment);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSendNotificationThroughTheNotifierOfTheMedium() throws NotificationException {
+        Appointment appointment = new Appointment();
+        when(appointmentEventNotifier.getMedium()).thenReturn("EMAIL");
+        when(appointmentEventNotifier.isApplicable(appointment)).thenReturn(true);
+        when(appointmentEventNotifier.sendNotification(appointment)).thenReturn(new NotificationResult("", "EMAIL", 0, "Some message"));
+
+        assertEquals(Collections.singletonList("EMAIL"), notifierService.getApplicableMediums(appointment));
+        assertEquals("Some message", notifierService.sendNotification("email", appointment).getMessage());
+        assertEquals(NotificationResult.IGNORED, notifierService.sendNotification("SMS", appointment).getStatus());
+        verify(appointmentEventNotifier, times(1)).sendNotification(appointment);
+    }
+}
@@ -7,6 +7,7 @@ import org.mockito.Mock;
 import org.openmrs.GlobalProperty;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -27,6 +28,8 @@ public class TeleconsultationAppointmentServiceTest {
     public void setUp() throws Exception {
         PowerMockito.mockStatic(Context.class);
         when(Context.getAdministrationService()).thenReturn(administrationService);
+        when(Context.getRegisteredComponent(GlobalPropertySnapshot.BEAN_NAME, GlobalPropertySnapshot.class))
+                .thenReturn(new GlobalPropertySnapshot());
         when(administrationService.getGlobalProperty("bahmni.appointment.teleConsultation.serverUrlPattern")).thenReturn("https://test.server/{0}");
     }
 
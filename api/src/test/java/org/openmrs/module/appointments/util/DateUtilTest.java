@@ -74,6 +74,19 @@ public class DateUtilTest {
         assertEquals("00:00:00", time);
     }
 
+    @Test
+    public void shouldReturnStartOfDayInTheGivenTimeZoneWithoutChangingTheDefault() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone timeZone = TimeZone.getTimeZone("Pacific/Kiritimati");
+
+        Date date = DateUtil.getStartOfDay(timeZone);
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss");
+        dateFormat.setTimeZone(timeZone);
+        assertEquals("00:00:00", dateFormat.format(date));
+        assertEquals(defaultTimeZone, TimeZone.getDefault());
+    }
+
     @Test
     public void shouldReturnEndOfDay() {
         Date date = DateUtil.getEndOfDay();
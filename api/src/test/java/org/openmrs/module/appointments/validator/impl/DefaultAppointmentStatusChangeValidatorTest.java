@@ -8,6 +8,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.powermock.api.mockito.PowerMockito;
@@ -39,6 +40,8 @@ public class DefaultAppointmentStatusChangeValidatorTest {
 
         when(administrationService.getGlobalProperty("disableDefaultAppointmentValidations")).thenReturn("false");
         when(Context.getAdministrationService()).thenReturn(administrationService);
+        when(Context.getRegisteredComponent(GlobalPropertySnapshot.BEAN_NAME, GlobalPropertySnapshot.class))
+                .thenReturn(new GlobalPropertySnapshot());
     }
 
     @Before
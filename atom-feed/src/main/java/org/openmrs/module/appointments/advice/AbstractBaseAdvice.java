@@ -7,12 +7,17 @@ import org.ict4h.atomfeed.server.service.EventServiceImpl;
 import org.ict4h.atomfeed.transaction.AFTransactionWorkWithoutResult;
 import java.time.LocalDateTime;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.atomfeed.transaction.support.AtomFeedSpringTransactionManager;
 import org.springframework.aop.AfterReturningAdvice;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 public abstract class AbstractBaseAdvice implements AfterReturningAdvice {
@@ -20,7 +25,6 @@ public abstract class AbstractBaseAdvice implements AfterReturningAdvice {
     private EventServiceImpl eventService;
     private AtomFeedSpringTransactionManager atomFeedSpringTransactionManager;
 
-
     public AbstractBaseAdvice() {
         atomFeedSpringTransactionManager = new AtomFeedSpringTransactionManager(getSpringPlatformTransactionManager());
         AllEventRecordsQueue allEventRecordsQueue = new AllEventRecordsQueueJdbcImpl(atomFeedSpringTransactionManager);
@@ -32,8 +36,7 @@ public abstract class AbstractBaseAdvice implements AfterReturningAdvice {
     }
 
 
-    private void raiseEvent(String contents, String title, String category) {
-        final Event event = new Event(UUID.randomUUID().toString(), title, LocalDateTime.now(), (URI) null, contents, category);
+    private void raiseEvents(final List<Event> events) {
         atomFeedSpringTransactionManager.executeWithTransaction(
                 new AFTransactionWorkWithoutResult() {
                     @Override
@@ -43,7 +46,9 @@ public abstract class AbstractBaseAdvice implements AfterReturningAdvice {
 
                     @Override
                     protected void doInTransaction() {
-                        eventService.notify(event);
+                        for (Event event : events) {
+                            eventService.notify(event);
+                        }
                     }
                 }
         );
@@ -51,12 +56,31 @@ public abstract class AbstractBaseAdvice implements AfterReturningAdvice {
 
     @Override
     public void afterReturning(Object returnValue, Method method, Object[] arguments, Object target) throws Throwable {
-        if (shouldRaiseEvent() && shouldRaiseEventForMethod(method.getName()))
-            raiseEvent(getContents(returnValue), getTitle(), getCategory());
+        raiseEvents(Collections.singletonList(returnValue), method);
+    }
+
+    /**
+     * Raises an event for each of the values of one service call. All the events are queued in a single atom feed
+     * transaction.
+     */
+    protected void raiseEvents(Collection<?> returnValues, Method method) {
+        if (returnValues.isEmpty() || !shouldRaiseEvent() || !shouldRaiseEventForMethod(method.getName())) {
+            return;
+        }
+        List<Event> events = new ArrayList<>(returnValues.size());
+        for (Object returnValue : returnValues) {
+            events.add(new Event(UUID.randomUUID().toString(), getTitle(), LocalDateTime.now(), (URI) null,
+                    getContents(returnValue), getCategory()));
+        }
+        raiseEvents(events);
     }
 
     protected String getUrlPattern(String urlPatternGlobalProperty, String defaultValue) {
-        return Context.getAdministrationService().getGlobalProperty(urlPatternGlobalProperty, defaultValue);
+        return GlobalPropertySnapshot.getInstance().getGlobalProperty(urlPatternGlobalProperty, defaultValue);
+    }
+
+    protected boolean isGlobalPropertyTrue(String globalProperty) {
+        return GlobalPropertySnapshot.getInstance().getBooleanGlobalProperty(globalProperty);
     }
 
     protected abstract String getContents(Object returnValue);
@@ -1,11 +1,11 @@
 package org.openmrs.module.appointments.advice;
 
-import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.model.Appointment;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 
 import static java.util.Objects.isNull;
 import static org.openmrs.module.appointments.constants.AppointmentsEventRecordsConstants.CATEGORY;
@@ -31,8 +31,13 @@ public class AppointmentAdvice extends AbstractBaseAdvice {
         // Hacky fix for void method
         Object processedReturnValue = returnValue;
 
-        if (VOIDED_METHOD_NAMES.contains(method.getName()) && !isNull(arguments))
+        if (VOIDED_METHOD_NAMES.contains(method.getName()) && !isNull(arguments)) {
+            if (arguments[0] instanceof Collection) {
+                raiseEvents((Collection<?>) arguments[0], method);
+                return;
+            }
             processedReturnValue = arguments[0];
+        }
 
         super.afterReturning(processedReturnValue, method, arguments, target);
     }
@@ -54,6 +59,6 @@ public class AppointmentAdvice extends AbstractBaseAdvice {
 
     @Override
     protected boolean shouldRaiseEvent() {
-        return Boolean.parseBoolean(Context.getAdministrationService().getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY));
+        return isGlobalPropertyTrue(RAISE_EVENT_GLOBAL_PROPERTY);
     }
 }
@@ -1,6 +1,5 @@
 package org.openmrs.module.appointments.advice;
 
-import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
 
 import java.util.ArrayList;
@@ -38,6 +37,6 @@ public class AppointmentServiceDefinitionAdvice extends AbstractBaseAdvice {
 
     @Override
     protected boolean shouldRaiseEvent() {
-        return Boolean.valueOf(Context.getAdministrationService().getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY));
+        return isGlobalPropertyTrue(RAISE_EVENT_GLOBAL_PROPERTY);
     }
 }
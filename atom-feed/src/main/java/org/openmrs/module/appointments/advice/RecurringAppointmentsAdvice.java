@@ -1,6 +1,5 @@
 package org.openmrs.module.appointments.advice;
 
-import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
 
@@ -33,14 +32,7 @@ public class RecurringAppointmentsAdvice extends AbstractBaseAdvice {
         } else if (CHANGE_STATUS.equals(method.getName())) {
             updatedAppointments = (List<Appointment>) returnValue;
         }
-        raiseEventsForAppointments(method, arguments, target, updatedAppointments);
-    }
-
-    private void raiseEventsForAppointments(Method method, Object[] arguments, Object target,
-                                            List<Appointment> appointments) throws Throwable {
-        for (Appointment appointment : appointments) {
-            super.afterReturning(appointment, method, arguments, target);
-        }
+        raiseEvents(updatedAppointments, method);
     }
 
     private boolean isSingleRecurringAppointmentUpdate(Method method, Object processedReturnValue) {
@@ -74,6 +66,6 @@ public class RecurringAppointmentsAdvice extends AbstractBaseAdvice {
 
     @Override
     protected boolean shouldRaiseEvent() {
-        return Boolean.parseBoolean(Context.getAdministrationService().getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY));
+        return isGlobalPropertyTrue(RAISE_EVENT_GLOBAL_PROPERTY);
     }
 }
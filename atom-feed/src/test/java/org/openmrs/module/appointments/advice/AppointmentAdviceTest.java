@@ -10,13 +10,16 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.atomfeed.transaction.support.AtomFeedSpringTransactionManager;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 
@@ -71,8 +74,10 @@ public class AppointmentAdviceTest {
 
         when(Context.getRegisteredComponents(PlatformTransactionManager.class)).thenReturn(Collections.singletonList(platformTransactionManager));
         when(Context.getAdministrationService()).thenReturn(administrationService);
+        when(Context.getRegisteredComponent(GlobalPropertySnapshot.BEAN_NAME, GlobalPropertySnapshot.class))
+                .thenReturn(new GlobalPropertySnapshot());
         when(administrationService.getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY)).thenReturn("true");
-        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN)).thenReturn(DEFAULT_URL_PATTERN);
+        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY)).thenReturn(DEFAULT_URL_PATTERN);
 
         whenNew(AtomFeedSpringTransactionManager.class).withAnyArguments().thenReturn(atomFeedSpringTransactionManager);
         whenNew(AllEventRecordsQueueJdbcImpl.class).withArguments(this.atomFeedSpringTransactionManager).thenReturn(allEventRecordsQueue);
@@ -92,7 +97,7 @@ public class AppointmentAdviceTest {
         verify(eventService, times(1)).notify(any(Event.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("Appointment"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/appointment?uuid=%s", UUID)), eq("appointments"));
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 
     @Test
@@ -102,7 +107,7 @@ public class AppointmentAdviceTest {
         appointmentAdvice.afterReturning(appointment, this.getClass().getMethod("validateAndSave"), null, null);
 
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
         verify(atomFeedSpringTransactionManager, times(0)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verify(eventService, times(0)).notify(any(Event.class));
         verifyNew(Event.class, times(0)).withArguments(anyString(), anyString(), any(Date.class), any(URI.class), anyString(), anyString());
@@ -113,7 +118,7 @@ public class AppointmentAdviceTest {
         appointmentAdvice.afterReturning(appointment, this.getClass().getMethod("dummy"), null, null);
 
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
         verify(atomFeedSpringTransactionManager, times(0)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verify(eventService, times(0)).notify(any(Event.class));
         verifyNew(Event.class, times(0)).withArguments(anyString(), anyString(), any(Date.class), any(URI.class), anyString(), anyString());
@@ -121,16 +126,16 @@ public class AppointmentAdviceTest {
 
     @Test
     public void shouldRaiseEventWithCustomUrlPatternGivenInGlobalProperty() throws Throwable {
-        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN)).thenReturn("/openmrs/ws/rest/v1/appointment/test/{uuid}");
+        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY)).thenReturn("/openmrs/ws/rest/v1/appointment/test/{uuid}");
 
         appointmentAdvice.afterReturning(appointment, this.getClass().getMethod("validateAndSave"), null, null);
 
         verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
         verify(eventService, times(1)).notify(any(Event.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("Appointment"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/appointment/test/%s", UUID)), eq("appointments"));
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 
     public void validateAndSave() {
@@ -153,7 +158,17 @@ public class AppointmentAdviceTest {
         verify(eventService, times(1)).notify(any(Event.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("Appointment"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/appointment?uuid=%s", UUID)), eq("appointments"));
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
+    }
+
+    @Test
+    public void shouldCreateEventForEachAppointmentOfABulkStatusChangeInOneTransaction() throws Throwable {
+        Object[] arguments = {Arrays.asList(appointment, appointment), AppointmentStatus.Missed, new Date()};
+        appointmentAdvice.afterReturning(null, this.getClass().getMethod("changeStatus"), arguments, null);
+
+        verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
+        verify(eventService, times(2)).notify(any(Event.class));
+        verifyNew(Event.class, times(2)).withArguments(anyString(), eq("Appointment"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/appointment?uuid=%s", UUID)), eq("appointments"));
     }
 
     @Test
@@ -164,6 +179,6 @@ public class AppointmentAdviceTest {
         verify(eventService, times(1)).notify(any(Event.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("Appointment"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/appointment?uuid=%s", UUID)), eq("appointments"));
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.openmrs.api.AdministrationService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.appointments.helper.GlobalPropertySnapshot;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
 import org.openmrs.module.atomfeed.transaction.support.AtomFeedSpringTransactionManager;
@@ -22,6 +23,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Set;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -73,8 +75,10 @@ public class RecurringAppointmentsAdviceTest {
 
         when(Context.getRegisteredComponents(PlatformTransactionManager.class)).thenReturn(Collections.singletonList(platformTransactionManager));
         when(Context.getAdministrationService()).thenReturn(administrationService);
+        when(Context.getRegisteredComponent(GlobalPropertySnapshot.BEAN_NAME, GlobalPropertySnapshot.class))
+                .thenReturn(new GlobalPropertySnapshot());
         when(administrationService.getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY)).thenReturn("true");
-        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN)).thenReturn(DEFAULT_URL_PATTERN);
+        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY)).thenReturn(DEFAULT_URL_PATTERN);
 
         whenNew(AtomFeedSpringTransactionManager.class).withAnyArguments().thenReturn(atomFeedSpringTransactionManager);
         whenNew(AllEventRecordsQueueJdbcImpl.class).withArguments(this.atomFeedSpringTransactionManager).thenReturn(allEventRecordsQueue);
@@ -96,7 +100,7 @@ public class RecurringAppointmentsAdviceTest {
         verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", UUID)), eq("appointments"));
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 
     @Test
@@ -105,7 +109,7 @@ public class RecurringAppointmentsAdviceTest {
 
         recurringAppointmentsAdvice.afterReturning(appointmentRecurringPattern, this.getClass().getMethod("validateAndSave"), null, null);
 
-        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
         verify(atomFeedSpringTransactionManager, times(0)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verify(eventService, times(0)).notify(any(Event.class));
@@ -116,7 +120,7 @@ public class RecurringAppointmentsAdviceTest {
     public void shouldNotRaiseAppointmentServiceChangeEventToEventRecordsTableIfTheMethodIsNotSaveOrVoidAppointmentService() throws Throwable {
         recurringAppointmentsAdvice.afterReturning(appointmentRecurringPattern, this.getClass().getMethod("dummy"), null, null);
 
-        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(0)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
         verify(administrationService, times(0)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
         verify(atomFeedSpringTransactionManager, times(0)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verify(eventService, times(0)).notify(any(Event.class));
@@ -125,16 +129,16 @@ public class RecurringAppointmentsAdviceTest {
 
     @Test
     public void shouldRaiseEventWithCustomUrlPatternGivenInGlobalProperty() throws Throwable {
-        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN)).thenReturn("/openmrs/ws/rest/v1/appointment/test/{uuid}");
+        when(administrationService.getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY)).thenReturn("/openmrs/ws/rest/v1/appointment/test/{uuid}");
 
         recurringAppointmentsAdvice.afterReturning(appointmentRecurringPattern, this.getClass().getMethod("validateAndSave"), null, null);
 
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
         verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verify(eventService, times(1)).notify(any(Event.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/appointment/test/%s", UUID)), eq("appointments"));
         verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 
     public void validateAndSave() {
@@ -160,11 +164,11 @@ public class RecurringAppointmentsAdviceTest {
         recurringAppointmentsAdvice.afterReturning(appointmentRecurringPattern, this.getClass().getMethod("update"), null, null);
 
         verify(eventService, times(2)).notify(any(Event.class));
-        verify(atomFeedSpringTransactionManager, times(2)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
+        verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", UUID)), eq("appointments"));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", anotherUuid)), eq("appointments"));
-        verify(administrationService, times(2)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(2)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 
     @Test
@@ -182,11 +186,11 @@ public class RecurringAppointmentsAdviceTest {
                 this.getClass().getMethod("update"), arguments, null);
 
         verify(eventService, times(2)).notify(any(Event.class));
-        verify(atomFeedSpringTransactionManager, times(2)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
+        verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", UUID)), eq("appointments"));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", anotherUuid)), eq("appointments"));
-        verify(administrationService, times(2)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(2)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
     }
 
     @Test
@@ -199,10 +203,36 @@ public class RecurringAppointmentsAdviceTest {
         recurringAppointmentsAdvice.afterReturning(Arrays.asList(appointmentOne, appointmentTwo), this.getClass().getMethod("changeStatus"), null, null);
 
         verify(eventService, times(2)).notify(any(Event.class));
-        verify(atomFeedSpringTransactionManager, times(2)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
+        verify(atomFeedSpringTransactionManager, times(1)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", UUID)), eq("appointments"));
         verifyNew(Event.class, times(1)).withArguments(anyString(), eq("RecurringAppointments"), any(Date.class), any(URI.class), eq(String.format("/openmrs/ws/rest/v1/recurring-appointments?uuid=%s", anotherUuid)), eq("appointments"));
-        verify(administrationService, times(2)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
-        verify(administrationService, times(2)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY, DEFAULT_URL_PATTERN);
+        verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
+    }
+
+    @Test
+    public void shouldPublishEachSeriesInOneTransactionAndLookUpEachGlobalPropertyOnlyOnce() throws Throwable {
+        int totalAppointments = 0;
+        int[] seriesSizes = {1, 4, 52};
+        for (int seriesSize : seriesSizes) {
+            appointmentRecurringPattern.setAppointments(createAppointments(seriesSize));
+            recurringAppointmentsAdvice.afterReturning(appointmentRecurringPattern, this.getClass().getMethod("validateAndSave"), null, null);
+            totalAppointments += seriesSize;
+        }
+
+        verify(eventService, times(totalAppointments)).notify(any(Event.class));
+        verify(atomFeedSpringTransactionManager, times(seriesSizes.length)).executeWithTransaction(any(AFTransactionWorkWithoutResult.class));
+        verify(administrationService, times(1)).getGlobalProperty(RAISE_EVENT_GLOBAL_PROPERTY);
+        verify(administrationService, times(1)).getGlobalProperty(URL_PATTERN_GLOBAL_PROPERTY);
+    }
+
+    private Set<Appointment> createAppointments(int count) {
+        Set<Appointment> appointments = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setUuid(java.util.UUID.randomUUID().toString());
+            appointments.add(appointment);
+        }
+        return appointments;
     }
 }
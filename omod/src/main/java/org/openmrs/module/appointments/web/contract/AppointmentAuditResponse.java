@@ -0,0 +1,80 @@
+package org.openmrs.module.appointments.web.contract;
+
+import org.openmrs.module.appointments.model.AppointmentAuditSnapshot;
+
+import java.util.Date;
+
+public class AppointmentAuditResponse {
+    private String uuid;
+    private String appointmentUuid;
+    private String patientUuid;
+    private String status;
+    private String actorUuid;
+    private Date dateCreated;
+    private String notes;
+    private AppointmentAuditSnapshot appointmentDetails;
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getAppointmentUuid() {
+        return appointmentUuid;
+    }
+
+    public void setAppointmentUuid(String appointmentUuid) {
+        this.appointmentUuid = appointmentUuid;
+    }
+
+    public String getPatientUuid() {
+        return patientUuid;
+    }
+
+    public void setPatientUuid(String patientUuid) {
+        this.patientUuid = patientUuid;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getActorUuid() {
+        return actorUuid;
+    }
+
+    public void setActorUuid(String actorUuid) {
+        this.actorUuid = actorUuid;
+    }
+
+    public Date getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(Date dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    public AppointmentAuditSnapshot getAppointmentDetails() {
+        return appointmentDetails;
+    }
+
+    public void setAppointmentDetails(AppointmentAuditSnapshot appointmentDetails) {
+        this.appointmentDetails = appointmentDetails;
+    }
+}
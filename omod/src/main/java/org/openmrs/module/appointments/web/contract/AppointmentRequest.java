@@ -22,6 +22,7 @@ public class AppointmentRequest {
     private String appointmentKind;
     private String comments;
     private List<AppointmentProviderDetail> providers = new ArrayList<>();
+    private Integer version;
 
     public String getAppointmentNumber() {
         return appointmentNumber;
@@ -126,4 +127,16 @@ public class AppointmentRequest {
     public void setProviders(List<AppointmentProviderDetail> providers) {
         this.providers = providers;
     }
+
+    /**
+     * The version of the appointment being edited, as read from its ETag. Optional; an edit from any other version is
+     * refused.
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
 }
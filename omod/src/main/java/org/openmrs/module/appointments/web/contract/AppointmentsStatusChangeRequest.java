@@ -0,0 +1,36 @@
+package org.openmrs.module.appointments.web.contract;
+
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+import java.util.List;
+
+@JsonIgnoreProperties
+public class AppointmentsStatusChangeRequest {
+    private List<String> appointmentUuids;
+    private String toStatus;
+    private String onDate;
+
+    public List<String> getAppointmentUuids() {
+        return appointmentUuids;
+    }
+
+    public void setAppointmentUuids(List<String> appointmentUuids) {
+        this.appointmentUuids = appointmentUuids;
+    }
+
+    public String getToStatus() {
+        return toStatus;
+    }
+
+    public void setToStatus(String toStatus) {
+        this.toStatus = toStatus;
+    }
+
+    public String getOnDate() {
+        return onDate;
+    }
+
+    public void setOnDate(String onDate) {
+        this.onDate = onDate;
+    }
+}
@@ -1,10 +1,12 @@
 package org.openmrs.module.appointments.web.controller;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentServiceDailyCount;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
@@ -15,9 +17,9 @@ import org.openmrs.module.appointments.web.contract.*;
 import org.openmrs.module.appointments.web.mapper.AppointmentMapper;
 import org.openmrs.module.appointments.web.mapper.AppointmentServiceMapper;
 import org.openmrs.module.webservices.rest.web.RestConstants;
-import org.openmrs.module.webservices.rest.web.RestUtil;
 import org.openmrs.module.webservices.rest.web.v1_0.controller.BaseRestController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -51,6 +53,10 @@ public class AppointmentController extends BaseRestController {
     @RequestMapping(method = RequestMethod.GET, value = "all")
     @ResponseBody
     public List<AppointmentDefaultResponse> getAllAppointments(@RequestParam(value = "forDate", required = false) String forDate) throws ParseException {
+        if (appointmentMapper.canConstructResponseFromProjections()) {
+            return appointmentMapper.constructResponseFromProjections(
+                    appointmentsService.getAllAppointmentProjections(DateUtil.convertToLocalDateFromUTC(forDate)));
+        }
         List<Appointment> appointments = appointmentsService.getAllAppointments(DateUtil.convertToLocalDateFromUTC(forDate));
         return appointmentMapper.constructResponse(appointments);
     }
@@ -61,14 +67,29 @@ public class AppointmentController extends BaseRestController {
         if (searchQuery.getStatus() == null) {
             appointment.setStatus(null);
         }
+        if (appointmentMapper.canConstructResponseFromProjections()) {
+            return appointmentMapper.constructResponseFromProjections(appointmentsService.searchProjections(appointment));
+        }
         List<Appointment> appointments =  appointmentsService.search(appointment);
         return appointmentMapper.constructResponse(appointments);
     }
 
+    /**
+     * Creates an appointment, or edits the appointment with the uuid of the request. An edit sent with an If-Match
+     * header or a version that no longer matches the appointment is refused with 412 before anything is changed.
+     */
     @RequestMapping(method = RequestMethod.POST)
     @ResponseBody
-    public ResponseEntity<Object> saveAppointment(@Valid @RequestBody AppointmentRequest appointmentRequest){
+    public ResponseEntity<Object> saveAppointment(@Valid @RequestBody AppointmentRequest appointmentRequest,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
+            if (StringUtils.isNotBlank(appointmentRequest.getUuid())) {
+                Appointment existingAppointment = appointmentsService.getAppointmentByUuid(appointmentRequest.getUuid());
+                if (existingAppointment != null
+                        && !AppointmentVersions.matches(ifMatch, appointmentRequest.getVersion(), existingAppointment)) {
+                    return AppointmentVersions.preconditionFailed();
+                }
+            }
             /**
              * The above code has been done so because to make appointment save within a transaction boundary.
              * calling appointmentMapper starts a transaction and persistent object is modified, which when
@@ -77,10 +98,11 @@ public class AppointmentController extends BaseRestController {
              * appointmentMapper should be fixed and validateAndSave() signature should be changed.
              */
             Appointment appointment = appointmentsService.validateAndSave(() -> appointmentMapper.fromRequest(appointmentRequest));
-            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment), HttpStatus.OK);
+            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment),
+                    AppointmentVersions.eTagHeaders(appointment), HttpStatus.OK);
         } catch (Exception e) {
             log.error("Runtime error while trying to create new appointment", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
@@ -100,26 +122,31 @@ public class AppointmentController extends BaseRestController {
         Date startDate = DateUtil.convertToLocalDateFromUTC(startDateString);
         Date endDate = DateUtil.convertToLocalDateFromUTC(endDateString);
         List<AppointmentServiceDefinition> appointmentServiceDefinitions = appointmentServiceDefinitionService.getAllAppointmentServices(false);
+        List<AppointmentServiceDailyCount> appointmentServiceDailyCounts =
+                appointmentsService.getAppointmentServiceDailyCounts(
+                        startDate, endDate,
+                        Arrays.asList(
+                                AppointmentStatus.Requested,
+                                AppointmentStatus.Completed,
+                                AppointmentStatus.Scheduled,
+                                AppointmentStatus.CheckedIn,
+                                AppointmentStatus.Missed));
+        Map<Integer, Map<Date, List<AppointmentServiceDailyCount>>> countsGroupedByServiceAndDate =
+                appointmentServiceDailyCounts.stream().collect(Collectors.groupingBy(AppointmentServiceDailyCount::getAppointmentServiceId,
+                        Collectors.groupingBy(AppointmentServiceDailyCount::getAppointmentDate)));
+
         for (AppointmentServiceDefinition appointmentServiceDefinition : appointmentServiceDefinitions) {
-            List<Appointment> appointmentsForService =
-                    appointmentsService.getAppointmentsForService(
-                            appointmentServiceDefinition, startDate, endDate,
-                            Arrays.asList(
-                                    AppointmentStatus.Requested,
-                                    AppointmentStatus.Completed,
-                                    AppointmentStatus.Scheduled,
-                                    AppointmentStatus.CheckedIn,
-                                    AppointmentStatus.Missed));
-
-            Map<Date, List<Appointment>> appointmentsGroupedByDate =
-                    appointmentsForService.stream().collect(Collectors.groupingBy(Appointment::getDateFromStartDateTime));
+            Map<Date, List<AppointmentServiceDailyCount>> countsGroupedByDate =
+                    countsGroupedByServiceAndDate.getOrDefault(appointmentServiceDefinition.getAppointmentServiceId(), Collections.emptyMap());
 
             Map<String, DailyAppointmentServiceSummary> appointmentCountMap = new LinkedHashMap<>();
-            for (Map.Entry<Date, List<Appointment>> appointmentDateMap : appointmentsGroupedByDate.entrySet()) {
-                List<Appointment> appointments = appointmentDateMap.getValue();
-                Long missedAppointmentsCount = appointments.stream().filter(s-> s.getStatus().equals(AppointmentStatus.Missed)).count();
+            for (Map.Entry<Date, List<AppointmentServiceDailyCount>> appointmentDateMap : countsGroupedByDate.entrySet()) {
+                List<AppointmentServiceDailyCount> dailyCounts = appointmentDateMap.getValue();
+                int allAppointmentsCount = dailyCounts.stream().mapToInt(AppointmentServiceDailyCount::getCount).sum();
+                int missedAppointmentsCount = dailyCounts.stream().filter(s -> s.getStatus().equals(AppointmentStatus.Missed))
+                        .mapToInt(AppointmentServiceDailyCount::getCount).sum();
                 DailyAppointmentServiceSummary dailyAppointmentServiceSummary = new DailyAppointmentServiceSummary(
-                        appointmentDateMap.getKey(), appointmentServiceDefinition.getUuid(), appointments.size(),Math.toIntExact(missedAppointmentsCount));
+                        appointmentDateMap.getKey(), appointmentServiceDefinition.getUuid(), allAppointmentsCount, missedAppointmentsCount);
                 appointmentCountMap.put(simpleDateFormat.format(appointmentDateMap.getKey()), dailyAppointmentServiceSummary);
             }
 
@@ -138,22 +165,23 @@ public class AppointmentController extends BaseRestController {
                 throw new RuntimeException("Appointment does not exist");
             }
             appointmentsService.undoStatusChange(appointment);
-            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment), HttpStatus.OK);
+            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment),
+                    AppointmentVersions.eTagHeaders(appointment), HttpStatus.OK);
         } catch (RuntimeException e) {
             log.error("Runtime error while trying to undo appointment status", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
     @RequestMapping(method = RequestMethod.GET)
-    @ResponseBody
-    public AppointmentDefaultResponse getAppointmentByUuid(@RequestParam(value = "uuid") String uuid)  {
+    public ResponseEntity<AppointmentDefaultResponse> getAppointmentByUuid(@RequestParam(value = "uuid") String uuid)  {
         Appointment appointment = appointmentsService.getAppointmentByUuid(uuid);
         if(appointment == null) {
             log.error("Invalid. Appointment does not exist. UUID - " + uuid);
             throw new RuntimeException("Appointment does not exist");
         }
-        return appointmentMapper.constructResponse(appointment);
+        return new ResponseEntity<>(appointmentMapper.constructResponse(appointment),
+                AppointmentVersions.eTagHeaders(appointment), HttpStatus.OK);
     }
 
     @RequestMapping(method = RequestMethod.POST, value="/{appointmentUuid}/providerResponse")
@@ -169,7 +197,7 @@ public class AppointmentController extends BaseRestController {
             return new ResponseEntity<>(HttpStatus.OK);
         }catch (RuntimeException e) {
             log.error("Runtime error while trying to update appointment provider response", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
@@ -178,16 +206,22 @@ public class AppointmentController extends BaseRestController {
     @ResponseBody
     public ResponseEntity<Object> rescheduleAppointment(@PathVariable("uuid") String prevAppointmentUuid,
                                                         @Valid @RequestBody AppointmentRequest appointmentRequest,
-                                                        @RequestParam(value = "retainNumber", required = false, defaultValue = "false") boolean retainAppointmentNumber)
+                                                        @RequestParam(value = "retainNumber", required = false, defaultValue = "false") boolean retainAppointmentNumber,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws ParseException {
         try {
+            Appointment prevAppointment = appointmentsService.getAppointmentByUuid(prevAppointmentUuid);
+            if (prevAppointment != null && !AppointmentVersions.matches(ifMatch, prevAppointment)) {
+                return AppointmentVersions.preconditionFailed();
+            }
             appointmentRequest.setUuid(null);
             Appointment appointment = appointmentMapper.fromRequest(appointmentRequest);
             Appointment rescheduledAppointment = appointmentsService.reschedule(prevAppointmentUuid, appointment, false);
-            return new ResponseEntity<>(appointmentMapper.constructResponse(rescheduledAppointment), HttpStatus.OK);
+            return new ResponseEntity<>(appointmentMapper.constructResponse(rescheduledAppointment),
+                    AppointmentVersions.eTagHeaders(rescheduledAppointment), HttpStatus.OK);
         } catch (RuntimeException e) {
             log.error("Runtime error while trying to create new appointment", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
@@ -1,13 +1,17 @@
 package org.openmrs.module.appointments.web.controller;
 
+import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.service.AppointmentServiceDefinitionService;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.web.contract.AppointmentServiceDefaultResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentServiceDescription;
 import org.openmrs.module.appointments.web.contract.AppointmentServiceFullResponse;
+import org.openmrs.module.appointments.web.contract.AppointmentServiceLoadQuery;
 import org.openmrs.module.appointments.web.mapper.AppointmentServiceMapper;
 import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.openmrs.module.webservices.rest.web.RestUtil;
 import org.openmrs.module.webservices.rest.web.v1_0.controller.BaseRestController;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -18,7 +22,10 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping(value = "/rest/" + RestConstants.VERSION_1 + "/appointmentService")
@@ -75,7 +82,7 @@ public class AppointmentServiceController extends BaseRestController {
     @RequestMapping( method = RequestMethod.DELETE)
     @ResponseBody
     public ResponseEntity<Object> voidAppointmentService(@RequestParam(value = "uuid", required = true) String appointmentServiceUuid, @RequestParam(value = "void_reason", required = false) String voidReason ) {
-        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid);
+        AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid(appointmentServiceUuid);
         if (appointmentServiceDefinition.getVoided()){
             AppointmentServiceFullResponse appointmentServiceFullResponse = appointmentServiceMapper.constructResponse(appointmentServiceDefinition);
             return new ResponseEntity<>(appointmentServiceFullResponse, HttpStatus.OK);
@@ -100,4 +107,25 @@ public class AppointmentServiceController extends BaseRestController {
 
         return appointmentServiceDefinitionService.calculateCurrentLoad(appointmentServiceDefinition, DateUtil.convertToLocalDateFromUTC(startDateTime), DateUtil.convertToLocalDateFromUTC(endDateTime));
     }
+
+    @RequestMapping(method = RequestMethod.POST, value = "load")
+    @ResponseBody
+    public ResponseEntity<Object> calculateLoadForServices(@RequestBody List<AppointmentServiceLoadQuery> loadQueries) {
+        try {
+            Map<String, AppointmentServiceDefinition> servicesByUuid = new HashMap<>();
+            List<AppointmentServiceLoadWindow> loadWindows = new ArrayList<>();
+            for (AppointmentServiceLoadQuery loadQuery : loadQueries) {
+                AppointmentServiceDefinition appointmentServiceDefinition = servicesByUuid.computeIfAbsent(loadQuery.getServiceUuid(),
+                        uuid -> appointmentServiceDefinitionService.getAppointmentServiceByUuid(uuid));
+                if (appointmentServiceDefinition == null) {
+                    throw new APIException("Appointment Service does not exist");
+                }
+                loadWindows.add(new AppointmentServiceLoadWindow(appointmentServiceDefinition,
+                        DateUtil.convertToLocalDateFromUTC(loadQuery.getStartDateTime()), DateUtil.convertToLocalDateFromUTC(loadQuery.getEndDateTime())));
+            }
+            return new ResponseEntity<>(appointmentServiceDefinitionService.calculateCurrentLoad(loadWindows), HttpStatus.OK);
+        } catch (RuntimeException | ParseException e) {
+            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package org.openmrs.module.appointments.web.controller;
+
+import org.hibernate.StaleStateException;
+import org.openmrs.api.APIException;
+import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.webservices.rest.web.RestUtil;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * HTTP side of the optimistic locking of appointments. The ETag of an appointment is its quoted version; an update
+ * sent with If-Match is refused with 412 when the appointment has changed since, and an update that loses the race
+ * with a concurrent one is answered with 409 instead of overwriting it.
+ */
+final class AppointmentVersions {
+
+    static final String CONCURRENT_UPDATE_MESSAGE = "The appointment was changed by someone else at the same time. " +
+            "Reload the appointment and try again.";
+
+    static final String PRECONDITION_FAILED_MESSAGE = "The appointment has changed since it was read. " +
+            "Reload the appointment and try again.";
+
+    private AppointmentVersions() {
+    }
+
+    static String getETag(Appointment appointment) {
+        return "\"" + appointment.getVersion() + "\"";
+    }
+
+    static HttpHeaders eTagHeaders(Appointment appointment) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(getETag(appointment));
+        return headers;
+    }
+
+    /**
+     * Whether an update sent with the given If-Match header may be applied to the appointment; updates sent without
+     * the header are only guarded by the version check when they are saved.
+     */
+    static boolean matches(String ifMatch, Appointment appointment) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return true;
+        }
+        String eTag = getETag(appointment);
+        for (String candidate : ifMatch.split(",")) {
+            if (eTag.equals(candidate.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an edit sent with the given If-Match header and the given version in its body may be applied to the
+     * appointment.
+     */
+    static boolean matches(String ifMatch, Integer version, Appointment appointment) {
+        return matches(ifMatch, appointment) && (version == null || version.equals(appointment.getVersion()));
+    }
+
+    static boolean isConcurrentUpdate(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StaleStateException || cause instanceof OptimisticLockingFailureException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static ResponseEntity<Object> preconditionFailed() {
+        return new ResponseEntity<>(RestUtil.wrapErrorResponse(new APIException(PRECONDITION_FAILED_MESSAGE),
+                PRECONDITION_FAILED_MESSAGE), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    static ResponseEntity<Object> errorResponse(Exception e, HttpStatus status) {
+        if (isConcurrentUpdate(e)) {
+            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, CONCURRENT_UPDATE_MESSAGE), HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), status);
+    }
+}
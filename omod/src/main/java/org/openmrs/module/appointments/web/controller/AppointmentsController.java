@@ -2,36 +2,55 @@ package org.openmrs.module.appointments.web.controller;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.hibernate.StaleStateException;
+import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentProjection;
 import org.openmrs.module.appointments.model.AppointmentProvider;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.AppointmentsService;
+import org.openmrs.module.appointments.util.AppointmentSearchCursor;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.web.contract.AppointmentDefaultResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentProviderDetail;
 import org.openmrs.module.appointments.web.contract.AppointmentRequest;
+import org.openmrs.module.appointments.web.contract.AppointmentsStatusChangeRequest;
 import org.openmrs.module.appointments.web.mapper.AppointmentMapper;
 import org.openmrs.module.appointments.web.validators.AppointmentSearchValidator;
 import org.openmrs.module.webservices.rest.web.RestConstants;
 import org.openmrs.module.webservices.rest.web.RestUtil;
 import org.openmrs.module.webservices.rest.web.v1_0.controller.BaseRestController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.text.ParseException;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +58,17 @@ import java.util.Map;
 @Controller
 @RequestMapping(value = "/rest/" + RestConstants.VERSION_1 + "/appointments")
 public class AppointmentsController extends BaseRestController {
+    public static final String CONTINUATION_TOKEN_HEADER = "X-Continuation-Token";
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    private static final ObjectMapper HISTORY_MAPPER = new ObjectMapper();
+
+    static {
+        HISTORY_MAPPER.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
+        HISTORY_MAPPER.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        HISTORY_MAPPER.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+    }
+
     @Autowired
     private AppointmentsService appointmentsService;
     @Autowired
@@ -49,6 +79,10 @@ public class AppointmentsController extends BaseRestController {
 
     private Log log = LogFactory.getLog(this.getClass());
 
+    /**
+     * Returns the appointment with its version as ETag. Send the ETag back as If-Match with a change to the
+     * appointment to have the change refused when someone else changed the appointment in the meantime.
+     */
     @RequestMapping(method = RequestMethod.GET, value="/{uuid}")
     public ResponseEntity<AppointmentDefaultResponse> getAppointmentByUuid(@PathVariable(value = "uuid") String uuid)  {
         Appointment appointment = appointmentsService.getAppointmentByUuid(uuid);
@@ -56,7 +90,8 @@ public class AppointmentsController extends BaseRestController {
             log.error("Could not identify appointment with uuid:" + uuid);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(appointmentMapper.constructResponse(appointment), HttpStatus.OK);
+        return new ResponseEntity<>(appointmentMapper.constructResponse(appointment),
+                AppointmentVersions.eTagHeaders(appointment), HttpStatus.OK);
     }
 
     @RequestMapping(method = RequestMethod.GET)
@@ -73,7 +108,8 @@ public class AppointmentsController extends BaseRestController {
             appointmentRequest.setUuid(null);
             Appointment appointment = appointmentMapper.fromRequest(appointmentRequest);
             appointmentsService.validateAndSave(appointment);
-            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment), HttpStatus.OK);
+            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment),
+                    AppointmentVersions.eTagHeaders(appointment), HttpStatus.OK);
         }catch (RuntimeException e) {
             log.error("Runtime error while trying to create new appointment", e);
             return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
@@ -82,29 +118,111 @@ public class AppointmentsController extends BaseRestController {
 
     @RequestMapping(method = RequestMethod.POST, value = "search")
     @ResponseBody
-    public List<AppointmentDefaultResponse> search(@Valid @RequestBody AppointmentSearchRequest appointmentSearchRequest) {
+    public ResponseEntity<List<AppointmentDefaultResponse>> search(@Valid @RequestBody AppointmentSearchRequest appointmentSearchRequest) {
         Errors appointmentSearchErrors = new BeanPropertyBindingResult(appointmentSearchRequest, "appointmentSearchRequest");
         appointmentSearchValidator.validate(appointmentSearchRequest, appointmentSearchErrors);
         if (!appointmentSearchErrors.getAllErrors().isEmpty()) {
             throw new RuntimeException(appointmentSearchErrors.getAllErrors().get(0).getDefaultMessage());
         }
+        HttpHeaders headers = new HttpHeaders();
+        if (appointmentMapper.canConstructResponseFromProjections()) {
+            List<AppointmentProjection> appointments = appointmentsService.searchProjections(appointmentSearchRequest);
+            setContinuationToken(headers, AppointmentSearchCursor.getNextPageTokenForProjections(appointmentSearchRequest, appointments));
+            return new ResponseEntity<>(appointmentMapper.constructResponseFromProjections(appointments), headers, HttpStatus.OK);
+        }
         List<Appointment> appointments = appointmentsService.search(appointmentSearchRequest);
-        return appointmentMapper.constructResponse(appointments);
+        setContinuationToken(headers, AppointmentSearchCursor.getNextPageToken(appointmentSearchRequest, appointments));
+        return new ResponseEntity<>(appointmentMapper.constructResponse(appointments), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Streams the audit events of an appointment, of a patient or recorded in a date range as newline delimited JSON,
+     * one event per line, oldest first. Events are written while they are read, so the size of the export does not
+     * matter. They can be narrowed down to some statuses and to the user who recorded them.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "history")
+    public void getAppointmentHistory(@RequestParam(value = "appointmentUuid", required = false) String appointmentUuid,
+                                      @RequestParam(value = "patientUuid", required = false) String patientUuid,
+                                      @RequestParam(value = "startDate", required = false) String startDate,
+                                      @RequestParam(value = "endDate", required = false) String endDate,
+                                      @RequestParam(value = "status", required = false) List<AppointmentStatus> statuses,
+                                      @RequestParam(value = "actorUuid", required = false) String actorUuid,
+                                      HttpServletResponse response) throws ParseException, IOException {
+        AppointmentAuditSearchRequest appointmentAuditSearchRequest = new AppointmentAuditSearchRequest();
+        appointmentAuditSearchRequest.setAppointmentUuid(appointmentUuid);
+        appointmentAuditSearchRequest.setPatientUuid(patientUuid);
+        appointmentAuditSearchRequest.setStartDate(DateUtil.convertToLocalDateFromUTC(startDate));
+        appointmentAuditSearchRequest.setEndDate(DateUtil.convertToLocalDateFromUTC(endDate));
+        appointmentAuditSearchRequest.setStatuses(statuses);
+        appointmentAuditSearchRequest.setActorUuid(actorUuid);
+        if (appointmentUuid == null && patientUuid == null
+                && (appointmentAuditSearchRequest.getStartDate() == null || appointmentAuditSearchRequest.getEndDate() == null)) {
+            APIException e = new APIException("Appointment history needs an appointment, a patient or a start and end date");
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            HISTORY_MAPPER.writeValue(response.getWriter(), RestUtil.wrapErrorResponse(e, e.getMessage()));
+            return;
+        }
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        Writer writer = response.getWriter();
+        appointmentsService.streamAppointmentHistory(appointmentAuditSearchRequest, appointmentAudit -> {
+            try {
+                HISTORY_MAPPER.writeValue(writer, appointmentMapper.constructAuditResponse(appointmentAudit));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private void setContinuationToken(HttpHeaders headers, String nextPageToken) {
+        if (nextPageToken != null) {
+            headers.set(CONTINUATION_TOKEN_HEADER, nextPageToken);
+        }
     }
 
     @RequestMapping(method = RequestMethod.POST, value = "/{appointmentUuid}/status-change")
     @ResponseBody
-    public ResponseEntity<Object> transitionAppointment(@PathVariable("appointmentUuid") String appointmentUuid, @RequestBody Map<String, String> statusDetails) throws ParseException {
+    public ResponseEntity<Object> transitionAppointment(@PathVariable("appointmentUuid") String appointmentUuid, @RequestBody Map<String, String> statusDetails,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws ParseException {
         String toStatus = statusDetails.get("toStatus");
         Date onDate = DateUtil.convertToLocalDateFromUTC(statusDetails.get("onDate"));
         Appointment appointment = appointmentsService.getAppointmentByUuid(appointmentUuid);
         if (appointment != null) {
+            if (!AppointmentVersions.matches(ifMatch, appointment)) {
+                return AppointmentVersions.preconditionFailed();
+            }
             appointmentsService.changeStatus(appointment, toStatus, onDate);
-            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment), HttpStatus.OK);
+            return new ResponseEntity<>(appointmentMapper.constructResponse(appointment),
+                    AppointmentVersions.eTagHeaders(appointment), HttpStatus.OK);
         } else
             throw new RuntimeException("Appointment does not exist");
     }
 
+    @RequestMapping(method = RequestMethod.POST, value = "/status-change")
+    @ResponseBody
+    public ResponseEntity<Object> transitionAppointments(@RequestBody AppointmentsStatusChangeRequest statusChangeRequest) throws ParseException {
+        try {
+            List<String> appointmentUuids = statusChangeRequest.getAppointmentUuids();
+            if (appointmentUuids == null || appointmentUuids.isEmpty()) {
+                throw new RuntimeException("Appointment uuids are required");
+            }
+            AppointmentStatus toStatus = AppointmentStatus.valueOf(statusChangeRequest.getToStatus());
+            Date onDate = DateUtil.convertToLocalDateFromUTC(statusChangeRequest.getOnDate());
+            List<Appointment> appointments = appointmentsService.getAppointmentsByUuids(appointmentUuids);
+            if (appointments.size() != new HashSet<>(appointmentUuids).size()) {
+                throw new RuntimeException("Appointment does not exist");
+            }
+            appointmentsService.changeStatus(appointments, toStatus, onDate);
+            return new ResponseEntity<>(appointmentMapper.constructResponse(appointments), HttpStatus.OK);
+        } catch (RuntimeException e) {
+            log.error("Runtime error while trying to change status of appointments", e);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @RequestMapping(method = RequestMethod.POST, value = "/conflicts")
     @ResponseBody
     public ResponseEntity<Object> getConflicts(@RequestBody AppointmentRequest appointmentRequest) {
@@ -122,20 +240,31 @@ public class AppointmentsController extends BaseRestController {
 
     @RequestMapping(method = RequestMethod.POST, value="/{appointmentUuid}/providerResponse")
     @ResponseBody
-    public ResponseEntity<Object> updateAppointmentProviderResponse(@PathVariable("appointmentUuid")String appointmentUuid, @RequestBody AppointmentProviderDetail providerResponse) throws ParseException {
+    public ResponseEntity<Object> updateAppointmentProviderResponse(@PathVariable("appointmentUuid")String appointmentUuid, @RequestBody AppointmentProviderDetail providerResponse,
+                                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws ParseException {
         try {
             Appointment appointment = appointmentsService.getAppointmentByUuid(appointmentUuid);
             if(appointment == null){
                 throw new RuntimeException("Appointment does not exist");
             }
+            if (!AppointmentVersions.matches(ifMatch, appointment)) {
+                return AppointmentVersions.preconditionFailed();
+            }
             AppointmentProvider appointmentProviderProvider = appointmentMapper.mapAppointmentProvider(providerResponse);
             appointmentProviderProvider.setAppointment(appointment);
             appointmentsService.updateAppointmentProviderResponse(appointmentProviderProvider);
             return new ResponseEntity<>(HttpStatus.OK);
         }catch (RuntimeException e) {
             log.error("Runtime error while trying to update appointment provider response", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
+    @ExceptionHandler({StaleStateException.class, OptimisticLockingFailureException.class})
+    @ResponseBody
+    public ResponseEntity<Object> handleConcurrentUpdate(RuntimeException e) {
+        log.error("Appointment was changed by another request while being updated", e);
+        return AppointmentVersions.errorResponse(e, HttpStatus.CONFLICT);
+    }
+
 }
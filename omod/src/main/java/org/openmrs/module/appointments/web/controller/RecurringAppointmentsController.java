@@ -115,7 +115,7 @@ public class RecurringAppointmentsController extends BaseRestController {
             }
         } catch (RuntimeException e) {
             log.error("Runtime error while trying to validateAndUpdate appointment status", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
@@ -140,7 +140,7 @@ public class RecurringAppointmentsController extends BaseRestController {
             }
         } catch (RuntimeException e) {
             log.error("Runtime error while trying to validateAndUpdate an appointment", e);
-            return new ResponseEntity<>(RestUtil.wrapErrorResponse(e, e.getMessage()), HttpStatus.BAD_REQUEST);
+            return AppointmentVersions.errorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
 
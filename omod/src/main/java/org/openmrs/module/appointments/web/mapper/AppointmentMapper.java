@@ -6,18 +6,25 @@ import org.apache.commons.logging.LogFactory;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
+import org.openmrs.api.APIException;
 import org.openmrs.api.LocationService;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.ProviderService;
+import org.openmrs.module.appointments.helper.AppointmentAuditSnapshotCodec;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSnapshot;
 import org.openmrs.module.appointments.model.AppointmentKind;
+import org.openmrs.module.appointments.model.AppointmentProjection;
 import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderProjection;
 import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
 import org.openmrs.module.appointments.model.AppointmentServiceType;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.AppointmentServiceDefinitionService;
 import org.openmrs.module.appointments.service.AppointmentsService;
+import org.openmrs.module.appointments.web.contract.AppointmentAuditResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentDefaultResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentProviderDetail;
 import org.openmrs.module.appointments.web.contract.AppointmentQuery;
@@ -68,6 +75,44 @@ public class AppointmentMapper {
         return this.mapToDefaultResponse(appointment, new AppointmentDefaultResponse());
     }
 
+    /**
+     * Notes holding appointment details are returned decoded. Any other notes, such as provider responses, are
+     * returned as they are.
+     */
+    public AppointmentAuditResponse constructAuditResponse(AppointmentAuditProjection appointmentAudit) {
+        AppointmentAuditResponse response = new AppointmentAuditResponse();
+        response.setUuid(appointmentAudit.getUuid());
+        response.setAppointmentUuid(appointmentAudit.getAppointmentUuid());
+        response.setPatientUuid(appointmentAudit.getPatientUuid());
+        response.setStatus(appointmentAudit.getStatus() != null ? appointmentAudit.getStatus().name() : null);
+        response.setActorUuid(appointmentAudit.getCreatorUuid());
+        response.setDateCreated(appointmentAudit.getDateCreated());
+        AppointmentAuditSnapshot appointmentDetails = null;
+        try {
+            appointmentDetails = AppointmentAuditSnapshotCodec.read(appointmentAudit.getNotes());
+        } catch (APIException e) {
+            log.warn("Could not read the notes of appointment audit " + appointmentAudit.getUuid(), e);
+        }
+        if (appointmentDetails != null) {
+            response.setAppointmentDetails(appointmentDetails);
+        } else {
+            response.setNotes(appointmentAudit.getNotes());
+        }
+        return response;
+    }
+
+    /**
+     * Projections carry no appointment entity to hand to an {@link AppointmentResponseExtension}, so they can only be
+     * used for responses when no extension is configured.
+     */
+    public boolean canConstructResponseFromProjections() {
+        return appointmentResponseExtension == null;
+    }
+
+    public List<AppointmentDefaultResponse> constructResponseFromProjections(List<AppointmentProjection> appointments) {
+        return appointments.stream().map(this::mapProjectionToDefaultResponse).collect(Collectors.toList());
+    }
+
     public Appointment fromRequest(AppointmentRequest appointmentRequest) {
         Appointment appointment;
         if (!StringUtils.isBlank(appointmentRequest.getUuid())) {
@@ -97,8 +142,8 @@ public class AppointmentMapper {
         if (StringUtils.isNotBlank(appointmentRequest.getStatus())){
             appointment.setStatus(AppointmentStatus.valueOf(appointmentRequest.getStatus()));
         }
-        appointment.setServiceType(appointmentServiceType);
-        appointment.setService(appointmentServiceDefinition);
+        appointment.setServiceType(appointmentServiceDefinitionService.getAppointmentServiceTypeReference(appointmentServiceType));
+        appointment.setService(appointmentServiceDefinitionService.getAppointmentServiceReference(appointmentServiceDefinition));
         //appointment.setProvider(identifyAppointmentProvider(appointmentRequest.getProviderUuid()));
         appointment.setLocation(identifyAppointmentLocation(appointmentRequest.getLocationUuid()));
         appointment.setStartDateTime(appointmentRequest.getStartDateTime());
@@ -226,6 +271,55 @@ public class AppointmentMapper {
         return response;
     }
 
+    private AppointmentDefaultResponse mapProjectionToDefaultResponse(AppointmentProjection a) {
+        AppointmentDefaultResponse response = new AppointmentDefaultResponse();
+        response.setUuid(a.getUuid());
+        response.setAppointmentNumber(a.getAppointmentNumber());
+        Map patientMap = new HashMap();
+        patientMap.put("name", a.getPatientName());
+        patientMap.put("uuid", a.getPatientUuid());
+        patientMap.put("identifier", a.getPatientIdentifier());
+        response.setPatient(patientMap);
+        if (a.getService() != null) {
+            response.setService(appointmentServiceMapper.constructDefaultResponse(a.getService()));
+        }
+        if (a.getServiceTypeUuid() != null) {
+            Map serviceTypeMap = new HashMap();
+            serviceTypeMap.put("name", a.getServiceTypeName());
+            serviceTypeMap.put("uuid", a.getServiceTypeUuid());
+            serviceTypeMap.put("duration", a.getServiceTypeDuration());
+            response.setServiceType(serviceTypeMap);
+        }
+        if (a.getLocationUuid() != null) {
+            Map locationMap = new HashMap();
+            locationMap.put("name", a.getLocationName());
+            locationMap.put("uuid", a.getLocationUuid());
+            response.setLocation(locationMap);
+        }
+        response.setStartDateTime(a.getStartDateTime());
+        response.setEndDateTime(a.getEndDateTime());
+        response.setAppointmentKind(a.getAppointmentKind().name());
+        response.setStatus(a.getStatus().name());
+        response.setComments(a.getComments());
+        List<AppointmentProviderDetail> providers = new ArrayList<>();
+        for (AppointmentProviderProjection provider : a.getProviders()) {
+            AppointmentProviderDetail providerDetail = new AppointmentProviderDetail();
+            providerDetail.setUuid(provider.getUuid());
+            providerDetail.setComments(provider.getComments());
+            providerDetail.setResponse(provider.getResponse().toString());
+            providerDetail.setName(provider.getName());
+            providers.add(providerDetail);
+        }
+        response.setProviders(providers);
+        response.setRecurring(a.isRecurring());
+        response.setVoided(a.getVoided());
+        HashMap extensions = new HashMap();
+        extensions.put("patientEmailDefined", a.getPatientEmailDefined());
+        response.setExtensions(extensions);
+        response.setTeleconsultationLink(a.getTeleHealthVideoLink());
+        return response;
+    }
+
     private Boolean isPatientEmailDefined(Appointment a) {
         return a.hasPatientAttribute("email");
     }
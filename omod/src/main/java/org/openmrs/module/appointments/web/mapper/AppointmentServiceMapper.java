@@ -33,7 +33,7 @@ public class AppointmentServiceMapper {
     public AppointmentServiceDefinition fromDescription(AppointmentServiceDescription appointmentServiceDescription) {
         AppointmentServiceDefinition appointmentServiceDefinition;
         if (!StringUtils.isBlank(appointmentServiceDescription.getUuid())) {
-            appointmentServiceDefinition = appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceDescription.getUuid());
+            appointmentServiceDefinition = appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid(appointmentServiceDescription.getUuid());
         }else{
             appointmentServiceDefinition = new AppointmentServiceDefinition();
         }
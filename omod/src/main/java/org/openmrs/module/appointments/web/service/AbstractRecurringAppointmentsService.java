@@ -4,6 +4,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentKind;
+import org.openmrs.module.appointments.model.AppointmentProvider;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.impl.TeleconsultationAppointmentService;
@@ -17,8 +18,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 @Component
 public abstract class AbstractRecurringAppointmentsService {
@@ -34,21 +37,56 @@ public abstract class AbstractRecurringAppointmentsService {
     public abstract List<Appointment> addAppointments(AppointmentRecurringPattern appointmentRecurringPattern,
                                                       RecurringAppointmentRequest recurringAppointmentRequest);
 
+    /**
+     * The request is resolved into an appointment only for the first occurrence, which fetches its patient, service,
+     * location and providers once. Every other occurrence is a copy of it with its own start and end date time.
+     */
     protected List<Appointment> createAppointments(List<Pair<Date, Date>> appointmentDates,
                                                    AppointmentRequest appointmentRequest) {
-        List<Appointment> appointments = new ArrayList<>();
-        appointmentDates.forEach(appointmentDate -> {
-            Appointment appointment = appointmentMapper.fromRequest(appointmentRequest);
+        List<Appointment> appointments = new ArrayList<>(appointmentDates.size());
+        Appointment template = null;
+        for (Pair<Date, Date> appointmentDate : appointmentDates) {
+            Appointment appointment;
+            if (template == null) {
+                template = appointmentMapper.fromRequest(appointmentRequest);
+                appointment = template;
+            } else {
+                appointment = copyOf(template);
+            }
             appointment.setStartDateTime(appointmentDate.getLeft());
             appointment.setEndDateTime(appointmentDate.getRight());
             if (isVirtual(appointment)) {
                 appointment.setTeleHealthVideoLink(teleconsultationAppointmentService.generateTeleconsultationLink(appointment));
             }
             appointments.add(appointment);
-        });
+        }
         return appointments;
     }
 
+    private Appointment copyOf(Appointment template) {
+        Appointment appointment = new Appointment();
+        appointment.setPatient(template.getPatient());
+        appointment.setService(template.getService());
+        appointment.setServiceType(template.getServiceType());
+        appointment.setLocation(template.getLocation());
+        appointment.setAppointmentKind(template.getAppointmentKind());
+        appointment.setStatus(template.getStatus());
+        appointment.setComments(template.getComments());
+        if (template.getProviders() != null) {
+            Set<AppointmentProvider> providers = new HashSet<>();
+            for (AppointmentProvider templateProvider : template.getProviders()) {
+                if (Boolean.TRUE.equals(templateProvider.getVoided())) {
+                    continue;
+                }
+                AppointmentProvider appointmentProvider = new AppointmentProvider(templateProvider);
+                appointmentProvider.setAppointment(appointment);
+                providers.add(appointmentProvider);
+            }
+            appointment.setProviders(providers);
+        }
+        return appointment;
+    }
+
     private boolean isVirtual(Appointment appointment) {
         return appointment.getAppointmentKind() != null && appointment.getAppointmentKind().equals(AppointmentKind.Virtual);
     }
@@ -0,0 +1,124 @@
+package org.openmrs.module.appointments.web.service.impl;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Occurrences of an appointment repeating on the given days of the week, every {@code period} weeks from its first
+ * start. Occurrence {@code n} falls in period {@code n / days} on the {@code n % days}th selected day following the
+ * first start, so any occurrence is computed directly and the series is expanded lazily. Days are added in the given
+ * zone, keeping the wall clock time of the first appointment across daylight saving changes.
+ */
+public class WeeklyRecurrence implements Iterable<Pair<Date, Date>> {
+
+    private static final int DAYS_IN_A_WEEK = 7;
+
+    private final ZonedDateTime startDateTime;
+
+    private final ZonedDateTime endDateTime;
+
+    private final int daysInAPeriod;
+
+    private final long[] dayOffsets;
+
+    public WeeklyRecurrence(Date startDateTime, Date endDateTime, Collection<DayOfWeek> daysOfWeek, int period) {
+        this(startDateTime, endDateTime, daysOfWeek, period, ZoneId.systemDefault());
+    }
+
+    public WeeklyRecurrence(Date startDateTime, Date endDateTime, Collection<DayOfWeek> daysOfWeek, int period, ZoneId zone) {
+        this.startDateTime = startDateTime.toInstant().atZone(zone);
+        this.endDateTime = endDateTime.toInstant().atZone(zone);
+        this.daysInAPeriod = DAYS_IN_A_WEEK * period;
+        LocalDate firstDay = this.startDateTime.toLocalDate();
+        this.dayOffsets = daysOfWeek.stream()
+                .mapToLong(dayOfWeek -> ChronoUnit.DAYS.between(firstDay, firstDay.with(TemporalAdjusters.nextOrSame(dayOfWeek))))
+                .sorted()
+                .toArray();
+    }
+
+    public int getDaysPerPeriod() {
+        return dayOffsets.length;
+    }
+
+    /**
+     * Returns the start and end of the {@code n}th occurrence, counting from zero.
+     */
+    public Pair<Date, Date> getOccurrence(long n) {
+        long days = (n / dayOffsets.length) * daysInAPeriod + dayOffsets[(int) (n % dayOffsets.length)];
+        return new ImmutablePair<>(Date.from(startDateTime.plusDays(days).toInstant()),
+                Date.from(endDateTime.plusDays(days).toInstant()));
+    }
+
+    /**
+     * Returns the start time of the appointment on the last day of the {@code index}th period, counting from zero.
+     */
+    public Date getLastDayOfPeriod(long index) {
+        return Date.from(startDateTime.plusDays((index + 1) * daysInAPeriod - 1).toInstant());
+    }
+
+    /**
+     * Returns the occurrences in order, without end.
+     */
+    @Override
+    public Iterator<Pair<Date, Date>> iterator() {
+        return until(null);
+    }
+
+    /**
+     * Returns the occurrences in order, up to the last one starting on or before {@code endDate}.
+     */
+    public Iterator<Pair<Date, Date>> until(Date endDate) {
+        if (dayOffsets.length == 0) {
+            return Collections.emptyIterator();
+        }
+        return new Iterator<Pair<Date, Date>>() {
+
+            private long n;
+
+            private Pair<Date, Date> next = getOccurrence(0);
+
+            @Override
+            public boolean hasNext() {
+                return endDate == null || !next.getLeft().after(endDate);
+            }
+
+            @Override
+            public Pair<Date, Date> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Pair<Date, Date> occurrence = next;
+                next = getOccurrence(++n);
+                return occurrence;
+            }
+        };
+    }
+
+    public Stream<Pair<Date, Date>> stream(Date endDate) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(until(endDate),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Maps a {@link java.util.Calendar} day code to its day of the week.
+     */
+    public static DayOfWeek getDayOfWeek(int calendarDayCode) {
+        return DayOfWeek.SUNDAY.plus(calendarDayCode - 1);
+    }
+}
@@ -3,38 +3,25 @@ package org.openmrs.module.appointments.web.service.impl;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.openmrs.module.appointments.model.Appointment;
-import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.web.contract.RecurringPattern;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import static java.util.Calendar.DATE;
-import static java.util.Calendar.DAY_OF_WEEK;
-
 public class WeeklyRecurringAppointmentDate {
 
-    private static final int PREVIOUS_DAY_AMOUNT = -1;
-
-
     static List<Pair<Date, Date>> getAppointmentDates(Date endDate, Date appointmentStartDate, Date appointmentEndDate,
                                                       List<Integer> selectedDayCodes, int period) {
-        List<Pair<Date, Date>> appointmentDates = new ArrayList<>();
-        Date currentAppointmentDate = appointmentStartDate;
-        Calendar startCalendar = DateUtil.getCalendar(appointmentStartDate);
-        Calendar endCalendar = DateUtil.getCalendar(appointmentEndDate);
-
-        while (!currentAppointmentDate.after(endDate)) {
-            appointmentDates.addAll(getAppointmentDatesForAWeek(endDate, startCalendar, endCalendar, selectedDayCodes));
-            moveCalendarToWeeklyPeriod(startCalendar, period);
-            moveCalendarToWeeklyPeriod(endCalendar, period);
-            currentAppointmentDate = startCalendar.getTime();
-        }
-        return appointmentDates;
+        return createRecurrence(appointmentStartDate, appointmentEndDate, selectedDayCodes, period).stream(endDate)
+                .collect(Collectors.toList());
     }
 
     public static Date getEndDate(RecurringPattern recurringPattern, Date startDateTime) {
@@ -43,42 +30,20 @@ public class WeeklyRecurringAppointmentDate {
             return endDate;
         }
         Integer frequency = recurringPattern.getFrequency();
-        final int period = recurringPattern.getPeriod();
-
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(startDateTime);
-        List<Integer> selectedDaysPerWeek = getSortedSelectedDayCodes(calendar.get(DAY_OF_WEEK),
-                getSelectedDayCodes(recurringPattern.getDaysOfWeek()));
-
-        final int numberOfDaysSelected = selectedDaysPerWeek.size();
-
-        int timesOfPeriod = frequency / numberOfDaysSelected;
-
-        calendar.add(Calendar.DAY_OF_WEEK, Calendar.DAY_OF_WEEK * period * timesOfPeriod);
-
-        int remainingFrequency = frequency % numberOfDaysSelected;
-        if (remainingFrequency > 0) {
-            moveCalendarToRemainingFrequency(remainingFrequency, calendar, selectedDaysPerWeek);
-        } else {
-            // moves calendar a day before to keep end date in pattern
-            calendar.add(DATE, PREVIOUS_DAY_AMOUNT);
+        WeeklyRecurrence recurrence = createRecurrence(startDateTime, startDateTime,
+                getSelectedDayCodes(recurringPattern.getDaysOfWeek()), recurringPattern.getPeriod());
+        final int numberOfDaysSelected = recurrence.getDaysPerPeriod();
+        if (frequency % numberOfDaysSelected > 0) {
+            return recurrence.getOccurrence(frequency - 1).getLeft();
         }
-        return calendar.getTime();
+        // ends a day before the next period to keep end date in pattern
+        return recurrence.getLastDayOfPeriod(frequency / numberOfDaysSelected - 1);
     }
 
-    private static void moveCalendarToRemainingFrequency(Integer remainingFrequency, Calendar calendar, List<Integer> selectedDaysPerWeek) {
-        final Integer dayCodeOfLastOccurrence = getDayCodeOfLastOccurrence(remainingFrequency, selectedDaysPerWeek);
-        while (calendar.get(DAY_OF_WEEK) != dayCodeOfLastOccurrence) {
-            calendar.add(DATE, 1);
-        }
-    }
-
-    private static Integer getDayCodeOfLastOccurrence(Integer currentFrequency, List<Integer> selectedDaysPerWeek) {
-        return selectedDaysPerWeek.get(currentFrequency - 1);
-    }
-
-    private static void moveCalendarToWeeklyPeriod(Calendar calendar, int period) {
-        calendar.add(DATE, getDateAmountToMoveCalendar(period));
+    private static WeeklyRecurrence createRecurrence(Date startDateTime, Date endDateTime, List<Integer> selectedDayCodes,
+                                                     int period) {
+        return new WeeklyRecurrence(startDateTime, endDateTime,
+                selectedDayCodes.stream().map(WeeklyRecurrence::getDayOfWeek).collect(Collectors.toList()), period);
     }
 
     static List<Integer> getSelectedDayCodes(List<String> selectedDays) {
@@ -86,72 +51,37 @@ public class WeeklyRecurringAppointmentDate {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the given dates no active appointment is on. Each active appointment accounts for the first of the dates
+     * that either it or the appointment it was moved from is on.
+     */
     static List<Pair<Date, Date>> getNewAppointmentDates(List<Appointment> activeAppointments, List<Pair<Date, Date>> appointmentStartAndEndDates) {
-        List<Pair<Date, Date>> originalAppointmentDates = new ArrayList<>();
+        Map<Pair<Long, Long>, Integer> firstIndexOfDates = new HashMap<>();
+        for (int i = 0; i < appointmentStartAndEndDates.size(); i++) {
+            firstIndexOfDates.putIfAbsent(getKey(appointmentStartAndEndDates.get(i)), i);
+        }
+        Set<Pair<Long, Long>> originalAppointmentDates = new HashSet<>();
         activeAppointments.forEach(activeAppointment -> {
-            for (Pair<Date, Date> appointmentStartAndEndDate : appointmentStartAndEndDates) {
-                final Appointment relatedAppointment = activeAppointment.getRelatedAppointment();
-                if (relatedAppointment != null && areAppointmentDatesSame(relatedAppointment, appointmentStartAndEndDate)) {
-                    originalAppointmentDates.add(appointmentStartAndEndDate);
-                    break;
-                } else if (areAppointmentDatesSame(activeAppointment, appointmentStartAndEndDate)) {
-                    originalAppointmentDates.add(appointmentStartAndEndDate);
-                    break;
-                }
+            final Appointment relatedAppointment = activeAppointment.getRelatedAppointment();
+            Integer relatedIndex = relatedAppointment != null ? firstIndexOfDates.get(getKey(relatedAppointment)) : null;
+            Integer index = firstIndexOfDates.get(getKey(activeAppointment));
+            if (relatedIndex != null && (index == null || relatedIndex <= index)) {
+                originalAppointmentDates.add(getKey(relatedAppointment));
+            } else if (index != null) {
+                originalAppointmentDates.add(getKey(activeAppointment));
             }
-
         });
-        final List<Pair<Date, Date>> appointmentDates = new ArrayList<>(appointmentStartAndEndDates);
-        appointmentDates.removeAll(originalAppointmentDates);
-        return appointmentDates;
-    }
-
-    private static boolean areAppointmentDatesSame(Appointment appointment, Pair<Date, Date> appointmentStartAndEndDate) {
-        return new Date(appointment.getStartDateTime().getTime()).equals(appointmentStartAndEndDate.getLeft())
-                && new Date(appointment.getEndDateTime().getTime()).equals(appointmentStartAndEndDate.getRight());
-    }
-
-    private static int getDateAmountToMoveCalendar(int period) {
-        return DAY_OF_WEEK * period;
-    }
-
-    private static List<Pair<Date, Date>> getAppointmentDatesForAWeek(Date endDate, Calendar startCalendar, Calendar endCalendar,
-                                                                      List<Integer> selectedDayCodes) {
-        List<Pair<Date, Date>> appointmentDates = new ArrayList<>();
-        for (int dayCode : selectedDayCodes) {
-            Calendar startCalenderInstance = Calendar.getInstance();
-            Calendar endCalenderInstance = Calendar.getInstance();
-            startCalenderInstance.setTime(startCalendar.getTime());
-            endCalenderInstance.setTime(endCalendar.getTime());
-            updateCalendarInstancesToNextSelectedDay(startCalenderInstance, endCalenderInstance, dayCode);
-            if (startCalenderInstance.getTime().after(endDate)) {
-                continue;
-            }
-            appointmentDates.add(new ImmutablePair<>(startCalenderInstance.getTime(), endCalenderInstance.getTime()));
-        }
-        return appointmentDates;
+        return appointmentStartAndEndDates.stream()
+                .filter(appointmentStartAndEndDate -> !originalAppointmentDates.contains(getKey(appointmentStartAndEndDate)))
+                .collect(Collectors.toList());
     }
 
-    private static void updateCalendarInstancesToNextSelectedDay(Calendar startCalender, Calendar endCalender, int dayCode) {
-        int startDayCode = startCalender.get(DAY_OF_WEEK);
-        int daysToBeAdded = dayCode - startDayCode;
-        if (dayCode < startDayCode)
-            daysToBeAdded += DAY_OF_WEEK;
-        startCalender.add(DAY_OF_WEEK, daysToBeAdded);
-        endCalender.add(DAY_OF_WEEK, daysToBeAdded);
+    private static Pair<Long, Long> getKey(Appointment appointment) {
+        return new ImmutablePair<>(appointment.getStartDateTime().getTime(), appointment.getEndDateTime().getTime());
     }
 
-    private static List<Integer> getSortedSelectedDayCodes(int startDayCode, List<Integer> selectedDayCodes) {
-        List<Integer> selectedDaysPerWeek = new ArrayList<>();
-        for (int dayCode : selectedDayCodes) {
-            if (dayCode >= startDayCode) selectedDaysPerWeek.add(dayCode);
-        }
-        for (int dayCode : selectedDayCodes) {
-            if (dayCode < startDayCode) {
-                selectedDaysPerWeek.add(dayCode);
-            } else break;
-        }
-        return selectedDaysPerWeek;
+    private static Pair<Long, Long> getKey(Pair<Date, Date> appointmentStartAndEndDate) {
+        return new ImmutablePair<>(appointmentStartAndEndDate.getLeft().getTime(), appointmentStartAndEndDate.getRight().getTime());
     }
 
     private static int getDayCodeFromDay(String day) {
@@ -1,6 +1,8 @@
 package org.openmrs.module.appointments.web.validators;
 
+import org.apache.commons.lang.StringUtils;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.util.AppointmentSearchCursor;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
@@ -22,5 +24,13 @@ public class AppointmentSearchValidator implements Validator {
         Date startDate = appointmentSearchRequest.getStartDate();
         if(isNull(startDate))
             errors.reject("invalid","StartDate is not provided");
+        String continuationToken = appointmentSearchRequest.getContinuationToken();
+        if (StringUtils.isNotEmpty(continuationToken)) {
+            try {
+                AppointmentSearchCursor.decode(continuationToken);
+            } catch (IllegalArgumentException e) {
+                errors.reject("invalid", "Continuation token is not valid");
+            }
+        }
     }
 }
@@ -184,6 +184,43 @@ public class AppointmentControllerIT extends BaseIntegrationTest {
         assertNotNull(historyForAppointment.get(0).getNotes());
     }
 
+    @Test
+    public void shouldRefuseAnEditFromAVersionOfTheAppointmentThatHasSinceChanged() throws Exception {
+        String content = "{ \"uuid\": \"c36006e5-9fbb-4f20-866b-0ece245615a7\", " +
+                "\"appointmentNumber\": \"1\",  " +
+                "\"patientUuid\": \"2c33920f-7aa6-48d6-998a-60412d8ff7d5\", " +
+                "\"serviceUuid\": \"c36006d4-9fbb-4f20-866b-0ece245615c1\", " +
+                "\"serviceTypeUuid\": \"672546e5-9fbb-4f20-866b-0ece24564578\", " +
+                "\"startDateTime\": \"2017-07-20\", " +
+                "\"endDateTime\": \"2017-07-20\",  " +
+                "\"comments\": \"Some notes\",  " +
+                "\"appointmentKind\": \"WalkIn\"}";
+        MockHttpServletResponse getResponse = handle(newGetRequest("/rest/v1/appointment",
+                new Parameter("uuid", "c36006e5-9fbb-4f20-866b-0ece245615a7")));
+        String eTag = getResponse.getHeader("ETag");
+        assertEquals("\"0\"", eTag);
+
+        MockHttpServletRequest request = newPostRequest("/rest/v1/appointment", content);
+        request.addHeader("If-Match", eTag);
+        MockHttpServletResponse response = handle(request);
+        assertEquals(200, response.getStatus());
+        assertNotNull(response.getHeader("ETag"));
+        Context.flushSession();
+
+        MockHttpServletRequest staleRequest = newPostRequest("/rest/v1/appointment",
+                content.replace("Some notes", "Stale notes"));
+        staleRequest.addHeader("If-Match", eTag);
+        assertEquals(412, handle(staleRequest).getStatus());
+
+        MockHttpServletResponse staleVersionResponse = handle(newPostRequest("/rest/v1/appointment",
+                content.replace("Some notes", "Stale notes").replace("{ ", "{ \"version\": 0, ")));
+        assertEquals(412, staleVersionResponse.getStatus());
+
+        Appointment appointment = appointmentsService.getAppointmentByUuid("c36006e5-9fbb-4f20-866b-0ece245615a7");
+        assertEquals(Integer.valueOf(1), appointment.getVersion());
+        assertEquals("Some notes", appointment.getComments());
+    }
+
     @Test
     public void shouldThrowExceptionForInvalidAppointmentOnUndoStatus() throws Exception {
         MockHttpServletResponse response = handle(newPostRequest("/rest/v1/appointment/undoStatusChange/"+ "randomUuid", "{}"));
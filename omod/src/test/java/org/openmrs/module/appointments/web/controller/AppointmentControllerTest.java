@@ -27,6 +27,7 @@ import java.util.function.Supplier;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
@@ -117,6 +118,23 @@ public class AppointmentControllerTest {
         verify(appointmentMapper, times(1)).constructResponse(appointmentList);
     }
 
+    @Test
+    public void shouldGetAllAppointmentsForDateFromProjections() throws Exception {
+        List<AppointmentProjection> appointmentProjections = Collections.singletonList(new AppointmentProjection());
+        List<AppointmentDefaultResponse> expectedResponse = Collections.singletonList(new AppointmentDefaultResponse());
+        String dateString = "2017-08-15T00:00:00.0Z";
+        Date forDate = DateUtil.convertToLocalDateFromUTC(dateString);
+        when(appointmentMapper.canConstructResponseFromProjections()).thenReturn(true);
+        when(appointmentsService.getAllAppointmentProjections(forDate)).thenReturn(appointmentProjections);
+        when(appointmentMapper.constructResponseFromProjections(appointmentProjections)).thenReturn(expectedResponse);
+
+        List<AppointmentDefaultResponse> response = appointmentController.getAllAppointments(dateString);
+
+        assertEquals(expectedResponse, response);
+        verify(appointmentsService, never()).getAllAppointments(any(Date.class));
+        verify(appointmentMapper, never()).constructResponse(anyListOf(Appointment.class));
+    }
+
     @Test
     public void shouldGetAllAppointmentsSummary() throws ParseException {
         String startDateString = "2017-08-15T00:00:00.000Z";
@@ -127,15 +145,13 @@ public class AppointmentControllerTest {
         AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
         appointmentServiceDefinition.setName("Ortho");
         appointmentServiceDefinition.setUuid("someUuid");
+        appointmentServiceDefinition.setAppointmentServiceId(1);
         List<AppointmentServiceDefinition> appointmentServiceDefinitions = new ArrayList<>();
         appointmentServiceDefinitions.add(appointmentServiceDefinition);
-        Appointment appointment = new Appointment();
-        appointment.setUuid("apptUuid");
-        appointment.setService(appointmentServiceDefinition);
-        appointment.setStartDateTime(startDate);
-        appointment.setStatus(AppointmentStatus.Scheduled);
-        List<Appointment> appointmentList = new ArrayList<>();
-        appointmentList.add(appointment);
+        Date appointmentDate = simpleDateFormat.parse(startDateString);
+        List<AppointmentServiceDailyCount> appointmentServiceDailyCounts = Arrays.asList(
+                new AppointmentServiceDailyCount(1, appointmentDate, AppointmentStatus.Scheduled, 2),
+                new AppointmentServiceDailyCount(1, appointmentDate, AppointmentStatus.Missed, 1));
         List<AppointmentStatus> appointmentStatuses = Arrays.asList(
                 AppointmentStatus.Requested,
                 AppointmentStatus.Completed,
@@ -146,18 +162,19 @@ public class AppointmentControllerTest {
         appointmentServiceDefaultResponse.setUuid("someUuid");
 
         when(appointmentServiceDefinitionService.getAllAppointmentServices(false)).thenReturn(appointmentServiceDefinitions);
-        when(appointmentsService.getAppointmentsForService(appointmentServiceDefinition, startDate, endDate, appointmentStatuses)).thenReturn(appointmentList);
+        when(appointmentsService.getAppointmentServiceDailyCounts(startDate, endDate, appointmentStatuses)).thenReturn(appointmentServiceDailyCounts);
         when(appointmentServiceMapper.constructDefaultResponse(appointmentServiceDefinition)).thenReturn(appointmentServiceDefaultResponse);
 
         List<AppointmentsSummary> allAppointmentsSummary = appointmentController.getAllAppointmentsSummary(startDateString, endDateString);
         verify(appointmentServiceDefinitionService, times(1)).getAllAppointmentServices(false);
-        verify(appointmentsService, times(1)).getAppointmentsForService(appointmentServiceDefinition, startDate, endDate, appointmentStatuses);
+        verify(appointmentsService, times(1)).getAppointmentServiceDailyCounts(startDate, endDate, appointmentStatuses);
+        verify(appointmentsService, never()).getAppointmentsForService(any(AppointmentServiceDefinition.class), any(Date.class), any(Date.class), anyListOf(AppointmentStatus.class));
         assertEquals(1, allAppointmentsSummary.size());
         assertEquals("someUuid", allAppointmentsSummary.get(0).getAppointmentService().getUuid());
         assertEquals(1, allAppointmentsSummary.get(0).getAppointmentCountMap().size());
         DailyAppointmentServiceSummary dailyAppointmentServiceSummary = (DailyAppointmentServiceSummary)allAppointmentsSummary.get(0).getAppointmentCountMap().get("2017-08-15");
-        assertEquals(1, dailyAppointmentServiceSummary.getAllAppointmentsCount(), 0);
-        assertEquals(0, dailyAppointmentServiceSummary.getMissedAppointmentsCount(), 0);
+        assertEquals(3, dailyAppointmentServiceSummary.getAllAppointmentsCount(), 0);
+        assertEquals(1, dailyAppointmentServiceSummary.getMissedAppointmentsCount(), 0);
         assertEquals(simpleDateFormat.parse(startDateString), dailyAppointmentServiceSummary.getAppointmentDate());
         assertEquals("someUuid", dailyAppointmentServiceSummary.getAppointmentServiceUuid());
     }
@@ -166,7 +183,7 @@ public class AppointmentControllerTest {
     public void shouldThrowExceptionIfPatientUuidIsBlankWhileCreatingAppointment() throws Exception {
         //when(appointmentsService.validateAndSave(any(Appointment.class))).thenThrow(new APIException("Exception Msg"));
         when(appointmentsService.validateAndSave(any(Supplier.class))).thenThrow(new APIException("Exception Msg"));
-        ResponseEntity<Object> responseEntity = appointmentController.saveAppointment(new AppointmentRequest());
+        ResponseEntity<Object> responseEntity = appointmentController.saveAppointment(new AppointmentRequest(), null);
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
     }
 
@@ -251,13 +268,59 @@ public class AppointmentControllerTest {
 
         Appointment appointment = new Appointment();
         appointment.setUuid("appointmentUuid");
+        appointment.setVersion(3);
 
         when(appointmentMapper.fromRequest(appointmentRequest)).thenReturn(appointment);
         when(appointmentsService.validateAndSave(any(Supplier.class))).thenReturn(appointment);
         //when(appointmentsService.validateAndSave(appointment)).thenReturn(appointment);
 
-        appointmentController.saveAppointment(appointmentRequest);
+        ResponseEntity<Object> responseEntity = appointmentController.saveAppointment(appointmentRequest, null);
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals("\"3\"", responseEntity.getHeaders().getETag());
         //Mockito.verify(appointmentMapper, times(1)).fromRequest(appointmentRequest);
         Mockito.verify(appointmentsService, times(1)).validateAndSave(any(Supplier.class));
     }
+
+    @Test
+    public void shouldRefuseAnEditSentWithAnIfMatchOfAnOlderVersion() throws Exception {
+        AppointmentRequest appointmentRequest = new AppointmentRequest();
+        appointmentRequest.setUuid("appointmentUuid");
+        Appointment appointment = new Appointment();
+        appointment.setUuid("appointmentUuid");
+        appointment.setVersion(2);
+        when(appointmentsService.getAppointmentByUuid("appointmentUuid")).thenReturn(appointment);
+
+        ResponseEntity<Object> responseEntity = appointmentController.saveAppointment(appointmentRequest, "\"1\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, responseEntity.getStatusCode());
+        verify(appointmentsService, never()).validateAndSave(any(Supplier.class));
+        verify(appointmentMapper, never()).fromRequest(any(AppointmentRequest.class));
+    }
+
+    @Test
+    public void shouldRefuseAnEditOfAnOlderVersion() throws Exception {
+        AppointmentRequest appointmentRequest = new AppointmentRequest();
+        appointmentRequest.setUuid("appointmentUuid");
+        appointmentRequest.setVersion(1);
+        Appointment appointment = new Appointment();
+        appointment.setUuid("appointmentUuid");
+        appointment.setVersion(2);
+        when(appointmentsService.getAppointmentByUuid("appointmentUuid")).thenReturn(appointment);
+
+        ResponseEntity<Object> responseEntity = appointmentController.saveAppointment(appointmentRequest, null);
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, responseEntity.getStatusCode());
+        verify(appointmentsService, never()).validateAndSave(any(Supplier.class));
+    }
+
+    @Test
+    public void shouldReturnTheVersionOfTheAppointmentAsETag() throws Exception {
+        Appointment appointment = new Appointment();
+        appointment.setUuid("appointmentUuid");
+        appointment.setVersion(4);
+        when(appointmentsService.getAppointmentByUuid("appointmentUuid")).thenReturn(appointment);
+
+        assertEquals("\"4\"", appointmentController.getAppointmentByUuid("appointmentUuid").getHeaders().getETag());
+        assertEquals("\"4\"", appointmentController.undoStatusChange("appointmentUuid").getHeaders().getETag());
+    }
 }
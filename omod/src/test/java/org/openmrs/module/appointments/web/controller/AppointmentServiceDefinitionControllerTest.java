@@ -4,23 +4,32 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentServiceLoadWindow;
 import org.openmrs.module.appointments.service.AppointmentServiceDefinitionService;
 import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.web.contract.AppointmentServiceFullResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentServiceDescription;
+import org.openmrs.module.appointments.web.contract.AppointmentServiceLoadQuery;
 import org.openmrs.module.appointments.web.mapper.AppointmentServiceMapper;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -128,14 +137,14 @@ public class AppointmentServiceDefinitionControllerTest {
         AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
         appointmentServiceDefinition.setUuid(appointmentServiceUuid);
         appointmentServiceDefinition.setName("serviceName");
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
         when(appointmentServiceDefinitionService.voidAppointmentService(appointmentServiceDefinition, voidReason)).thenReturn(appointmentServiceDefinition);
         AppointmentServiceFullResponse appointmentServiceFullResponse = new AppointmentServiceFullResponse();
         when(appointmentServiceMapper.constructResponse(appointmentServiceDefinition)).thenReturn(appointmentServiceFullResponse);
 
         ResponseEntity<Object> response = appointmentServiceController.voidAppointmentService(appointmentServiceUuid, voidReason);
 
-        verify(appointmentServiceDefinitionService, times(1)).getAppointmentServiceByUuid(appointmentServiceUuid);
+        verify(appointmentServiceDefinitionService, times(1)).getEditableAppointmentServiceByUuid(appointmentServiceUuid);
         verify(appointmentServiceDefinitionService, times(1)).voidAppointmentService(appointmentServiceDefinition, voidReason);
         verify(appointmentServiceMapper, times(1)).constructResponse(appointmentServiceDefinition);
         assertNotNull(response);
@@ -150,14 +159,14 @@ public class AppointmentServiceDefinitionControllerTest {
         appointmentServiceDefinition.setUuid(appointmentServiceUuid);
         appointmentServiceDefinition.setName("serviceName");
         appointmentServiceDefinition.setVoided(true);
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
         when(appointmentServiceDefinitionService.voidAppointmentService(appointmentServiceDefinition, voidReason)).thenReturn(appointmentServiceDefinition);
         AppointmentServiceFullResponse appointmentServiceFullResponse = new AppointmentServiceFullResponse();
         when(appointmentServiceMapper.constructResponse(appointmentServiceDefinition)).thenReturn(appointmentServiceFullResponse);
 
         ResponseEntity<Object> response = appointmentServiceController.voidAppointmentService(appointmentServiceUuid, voidReason);
 
-        verify(appointmentServiceDefinitionService, times(1)).getAppointmentServiceByUuid(appointmentServiceUuid);
+        verify(appointmentServiceDefinitionService, times(1)).getEditableAppointmentServiceByUuid(appointmentServiceUuid);
         verify(appointmentServiceDefinitionService, times(0)).voidAppointmentService(appointmentServiceDefinition, voidReason);
         verify(appointmentServiceMapper, times(1)).constructResponse(appointmentServiceDefinition);
         assertNotNull(response);
@@ -171,13 +180,13 @@ public class AppointmentServiceDefinitionControllerTest {
         AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
         appointmentServiceDefinition.setUuid(appointmentServiceUuid);
         appointmentServiceDefinition.setName("serviceName");
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
         String exceptionMessage = "Please cancel all future appointments for this service to proceed. After deleting this service, you will not be able to see any appointments for it";
         when(appointmentServiceDefinitionService.voidAppointmentService(appointmentServiceDefinition, voidReason)).thenThrow(new RuntimeException(exceptionMessage));
 
         ResponseEntity<Object> response = appointmentServiceController.voidAppointmentService(appointmentServiceUuid, voidReason);
 
-        verify(appointmentServiceDefinitionService, times(1)).getAppointmentServiceByUuid(appointmentServiceUuid);
+        verify(appointmentServiceDefinitionService, times(1)).getEditableAppointmentServiceByUuid(appointmentServiceUuid);
         verify(appointmentServiceDefinitionService, times(1)).voidAppointmentService(appointmentServiceDefinition, voidReason);
         verify(appointmentServiceMapper, times(0)).constructResponse(appointmentServiceDefinition);
         assertNotNull(response);
@@ -202,6 +211,78 @@ public class AppointmentServiceDefinitionControllerTest {
         assertEquals(45, response.intValue());
     }
 
+    @Test
+    public void shouldGetLoadForMultipleServiceWindows() throws Exception {
+        String appointmentServiceUuid = "appointmentServiceUuid";
+        AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
+        appointmentServiceDefinition.setUuid(appointmentServiceUuid);
+        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(appointmentServiceDefinition);
+        AppointmentServiceLoadQuery morningSlot = new AppointmentServiceLoadQuery();
+        morningSlot.setServiceUuid(appointmentServiceUuid);
+        morningSlot.setStartDateTime("2108-08-15T03:30:00.0Z");
+        morningSlot.setEndDateTime("2108-08-15T04:00:00.0Z");
+        AppointmentServiceLoadQuery eveningSlot = new AppointmentServiceLoadQuery();
+        eveningSlot.setServiceUuid(appointmentServiceUuid);
+        eveningSlot.setStartDateTime("2108-08-15T12:30:00.0Z");
+        eveningSlot.setEndDateTime("2108-08-15T13:00:00.0Z");
+        ArgumentCaptor<List> loadWindowsCaptor = ArgumentCaptor.forClass(List.class);
+        when(appointmentServiceDefinitionService.calculateCurrentLoad(anyListOf(AppointmentServiceLoadWindow.class))).thenReturn(Arrays.asList(2, 5));
+
+        ResponseEntity<Object> response = appointmentServiceController.calculateLoadForServices(Arrays.asList(morningSlot, eveningSlot));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Arrays.asList(2, 5), response.getBody());
+        verify(appointmentServiceDefinitionService, times(1)).getAppointmentServiceByUuid(appointmentServiceUuid);
+        verify(appointmentServiceDefinitionService, times(1)).calculateCurrentLoad(loadWindowsCaptor.capture());
+        AppointmentServiceLoadWindow morningWindow = (AppointmentServiceLoadWindow) loadWindowsCaptor.getValue().get(0);
+        assertEquals(appointmentServiceDefinition, morningWindow.getService());
+        assertEquals(DateUtil.convertToLocalDateFromUTC("2108-08-15T03:30:00.0Z"), morningWindow.getStartDateTime());
+        assertEquals(DateUtil.convertToLocalDateFromUTC("2108-08-15T04:00:00.0Z"), morningWindow.getEndDateTime());
+    }
+
+    @Test
+    public void shouldReturnBadRequestWhenServiceOfALoadWindowDoesNotExist() throws Exception {
+        AppointmentServiceLoadQuery loadQuery = new AppointmentServiceLoadQuery();
+        loadQuery.setServiceUuid("unknownUuid");
+        loadQuery.setStartDateTime("2108-08-15T03:30:00.0Z");
+        loadQuery.setEndDateTime("2108-08-15T04:00:00.0Z");
+
+        ResponseEntity<Object> response = appointmentServiceController.calculateLoadForServices(Collections.singletonList(loadQuery));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(appointmentServiceDefinitionService, never()).calculateCurrentLoad(anyListOf(AppointmentServiceLoadWindow.class));
+    }
+
+    @Test
+    public void shouldReturnBadRequestWhenALoadWindowIsIncomplete() throws Exception {
+        String appointmentServiceUuid = "appointmentServiceUuid";
+        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(new AppointmentServiceDefinition());
+        AppointmentServiceLoadQuery loadQuery = new AppointmentServiceLoadQuery();
+        loadQuery.setServiceUuid(appointmentServiceUuid);
+        loadQuery.setStartDateTime("2108-08-15T03:30:00.0Z");
+        when(appointmentServiceDefinitionService.calculateCurrentLoad(anyListOf(AppointmentServiceLoadWindow.class)))
+                .thenThrow(new APIException("Service, start date time and end date time are required for every load window"));
+
+        ResponseEntity<Object> response = appointmentServiceController.calculateLoadForServices(Collections.singletonList(loadQuery));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void shouldReturnBadRequestWhenALoadWindowDateCanNotBeParsed() throws Exception {
+        String appointmentServiceUuid = "appointmentServiceUuid";
+        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid(appointmentServiceUuid)).thenReturn(new AppointmentServiceDefinition());
+        AppointmentServiceLoadQuery loadQuery = new AppointmentServiceLoadQuery();
+        loadQuery.setServiceUuid(appointmentServiceUuid);
+        loadQuery.setStartDateTime("15-08-2108");
+        loadQuery.setEndDateTime("2108-08-15T04:00:00.0Z");
+
+        ResponseEntity<Object> response = appointmentServiceController.calculateLoadForServices(Collections.singletonList(loadQuery));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(appointmentServiceDefinitionService, never()).calculateCurrentLoad(anyListOf(AppointmentServiceLoadWindow.class));
+    }
+
     @Test
     public void shouldGetAppointmentServiceWithSpecialityAndAppointmentServiceTypesInIt() {
         AppointmentServiceDefinition appointmentServiceDefinition = new AppointmentServiceDefinition();
@@ -9,6 +9,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.appointments.dao.AppointmentAuditDao;
+import org.openmrs.module.appointments.dao.impl.AppointmentAuditDaoImpl;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentAudit;
 import org.openmrs.module.appointments.model.AppointmentConflictType;
@@ -19,8 +20,11 @@ import org.openmrs.module.appointments.util.DateUtil;
 import org.openmrs.module.appointments.web.BaseIntegrationTest;
 import org.openmrs.module.appointments.web.contract.AppointmentDefaultResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -172,6 +176,26 @@ public class AppointmentsControllerIT extends BaseIntegrationTest {
         assertNull(historyForAppointment.get(0).getNotes());
     }
 
+    @Test
+    public void should_refuseStatusChangeOfAnAppointmentChangedSinceItWasRead() throws Exception {
+        String content = "{ \"toStatus\": \"CheckedIn\"}";
+        MockHttpServletResponse getResponse = handle(newGetRequest("/rest/v1/appointments/c36006e5-9fbb-4f20-866b-0ece245615a7"));
+        String eTag = getResponse.getHeader("ETag");
+        assertEquals("\"0\"", eTag);
+
+        MockHttpServletRequest request = newPostRequest("/rest/v1/appointments/c36006e5-9fbb-4f20-866b-0ece245615a7/status-change", content);
+        request.addHeader("If-Match", eTag);
+        assertEquals(200, handle(request).getStatus());
+        Context.flushSession();
+
+        MockHttpServletRequest staleRequest = newPostRequest("/rest/v1/appointments/c36006e5-9fbb-4f20-866b-0ece245615a7/status-change", content);
+        staleRequest.addHeader("If-Match", eTag);
+        MockHttpServletResponse response = handle(staleRequest);
+
+        assertEquals(412, response.getStatus());
+        assertEquals(Integer.valueOf(1), appointmentsService.getAppointmentByUuid("c36006e5-9fbb-4f20-866b-0ece245615a7").getVersion());
+    }
+
     @Test
     public void should_throwExceptionForInvalidStatusChange() throws Exception {
         String content = "{ \"toStatus\": \"Completed\"}";
@@ -378,4 +402,74 @@ public class AppointmentsControllerIT extends BaseIntegrationTest {
         Appointment appointment = appointmentsService.getAppointmentByUuid("c36006e5-9fbb-4f20-866b-0ece245615a7");
         assertEquals("2107-07-15 17:00:00.0", appointment.getStartDateTime().toString());
     }
+
+    @Test
+    public void shouldStreamHistoryOfAnAppointmentWithItsDetailsDecoded() throws Exception {
+        String content = "{ \"uuid\": \"c36006e5-9fbb-4f20-866b-0ece245615a7\", " +
+                "\"appointmentNumber\": \"1\",  " +
+                "\"patientUuid\": \"2c33920f-7aa6-48d6-998a-60412d8ff7d5\", " +
+                "\"serviceUuid\": \"c36006d4-9fbb-4f20-866b-0ece245615c1\", " +
+                "\"serviceTypeUuid\": \"672546e5-9fbb-4f20-866b-0ece24564578\", " +
+                "\"startDateTime\": \"2017-07-20\", " +
+                "\"endDateTime\": \"2017-07-20\",  " +
+                "\"comments\": \"Some notes\",  " +
+                "\"appointmentKind\": \"WalkIn\"}";
+        assertEquals(200, handle(newPostRequest("/rest/v1/appointment", content)).getStatus());
+
+        MockHttpServletResponse response = handle(newGetRequest("/rest/v1/appointments/history",
+                new Parameter("appointmentUuid", "c36006e5-9fbb-4f20-866b-0ece245615a7")));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(AppointmentsController.NDJSON_CONTENT_TYPE, response.getContentType().split(";")[0]);
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(1, lines.length);
+        Map<String, Object> event = new ObjectMapper().readValue(lines[0], new TypeReference<Map<String, Object>>() {
+        });
+        assertEquals("c36006e5-9fbb-4f20-866b-0ece245615a7", event.get("appointmentUuid"));
+        assertEquals("2c33920f-7aa6-48d6-998a-60412d8ff7d5", event.get("patientUuid"));
+        Map<String, Object> appointmentDetails = (Map<String, Object>) event.get("appointmentDetails");
+        assertEquals("c36006d4-9fbb-4f20-866b-0ece245615c1", appointmentDetails.get("serviceUuid"));
+        assertEquals("Some notes", appointmentDetails.get("appointmentNotes"));
+        assertEquals(Collections.emptyList(), appointmentDetails.get("providerUuids"));
+    }
+
+    @Test
+    public void shouldStreamMoreHistoryThanOneFetchReads() throws Exception {
+        Appointment appointment = appointmentsService.getAppointmentByUuid("c36006e5-9fbb-4f20-866b-0ece245615a7");
+        List<AppointmentAudit> appointmentAudits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            AppointmentAudit appointmentAudit = new AppointmentAudit();
+            appointmentAudit.setAppointment(appointment);
+            appointmentAudit.setStatus(AppointmentStatus.Scheduled);
+            appointmentAudit.setNotes("Event " + i);
+            appointmentAudit.setDateCreated(new Date(1500000000000L + i * 1000L));
+            appointmentAudits.add(appointmentAudit);
+        }
+        appointmentAuditDao.saveAll(appointmentAudits);
+        ((AppointmentAuditDaoImpl) appointmentAuditDao).setHistoryFetchSize(2);
+        MockHttpServletResponse response;
+        try {
+            response = handle(newGetRequest("/rest/v1/appointments/history",
+                    new Parameter("appointmentUuid", "c36006e5-9fbb-4f20-866b-0ece245615a7")));
+        } finally {
+            ((AppointmentAuditDaoImpl) appointmentAuditDao).setHistoryFetchSize(null);
+        }
+
+        assertEquals(200, response.getStatus());
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(5, lines.length);
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> event = new ObjectMapper().readValue(lines[i], new TypeReference<Map<String, Object>>() {
+            });
+            assertEquals("Event " + i, event.get("notes"));
+        }
+    }
+
+    @Test
+    public void shouldNotStreamHistoryWithoutAnAppointmentPatientOrDateRange() throws Exception {
+        MockHttpServletResponse response = handle(newGetRequest("/rest/v1/appointments/history",
+                new Parameter("status", "Scheduled")));
+
+        assertEquals(400, response.getStatus());
+    }
 }
@@ -1,11 +1,13 @@
 package org.openmrs.module.appointments.web.controller;
 
 
+import org.hibernate.StaleStateException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
@@ -13,29 +15,42 @@ import org.mockito.stubbing.Answer;
 import org.openmrs.Patient;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentAuditProjection;
+import org.openmrs.module.appointments.model.AppointmentAuditSearchRequest;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
+import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.AppointmentsService;
+import org.openmrs.module.appointments.util.AppointmentSearchCursor;
 import org.openmrs.module.appointments.util.DateUtil;
+import org.openmrs.module.appointments.web.contract.AppointmentAuditResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentDefaultResponse;
 import org.openmrs.module.appointments.web.contract.AppointmentRequest;
+import org.openmrs.module.appointments.web.contract.AppointmentsStatusChangeRequest;
 import org.openmrs.module.appointments.web.mapper.AppointmentMapper;
 import org.openmrs.module.appointments.web.validators.AppointmentSearchValidator;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.validation.Errors;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.anyList;
 import java.util.Map;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
@@ -43,6 +58,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.doThrow;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -168,11 +184,33 @@ public class AppointmentsControllerTest {
         when(appointmentsService.search(appointmentSearchRequest)).thenReturn(appointments);
         when(appointmentMapper.constructResponse(appointments)).thenReturn(expectedResponse);
 
-        List<AppointmentDefaultResponse> actualResponse = appointmentsController.search(appointmentSearchRequest);
+        ResponseEntity<List<AppointmentDefaultResponse>> actualResponse = appointmentsController.search(appointmentSearchRequest);
 
         verify(appointmentsService, times(1)).search(appointmentSearchRequest);
         verify(appointmentMapper, times(1)).constructResponse(appointments);
-        assertEquals(expectedResponse, actualResponse);
+        assertEquals(expectedResponse, actualResponse.getBody());
+        assertNull(actualResponse.getHeaders().getFirst(AppointmentsController.CONTINUATION_TOKEN_HEADER));
+    }
+
+    @Test
+    public void shouldReturnContinuationTokenOfLastAppointmentWhenPageIsFull() {
+        AppointmentSearchRequest appointmentSearchRequest = new AppointmentSearchRequest();
+        appointmentSearchRequest.setLimit(2);
+        Appointment firstAppointment = new Appointment();
+        firstAppointment.setAppointmentId(1);
+        firstAppointment.setStartDateTime(new Date(1000));
+        Appointment lastAppointment = new Appointment();
+        lastAppointment.setAppointmentId(2);
+        lastAppointment.setStartDateTime(new Date(2000));
+        List<Appointment> appointments = Arrays.asList(firstAppointment, lastAppointment);
+        when(appointmentsService.search(appointmentSearchRequest)).thenReturn(appointments);
+
+        ResponseEntity<List<AppointmentDefaultResponse>> response = appointmentsController.search(appointmentSearchRequest);
+
+        String continuationToken = response.getHeaders().getFirst(AppointmentsController.CONTINUATION_TOKEN_HEADER);
+        AppointmentSearchCursor cursor = AppointmentSearchCursor.decode(continuationToken);
+        assertEquals(new Date(2000), cursor.getStartDateTime());
+        assertEquals(Integer.valueOf(2), cursor.getAppointmentId());
     }
 
     @Test(expected = RuntimeException.class)
@@ -201,7 +239,7 @@ public class AppointmentsControllerTest {
         Appointment appointment = new Appointment();
         when(appointmentsService.getAppointmentByUuid(anyString())).thenReturn(appointment);
 
-        appointmentsController.transitionAppointment("appointmentUuid", statusDetails);
+        appointmentsController.transitionAppointment("appointmentUuid", statusDetails, null);
 
         verify(appointmentsService, times(1)).getAppointmentByUuid("appointmentUuid");
         verify(appointmentsService, times(1)).changeStatus(appointment, "Completed", null);
@@ -216,10 +254,104 @@ public class AppointmentsControllerTest {
         expectedException.expect(RuntimeException.class);
         expectedException.expectMessage("Appointment does not exist");
 
-        appointmentsController.transitionAppointment("appointmentUuid", statusDetails);
+        appointmentsController.transitionAppointment("appointmentUuid", statusDetails, null);
 
         verify(appointmentsService, times(1)).getAppointmentByUuid("appointmentUuid");
-        verify(appointmentsService, never()).changeStatus(any(), any(), any());
+        verify(appointmentsService, never()).changeStatus(any(Appointment.class), anyString(), any(Date.class));
+    }
+
+    @Test
+    public void shouldReturnTheVersionOfTheAppointmentAsETag() throws Exception {
+        Appointment appointment = new Appointment();
+        appointment.setVersion(3);
+        when(appointmentsService.getAppointmentByUuid("appointmentUuid")).thenReturn(appointment);
+
+        ResponseEntity<AppointmentDefaultResponse> response = appointmentsController.getAppointmentByUuid("appointmentUuid");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    public void shouldNotChangeStatusOfAnAppointmentChangedSinceTheGivenETag() throws Exception {
+        Map<String, String> statusDetails = new HashMap<>();
+        statusDetails.put("toStatus", "CheckedIn");
+        Appointment appointment = new Appointment();
+        appointment.setVersion(4);
+        when(appointmentsService.getAppointmentByUuid("appointmentUuid")).thenReturn(appointment);
+
+        ResponseEntity<Object> response = appointmentsController.transitionAppointment("appointmentUuid", statusDetails, "\"3\"");
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+        verify(appointmentsService, never()).changeStatus(any(Appointment.class), anyString(), any(Date.class));
+    }
+
+    @Test
+    public void shouldChangeStatusOfAnAppointmentMatchingTheGivenETag() throws Exception {
+        Map<String, String> statusDetails = new HashMap<>();
+        statusDetails.put("toStatus", "CheckedIn");
+        Appointment appointment = new Appointment();
+        appointment.setVersion(3);
+        when(appointmentsService.getAppointmentByUuid("appointmentUuid")).thenReturn(appointment);
+
+        ResponseEntity<Object> response = appointmentsController.transitionAppointment("appointmentUuid", statusDetails, "\"2\", \"3\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(appointmentsService).changeStatus(appointment, "CheckedIn", null);
+    }
+
+    @Test
+    public void shouldReturnConflictWhenAnAppointmentIsChangedConcurrently() throws Exception {
+        ResponseEntity<Object> response = appointmentsController.handleConcurrentUpdate(
+                new OptimisticLockingFailureException("Row was updated or deleted by another transaction"));
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    public void shouldReturnConflictWhenStatusChangeOfAppointmentsLosesToAConcurrentChange() throws Exception {
+        AppointmentsStatusChangeRequest statusChangeRequest = new AppointmentsStatusChangeRequest();
+        statusChangeRequest.setAppointmentUuids(Arrays.asList("appointmentUuid1", "appointmentUuid2"));
+        statusChangeRequest.setToStatus("Completed");
+        List<Appointment> appointments = Arrays.asList(new Appointment(), new Appointment());
+        when(appointmentsService.getAppointmentsByUuids(statusChangeRequest.getAppointmentUuids())).thenReturn(appointments);
+        doThrow(new StaleStateException("Appointments were updated or deleted by another transaction"))
+                .when(appointmentsService).changeStatus(appointments, AppointmentStatus.Completed, null);
+
+        ResponseEntity<Object> response = appointmentsController.transitionAppointments(statusChangeRequest);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    public void shouldChangeStatusOfAllRequestedAppointments() throws Exception {
+        AppointmentsStatusChangeRequest statusChangeRequest = new AppointmentsStatusChangeRequest();
+        statusChangeRequest.setAppointmentUuids(Arrays.asList("appointmentUuid1", "appointmentUuid2"));
+        statusChangeRequest.setToStatus("Completed");
+        List<Appointment> appointments = Arrays.asList(new Appointment(), new Appointment());
+        List<AppointmentDefaultResponse> responses = new ArrayList<>();
+        when(appointmentsService.getAppointmentsByUuids(statusChangeRequest.getAppointmentUuids())).thenReturn(appointments);
+        when(appointmentMapper.constructResponse(appointments)).thenReturn(responses);
+
+        ResponseEntity<Object> response = appointmentsController.transitionAppointments(statusChangeRequest);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(responses, response.getBody());
+        verify(appointmentsService, times(1)).changeStatus(appointments, AppointmentStatus.Completed, null);
+    }
+
+    @Test
+    public void shouldReturnBadRequestWhenAnyOfTheRequestedAppointmentsDoesNotExist() throws Exception {
+        AppointmentsStatusChangeRequest statusChangeRequest = new AppointmentsStatusChangeRequest();
+        statusChangeRequest.setAppointmentUuids(Arrays.asList("appointmentUuid1", "appointmentUuid2"));
+        statusChangeRequest.setToStatus("Completed");
+        when(appointmentsService.getAppointmentsByUuids(statusChangeRequest.getAppointmentUuids()))
+                .thenReturn(Collections.singletonList(new Appointment()));
+
+        ResponseEntity<Object> response = appointmentsController.transitionAppointments(statusChangeRequest);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(appointmentsService, never()).changeStatus(anyCollectionOf(Appointment.class), any(AppointmentStatus.class), any(Date.class));
     }
 
     @Test
@@ -235,4 +367,43 @@ public class AppointmentsControllerTest {
         verify(appointmentMapper).fromRequestClonedAppointment(appointmentRequest);
         verify(appointmentsService).getAppointmentConflicts(appointment);
     }
+
+    @Test
+    public void shouldStreamAppointmentHistoryAsNewlineDelimitedJson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<AppointmentAuditProjection> consumer = (Consumer<AppointmentAuditProjection>) invocation.getArguments()[1];
+            consumer.accept(new AppointmentAuditProjection("audit-1", "appointment", "patient", AppointmentStatus.Scheduled,
+                    null, "user", new Date()));
+            consumer.accept(new AppointmentAuditProjection("audit-2", "appointment", "patient", AppointmentStatus.CheckedIn,
+                    null, "user", new Date()));
+            return null;
+        }).when(appointmentsService).streamAppointmentHistory(any(AppointmentAuditSearchRequest.class), any(Consumer.class));
+        when(appointmentMapper.constructAuditResponse(any(AppointmentAuditProjection.class))).thenAnswer(invocation -> {
+            AppointmentAuditResponse appointmentAuditResponse = new AppointmentAuditResponse();
+            appointmentAuditResponse.setUuid(((AppointmentAuditProjection) invocation.getArguments()[0]).getUuid());
+            return appointmentAuditResponse;
+        });
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        appointmentsController.getAppointmentHistory(null, "patient", null, null,
+                Collections.singletonList(AppointmentStatus.Scheduled), "user", response);
+
+        ArgumentCaptor<AppointmentAuditSearchRequest> searchRequest = ArgumentCaptor.forClass(AppointmentAuditSearchRequest.class);
+        verify(appointmentsService).streamAppointmentHistory(searchRequest.capture(), any(Consumer.class));
+        assertEquals("patient", searchRequest.getValue().getPatientUuid());
+        assertEquals(Collections.singletonList(AppointmentStatus.Scheduled), searchRequest.getValue().getStatuses());
+        assertEquals("user", searchRequest.getValue().getActorUuid());
+        assertEquals(AppointmentsController.NDJSON_CONTENT_TYPE, response.getContentType().split(";")[0]);
+        assertEquals("{\"uuid\":\"audit-1\"}\n{\"uuid\":\"audit-2\"}\n", response.getContentAsString());
+    }
+
+    @Test
+    public void shouldNotStreamAppointmentHistoryWithoutAnAppointmentPatientOrDateRange() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        appointmentsController.getAppointmentHistory(null, null, "2108-08-10T00:00:00.0Z", null, null, null, response);
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+        verify(appointmentsService, never()).streamAppointmentHistory(any(AppointmentAuditSearchRequest.class), any(Consumer.class));
+    }
 }
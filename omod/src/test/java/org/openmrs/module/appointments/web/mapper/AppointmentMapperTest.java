@@ -18,7 +18,9 @@ import org.openmrs.api.PatientService;
 import org.openmrs.api.ProviderService;
 import org.openmrs.module.appointments.model.Appointment;
 import org.openmrs.module.appointments.model.AppointmentKind;
+import org.openmrs.module.appointments.model.AppointmentProjection;
 import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderProjection;
 import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
 import org.openmrs.module.appointments.model.AppointmentServiceDefinition;
@@ -52,7 +54,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -142,6 +146,10 @@ public class AppointmentMapperTest {
         location = new Location();
         location.setUuid("locationUuid");
         when(locationService.getLocationByUuid("locationUuid")).thenReturn(location);
+        when(appointmentServiceDefinitionService.getAppointmentServiceReference(any(AppointmentServiceDefinition.class)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(appointmentServiceDefinitionService.getAppointmentServiceTypeReference(any(AppointmentServiceType.class)))
+                .thenAnswer(invocation -> invocation.getArguments()[0]);
     }
 
     @Test
@@ -165,6 +173,19 @@ public class AppointmentMapperTest {
         assertEquals(appointmentRequest.getComments(), appointment.getComments());
     }
 
+    @Test
+    public void shouldStoreTheSessionInstancesOfTheServiceAndServiceTypeInsteadOfTheCachedSnapshot() throws Exception {
+        AppointmentServiceDefinition managedService = new AppointmentServiceDefinition();
+        AppointmentServiceType managedServiceType = new AppointmentServiceType();
+        when(appointmentServiceDefinitionService.getAppointmentServiceReference(service)).thenReturn(managedService);
+        when(appointmentServiceDefinitionService.getAppointmentServiceTypeReference(serviceType)).thenReturn(managedServiceType);
+
+        Appointment appointment = appointmentMapper.fromRequest(createAppointmentRequest());
+
+        assertSame(managedService, appointment.getService());
+        assertSame(managedServiceType, appointment.getServiceType());
+    }
+
     @Test
     public void shouldNotSearchForExistingAppointmentWhenPayLoadUuidIsNull() throws Exception {
         AppointmentRequest appointmentRequest = createAppointmentRequest();
@@ -279,6 +300,68 @@ public class AppointmentMapperTest {
         assertEquals(existingAppointment.getPatient(), appointment.getPatient());
     }
 
+    @Test
+    public void shouldCreateDefaultResponseFromProjection() throws Exception {
+        AppointmentProjection appointment = new AppointmentProjection();
+        appointment.setUuid("appointmentUuid");
+        appointment.setAppointmentNumber("0001");
+        appointment.setPatientUuid("patientUuid");
+        appointment.setPatientName("Patient Name");
+        appointment.setPatientIdentifier("GAN200000");
+        appointment.setPatientEmailDefined(true);
+        appointment.setService(service);
+        appointment.setServiceTypeName("Type");
+        appointment.setServiceTypeUuid("serviceTypeUuid");
+        appointment.setServiceTypeDuration(20);
+        appointment.setLocationName("Room1");
+        appointment.setLocationUuid("locationUuid");
+        appointment.setStartDateTime(new Date(1000));
+        appointment.setEndDateTime(new Date(2000));
+        appointment.setAppointmentKind(AppointmentKind.Scheduled);
+        appointment.setStatus(AppointmentStatus.Scheduled);
+        appointment.setComments("comments");
+        appointment.setVoided(false);
+        appointment.setRecurringPatternId(1);
+        appointment.getProviders().add(new AppointmentProviderProjection("providerUuid", "Provider",
+                AppointmentProviderResponse.ACCEPTED, "provider comments"));
+        AppointmentServiceDefaultResponse serviceDefaultResponse = new AppointmentServiceDefaultResponse();
+        when(appointmentServiceMapper.constructDefaultResponse(service)).thenReturn(serviceDefaultResponse);
+
+        AppointmentDefaultResponse response = appointmentMapper.constructResponseFromProjections(Collections.singletonList(appointment)).get(0);
+
+        assertEquals("appointmentUuid", response.getUuid());
+        assertEquals("0001", response.getAppointmentNumber());
+        assertEquals("Patient Name", response.getPatient().get("name"));
+        assertEquals("patientUuid", response.getPatient().get("uuid"));
+        assertEquals("GAN200000", response.getPatient().get("identifier"));
+        assertEquals(serviceDefaultResponse, response.getService());
+        assertEquals("Type", response.getServiceType().get("name"));
+        assertEquals("serviceTypeUuid", response.getServiceType().get("uuid"));
+        assertEquals(20, response.getServiceType().get("duration"));
+        assertEquals("Room1", response.getLocation().get("name"));
+        assertEquals("locationUuid", response.getLocation().get("uuid"));
+        assertEquals(new Date(1000), response.getStartDateTime());
+        assertEquals(new Date(2000), response.getEndDateTime());
+        assertEquals("Scheduled", response.getAppointmentKind());
+        assertEquals("Scheduled", response.getStatus());
+        assertEquals("comments", response.getComments());
+        assertEquals(false, response.getVoided());
+        assertEquals(true, response.getRecurring());
+        assertEquals(true, response.getExtensions().get("patientEmailDefined"));
+        assertEquals(1, response.getProviders().size());
+        assertEquals("providerUuid", response.getProviders().get(0).getUuid());
+        assertEquals("Provider", response.getProviders().get(0).getName());
+        assertEquals("ACCEPTED", response.getProviders().get(0).getResponse());
+        assertEquals("provider comments", response.getProviders().get(0).getComments());
+        verify(extension, never()).run(any(Appointment.class));
+    }
+
+    @Test
+    public void shouldConstructResponseFromProjectionsOnlyWhenThereIsNoResponseExtension() {
+        assertFalse(appointmentMapper.canConstructResponseFromProjections());
+        assertTrue(new AppointmentMapper().canConstructResponseFromProjections());
+    }
+
     @Test
     public void shouldCreateDefaultResponse() throws Exception {
         Appointment appointment = createAppointment();
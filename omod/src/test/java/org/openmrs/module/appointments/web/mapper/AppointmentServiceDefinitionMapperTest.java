@@ -99,7 +99,7 @@ public class AppointmentServiceDefinitionMapperTest {
         AppointmentServiceDefinition existingAppointmentServiceDefinition = new AppointmentServiceDefinition();
         existingAppointmentServiceDefinition.setName("Chemotherapy");
         existingAppointmentServiceDefinition.setUuid("Uuid");
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid("Uuid")).thenReturn(existingAppointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid("Uuid")).thenReturn(existingAppointmentServiceDefinition);
         AppointmentServiceDescription appointmentServiceDescription = createAppointmentServicePayload();
         appointmentServiceDescription.setUuid("Uuid");
         AppointmentServiceDefinition appointmentServiceDefinition = appointmentServiceMapper.fromDescription(appointmentServiceDescription);
@@ -124,7 +124,7 @@ public class AppointmentServiceDefinitionMapperTest {
         HashSet<ServiceWeeklyAvailability> existingAvailabilityList = new HashSet<>();
         existingAvailabilityList.add(monday);
         existingAppointmentServiceDefinition.setWeeklyAvailability(existingAvailabilityList);
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid("Uuid")).thenReturn(existingAppointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid("Uuid")).thenReturn(existingAppointmentServiceDefinition);
 
         AppointmentServiceDescription appointmentServiceDescription = createAppointmentServicePayload();
         appointmentServiceDescription.setUuid("Uuid");
@@ -166,7 +166,7 @@ public class AppointmentServiceDefinitionMapperTest {
         HashSet<ServiceWeeklyAvailability> existingAvailabilityList = new HashSet<>();
         existingAvailabilityList.add(monday);
         existingAppointmentServiceDefinition.setWeeklyAvailability(existingAvailabilityList);
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid("Uuid")).thenReturn(existingAppointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid("Uuid")).thenReturn(existingAppointmentServiceDefinition);
 
         AppointmentServiceDescription appointmentServiceDescription = createAppointmentServicePayload();
         appointmentServiceDescription.setUuid("Uuid");
@@ -330,7 +330,7 @@ public class AppointmentServiceDefinitionMapperTest {
         serviceTypes.add(serviceType2);
         serviceTypes.add(serviceType3);
         existingAppointmentServiceDefinition.setServiceTypes(serviceTypes);
-        when(appointmentServiceDefinitionService.getAppointmentServiceByUuid("ServiceUuid")).thenReturn(existingAppointmentServiceDefinition);
+        when(appointmentServiceDefinitionService.getEditableAppointmentServiceByUuid("ServiceUuid")).thenReturn(existingAppointmentServiceDefinition);
 
         AppointmentServiceDescription appointmentServiceDescription = createAppointmentServicePayload();
         appointmentServiceDescription.setName("Chemotherapy");
@@ -636,4 +636,25 @@ public class DailyRecurringAppointmentsGenerationServiceTest {
 
         }
     }
+
+    @Test
+    public void shouldResolveTheAppointmentRequestOnceForSeriesOfAnyLength() {
+        Date appointmentStartDateTime = getDate(2019, Calendar.MAY, 13, 16, 00, 00);
+        Date appointmentEndDateTime = getDate(2019, Calendar.MAY, 13, 16, 30, 00);
+        for (int seriesLength : new int[]{10, 100, 1000}) {
+            RecurringAppointmentRequest recurringAppointmentRequest = getAppointmentRequest(appointmentStartDateTime, appointmentEndDateTime);
+            recurringAppointmentRequest.setRecurringPattern(getRecurringPattern(1, seriesLength, null));
+            Appointment template = new Appointment();
+            template.setComments("follow up");
+            Mockito.reset(appointmentMapper);
+            Mockito.when(appointmentMapper.fromRequest(recurringAppointmentRequest.getAppointmentRequest())).thenReturn(template);
+
+            List<Appointment> appointments = dailyRecurringAppointmentsGenerationService.generateAppointments(recurringAppointmentRequest);
+
+            assertEquals(seriesLength, appointments.size());
+            Mockito.verify(appointmentMapper, Mockito.times(1)).fromRequest(recurringAppointmentRequest.getAppointmentRequest());
+            assertEquals(seriesLength, appointments.stream().map(Appointment::getUuid).distinct().count());
+            assertEquals(seriesLength, appointments.stream().filter(appointment -> "follow up".equals(appointment.getComments())).count());
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package org.openmrs.module.appointments.web.service.impl;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.openmrs.module.appointments.web.contract.RecurringPattern;
+import org.openmrs.module.appointments.web.util.RecurringPatternBuilder;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Calendar.DATE;
+import static java.util.Calendar.DAY_OF_WEEK;
+import static java.util.Calendar.FEBRUARY;
+import static java.util.Calendar.FRIDAY;
+import static java.util.Calendar.MONDAY;
+import static java.util.Calendar.SATURDAY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.openmrs.module.appointments.web.helper.DateHelper.getDate;
+import static org.openmrs.module.appointments.web.service.impl.WeeklyRecurringAppointmentDate.getAppointmentDates;
+import static org.openmrs.module.appointments.web.service.impl.WeeklyRecurringAppointmentDate.getEndDate;
+import static org.openmrs.module.appointments.web.service.impl.WeeklyRecurringAppointmentDate.getSelectedDayCodes;
+
+public class WeeklyRecurrenceTest {
+
+    private static final List<String> DAYS = asList("SUNDAY", "MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY", "SATURDAY");
+
+    @Test
+    public void shouldComputeAnyOccurrenceWithoutExpandingTheOnesBeforeIt() {
+        WeeklyRecurrence recurrence = new WeeklyRecurrence(getDate(2020, FEBRUARY, 21, 14, 0, 0), getDate(2020, FEBRUARY, 21, 14, 30, 0),
+                asList(DayOfWeek.MONDAY, DayOfWeek.SATURDAY), 2);
+
+        assertEquals(getDate(2020, FEBRUARY, 22, 14, 0, 0), recurrence.getOccurrence(0).getLeft());
+        assertEquals(getDate(2020, FEBRUARY, 24, 14, 30, 0), recurrence.getOccurrence(1).getRight());
+        assertEquals(getDate(2021, FEBRUARY, 8, 14, 0, 0), recurrence.getOccurrence(51).getLeft());
+    }
+
+    @Test
+    public void shouldExpandOccurrencesLazilyAndInOrder() {
+        WeeklyRecurrence recurrence = new WeeklyRecurrence(getDate(2020, FEBRUARY, 21, 14, 0, 0), getDate(2020, FEBRUARY, 21, 14, 30, 0),
+                asList(DayOfWeek.SATURDAY, DayOfWeek.MONDAY, DayOfWeek.FRIDAY), 1);
+
+        Iterator<Pair<Date, Date>> occurrences = recurrence.iterator();
+        for (int n = 0; n < 1000; n++) {
+            assertEquals(recurrence.getOccurrence(n), occurrences.next());
+        }
+        List<Date> starts = recurrence.stream(getDate(2020, FEBRUARY, 29, 14, 0, 0)).map(Pair::getLeft).collect(Collectors.toList());
+        assertEquals(asList(getDate(2020, FEBRUARY, 21, 14, 0, 0), getDate(2020, FEBRUARY, 22, 14, 0, 0),
+                getDate(2020, FEBRUARY, 24, 14, 0, 0), getDate(2020, FEBRUARY, 28, 14, 0, 0),
+                getDate(2020, FEBRUARY, 29, 14, 0, 0)), starts);
+    }
+
+    @Test
+    public void shouldKeepTheTimeOfDayAcrossDaylightSavingChanges() {
+        ZoneId zone = ZoneId.of("America/New_York");
+        Date start = Date.from(LocalDateTime.of(2020, 3, 2, 9, 0).atZone(zone).toInstant());
+        Date end = Date.from(LocalDateTime.of(2020, 3, 2, 9, 30).atZone(zone).toInstant());
+
+        WeeklyRecurrence recurrence = new WeeklyRecurrence(start, end, Collections.singletonList(DayOfWeek.MONDAY), 1, zone);
+
+        assertEquals(Date.from(LocalDateTime.of(2020, 3, 9, 9, 0).atZone(zone).toInstant()), recurrence.getOccurrence(1).getLeft());
+        assertEquals(Date.from(LocalDateTime.of(2020, 3, 9, 9, 30).atZone(zone).toInstant()), recurrence.getOccurrence(1).getRight());
+    }
+
+    @Test
+    public void shouldHaveNoOccurrencesWithoutSelectedDays() {
+        WeeklyRecurrence recurrence = new WeeklyRecurrence(getDate(2020, FEBRUARY, 21, 14, 0, 0), getDate(2020, FEBRUARY, 21, 14, 30, 0),
+                Collections.emptyList(), 1);
+
+        assertFalse(recurrence.iterator().hasNext());
+    }
+
+    @Test
+    public void shouldGenerateTheSameDatesAsTheCalendarBasedCalculation() {
+        Random random = new Random(20200221);
+        for (int i = 0; i < 500; i++) {
+            List<String> daysOfWeek = DAYS.stream().filter(day -> random.nextBoolean()).collect(Collectors.toList());
+            if (daysOfWeek.isEmpty()) {
+                daysOfWeek.add(DAYS.get(random.nextInt(DAYS.size())));
+            }
+            int period = 1 + random.nextInt(4);
+            RecurringPattern recurringPattern = new RecurringPatternBuilder().setFrequency(1 + random.nextInt(60))
+                    .setPeriod(period).setType("week").setDaysOfWeek(daysOfWeek).get();
+            Date startDateTime = getDate(2019 + random.nextInt(3), random.nextInt(12), 1 + random.nextInt(28),
+                    6 + random.nextInt(14), random.nextInt(4) * 15, 0);
+            Date endDateTime = new Date(startDateTime.getTime() + (1 + random.nextInt(8)) * 15 * 60 * 1000L);
+            List<Integer> selectedDayCodes = getSelectedDayCodes(daysOfWeek);
+
+            Date endDate = getEndDate(recurringPattern, startDateTime);
+            assertEquals(getCalendarEndDate(recurringPattern, startDateTime), endDate);
+            assertEquals(sorted(getCalendarAppointmentDates(endDate, startDateTime, endDateTime, selectedDayCodes, period)),
+                    sorted(getAppointmentDates(endDate, startDateTime, endDateTime, selectedDayCodes, period)));
+        }
+    }
+
+    @Test
+    public void shouldMapCalendarDayCodesToDaysOfWeek() {
+        assertEquals(DayOfWeek.MONDAY, WeeklyRecurrence.getDayOfWeek(MONDAY));
+        assertEquals(DayOfWeek.FRIDAY, WeeklyRecurrence.getDayOfWeek(FRIDAY));
+        assertEquals(DayOfWeek.SATURDAY, WeeklyRecurrence.getDayOfWeek(SATURDAY));
+        assertEquals(DayOfWeek.SUNDAY, WeeklyRecurrence.getDayOfWeek(Calendar.SUNDAY));
+    }
+
+    private List<Pair<Date, Date>> sorted(List<Pair<Date, Date>> appointmentDates) {
+        List<Pair<Date, Date>> sortedDates = new ArrayList<>(appointmentDates);
+        sortedDates.sort(Comparator.comparing(Pair::getLeft));
+        return sortedDates;
+    }
+
+    // The calculation the recurrence replaced, kept to check the dates it generates stay the same. The two only differ
+    // for times a daylight saving change skips or repeats, which the appointments above stay clear of.
+
+    private static List<Pair<Date, Date>> getCalendarAppointmentDates(Date endDate, Date appointmentStartDate, Date appointmentEndDate,
+                                                                      List<Integer> selectedDayCodes, int period) {
+        List<Pair<Date, Date>> appointmentDates = new ArrayList<>();
+        Calendar startCalendar = Calendar.getInstance();
+        startCalendar.setTime(appointmentStartDate);
+        Calendar endCalendar = Calendar.getInstance();
+        endCalendar.setTime(appointmentEndDate);
+        while (!startCalendar.getTime().after(endDate)) {
+            for (int dayCode : selectedDayCodes) {
+                Calendar start = (Calendar) startCalendar.clone();
+                Calendar end = (Calendar) endCalendar.clone();
+                int daysToBeAdded = dayCode - start.get(DAY_OF_WEEK);
+                if (daysToBeAdded < 0) {
+                    daysToBeAdded += 7;
+                }
+                start.add(DATE, daysToBeAdded);
+                end.add(DATE, daysToBeAdded);
+                if (!start.getTime().after(endDate)) {
+                    appointmentDates.add(new ImmutablePair<>(start.getTime(), end.getTime()));
+                }
+            }
+            startCalendar.add(DATE, 7 * period);
+            endCalendar.add(DATE, 7 * period);
+        }
+        return appointmentDates;
+    }
+
+    private static Date getCalendarEndDate(RecurringPattern recurringPattern, Date startDateTime) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(startDateTime);
+        int startDayCode = calendar.get(DAY_OF_WEEK);
+        List<Integer> selectedDaysPerWeek = getSelectedDayCodes(recurringPattern.getDaysOfWeek()).stream()
+                .sorted(Comparator.comparing(dayCode -> (dayCode - startDayCode + 7) % 7))
+                .collect(Collectors.toList());
+        int frequency = recurringPattern.getFrequency();
+        calendar.add(DATE, 7 * recurringPattern.getPeriod() * (frequency / selectedDaysPerWeek.size()));
+        int remainingFrequency = frequency % selectedDaysPerWeek.size();
+        if (remainingFrequency > 0) {
+            while (calendar.get(DAY_OF_WEEK) != selectedDaysPerWeek.get(remainingFrequency - 1)) {
+                calendar.add(DATE, 1);
+            }
+        } else {
+            calendar.add(DATE, -1);
+        }
+        return calendar.getTime();
+    }
+}
@@ -28,8 +28,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.openmrs.Patient;
+import org.openmrs.Provider;
 import org.openmrs.api.APIException;
 import org.openmrs.module.appointments.model.Appointment;
+import org.openmrs.module.appointments.model.AppointmentProvider;
+import org.openmrs.module.appointments.model.AppointmentProviderResponse;
 import org.openmrs.module.appointments.model.AppointmentRecurringPattern;
 import org.openmrs.module.appointments.model.AppointmentStatus;
 import org.openmrs.module.appointments.service.impl.RecurringAppointmentType;
@@ -1781,6 +1785,40 @@ public class WeeklyRecurringAppointmentsGenerationServiceTest {
         }
     }
 
+    @Test
+    public void shouldResolveTheAppointmentRequestOnceForSeriesOfAnyLength() {
+        Date appointmentStartDateTime = getDate(2019, Calendar.MAY, 13, 16, 00, 00);
+        Date appointmentEndDateTime = getDate(2019, Calendar.MAY, 13, 16, 30, 00);
+        for (int seriesLength : new int[]{10, 100, 1000}) {
+            RecurringAppointmentRequest recurringAppointmentRequest = getAppointmentRequest(appointmentStartDateTime, appointmentEndDateTime);
+            recurringAppointmentRequest.setRecurringPattern(getRecurringPattern(1, seriesLength, null, asList("MONDAY", "THURSDAY")));
+            Patient patient = new Patient();
+            Appointment template = new Appointment();
+            template.setPatient(patient);
+            AppointmentProvider appointmentProvider = new AppointmentProvider();
+            appointmentProvider.setProvider(new Provider());
+            appointmentProvider.setResponse(AppointmentProviderResponse.ACCEPTED);
+            appointmentProvider.setAppointment(template);
+            template.setProviders(new HashSet<>(singletonList(appointmentProvider)));
+            Mockito.reset(appointmentMapper);
+            Mockito.when(appointmentMapper.fromRequest(recurringAppointmentRequest.getAppointmentRequest())).thenReturn(template);
+
+            List<Appointment> appointments = weeklyRecurringAppointmentsGenerationService.generateAppointments(recurringAppointmentRequest);
+
+            assertEquals(seriesLength, appointments.size());
+            Mockito.verify(appointmentMapper, Mockito.times(1)).fromRequest(recurringAppointmentRequest.getAppointmentRequest());
+            Set<String> uuids = new HashSet<>();
+            for (Appointment appointment : appointments) {
+                assertEquals(patient, appointment.getPatient());
+                AppointmentProvider occurrenceProvider = appointment.getProviders().iterator().next();
+                assertEquals(appointment, occurrenceProvider.getAppointment());
+                assertEquals(appointmentProvider.getProvider(), occurrenceProvider.getProvider());
+                uuids.add(appointment.getUuid());
+            }
+            assertEquals(seriesLength, uuids.size());
+        }
+    }
+
     private String getDayFromDayCode(Integer dayCode) {
         String day = null;
         switch (dayCode) {
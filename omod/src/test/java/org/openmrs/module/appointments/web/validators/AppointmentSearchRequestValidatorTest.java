@@ -6,6 +6,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.openmrs.module.appointments.model.AppointmentSearchRequest;
+import org.openmrs.module.appointments.util.AppointmentSearchCursor;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
 import static org.junit.Assert.assertEquals;
@@ -57,4 +58,21 @@ public class AppointmentSearchRequestValidatorTest {
         assertNotNull(errors.getAllErrors().get(0).getCodes()[1]);
     }
 
+    @Test
+    public void shouldAddToErrorsWhenContinuationTokenIsInvalid() {
+        appointmentSearchRequest = getAppointmentSearchRequest();
+        appointmentSearchRequest.setContinuationToken("not-a-token");
+        appointmentSearchValidator.validate(appointmentSearchRequest, errors);
+        assertEquals(errors.getAllErrors().size(), 1);
+        assertEquals("Continuation token is not valid", errors.getAllErrors().get(0).getDefaultMessage());
+    }
+
+    @Test
+    public void shouldNotThrowErrorsForValidContinuationToken() {
+        appointmentSearchRequest = getAppointmentSearchRequest();
+        appointmentSearchRequest.setContinuationToken(new AppointmentSearchCursor(new Date(), 10).encode());
+        appointmentSearchValidator.validate(appointmentSearchRequest, errors);
+        assertEquals(errors.getAllErrors().size(), 0);
+    }
+
 }